@@ -9,6 +9,7 @@ import org.hive2hive.client.util.MenuContainer;
 public class FileObserverMenu extends H2HConsoleMenu {
 
 	private FileObserver fileObserver;
+	private FileObserverListener fileObserverListener;
 	private long interval = 1000;
 
 	public FileObserverMenu(MenuContainer menus) {
@@ -22,7 +23,7 @@ public class FileObserverMenu extends H2HConsoleMenu {
 			add(new H2HConsoleMenuItem("Set Interval") {
 				// TODO restart observer
 				protected void execute() {
-					System.out.println("Specify the observation interval (ms):");
+					System.out.println("Specify the interval (ms) without further changes before they are reported:");
 					interval = awaitIntParameter();
 				}
 			});
@@ -38,9 +39,10 @@ public class FileObserverMenu extends H2HConsoleMenu {
 			}
 
 			protected void execute() throws Exception {
+				stopFileObserver();
 				fileObserver = new FileObserver(menus.getUserMenu().getRootDirectory(), interval);
-				FileObserverListener listener = new FileObserverListener(menus.getNodeMenu().getNode().getFileManager());
-				fileObserver.addFileObserverListener(listener);
+				fileObserverListener = new FileObserverListener(menus.getNodeMenu().getNode().getFileManager());
+				fileObserver.addFileObserverListener(fileObserverListener);
 
 				fileObserver.start();
 				exit();
@@ -49,9 +51,7 @@ public class FileObserverMenu extends H2HConsoleMenu {
 
 		add(new H2HConsoleMenuItem("Stop File Observer") {
 			protected void execute() throws Exception {
-				if (fileObserver != null) {
-					fileObserver.stop();
-				}
+				stopFileObserver();
 				exit();
 			}
 		});
@@ -73,4 +73,17 @@ public class FileObserverMenu extends H2HConsoleMenu {
 		return fileObserver;
 	}
 
+	/**
+	 * Stops the file observer and the buffers of its listener.
+	 */
+	public void stopFileObserver() throws Exception {
+		if (fileObserver != null) {
+			fileObserver.stop();
+		}
+		if (fileObserverListener != null) {
+			fileObserverListener.shutdown();
+			fileObserverListener = null;
+		}
+	}
+
 }
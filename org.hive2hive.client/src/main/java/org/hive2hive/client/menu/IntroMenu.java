@@ -63,11 +63,11 @@ public class IntroMenu extends ConsoleMenu {
 		FileObserver fileObserver = menus.getFileObserverMenu().getFileObserver();
 		if (fileObserver != null && fileObserver.isRunning()) {
 			print("Stopping the file observer...");
-			try {
-				fileObserver.stop();
-			} catch (Exception e) {
-				printError(e);
-			}
+		}
+		try {
+			menus.getFileObserverMenu().stopFileObserver();
+		} catch (Exception e) {
+			printError(e);
 		}
 	}
 
@@ -54,7 +54,8 @@ public class FileEventListener implements IFileEventListener {
 	@Override
 	@Handler
 	public void onFileDelete(IFileDeleteEvent fileEvent) {
-		if (fileEvent.getFile().delete()) {
+		// a deleted folder may still contain files
+		if (FileUtils.deleteQuietly(fileEvent.getFile())) {
 			System.out.println("Deleted file " + fileEvent.getFile());
 		} else {
 			System.err.println("Could not delete file " + fileEvent.getFile());
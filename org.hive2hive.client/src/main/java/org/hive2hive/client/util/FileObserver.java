@@ -1,51 +1,125 @@
 package org.hive2hive.client.util;
 
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.monitor.FileAlterationListener;
-import org.apache.commons.io.monitor.FileAlterationMonitor;
 import org.apache.commons.io.monitor.FileAlterationObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * Default implementation of a file observer. Internally uses the Apache Commons IO
- * {@link FileAlterationObserver} and {@link FileAlterationMonitor}.
- * 
- * @author Christian
- * 
+ * Default implementation of a file observer. Internally uses a {@link WatchService}, thus the file system
+ * notifies about changes instead of the whole tree being listed periodically. All directories below the root
+ * are registered recursively. <br>
+ * Events are debounced: they are collected until no new event arrived for the configured interval, then the
+ * affected paths are compared with the last known state and the according {@link FileAlterationListener}
+ * callbacks are fired (parents are created before their children, children are deleted before their
+ * parents). Files that are written continuously are reported at latest after the maximum delay. Like with
+ * the {@link FileAlterationObserver}, every round of callbacks is enclosed by
+ * {@link FileAlterationListener#onStart(FileAlterationObserver)} and
+ * {@link FileAlterationListener#onStop(FileAlterationObserver)}. When the watch service overflows, the
+ * affected directory is rescanned.
+ *
+ * @author Christian, Nico
+ *
  */
 public class FileObserver {
 
-	private final FileAlterationObserver observer;
-	private final FileAlterationMonitor monitor;
+	private static final Logger logger = LoggerFactory.getLogger(FileObserver.class);
+	// the default maximum delay relative to the interval
+	private static final int DEFAULT_MAX_DELAY_INTERVALS = 10;
+
+	private final Path root;
+	private final long interval;
+	private final long maxDelay;
+	private final List<FileAlterationListener> listeners;
+	// handed to the start and stop callbacks of the listeners
+	private final FileAlterationObserver observerHandle;
+
+	// last known state of all files and folders below the root
+	private final Map<Path, FileState> states;
+	private final Map<WatchKey, Path> watchedDirectories;
 
-	private boolean isRunning;
+	private WatchService watchService;
+	private Thread observerThread;
+	private volatile boolean isRunning;
+
+	/**
+	 * A file observer that waits the specified interval for further changes before reporting them.
+	 *
+	 * @param rootDirectory the root directory to monitor
+	 * @param interval the quiet time in milliseconds after which the changes are reported
+	 * @param maxDelay the time in milliseconds after which the changes are reported even if there is no
+	 *            quiet time
+	 */
+	public FileObserver(File rootDirectory, long interval, long maxDelay) {
+		this.root = rootDirectory.toPath().toAbsolutePath();
+		this.interval = interval;
+		this.maxDelay = Math.max(interval, maxDelay);
+		this.listeners = new CopyOnWriteArrayList<FileAlterationListener>();
+		this.observerHandle = new FileAlterationObserver(rootDirectory);
+		this.states = new HashMap<Path, FileState>();
+		this.watchedDirectories = new HashMap<WatchKey, Path>();
+	}
 
 	/**
-	 * A file observer that uses the specified interval to check for file changes.
-	 * 
+	 * A file observer that waits the specified interval for further changes before reporting them, but at
+	 * most {@value #DEFAULT_MAX_DELAY_INTERVALS} intervals.
+	 *
 	 * @param rootDirectory the root directory to monitor
-	 * @param interval the interval in milliseconds to observe changes
+	 * @param interval the quiet time in milliseconds after which the changes are reported
 	 */
 	public FileObserver(File rootDirectory, long interval) {
-		this.observer = new FileAlterationObserver(rootDirectory);
-		this.monitor = new FileAlterationMonitor(interval, observer);
+		this(rootDirectory, interval, interval * DEFAULT_MAX_DELAY_INTERVALS);
 	}
 
 	/**
-	 * A file observer that uses the default interval to check for file changes.
-	 * 
+	 * A file observer that uses the default interval to report file changes.
+	 *
 	 * @param rootDirectory the root directory to monitor
 	 */
 	public FileObserver(File rootDirectory) {
 		this(rootDirectory, 1000);
 	}
 
-	public void start() throws Exception {
+	public synchronized void start() throws Exception {
 		if (!isRunning) {
-			monitor.start();
+			watchService = FileSystems.getDefault().newWatchService();
+			states.clear();
+			watchedDirectories.clear();
+
+			// the initial state does not trigger any events
+			scan(root, false);
+
 			isRunning = true;
+			observerThread = new Thread(new ObserverLoop(), "H2H-FileObserver");
+			observerThread.setDaemon(true);
+			observerThread.start();
 		}
 	}
 
@@ -53,37 +127,274 @@ public class FileObserver {
 		stop(0);
 	}
 
-	public void stop(long ms) throws Exception {
+	public synchronized void stop(long ms) throws Exception {
 		if (isRunning) {
-			monitor.stop(ms);
 			isRunning = false;
+			watchService.close();
+			observerThread.join(ms);
 		}
 	}
 
-	public void addFileObserverListener(FileObserverListener listener) {
-		observer.addListener(listener);
+	public void addFileObserverListener(FileAlterationListener listener) {
+		listeners.add(listener);
 	}
 
-	public void removeFileObserverListener(FileObserverListener listener) {
-		observer.removeListener(listener);
+	public void removeFileObserverListener(FileAlterationListener listener) {
+		listeners.remove(listener);
 	}
 
-	public List<FileObserverListener> getFileObserverListeners() {
-		List<FileObserverListener> listeners = new ArrayList<FileObserverListener>();
-
-		// TODO check if this interface casting is allowed
-		for (FileAlterationListener listener : observer.getListeners()) {
-			listeners.add((FileObserverListener) listener);
-		}
-		return listeners;
+	public List<FileAlterationListener> getFileObserverListeners() {
+		return new ArrayList<FileAlterationListener>(listeners);
 	}
 
 	public long getInterval() {
-		return monitor.getInterval();
+		return interval;
+	}
+
+	public long getMaxDelay() {
+		return maxDelay;
 	}
 
 	public boolean isRunning() {
 		return isRunning;
 	}
 
+	private class ObserverLoop implements Runnable {
+
+		@Override
+		public void run() {
+			try {
+				while (isRunning) {
+					// wait for the first change
+					WatchKey key = watchService.take();
+
+					// collect until there is a quiet period, but not longer than the maximum delay
+					long deadline = System.currentTimeMillis() + maxDelay;
+					Set<Path> changed = new LinkedHashSet<Path>();
+					Set<Path> rescan = new LinkedHashSet<Path>();
+					while (key != null) {
+						collect(key, changed, rescan);
+						long remaining = deadline - System.currentTimeMillis();
+						if (remaining <= 0) {
+							// files that are written continuously are reported anyway
+							break;
+						}
+						key = watchService.poll(Math.min(interval, remaining), TimeUnit.MILLISECONDS);
+					}
+
+					process(changed, rescan);
+				}
+			} catch (ClosedWatchServiceException | InterruptedException e) {
+				logger.debug("File observer for '{}' has been stopped.", root);
+			}
+		}
+	}
+
+	private void collect(WatchKey key, Set<Path> changed, Set<Path> rescan) {
+		Path directory;
+		synchronized (watchedDirectories) {
+			directory = watchedDirectories.get(key);
+		}
+
+		if (directory != null) {
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == OVERFLOW) {
+					// events got lost, compare the whole directory with the known state
+					logger.debug("Events in '{}' got lost. Rescanning it.", directory);
+					rescan.add(directory);
+				} else {
+					changed.add(directory.resolve((Path) event.context()));
+				}
+			}
+		}
+
+		if (!key.reset()) {
+			// the directory is not accessible anymore
+			synchronized (watchedDirectories) {
+				watchedDirectories.remove(key);
+			}
+		}
+	}
+
+	private void process(Set<Path> changed, Set<Path> rescan) {
+		for (FileAlterationListener listener : listeners) {
+			listener.onStart(observerHandle);
+		}
+
+		for (Path path : rescan) {
+			compare(path, true);
+		}
+		for (Path path : changed) {
+			compare(path, false);
+		}
+
+		for (FileAlterationListener listener : listeners) {
+			listener.onStop(observerHandle);
+		}
+	}
+
+	/**
+	 * Compares the current state of the path with the last known state and fires the events
+	 *
+	 * @param path the path to compare
+	 * @param deep whether the children of a folder should be compared as well
+	 */
+	private void compare(Path path, boolean deep) {
+		FileState known = states.get(path);
+		BasicFileAttributes attributes = readAttributes(path);
+
+		if (attributes == null) {
+			if (known != null) {
+				delete(path);
+			}
+		} else if (known == null) {
+			create(path, attributes);
+		} else if (known.isDirectory != attributes.isDirectory()) {
+			delete(path);
+			create(path, attributes);
+		} else if (!attributes.isDirectory()) {
+			if (known.lastModified != attributes.lastModifiedTime().toMillis() || known.length != attributes.size()) {
+				states.put(path, new FileState(attributes));
+				File file = path.toFile();
+				for (FileAlterationListener listener : listeners) {
+					listener.onFileChange(file);
+				}
+			}
+		} else if (deep) {
+			Set<Path> children = new HashSet<Path>(known.children);
+			children.addAll(list(path));
+			for (Path child : children) {
+				compare(child, true);
+			}
+		}
+	}
+
+	private void create(Path path, BasicFileAttributes attributes) {
+		FileState parent = states.get(path.getParent());
+		if (parent != null) {
+			parent.children.add(path);
+		}
+
+		states.put(path, new FileState(attributes));
+		File file = path.toFile();
+		if (attributes.isDirectory()) {
+			for (FileAlterationListener listener : listeners) {
+				listener.onDirectoryCreate(file);
+			}
+			// files may have been added before the directory was registered
+			scan(path, true);
+		} else {
+			for (FileAlterationListener listener : listeners) {
+				listener.onFileCreate(file);
+			}
+		}
+	}
+
+	private void delete(Path path) {
+		FileState known = states.remove(path);
+		FileState parent = states.get(path.getParent());
+		if (parent != null) {
+			parent.children.remove(path);
+		}
+
+		File file = path.toFile();
+		if (known.isDirectory) {
+			for (Path child : new ArrayList<Path>(known.children)) {
+				delete(child);
+			}
+			for (FileAlterationListener listener : listeners) {
+				listener.onDirectoryDelete(file);
+			}
+		} else {
+			for (FileAlterationListener listener : listeners) {
+				listener.onFileDelete(file);
+			}
+		}
+	}
+
+	/**
+	 * Registers the directory and adds all its children to the known state
+	 *
+	 * @param directory the directory to scan
+	 * @param fireEvents whether the children are reported as created
+	 */
+	private void scan(Path directory, boolean fireEvents) {
+		if (!states.containsKey(directory)) {
+			BasicFileAttributes attributes = readAttributes(directory);
+			if (attributes == null) {
+				return;
+			}
+			states.put(directory, new FileState(attributes));
+		}
+
+		try {
+			WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+			synchronized (watchedDirectories) {
+				watchedDirectories.put(key, directory);
+			}
+		} catch (IOException e) {
+			logger.warn("Cannot observe directory '{}'.", directory, e);
+		}
+
+		FileState state = states.get(directory);
+		for (Path child : list(directory)) {
+			if (states.containsKey(child)) {
+				continue;
+			}
+
+			BasicFileAttributes attributes = readAttributes(child);
+			if (attributes == null) {
+				continue;
+			}
+
+			if (fireEvents) {
+				create(child, attributes);
+			} else {
+				state.children.add(child);
+				states.put(child, new FileState(attributes));
+				if (attributes.isDirectory()) {
+					scan(child, false);
+				}
+			}
+		}
+	}
+
+	private static List<Path> list(Path directory) {
+		List<Path> children = new ArrayList<Path>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path child : stream) {
+				children.add(child);
+			}
+		} catch (IOException e) {
+			logger.trace("Cannot list directory '{}'.", directory);
+		}
+		return children;
+	}
+
+	private static BasicFileAttributes readAttributes(Path path) {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		} catch (IOException e) {
+			// does not exist (anymore)
+			return null;
+		}
+	}
+
+	/**
+	 * The known state of a file or folder
+	 */
+	private static class FileState {
+
+		private final boolean isDirectory;
+		private final long lastModified;
+		private final long length;
+		private final Set<Path> children;
+
+		public FileState(BasicFileAttributes attributes) {
+			this.isDirectory = attributes.isDirectory();
+			this.lastModified = attributes.lastModifiedTime().toMillis();
+			this.length = attributes.size();
+			this.children = new HashSet<Path>();
+		}
+	}
 }
@@ -1,6 +1,10 @@
 package org.hive2hive.client.util;
 
 import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.monitor.FileAlterationListener;
 import org.apache.commons.io.monitor.FileAlterationObserver;
@@ -8,13 +12,15 @@ import org.hive2hive.client.util.buffer.AddFileBuffer;
 import org.hive2hive.client.util.buffer.DeleteFileBuffer;
 import org.hive2hive.client.util.buffer.IFileBuffer;
 import org.hive2hive.client.util.buffer.ModifyFileBuffer;
+import org.hive2hive.client.util.buffer.SyncFileView;
 import org.hive2hive.core.api.interfaces.IFileManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Default implementation of a file observer listener. The file events are caught and the according
- * process is automatically started.
+ * process is automatically started. The add, delete and modify buffers share the scheduler of this listener,
+ * which is stopped with {@link #shutdown()}.
  * 
  * @author Christian
  * 
@@ -22,15 +28,42 @@ import org.slf4j.LoggerFactory;
 public class FileObserverListener implements FileAlterationListener {
 
 	private static final Logger logger = LoggerFactory.getLogger(FileObserverListener.class);
+	// the number of threads awaiting and processing the buffers
+	private static final int BUFFER_THREADS = 2;
 
+	private final ScheduledExecutorService scheduler;
 	private final IFileBuffer addFileBuffer;
 	private final IFileBuffer deleteFileBuffer;
 	private final ModifyFileBuffer modifyFileBuffer;
 
 	public FileObserverListener(IFileManager fileManager) {
-		this.addFileBuffer = new AddFileBuffer(fileManager);
-		this.deleteFileBuffer = new DeleteFileBuffer(fileManager);
-		this.modifyFileBuffer = new ModifyFileBuffer(fileManager);
+		// all buffers share the same view, which is kept up to date by the remote file events
+		SyncFileView syncFiles = new SyncFileView(fileManager);
+		if (fileManager != null) {
+			fileManager.subscribeFileEvents(syncFiles);
+		}
+
+		this.scheduler = Executors.newScheduledThreadPool(BUFFER_THREADS, new ThreadFactory() {
+			private final AtomicInteger counter = new AtomicInteger(0);
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "H2H-FileBuffer-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		this.addFileBuffer = new AddFileBuffer(fileManager, syncFiles, scheduler);
+		this.deleteFileBuffer = new DeleteFileBuffer(fileManager, syncFiles, scheduler);
+		this.modifyFileBuffer = new ModifyFileBuffer(fileManager, syncFiles, scheduler);
+	}
+
+	/**
+	 * Stops the buffers. Buffers that are still waiting are not processed anymore.
+	 */
+	public void shutdown() {
+		scheduler.shutdownNow();
 	}
 
 	@Override
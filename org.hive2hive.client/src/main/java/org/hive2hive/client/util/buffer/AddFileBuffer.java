@@ -2,13 +2,14 @@ package org.hive2hive.client.util.buffer;
 
 import java.io.File;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.hive2hive.core.api.interfaces.IFileManager;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
-import org.hive2hive.core.processes.files.list.FileNode;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
 import org.hive2hive.processframework.interfaces.IProcessComponent;
@@ -19,8 +20,12 @@ public class AddFileBuffer extends BaseFileBuffer {
 
 	private static final Logger logger = LoggerFactory.getLogger(AddFileBuffer.class);
 
-	public AddFileBuffer(IFileManager fileManager) {
-		super(fileManager);
+	public AddFileBuffer(IFileManager fileManager, ScheduledExecutorService scheduler) {
+		super(fileManager, scheduler);
+	}
+
+	public AddFileBuffer(IFileManager fileManager, SyncFileView syncFiles, ScheduledExecutorService scheduler) {
+		super(fileManager, syncFiles, scheduler);
 	}
 
 	@Override
@@ -32,6 +37,7 @@ public class AddFileBuffer extends BaseFileBuffer {
 		for (File toAdd : fileBuffer) {
 			try {
 				addProcess = fileManager.createAddProcess(toAdd);
+				buffer.getSyncFiles().attach(addProcess, toAdd);
 			} catch (NoPeerConnectionException | NoSessionException | IllegalArgumentException ex) {
 				logger.error("Cannot create a process to add '{}'.", toAdd.getName(), ex);
 				continue;
@@ -48,11 +54,14 @@ public class AddFileBuffer extends BaseFileBuffer {
 		}
 	}
 
-	private Set<File> filterBuffer(List<File> fileBuffer, Set<FileNode> syncFiles) {
+	private Set<File> filterBuffer(List<File> fileBuffer, SyncFileView syncFiles) {
 		// remove the files from the buffer which are already in the DHT
 		// the event has been triggered by Hive2Hive when downloading it.
-		for (FileNode syncFile : syncFiles) {
-			fileBuffer.remove(syncFile.getFile());
+		Iterator<File> iterator = fileBuffer.iterator();
+		while (iterator.hasNext()) {
+			if (syncFiles.contains(iterator.next())) {
+				iterator.remove();
+			}
 		}
 
 		Set<File> filtered = new HashSet<File>(fileBuffer);
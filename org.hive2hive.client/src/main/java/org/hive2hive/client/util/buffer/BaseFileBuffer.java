@@ -1,16 +1,12 @@
 package org.hive2hive.client.util.buffer;
 
 import java.io.File;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.hive2hive.core.api.interfaces.IFileManager;
-import org.hive2hive.core.exceptions.NoPeerConnectionException;
-import org.hive2hive.core.exceptions.NoSessionException;
-import org.hive2hive.core.processes.files.list.FileNode;
-import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
-import org.hive2hive.processframework.exceptions.ProcessExecutionException;
-import org.hive2hive.processframework.interfaces.IProcessComponent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,16 +15,45 @@ public abstract class BaseFileBuffer implements IFileBuffer {
 	private static final Logger logger = LoggerFactory.getLogger(BaseFileBuffer.class);
 
 	protected final IFileManager fileManager;
+	protected final SyncFileView syncFiles;
 	protected FileBufferHolder currentBuffer;
 
-	protected BaseFileBuffer(IFileManager fileManager) {
+	// the scheduler is shared among multiple buffers and owned by the creator of the buffers
+	private final ScheduledExecutorService scheduler;
+	// buffers whose waiting time is over, processed one after the other, thus the same buffer never
+	// processes concurrently, although the scheduler may have multiple threads
+	private final Queue<FileBufferHolder> finishedBuffers;
+	private boolean isProcessing;
+
+	/**
+	 * @param fileManager the file manager to start the processes
+	 * @param scheduler the scheduler to await and process the buffers
+	 */
+	protected BaseFileBuffer(IFileManager fileManager, ScheduledExecutorService scheduler) {
+		this(fileManager, new SyncFileView(fileManager), scheduler);
+	}
+
+	/**
+	 * @param fileManager the file manager to start the processes
+	 * @param syncFiles the view of the synchronized files, can be shared among multiple buffers
+	 * @param scheduler the scheduler to await and process the buffers, can be shared among multiple buffers
+	 */
+	protected BaseFileBuffer(IFileManager fileManager, SyncFileView syncFiles, ScheduledExecutorService scheduler) {
 		this.fileManager = fileManager;
+		this.syncFiles = syncFiles;
+		this.scheduler = scheduler;
+		this.finishedBuffers = new LinkedList<FileBufferHolder>();
 	}
 
 	@Override
 	public final synchronized void addFileToBuffer(File file) {
+		if (scheduler.isShutdown()) {
+			logger.warn("Buffer has been shut down, ignoring '{}'.", file.getAbsolutePath());
+			return;
+		}
+
 		if (currentBuffer == null) {
-			currentBuffer = new FileBufferHolder();
+			currentBuffer = new FileBufferHolder(syncFiles);
 			startBuffering(currentBuffer);
 		}
 
@@ -37,19 +62,42 @@ public abstract class BaseFileBuffer implements IFileBuffer {
 
 	private void startBuffering(final FileBufferHolder fileBuffer) {
 		logger.debug("Start buffering for {} ms.", IFileBuffer.BUFFER_WAIT_TIME_MS);
-		new Timer().schedule(new TimerTask() {
+		scheduler.schedule(new Runnable() {
 			@Override
 			public void run() {
-				currentBuffer = null;
 				logger.debug("Finished buffering. {} file(s) in buffer.", fileBuffer.getFileBuffer().size());
+				synchronized (BaseFileBuffer.this) {
+					currentBuffer = null;
+					finishedBuffers.add(fileBuffer);
+					if (isProcessing) {
+						// the running processing takes this buffer as well
+						return;
+					}
+					isProcessing = true;
+				}
+				processFinishedBuffers();
+			}
+		}, BUFFER_WAIT_TIME_MS, TimeUnit.MILLISECONDS);
+	}
 
-				fileBuffer.awaitReady();
-				processBuffer(fileBuffer);
+	private void processFinishedBuffers() {
+		while (true) {
+			FileBufferHolder next;
+			synchronized (this) {
+				next = finishedBuffers.poll();
+				if (next == null) {
+					isProcessing = false;
+					return;
+				}
 			}
-		}, BUFFER_WAIT_TIME_MS);
 
-		// start getting the file list
-		new Thread(new FileListRunnable(fileBuffer)).start();
+			try {
+				syncFiles.ensureLoaded();
+				processBuffer(next);
+			} catch (RuntimeException e) {
+				logger.error("Cannot process the buffer.", e);
+			}
+		}
 	}
 
 	/**
@@ -58,44 +106,4 @@ public abstract class BaseFileBuffer implements IFileBuffer {
 	 * @param buffer the buffer holder
 	 */
 	protected abstract void processBuffer(IFileBufferHolder buffer);
-
-	private class FileListRunnable implements Runnable {
-
-		private final FileBufferHolder fileBuffer;
-
-		public FileListRunnable(FileBufferHolder fileBuffer) {
-			this.fileBuffer = fileBuffer;
-		}
-
-		@Override
-		public void run() {
-			// skip the file list
-			if (fileManager == null) {
-				fileBuffer.setSyncFiles(null);
-				fileBuffer.setReady();
-				return;
-			}
-
-			IProcessComponent<FileNode> fileList = null;
-			try {
-				fileList = fileManager.createFileListProcess();
-			} catch (NoPeerConnectionException | NoSessionException e) {
-				logger.error("Could not get the file list.", e);
-				fileBuffer.setSyncFiles(null);
-				fileBuffer.setReady();
-				return;
-			}
-
-			// execute process synchronously
-			try {
-				fileBuffer.setSyncFiles(fileList.execute());
-				fileBuffer.setReady();
-
-			} catch (InvalidProcessStateException ex) {
-				logger.error("Could not launch the process to get the file list.", ex);
-			} catch (ProcessExecutionException ex) {
-				logger.error("Process execution to get the file list failed.", ex);
-			}
-		}
-	}
 }
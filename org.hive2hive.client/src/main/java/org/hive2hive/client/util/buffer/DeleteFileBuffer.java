@@ -5,12 +5,12 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.hive2hive.core.api.interfaces.IFileManager;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
 import org.hive2hive.core.file.FileUtil;
-import org.hive2hive.core.processes.files.list.FileNode;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
 import org.hive2hive.processframework.interfaces.IProcessComponent;
@@ -21,8 +21,12 @@ public class DeleteFileBuffer extends BaseFileBuffer {
 
 	private static final Logger logger = LoggerFactory.getLogger(DeleteFileBuffer.class);
 
-	public DeleteFileBuffer(IFileManager fileManager) {
-		super(fileManager);
+	public DeleteFileBuffer(IFileManager fileManager, ScheduledExecutorService scheduler) {
+		super(fileManager, scheduler);
+	}
+
+	public DeleteFileBuffer(IFileManager fileManager, SyncFileView syncFiles, ScheduledExecutorService scheduler) {
+		super(fileManager, syncFiles, scheduler);
 	}
 
 	/**
@@ -32,19 +36,11 @@ public class DeleteFileBuffer extends BaseFileBuffer {
 	 */
 	protected void processBuffer(IFileBufferHolder buffer) {
 		List<File> bufferedFiles = buffer.getFileBuffer();
-		Set<FileNode> syncFiles = buffer.getSyncFiles();
+		SyncFileView syncFiles = buffer.getSyncFiles();
 
 		Set<File> toRemove = new HashSet<File>();
 		for (File file : bufferedFiles) {
-			boolean found = false;
-			for (FileNode fileTaste : syncFiles) {
-				if (fileTaste.getFile().equals(file)) {
-					found = true;
-					break;
-				}
-			}
-
-			if (!found) {
+			if (!syncFiles.contains(file)) {
 				// has already been removed, is not in UP anymore
 				toRemove.add(file);
 			}
@@ -67,6 +63,7 @@ public class DeleteFileBuffer extends BaseFileBuffer {
 			}
 			try {
 				deleteProcess.execute(); // synchronous
+				syncFiles.remove(toDelete);
 			} catch (InvalidProcessStateException ex) {
 				logger.error("Cannot start the '{}' to delete '{}'.", deleteProcess, toDelete.getName(), ex);
 				continue;
@@ -2,16 +2,13 @@ package org.hive2hive.client.util.buffer;
 
 import java.io.File;
 import java.util.List;
-import java.util.Set;
-
-import org.hive2hive.core.processes.files.list.FileNode;
 
 public interface IFileBufferHolder {
 
 	/**
-	 * @return the flat set of files which are in sync with the DHT (use it to filter your files in the buffer)
+	 * @return the view of the files which are in sync with the DHT (use it to filter your files in the buffer)
 	 */
-	public Set<FileNode> getSyncFiles();
+	public SyncFileView getSyncFiles();
 
 	/**
 	 * @return the list of files in the buffer
@@ -5,11 +5,11 @@ import java.io.IOException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.hive2hive.core.api.interfaces.IFileManager;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
-import org.hive2hive.core.processes.files.list.FileNode;
 import org.hive2hive.core.security.HashUtil;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
@@ -21,14 +21,18 @@ public class ModifyFileBuffer extends BaseFileBuffer {
 
 	private static final Logger logger = LoggerFactory.getLogger(ModifyFileBuffer.class);
 
-	public ModifyFileBuffer(IFileManager fileManager) {
-		super(fileManager);
+	public ModifyFileBuffer(IFileManager fileManager, ScheduledExecutorService scheduler) {
+		super(fileManager, scheduler);
+	}
+
+	public ModifyFileBuffer(IFileManager fileManager, SyncFileView syncFiles, ScheduledExecutorService scheduler) {
+		super(fileManager, syncFiles, scheduler);
 	}
 
 	@Override
 	protected void processBuffer(IFileBufferHolder buffer) {
 		List<File> fileBuffer = buffer.getFileBuffer();
-		Set<FileNode> syncFiles = buffer.getSyncFiles();
+		SyncFileView syncFiles = buffer.getSyncFiles();
 
 		/**
 		 * Start the verification: remove files that are not in the DHT yet and remove files that equal to the
@@ -36,22 +40,14 @@ public class ModifyFileBuffer extends BaseFileBuffer {
 		 */
 		Set<File> toDelete = new HashSet<File>();
 		for (File file : fileBuffer) {
-			FileNode fileTaste = null;
-			for (FileNode syncFile : syncFiles) {
-				if (syncFile.getFile().equals(file)) {
-					fileTaste = syncFile;
-					break;
-				}
-			}
-
-			if (fileTaste == null) {
+			if (!syncFiles.contains(file)) {
 				// don't modify a file that is not in the DHT
 				toDelete.add(file);
 			} else {
 				try {
 					// check for hashes, if equal, skip the file
 					byte[] fileHash = HashUtil.hash(file);
-					if (HashUtil.compare(fileHash, fileTaste.getContentHash())) {
+					if (HashUtil.compare(fileHash, syncFiles.getContentHash(file))) {
 						// hashes are equal, no need to upload it to the DHT
 						toDelete.add(file);
 					}
@@ -68,6 +64,7 @@ public class ModifyFileBuffer extends BaseFileBuffer {
 		for (File toUpdate : fileBuffer) {
 			try {
 				updateProcess = fileManager.createUpdateProcess(toUpdate);
+				syncFiles.attach(updateProcess, toUpdate);
 			} catch (NoPeerConnectionException | NoSessionException | IllegalArgumentException ex) {
 				logger.error("Cannot create a process to add '{}'.", toUpdate.getName(), ex);
 				continue;
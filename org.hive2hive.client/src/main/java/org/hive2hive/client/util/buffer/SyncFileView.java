@@ -0,0 +1,320 @@
+package org.hive2hive.client.util.buffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import net.engio.mbassy.listener.Handler;
+import net.engio.mbassy.listener.Listener;
+import net.engio.mbassy.listener.References;
+
+import org.hive2hive.core.api.interfaces.IFileManager;
+import org.hive2hive.core.events.framework.interfaces.IFileEventListener;
+import org.hive2hive.core.events.framework.interfaces.file.IFileAddEvent;
+import org.hive2hive.core.events.framework.interfaces.file.IFileDeleteEvent;
+import org.hive2hive.core.events.framework.interfaces.file.IFileEvent;
+import org.hive2hive.core.events.framework.interfaces.file.IFileMoveEvent;
+import org.hive2hive.core.events.framework.interfaces.file.IFileShareEvent;
+import org.hive2hive.core.events.framework.interfaces.file.IFileUpdateEvent;
+import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.processes.files.list.FileNode;
+import org.hive2hive.core.security.HashUtil;
+import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
+import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+import org.hive2hive.processframework.interfaces.IProcessComponent;
+import org.hive2hive.processframework.interfaces.IProcessComponentListener;
+import org.hive2hive.processframework.interfaces.IProcessEventArgs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory view of the files which are in sync with the DHT, mapping every path to the hash of its content.
+ * The file list is fetched once from the user profile and then maintained incrementally:
+ * <ul>
+ * <li>Remote changes are received as file events</li>
+ * <li>Local changes are applied when the according process succeeded</li>
+ * </ul>
+ * Remote add / update events do not carry the new content hash. Such entries are marked as unknown and the
+ * file list is fetched again only when the hash of such an entry is requested.
+ *
+ * @author Nico
+ *
+ */
+@Listener(references = References.Strong)
+public class SyncFileView implements IFileEventListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(SyncFileView.class);
+
+	// markers for entries without a content hash
+	private static final byte[] FOLDER = new byte[0];
+	private static final byte[] UNKNOWN = new byte[0];
+
+	private final IFileManager fileManager;
+	// key is the absolute path, sorted such that a subtree is a continuous range. Replaced as a whole when
+	// reloading, such that readers never see a partially loaded view
+	private volatile NavigableMap<String, byte[]> hashes;
+	private volatile boolean loaded;
+
+	/**
+	 * Creates an empty view. The file list is loaded at the first call of {@link #ensureLoaded()}.
+	 *
+	 * @param fileManager the file manager to fetch the file list. If <code>null</code>, the view starts empty.
+	 */
+	public SyncFileView(IFileManager fileManager) {
+		this.fileManager = fileManager;
+		this.hashes = new ConcurrentSkipListMap<String, byte[]>();
+		this.loaded = fileManager == null;
+	}
+
+	/**
+	 * Fetches the file list from the user profile if this has not happened yet.
+	 */
+	public void ensureLoaded() {
+		if (!loaded) {
+			reload();
+		}
+	}
+
+	/**
+	 * Replaces the view with the current file list of the user profile.
+	 */
+	public synchronized void reload() {
+		if (fileManager == null) {
+			return;
+		}
+
+		FileNode root;
+		try {
+			IProcessComponent<FileNode> fileList = fileManager.createFileListProcess();
+			root = fileList.execute();
+		} catch (NoPeerConnectionException | NoSessionException e) {
+			logger.error("Could not get the file list.", e);
+			return;
+		} catch (InvalidProcessStateException ex) {
+			logger.error("Could not launch the process to get the file list.", ex);
+			return;
+		} catch (ProcessExecutionException ex) {
+			logger.error("Process execution to get the file list failed.", ex);
+			return;
+		}
+
+		NavigableMap<String, byte[]> loadedHashes = new ConcurrentSkipListMap<String, byte[]>();
+		for (FileNode node : FileNode.getNodeList(root, true, true)) {
+			loadedHashes.put(getKey(node.getFile()), node.isFolder() ? FOLDER : nullSafe(node.getContentHash()));
+		}
+		hashes = loadedHashes;
+		loaded = true;
+		logger.debug("Loaded the file list with {} file(s) and folder(s).", loadedHashes.size());
+	}
+
+	/**
+	 * @param file the file or folder
+	 * @return whether the file or folder is in sync with the DHT
+	 */
+	public boolean contains(File file) {
+		return hashes.containsKey(getKey(file));
+	}
+
+	/**
+	 * Returns the content hash of the file in the DHT. If the hash is not known because the file has been
+	 * changed remotely, the file list is fetched again.
+	 *
+	 * @param file the file
+	 * @return the content hash or <code>null</code> if the file is not in sync or is a folder
+	 */
+	public byte[] getContentHash(File file) {
+		byte[] hash = hashes.get(getKey(file));
+		if (hash == UNKNOWN) {
+			reload();
+			hash = hashes.get(getKey(file));
+		}
+
+		if (hash == null || hash == FOLDER || hash == UNKNOWN) {
+			return null;
+		}
+		return hash;
+	}
+
+	/**
+	 * Adds or replaces the entry of a file
+	 *
+	 * @param file the file
+	 * @param contentHash the hash of the content in the DHT
+	 */
+	public void putFile(File file, byte[] contentHash) {
+		hashes.put(getKey(file), nullSafe(contentHash));
+	}
+
+	/**
+	 * Adds the file or folder and, in case of a folder, all files and folders below it as they are on disk.
+	 *
+	 * @param file the file or folder
+	 */
+	public void putRecursively(File file) {
+		if (file.isDirectory()) {
+			hashes.put(getKey(file), FOLDER);
+			File[] children = file.listFiles();
+			if (children != null) {
+				for (File child : children) {
+					putRecursively(child);
+				}
+			}
+		} else {
+			try {
+				putFile(file, HashUtil.hash(file));
+			} catch (IOException e) {
+				logger.warn("Could not generate the hash of '{}'.", file, e);
+				hashes.put(getKey(file), UNKNOWN);
+			}
+		}
+	}
+
+	/**
+	 * Removes the file or folder and all files and folders below it
+	 *
+	 * @param file the file or folder
+	 */
+	public void remove(File file) {
+		NavigableMap<String, byte[]> current = hashes;
+		String key = getKey(file);
+		current.remove(key);
+		getSubtree(current, key).clear();
+	}
+
+	/**
+	 * Moves the entries of the file or folder and all files and folders below it
+	 *
+	 * @param source the old location
+	 * @param destination the new location
+	 */
+	public void move(File source, File destination) {
+		NavigableMap<String, byte[]> current = hashes;
+		String sourceKey = getKey(source);
+		String destinationKey = getKey(destination);
+
+		byte[] hash = current.remove(sourceKey);
+		if (hash != null) {
+			current.put(destinationKey, hash);
+		}
+
+		NavigableMap<String, byte[]> subtree = getSubtree(current, sourceKey);
+		for (Entry<String, byte[]> entry : subtree.entrySet()) {
+			current.put(destinationKey + entry.getKey().substring(sourceKey.length()), entry.getValue());
+		}
+		subtree.clear();
+	}
+
+	/**
+	 * @return the number of files and folders in sync
+	 */
+	public int size() {
+		return hashes.size();
+	}
+
+	/**
+	 * Applies the change of the process to this view as soon as it succeeded.
+	 *
+	 * @param process the process which adds or updates the file
+	 * @param file the added or updated file or folder
+	 */
+	public void attach(IProcessComponent<?> process, File file) {
+		process.attachListener(new ProcessListener(file));
+	}
+
+	private static NavigableMap<String, byte[]> getSubtree(NavigableMap<String, byte[]> view, String key) {
+		// all paths starting with the key followed by a separator
+		return view.subMap(key + File.separatorChar, true, key + (char) (File.separatorChar + 1), false);
+	}
+
+	private static String getKey(File file) {
+		return file.getAbsolutePath();
+	}
+
+	private static byte[] nullSafe(byte[] contentHash) {
+		return contentHash == null ? UNKNOWN : contentHash;
+	}
+
+	@Override
+	@Handler
+	public void onFileAdd(IFileAddEvent fileEvent) {
+		putRemote(fileEvent);
+	}
+
+	@Override
+	@Handler
+	public void onFileUpdate(IFileUpdateEvent fileEvent) {
+		putRemote(fileEvent);
+	}
+
+	private void putRemote(IFileEvent fileEvent) {
+		hashes.put(getKey(fileEvent.getFile()), fileEvent.isFolder() ? FOLDER : UNKNOWN);
+	}
+
+	@Override
+	@Handler
+	public void onFileDelete(IFileDeleteEvent fileEvent) {
+		remove(fileEvent.getFile());
+	}
+
+	@Override
+	@Handler
+	public void onFileMove(IFileMoveEvent fileEvent) {
+		move(fileEvent.getSrcFile(), fileEvent.getDstFile());
+	}
+
+	@Override
+	@Handler
+	public void onFileShare(IFileShareEvent fileEvent) {
+		// ignore because it will trigger onFileAdd for every file anyhow
+	}
+
+	/**
+	 * Puts the file into the view when the add or update process succeeded
+	 */
+	private class ProcessListener implements IProcessComponentListener {
+
+		private final File file;
+
+		public ProcessListener(File file) {
+			this.file = file;
+		}
+
+		@Override
+		public void onExecutionSucceeded(IProcessEventArgs args) {
+			putRecursively(file);
+		}
+
+		@Override
+		public void onExecuting(IProcessEventArgs args) {
+			// ignore
+		}
+
+		@Override
+		public void onRollbacking(IProcessEventArgs args) {
+			// ignore
+		}
+
+		@Override
+		public void onPaused(IProcessEventArgs args) {
+			// ignore
+		}
+
+		@Override
+		public void onExecutionFailed(IProcessEventArgs args) {
+			// ignore
+		}
+
+		@Override
+		public void onRollbackSucceeded(IProcessEventArgs args) {
+			// ignore
+		}
+
+		@Override
+		public void onRollbackFailed(IProcessEventArgs args) {
+			// ignore
+		}
+	}
+}
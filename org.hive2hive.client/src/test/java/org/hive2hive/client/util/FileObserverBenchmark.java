@@ -0,0 +1,166 @@
+package org.hive2hive.client.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.monitor.FileAlterationListenerAdaptor;
+import org.apache.commons.io.monitor.FileAlterationMonitor;
+import org.apache.commons.io.monitor.FileAlterationObserver;
+
+/**
+ * Compares the CPU usage and the detection latency of the {@link FileObserver} with the polling
+ * {@link FileAlterationMonitor} on a large synthetic tree. This is not a unit test; run it manually with the
+ * number of folders and files per folder as (optional) arguments.
+ *
+ * @author Nico
+ *
+ */
+public class FileObserverBenchmark {
+
+	private static final long INTERVAL_MS = 1000;
+	private static final long IDLE_MS = 10000;
+	private static final int LATENCY_SAMPLES = 5;
+
+	public static void main(String[] args) throws Exception {
+		int folders = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		int filesPerFolder = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+		File root = new File(FileUtils.getTempDirectory(), UUID.randomUUID().toString());
+		try {
+			System.out.println(String.format("Creating %s folders with %s files each in %s", folders, filesPerFolder,
+					root));
+			createTree(root, folders, filesPerFolder);
+
+			benchmarkPolling(root);
+			benchmarkWatching(root);
+		} finally {
+			FileUtils.deleteDirectory(root);
+		}
+	}
+
+	private static void createTree(File root, int folders, int filesPerFolder) throws IOException {
+		for (int i = 0; i < folders; i++) {
+			File folder = new File(root, "folder-" + i);
+			folder.mkdirs();
+			for (int j = 0; j < filesPerFolder; j++) {
+				FileUtils.writeStringToFile(new File(folder, "file-" + j), UUID.randomUUID().toString());
+			}
+		}
+	}
+
+	private static void benchmarkPolling(File root) throws Exception {
+		FileAlterationObserver observer = new FileAlterationObserver(root);
+		LatencyListener listener = new LatencyListener();
+		observer.addListener(listener);
+		FileAlterationMonitor monitor = new FileAlterationMonitor(INTERVAL_MS, observer);
+
+		long startCpu = getCpuTime();
+		monitor.start();
+		try {
+			measure("Polling monitor", root, listener, startCpu);
+		} finally {
+			monitor.stop();
+		}
+	}
+
+	private static void benchmarkWatching(File root) throws Exception {
+		FileObserver observer = new FileObserver(root, INTERVAL_MS);
+		LatencyListener listener = new LatencyListener();
+		observer.addFileObserverListener(listener);
+
+		long startCpu = getCpuTime();
+		observer.start();
+		try {
+			measure("Watch service observer", root, listener, startCpu);
+		} finally {
+			observer.stop();
+		}
+	}
+
+	private static void measure(String name, File root, LatencyListener listener, long startCpu) throws Exception {
+		// idle CPU usage (including the initial scan)
+		Thread.sleep(IDLE_MS);
+		long idleCpu = getCpuTime() - startCpu;
+
+		// detection latency of new files
+		long totalLatency = 0;
+		for (int i = 0; i < LATENCY_SAMPLES; i++) {
+			listener.reset();
+			long start = System.nanoTime();
+			FileUtils.writeStringToFile(new File(root, "folder-0/" + UUID.randomUUID()), UUID.randomUUID().toString());
+			if (!listener.await(INTERVAL_MS * 10)) {
+				System.out.println(name + ": file creation has not been detected");
+			}
+			totalLatency += listener.detected - start;
+		}
+
+		System.out.println(String.format("%s: CPU time during %s ms idle: %s ms, mean detection latency: %s ms", name,
+				IDLE_MS, TimeUnit.NANOSECONDS.toMillis(idleCpu),
+				TimeUnit.NANOSECONDS.toMillis(totalLatency / LATENCY_SAMPLES)));
+	}
+
+	/**
+	 * @return the CPU time of all threads of this process in nanoseconds
+	 */
+	private static long getCpuTime() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		long total = 0;
+		for (long id : threadBean.getAllThreadIds()) {
+			long time = threadBean.getThreadCpuTime(id);
+			if (time > 0) {
+				total += time;
+			}
+		}
+		return total;
+	}
+
+	private static class LatencyListener extends FileAlterationListenerAdaptor {
+
+		private volatile CountDownLatch latch;
+		private volatile long detected;
+
+		public LatencyListener() {
+			reset();
+		}
+
+		public void reset() {
+			latch = new CountDownLatch(1);
+		}
+
+		public boolean await(long ms) throws InterruptedException {
+			return latch.await(ms, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public void onFileCreate(File file) {
+			detected = System.nanoTime();
+			latch.countDown();
+		}
+
+		@Override
+		public void onDirectoryCreate(File directory) {
+			// ignore
+		}
+
+		@Override
+		public void onDirectoryDelete(File directory) {
+			// ignore
+		}
+
+		@Override
+		public void onFileChange(File file) {
+			// ignore
+		}
+
+		@Override
+		public void onFileDelete(File file) {
+			// ignore
+		}
+	}
+}
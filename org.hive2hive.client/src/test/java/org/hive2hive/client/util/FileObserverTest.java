@@ -0,0 +1,180 @@
+package org.hive2hive.client.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.monitor.FileAlterationListenerAdaptor;
+import org.apache.commons.io.monitor.FileAlterationObserver;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the file observer
+ * 
+ * @author Nico
+ * 
+ */
+public class FileObserverTest {
+
+	private static final long INTERVAL_MS = 100;
+	private static final long MAX_DELAY_MS = 1000;
+	private static final long MAX_WAIT_MS = 10000;
+
+	private File root;
+	private FileObserver observer;
+	private RecordingListener listener;
+
+	@Before
+	public void startObserver() throws Exception {
+		root = new File(FileUtils.getTempDirectory(), UUID.randomUUID().toString());
+		root.mkdirs();
+
+		// existing files are not reported
+		FileUtils.writeStringToFile(new File(root, "existing"), UUID.randomUUID().toString());
+
+		observer = new FileObserver(root, INTERVAL_MS, MAX_DELAY_MS);
+		listener = new RecordingListener();
+		observer.addFileObserverListener(listener);
+		observer.start();
+	}
+
+	@After
+	public void stopObserver() throws Exception {
+		observer.stop(MAX_WAIT_MS);
+		FileUtils.deleteDirectory(root);
+	}
+
+	@Test
+	public void testCreateModifyDelete() throws IOException, InterruptedException {
+		File file = new File(root, "file");
+		FileUtils.writeStringToFile(file, UUID.randomUUID().toString());
+		awaitEvent("file created " + file);
+
+		FileUtils.writeStringToFile(file, UUID.randomUUID().toString(), true);
+		awaitEvent("file changed " + file);
+
+		file.delete();
+		awaitEvent("file deleted " + file);
+
+		Assert.assertFalse(listener.getEvents().toString().contains("existing"));
+	}
+
+	@Test
+	public void testFolderTree() throws IOException, InterruptedException {
+		File folder = new File(root, "folder");
+		File innerFolder = new File(folder, "inner");
+		File innerFile = new File(innerFolder, "file");
+		innerFolder.mkdirs();
+		FileUtils.writeStringToFile(innerFile, UUID.randomUUID().toString());
+
+		// parents are reported before their children
+		awaitEvent("file created " + innerFile);
+		List<String> events = listener.getEvents();
+		Assert.assertTrue(events.indexOf("directory created " + folder) < events.indexOf("directory created "
+				+ innerFolder));
+		Assert.assertTrue(events.indexOf("directory created " + innerFolder) < events.indexOf("file created "
+				+ innerFile));
+
+		// children are reported before their parents
+		FileUtils.deleteDirectory(folder);
+		awaitEvent("directory deleted " + folder);
+		events = listener.getEvents();
+		Assert.assertTrue(events.indexOf("file deleted " + innerFile) < events.indexOf("directory deleted "
+				+ innerFolder));
+		Assert.assertTrue(events.indexOf("directory deleted " + innerFolder) < events.indexOf("directory deleted "
+				+ folder));
+	}
+
+	@Test
+	public void testStartStopCallbacks() throws IOException, InterruptedException {
+		File file = new File(root, "file");
+		FileUtils.writeStringToFile(file, UUID.randomUUID().toString());
+		awaitEvent("stop");
+
+		// the changes are reported between the start and the stop
+		List<String> events = listener.getEvents();
+		Assert.assertEquals("start", events.get(0));
+		Assert.assertEquals("file created " + file.getAbsoluteFile(), events.get(1));
+		Assert.assertEquals("stop", events.get(2));
+	}
+
+	@Test
+	public void testContinuousWrites() throws IOException, InterruptedException {
+		File file = new File(root, "file");
+		String event = "file created " + file;
+
+		// write more often than the interval, thus there is never a quiet period, but the file is reported
+		// after the maximum delay anyway
+		long start = System.currentTimeMillis();
+		while (!listener.getEvents().contains(event)) {
+			if (System.currentTimeMillis() - start > MAX_WAIT_MS) {
+				Assert.fail("Event '" + event + "' not reported while writing. Got " + listener.getEvents());
+			}
+			FileUtils.writeStringToFile(file, UUID.randomUUID().toString(), true);
+			Thread.sleep(INTERVAL_MS / 4);
+		}
+	}
+
+	private void awaitEvent(String event) throws InterruptedException {
+		long start = System.currentTimeMillis();
+		while (!listener.getEvents().contains(event)) {
+			if (System.currentTimeMillis() - start > MAX_WAIT_MS) {
+				Assert.fail("Event '" + event + "' not reported. Got " + listener.getEvents());
+			}
+			Thread.sleep(INTERVAL_MS);
+		}
+	}
+
+	private static class RecordingListener extends FileAlterationListenerAdaptor {
+
+		private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+		public List<String> getEvents() {
+			synchronized (events) {
+				return new ArrayList<String>(events);
+			}
+		}
+
+		@Override
+		public void onStart(FileAlterationObserver observer) {
+			events.add("start");
+		}
+
+		@Override
+		public void onStop(FileAlterationObserver observer) {
+			events.add("stop");
+		}
+
+		@Override
+		public void onDirectoryCreate(File directory) {
+			events.add("directory created " + directory.getAbsoluteFile());
+		}
+
+		@Override
+		public void onDirectoryDelete(File directory) {
+			events.add("directory deleted " + directory.getAbsoluteFile());
+		}
+
+		@Override
+		public void onFileCreate(File file) {
+			events.add("file created " + file.getAbsoluteFile());
+		}
+
+		@Override
+		public void onFileChange(File file) {
+			events.add("file changed " + file.getAbsoluteFile());
+		}
+
+		@Override
+		public void onFileDelete(File file) {
+			events.add("file deleted " + file.getAbsoluteFile());
+		}
+	}
+}
@@ -3,10 +3,14 @@ package org.hive2hive.client.util.buffer;
 import java.io.File;
 import java.io.IOException;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
+import org.junit.After;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 
 /**
@@ -17,10 +21,22 @@ import org.junit.Test;
  */
 public class BaseFileBufferTest {
 
+	private ScheduledExecutorService scheduler;
+
+	@Before
+	public void createScheduler() {
+		scheduler = Executors.newScheduledThreadPool(2);
+	}
+
+	@After
+	public void shutdownScheduler() {
+		scheduler.shutdownNow();
+	}
+
 	@Test
 	public void testBufferFinishesSomewhen() throws IOException, InterruptedException {
 		final AtomicInteger counter = new AtomicInteger(0);
-		BaseFileBuffer buffer = new BaseFileBuffer(null) {
+		BaseFileBuffer buffer = new BaseFileBuffer(null, scheduler) {
 			@Override
 			protected void processBuffer(IFileBufferHolder buffer) {
 				counter.set(buffer.getFileBuffer().size());
@@ -41,7 +57,7 @@ public class BaseFileBufferTest {
 	@Test
 	public void testBufferRunsInBatches() throws IOException, InterruptedException {
 		final AtomicInteger counter = new AtomicInteger(0);
-		BaseFileBuffer buffer = new BaseFileBuffer(null) {
+		BaseFileBuffer buffer = new BaseFileBuffer(null, scheduler) {
 			@Override
 			protected void processBuffer(IFileBufferHolder buffer) {
 				counter.addAndGet(buffer.getFileBuffer().size());
@@ -70,6 +86,73 @@ public class BaseFileBufferTest {
 		Assert.assertEquals(1, counter.get());
 	}
 
+	@Test
+	public void testBuffersShareScheduler() throws IOException, InterruptedException {
+		final AtomicInteger counter = new AtomicInteger(0);
+		BaseFileBuffer buffer1 = new BaseFileBuffer(null, scheduler) {
+			@Override
+			protected void processBuffer(IFileBufferHolder buffer) {
+				counter.addAndGet(buffer.getFileBuffer().size());
+			}
+		};
+		BaseFileBuffer buffer2 = new BaseFileBuffer(null, scheduler) {
+			@Override
+			protected void processBuffer(IFileBufferHolder buffer) {
+				counter.addAndGet(buffer.getFileBuffer().size());
+			}
+		};
+
+		File directory = new File(FileUtils.getTempDirectory(), UUID.randomUUID().toString());
+		buffer1.addFileToBuffer(createFileRandomContent(directory));
+		buffer2.addFileToBuffer(createFileRandomContent(directory));
+		buffer2.addFileToBuffer(createFileRandomContent(directory));
+
+		Thread.sleep((long) (IFileBuffer.BUFFER_WAIT_TIME_MS * 1.5));
+
+		// both buffers have been processed
+		Assert.assertEquals(3, counter.get());
+
+		// a shut down scheduler does not take new files anymore
+		scheduler.shutdownNow();
+		buffer1.addFileToBuffer(createFileRandomContent(directory));
+	}
+
+	@Test
+	public void testBufferNeverProcessesConcurrently() throws IOException, InterruptedException {
+		final AtomicInteger running = new AtomicInteger(0);
+		final AtomicInteger maxRunning = new AtomicInteger(0);
+		final AtomicInteger counter = new AtomicInteger(0);
+		BaseFileBuffer buffer = new BaseFileBuffer(null, scheduler) {
+			@Override
+			protected void processBuffer(IFileBufferHolder buffer) {
+				int current = running.incrementAndGet();
+				synchronized (maxRunning) {
+					maxRunning.set(Math.max(maxRunning.get(), current));
+				}
+				try {
+					// processing takes longer than the buffering of the next batch
+					Thread.sleep((long) (IFileBuffer.BUFFER_WAIT_TIME_MS * 1.5));
+				} catch (InterruptedException e) {
+					// ignore
+				}
+				counter.addAndGet(buffer.getFileBuffer().size());
+				running.decrementAndGet();
+			}
+		};
+
+		File directory = new File(FileUtils.getTempDirectory(), UUID.randomUUID().toString());
+		buffer.addFileToBuffer(createFileRandomContent(directory));
+
+		// start the next batch while the first one is processed
+		Thread.sleep((long) (IFileBuffer.BUFFER_WAIT_TIME_MS * 1.2));
+		buffer.addFileToBuffer(createFileRandomContent(directory));
+
+		// both batches are processed one after the other
+		Thread.sleep(IFileBuffer.BUFFER_WAIT_TIME_MS * 4);
+		Assert.assertEquals(2, counter.get());
+		Assert.assertEquals(1, maxRunning.get());
+	}
+
 	public static File createFileRandomContent(File parent) throws IOException {
 		// create file of size of multiple numbers of chunks
 		File file = new File(parent, UUID.randomUUID().toString());
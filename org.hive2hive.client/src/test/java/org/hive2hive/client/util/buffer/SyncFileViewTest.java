@@ -0,0 +1,66 @@
+package org.hive2hive.client.util.buffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.security.HashUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the incremental maintenance of the sync file view
+ *
+ * @author Nico
+ *
+ */
+public class SyncFileViewTest {
+
+	@Test
+	public void testPutAndRemoveSubtree() throws IOException {
+		File root = new File(FileUtils.getTempDirectory(), UUID.randomUUID().toString());
+		File folder = new File(root, "folder");
+		File file = BaseFileBufferTest.createFileRandomContent(folder);
+		File sibling = new File(root, "folder-sibling");
+		sibling.mkdirs();
+
+		try {
+			SyncFileView view = new SyncFileView(null);
+			view.putRecursively(folder);
+			view.putRecursively(sibling);
+
+			Assert.assertEquals(3, view.size());
+			Assert.assertTrue(view.contains(file));
+			Assert.assertNull(view.getContentHash(folder));
+			Assert.assertTrue(HashUtil.compare(HashUtil.hash(file), view.getContentHash(file)));
+
+			// the sibling shares the prefix but is not a child
+			view.remove(folder);
+			Assert.assertFalse(view.contains(folder));
+			Assert.assertFalse(view.contains(file));
+			Assert.assertTrue(view.contains(sibling));
+		} finally {
+			FileUtils.deleteDirectory(root);
+		}
+	}
+
+	@Test
+	public void testMoveSubtree() {
+		File root = new File(FileUtils.getTempDirectory(), UUID.randomUUID().toString());
+		File source = new File(root, "source");
+		File destination = new File(root, "destination");
+		byte[] hash = new byte[] { 1, 2, 3 };
+
+		SyncFileView view = new SyncFileView(null);
+		view.putFile(new File(source, "a"), hash);
+		view.putFile(new File(new File(source, "sub"), "b"), hash);
+
+		view.move(source, destination);
+
+		Assert.assertEquals(2, view.size());
+		Assert.assertFalse(view.contains(new File(source, "a")));
+		Assert.assertArrayEquals(hash, view.getContentHash(new File(destination, "a")));
+		Assert.assertArrayEquals(hash, view.getContentHash(new File(new File(destination, "sub"), "b")));
+	}
+}
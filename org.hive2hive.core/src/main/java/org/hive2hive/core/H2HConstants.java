@@ -22,6 +22,13 @@ public interface H2HConstants {
 	public static final BigInteger DEFAULT_MAX_SIZE_OF_ALL_VERSIONS = DEFAULT_MAX_FILE_SIZE.multiply(BigInteger
 			.valueOf(DEFAULT_MAX_NUM_OF_VERSIONS));// max_size * max_num
 	public static final int DEFAULT_CHUNK_SIZE = MEGABYTES.intValue(); // 1 MB
+	public static final long DEFAULT_CHUNK_CACHE_SIZE = 256L * MEGABYTES.longValue(); // 256 MB, if enabled
+
+	// Default event bus configuration
+	public static final int DEFAULT_EVENT_DISPATCHER_THREADS = 2;
+	public static final int DEFAULT_EVENT_HANDLER_THREADS = 4;
+	public static final int DEFAULT_EVENT_QUEUE_CAPACITY = 10000;
+	public static final long DEFAULT_EVENT_BATCH_INTERVAL_MS = 500;
 
 	// standard port for the Hive2Hive network
 	public static final int H2H_PORT = 4622;
@@ -45,6 +52,13 @@ public interface H2HConstants {
 	public static final int MAX_MESSAGE_SENDING = 5;
 	public static final int MAX_MESSAGE_SENDING_DIRECT = 3;
 
+	// compression before encryption (if enabled): smaller data is never compressed
+	public static final int COMPRESSION_MIN_SIZE = 512;
+	// compression is only used if it saves at least 10% of the size
+	public static final double COMPRESSION_MAX_RATIO = 0.9;
+	// larger data is first probed with a sample of this size to skip incompressible content early
+	public static final int COMPRESSION_SAMPLE_SIZE = 64 * 1024;
+
 	// maximal numbers of versions kept in the DHT (see versionKey)
 	public static final int MAX_VERSIONS_HISTORY = 5;
 
@@ -62,20 +76,58 @@ public interface H2HConstants {
 	public static final int CONFIRM_RETRIES = 3;
 	// number of allowed tries to retry a remove
 	public static final int REMOVE_RETRIES = 3;
+	// maximum number of removes that are in flight at the same time when removing in batches
+	public static final int MAX_CONCURRENT_REMOVES = 50;
+	// number of threads used to fetch the meta files when deleting a folder tree
+	public static final int BULK_DELETE_THREADS = 10;
+	// number of files that are uploaded concurrently when adding a folder tree
+	public static final int BULK_ADD_THREADS = 10;
+	// maximum number of new indexes that are added to the user profile with a single modification
+	public static final int BULK_ADD_INDEXES_PER_MODIFICATION = 1000;
+	// number of files whose meta files are processed concurrently when sharing a folder tree
+	public static final int SHARE_UPDATE_THREADS = 10;
+	// maximum number of protection key changes that are in flight at the same time when sharing
+	public static final int MAX_CONCURRENT_PROTECTION_KEY_CHANGES = 50;
 
 	// maximum wait time until any network operation should be answered by the other peer (for each retry).
 	// This just serves as a fallback against infinite blocking when all other mechanisms fail.
 	public static final int AWAIT_NETWORK_OPERATION_MS = 60000;
+	// gets of the latest version return as soon as this many replicas agree on it (0 waits for all replicas)
+	public static final int GET_LATEST_QUORUM = 2;
+	// a hedged get to all replicas is started if the quorum is slower than this percentile of the past gets
+	public static final double GET_HEDGE_PERCENTILE = 0.9;
+	// number of past gets needed to use their latencies, the default delay is used before
+	public static final int GET_HEDGE_MIN_SAMPLES = 20;
+	public static final int GET_HEDGE_DEFAULT_DELAY_MS = 1000;
+	// lower bound of the delay until a get is hedged
+	public static final int GET_HEDGE_MIN_DELAY_MS = 50;
 	// maximum delay to wait until peers have time to answer until they get removed from the locations
 	public static final int CONTACT_PEERS_AWAIT_MS = 10000;
 	// Slow peers need to have more time since they may be dependent on buffered relaying
 	public static final int CONTACT_SLOW_PEERS_AWAIT_MS = 30000;
+	// lower bound of the adaptive time to wait for the response of a client whose round trip time is known
+	public static final int CONTACT_PEERS_MIN_AWAIT_MS = 2000;
+	// number of threads used to contact the other clients during the login
+	public static final int CONTACT_PEERS_THREADS = 10;
+	// addresses that did not respond this many times in a row are dropped without contacting them
+	public static final int CONTACT_PEERS_DROP_AFTER_FAILURES = 3;
+	// maximum number of peer addresses whose liveness is remembered
+	public static final int MAX_LIVENESS_ENTRIES = 1000;
 
 	// maximum delay to wait until a peer candidate replies whether a direct download is possible or not
 	public static final int DIRECT_DOWNLOAD_AWAIT_MS = 10000;
 	// maximum delay to wait when a peer candidate is currently overloaded
 	public static final int DIRECT_DOWNLOAD_RETRY_MS = 30000;
 
+	// notifications to the same receiver within this window are sent together in a single message
+	public static final int NOTIFICATION_COALESCE_WINDOW_MS = 50;
+	// maximum time to wait until all notifications of a file operation are sent
+	public static final int NOTIFICATION_DEADLINE_MS = CONTACT_SLOW_PEERS_AWAIT_MS;
+	// number of notification messages that are sent in parallel
+	public static final int NOTIFICATION_THREADS = 10;
+	// number of public keys of sharing partners that are fetched in parallel during the login
+	public static final int PUBLIC_KEY_PREFETCH_THREADS = 5;
+
 	public static final String USER_PROFILE_TASK_DOMAIN = "USER-PROFILE-TASK";
 
 	// default key used in the TomP2P framework
@@ -130,8 +182,22 @@ public interface H2HConstants {
 	 */
 	// the number of concurrent downloads
 	public static final int CONCURRENT_DOWNLOADS = 25;
+	// the number of chunks of the same file that are downloaded concurrently
+	public static final int CONCURRENT_DOWNLOADS_PER_FILE = 5;
 	// the interval where a download fetches the locations of all users that possibly could have the file
 	public static final int DOWNLOAD_LOCATIONS_INTERVAL_S = 120;
 	// the maximum count the download of a chunk is retried
 	public static final int MAX_RETRIES_DOWNLOAD_SAME_CHUNK = 10;
+
+	/**
+	 * Chunk Cache
+	 */
+	// the maximum number of chunks in local files that are indexed
+	public static final int CHUNK_CACHE_MAX_INDEX_ENTRIES = 100000;
+
+	/**
+	 * Meta File Cache
+	 */
+	// the maximum number of decrypted meta files kept in memory
+	public static final int META_FILE_CACHE_SIZE = 200;
 }
@@ -5,7 +5,9 @@ import java.io.File;
 import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
 import org.hive2hive.core.api.interfaces.IFileManager;
+import org.hive2hive.core.events.framework.interfaces.IFileEventBatchListener;
 import org.hive2hive.core.events.framework.interfaces.IFileEventListener;
+import org.hive2hive.core.events.framework.interfaces.IShareProgressListener;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
 import org.hive2hive.core.file.FileUtil;
@@ -14,6 +16,7 @@ import org.hive2hive.core.model.PermissionType;
 import org.hive2hive.core.model.UserPermission;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.processes.ProcessFactory;
+import org.hive2hive.core.processes.files.list.FileListPage;
 import org.hive2hive.core.processes.files.list.FileNode;
 import org.hive2hive.core.processes.files.recover.IVersionSelector;
 import org.hive2hive.processframework.interfaces.IProcessComponent;
@@ -160,6 +163,21 @@ public class H2HFileManager extends H2HManager implements IFileManager {
 		return ProcessFactory.instance().createFileListProcess(networkManager);
 	}
 
+	@Override
+	public IProcessComponent<FileListPage> createFileListProcess(File folder, boolean recursive, String cursor,
+			int pageSize) throws NoPeerConnectionException, NoSessionException, IllegalArgumentException {
+
+		if (folder == null) {
+			throw new IllegalArgumentException("Folder to list cannot be null");
+		} else if (!FileUtil.isInH2HDirectory(networkManager.getSession().getFileAgent(), folder)) {
+			throw new IllegalArgumentException("Folder is not in the Hive2Hive directory");
+		} else if (pageSize <= 0) {
+			throw new IllegalArgumentException("Page size must be positive");
+		}
+
+		return ProcessFactory.instance().createFileListProcess(folder, recursive, cursor, pageSize, networkManager);
+	}
+
 	@Override
 	public void subscribeFileEvents(IFileEventListener listener) {
 		if (listener == null) {
@@ -170,4 +188,26 @@ public class H2HFileManager extends H2HManager implements IFileManager {
 		}
 		networkManager.getEventBus().subscribe(listener);
 	}
+
+	@Override
+	public void subscribeFileEvents(IFileEventBatchListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("The argument listener must not be null.");
+		}
+		if (networkManager.getEventBus() == null) {
+			throw new IllegalStateException("No EventBus instance provided.");
+		}
+		networkManager.getEventBus().subscribe(listener);
+	}
+
+	@Override
+	public void subscribeShareProgress(IShareProgressListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("The argument listener must not be null.");
+		}
+		if (networkManager.getEventBus() == null) {
+			throw new IllegalStateException("No EventBus instance provided.");
+		}
+		networkManager.getEventBus().subscribe(listener);
+	}
 }
@@ -2,11 +2,14 @@ package org.hive2hive.core.api;
 
 import net.tomp2p.dht.PeerDHT;
 
+import org.hive2hive.core.api.configs.EventBusConfiguration;
+import org.hive2hive.core.api.interfaces.IEventBusConfiguration;
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
 import org.hive2hive.core.api.interfaces.IFileManager;
 import org.hive2hive.core.api.interfaces.IH2HNode;
 import org.hive2hive.core.api.interfaces.INetworkConfiguration;
 import org.hive2hive.core.api.interfaces.IUserManager;
+import org.hive2hive.core.metrics.H2HMetrics;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.security.H2HDefaultEncryption;
 import org.hive2hive.core.security.IH2HEncryption;
@@ -27,27 +30,75 @@ public class H2HNode implements IH2HNode {
 	private IUserManager userManager;
 	private IFileManager fileManager;
 
-	private H2HNode(IFileConfiguration fileConfiguration, IH2HEncryption encryption, IH2HSerialize serializer) {
+	private H2HNode(IFileConfiguration fileConfiguration, IEventBusConfiguration eventBusConfiguration,
+			IH2HEncryption encryption, IH2HSerialize serializer, H2HMetrics metrics) {
 		this.fileConfiguration = fileConfiguration;
-		this.networkManager = new NetworkManager(encryption, serializer, fileConfiguration);
+		this.networkManager = new NetworkManager(encryption, serializer, fileConfiguration, eventBusConfiguration,
+				metrics);
 	}
 
 	/**
 	 * Create a Hive2Hive node instance. Before the node can be used, a
 	 * {@link IH2HNode#connect(INetworkConfiguration)} must be
-	 * called.
+	 * called. Downloaded chunks are only cached on disk if the file configuration provides a chunk cache
+	 * directory.
 	 * 
 	 * @param fileConfiguration the file configuration
 	 * @return the Hive2Hive node
 	 */
 	public static IH2HNode createNode(IFileConfiguration fileConfiguration) {
+		return createNode(fileConfiguration, EventBusConfiguration.createDefault());
+	}
+
+	/**
+	 * Same as {@link H2HNode#createNode(IFileConfiguration)}, but with the network-wide compression setting.
+	 * If enabled, data is compressed before it is encrypted and stored or sent (see
+	 * {@link H2HDefaultEncryption}). The setting is not negotiated with the other peers, thus all peers of the
+	 * network (including all clients of the users sharing with each other) must use the same setting. Peers of
+	 * older versions cannot read compressed content.
+	 * 
+	 * @param fileConfiguration the file configuration
+	 * @param compression whether the data is compressed before the encryption
+	 * @return the Hive2Hive node
+	 */
+	public static IH2HNode createNode(IFileConfiguration fileConfiguration, boolean compression) {
+		return createNode(fileConfiguration, EventBusConfiguration.createDefault(), compression);
+	}
+
+	/**
+	 * Same as {@link H2HNode#createNode(IFileConfiguration)}, but with additional capability to configure the
+	 * threads and queues of the event bus
+	 * 
+	 * @param fileConfiguration the file configuration
+	 * @param eventBusConfiguration the event bus configuration
+	 * @return the Hive2Hive node
+	 */
+	public static IH2HNode createNode(IFileConfiguration fileConfiguration, IEventBusConfiguration eventBusConfiguration) {
+		return createNode(fileConfiguration, eventBusConfiguration, false);
+	}
+
+	/**
+	 * Same as {@link H2HNode#createNode(IFileConfiguration, boolean)}, but with additional capability to
+	 * configure the threads and queues of the event bus. All peers of the network must use the same
+	 * compression setting.
+	 * 
+	 * @param fileConfiguration the file configuration
+	 * @param eventBusConfiguration the event bus configuration
+	 * @param compression whether the data is compressed before the encryption
+	 * @return the Hive2Hive node
+	 */
+	public static IH2HNode createNode(IFileConfiguration fileConfiguration, IEventBusConfiguration eventBusConfiguration,
+			boolean compression) {
 		FSTSerializer serializer = new FSTSerializer();
-		return new H2HNode(fileConfiguration, new H2HDefaultEncryption(serializer), serializer);
+		return createNode(fileConfiguration, eventBusConfiguration, new H2HDefaultEncryption(serializer, compression),
+				serializer);
 	}
 
 	/**
 	 * Same as {@link H2HNode#createNode(IFileConfiguration)}, but with additional
-	 * capability to provide an own encryption and serialization implementation
+	 * capability to provide an own encryption and serialization implementation. The encryption determines
+	 * whether data is compressed (see {@link H2HDefaultEncryption#H2HDefaultEncryption(IH2HSerialize, boolean)}),
+	 * which must be the same on all peers of the network.
 	 * 
 	 * @param fileConfiguration the file configuration
 	 * @param encryption and decryption implementation
@@ -56,7 +107,39 @@ public class H2HNode implements IH2HNode {
 	 */
 	public static IH2HNode createNode(IFileConfiguration fileConfiguration, IH2HEncryption encryption,
 			IH2HSerialize serializer) {
-		return new H2HNode(fileConfiguration, encryption, serializer);
+		return createNode(fileConfiguration, EventBusConfiguration.createDefault(), encryption, serializer);
+	}
+
+	/**
+	 * Same as {@link H2HNode#createNode(IFileConfiguration, IH2HEncryption, IH2HSerialize)}, but with additional
+	 * capability to configure the threads and queues of the event bus
+	 * 
+	 * @param fileConfiguration the file configuration
+	 * @param eventBusConfiguration the event bus configuration
+	 * @param encryption and decryption implementation
+	 * @param serializer the serialization implementation
+	 * @return the Hive2Hive node
+	 */
+	public static IH2HNode createNode(IFileConfiguration fileConfiguration, IEventBusConfiguration eventBusConfiguration,
+			IH2HEncryption encryption, IH2HSerialize serializer) {
+		return createNode(fileConfiguration, eventBusConfiguration, encryption, serializer, new H2HMetrics());
+	}
+
+	/**
+	 * Same as {@link H2HNode#createNode(IFileConfiguration, IEventBusConfiguration, IH2HEncryption, IH2HSerialize)},
+	 * but with additional capability to provide the metrics registry (e.g. a disabled one or one that is shared
+	 * among multiple nodes)
+	 * 
+	 * @param fileConfiguration the file configuration
+	 * @param eventBusConfiguration the event bus configuration
+	 * @param encryption and decryption implementation
+	 * @param serializer the serialization implementation
+	 * @param metrics the metrics registry
+	 * @return the Hive2Hive node
+	 */
+	public static IH2HNode createNode(IFileConfiguration fileConfiguration, IEventBusConfiguration eventBusConfiguration,
+			IH2HEncryption encryption, IH2HSerialize serializer, H2HMetrics metrics) {
+		return new H2HNode(fileConfiguration, eventBusConfiguration, encryption, serializer, metrics);
 	}
 
 	@Override
@@ -109,4 +192,9 @@ public class H2HNode implements IH2HNode {
 	public PeerDHT getPeer() {
 		return networkManager.getConnection().getPeer();
 	}
+
+	@Override
+	public H2HMetrics getMetrics() {
+		return networkManager.getMetrics();
+	}
 }
@@ -0,0 +1,86 @@
+package org.hive2hive.core.api.configs;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.api.interfaces.IEventBusConfiguration;
+
+/**
+ * A configuration of the local event bus. Unlike the file configuration, it may differ from peer to peer.
+ * 
+ * @author Nico
+ * 
+ */
+public class EventBusConfiguration implements IEventBusConfiguration {
+
+	private final int dispatcherThreads;
+	private final int handlerThreads;
+	private final int queueCapacity;
+	private final OverflowPolicy overflowPolicy;
+	private final long batchIntervalMs;
+
+	private EventBusConfiguration(int dispatcherThreads, int handlerThreads, int queueCapacity,
+			OverflowPolicy overflowPolicy, long batchIntervalMs) {
+		assert dispatcherThreads > 0;
+		assert handlerThreads > 0;
+		assert queueCapacity > 0;
+		assert overflowPolicy != null;
+		assert batchIntervalMs > 0;
+
+		this.dispatcherThreads = dispatcherThreads;
+		this.handlerThreads = handlerThreads;
+		this.queueCapacity = queueCapacity;
+		this.overflowPolicy = overflowPolicy;
+		this.batchIntervalMs = batchIntervalMs;
+	}
+
+	/**
+	 * Creates a default event bus configuration, blocking the publisher when a queue is full
+	 * 
+	 * @return the event bus configuration
+	 */
+	public static IEventBusConfiguration createDefault() {
+		return new EventBusConfiguration(H2HConstants.DEFAULT_EVENT_DISPATCHER_THREADS,
+				H2HConstants.DEFAULT_EVENT_HANDLER_THREADS, H2HConstants.DEFAULT_EVENT_QUEUE_CAPACITY,
+				OverflowPolicy.BLOCK, H2HConstants.DEFAULT_EVENT_BATCH_INTERVAL_MS);
+	}
+
+	/**
+	 * Create an event bus configuration with the given parameters
+	 * 
+	 * @param dispatcherThreads the number of threads dispatching asynchronously published events
+	 * @param handlerThreads the number of threads invoking asynchronous handlers
+	 * @param queueCapacity the maximum number of events per queue
+	 * @param overflowPolicy the behavior when a queue is full
+	 * @param batchIntervalMs the interval to collect events for batch listeners (in milliseconds)
+	 * @return the created configuration
+	 */
+	public static IEventBusConfiguration createCustom(int dispatcherThreads, int handlerThreads, int queueCapacity,
+			OverflowPolicy overflowPolicy, long batchIntervalMs) {
+		return new EventBusConfiguration(dispatcherThreads, handlerThreads, queueCapacity, overflowPolicy,
+				batchIntervalMs);
+	}
+
+	@Override
+	public int getDispatcherThreads() {
+		return dispatcherThreads;
+	}
+
+	@Override
+	public int getHandlerThreads() {
+		return handlerThreads;
+	}
+
+	@Override
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	@Override
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	@Override
+	public long getBatchIntervalMs() {
+		return batchIntervalMs;
+	}
+}
@@ -1,5 +1,6 @@
 package org.hive2hive.core.api.configs;
 
+import java.io.File;
 import java.math.BigInteger;
 
 import org.hive2hive.core.H2HConstants;
@@ -7,7 +8,8 @@ import org.hive2hive.core.api.interfaces.IFileConfiguration;
 
 /**
  * A file configuration such that the peers know how to handle file uploads, chunking and cleanups. This
- * configuration must be constant for all peers in the DHT.
+ * configuration must be constant for all peers in the DHT. Only the chunk cache is a local setting, it is
+ * disabled by default.
  * 
  * @author Nico
  * 
@@ -18,29 +20,48 @@ public class FileConfiguration implements IFileConfiguration {
 	private final int maxNumOfVersions;
 	private final BigInteger maxSizeOfAllVersions;
 	private final int chunkSize;
+	private final File chunkCacheDirectory;
+	private final long chunkCacheSize;
 
-	private FileConfiguration(BigInteger maxFileSize, int maxNumOfVersions, BigInteger maxSizeAllVersions, int chunkSize) {
+	private FileConfiguration(BigInteger maxFileSize, int maxNumOfVersions, BigInteger maxSizeAllVersions,
+			int chunkSize, File chunkCacheDirectory, long chunkCacheSize) {
 		assert maxFileSize.signum() == 1;
 		assert maxNumOfVersions > 0;
 		assert maxSizeAllVersions.signum() == 1;
 		assert chunkSize > 0;
+		assert chunkCacheSize >= 0;
 
 		this.maxFileSize = maxFileSize;
 		this.maxNumOfVersions = maxNumOfVersions;
 		this.maxSizeOfAllVersions = maxSizeAllVersions;
 		this.chunkSize = chunkSize;
+		this.chunkCacheDirectory = chunkCacheDirectory;
+		this.chunkCacheSize = chunkCacheSize;
 	}
 
 	/**
-	 * Creates a default file configuration
+	 * Creates a default file configuration without a chunk cache
 	 * 
 	 * @return the file configuration
 	 */
 	public static IFileConfiguration createDefault() {
-		return new FileConfiguration(H2HConstants.DEFAULT_MAX_FILE_SIZE, H2HConstants.DEFAULT_MAX_NUM_OF_VERSIONS,
+		return createCustom(H2HConstants.DEFAULT_MAX_FILE_SIZE, H2HConstants.DEFAULT_MAX_NUM_OF_VERSIONS,
 				H2HConstants.DEFAULT_MAX_SIZE_OF_ALL_VERSIONS, H2HConstants.DEFAULT_CHUNK_SIZE);
 	}
 
+	/**
+	 * Creates a default file configuration with a chunk cache
+	 * 
+	 * @param chunkCacheDirectory the directory where downloaded chunks are kept, only accessible by the
+	 *            current user
+	 * @return the file configuration
+	 */
+	public static IFileConfiguration createDefault(File chunkCacheDirectory) {
+		return createCustom(H2HConstants.DEFAULT_MAX_FILE_SIZE, H2HConstants.DEFAULT_MAX_NUM_OF_VERSIONS,
+				H2HConstants.DEFAULT_MAX_SIZE_OF_ALL_VERSIONS, H2HConstants.DEFAULT_CHUNK_SIZE, chunkCacheDirectory,
+				H2HConstants.DEFAULT_CHUNK_CACHE_SIZE);
+	}
+
 	/**
 	 * Create a file configuration with the given parameters
 	 * 
@@ -52,7 +73,25 @@ public class FileConfiguration implements IFileConfiguration {
 	 */
 	public static IFileConfiguration createCustom(BigInteger maxFileSize, int maxNumOfVersions,
 			BigInteger maxSizeAllVersions, int chunkSize) {
-		return new FileConfiguration(maxFileSize, maxNumOfVersions, maxSizeAllVersions, chunkSize);
+		return createCustom(maxFileSize, maxNumOfVersions, maxSizeAllVersions, chunkSize, null, 0);
+	}
+
+	/**
+	 * Create a file configuration with the given parameters and a chunk cache
+	 * 
+	 * @param maxFileSize the maximum file size (in bytes)
+	 * @param maxNumOfVersions the allowed number of versions
+	 * @param maxSizeAllVersions the maximum file size when summing up all versions (in bytes)
+	 * @param chunkSize the size of a chunk (in bytes)
+	 * @param chunkCacheDirectory the directory where downloaded chunks are kept or <code>null</code> to
+	 *            disable the chunk cache
+	 * @param chunkCacheSize the maximum size of the chunk cache (in bytes)
+	 * @return the created configuration
+	 */
+	public static IFileConfiguration createCustom(BigInteger maxFileSize, int maxNumOfVersions,
+			BigInteger maxSizeAllVersions, int chunkSize, File chunkCacheDirectory, long chunkCacheSize) {
+		return new FileConfiguration(maxFileSize, maxNumOfVersions, maxSizeAllVersions, chunkSize, chunkCacheDirectory,
+				chunkCacheSize);
 	}
 
 	@Override
@@ -74,4 +113,14 @@ public class FileConfiguration implements IFileConfiguration {
 	public int getChunkSize() {
 		return chunkSize;
 	}
+
+	@Override
+	public File getChunkCacheDirectory() {
+		return chunkCacheDirectory;
+	}
+
+	@Override
+	public long getChunkCacheSize() {
+		return chunkCacheSize;
+	}
 }
@@ -0,0 +1,59 @@
+package org.hive2hive.core.api.interfaces;
+
+/**
+ * The event bus configuration defines how events are delivered to the listeners. Handlers which are invoked
+ * synchronously run in the thread publishing the event, independent of this configuration. Asynchronous
+ * handlers and listeners receiving batches of events are decoupled with bounded queues.
+ * 
+ * @author Nico
+ * 
+ */
+public interface IEventBusConfiguration {
+
+	/**
+	 * What happens to an event when the queue of the asynchronous handlers or of a batch listener is full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * The publisher waits until there is space in the queue (back-pressure)
+		 */
+		BLOCK,
+		/**
+		 * The event is dropped
+		 */
+		DROP,
+		/**
+		 * The publisher delivers the event itself
+		 */
+		CALLER_RUNS
+	}
+
+	/**
+	 * @return the number of threads dispatching the asynchronously published events
+	 */
+	int getDispatcherThreads();
+
+	/**
+	 * @return the number of threads invoking the asynchronous handlers
+	 */
+	int getHandlerThreads();
+
+	/**
+	 * The capacity of every queue of the event bus, thus the maximum number of events held in memory per queue.
+	 * 
+	 * @return the number of events per queue
+	 */
+	int getQueueCapacity();
+
+	/**
+	 * @return the behavior when a queue is full
+	 */
+	OverflowPolicy getOverflowPolicy();
+
+	/**
+	 * Listeners that opt in to receive batches get the events collected during this interval at once.
+	 * 
+	 * @return the interval in milliseconds
+	 */
+	long getBatchIntervalMs();
+}
@@ -1,5 +1,6 @@
 package org.hive2hive.core.api.interfaces;
 
+import java.io.File;
 import java.math.BigInteger;
 
 /**
@@ -53,4 +54,21 @@ public interface IFileConfiguration {
 	 */
 	int getChunkSize();
 
+	/**
+	 * The directory where the decrypted data of recently downloaded chunks is kept, such that they do not
+	 * need to be downloaded again. Unlike the other parameters, this is a local setting of the peer. The
+	 * directory should not be shared with other users. If <code>null</code>, no chunks are stored on disk.
+	 * 
+	 * @return the directory of the chunk cache or <code>null</code> if disabled
+	 */
+	File getChunkCacheDirectory();
+
+	/**
+	 * The maximum number of bytes stored in the directory of the chunk cache. When exceeded, the least
+	 * recently used chunks are removed.
+	 * 
+	 * @return the size of the chunk cache in bytes
+	 */
+	long getChunkCacheSize();
+
 }
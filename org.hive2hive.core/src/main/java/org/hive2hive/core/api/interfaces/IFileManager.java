@@ -2,10 +2,13 @@ package org.hive2hive.core.api.interfaces;
 
 import java.io.File;
 
+import org.hive2hive.core.events.framework.interfaces.IFileEventBatchListener;
 import org.hive2hive.core.events.framework.interfaces.IFileEventListener;
+import org.hive2hive.core.events.framework.interfaces.IShareProgressListener;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
 import org.hive2hive.core.model.PermissionType;
+import org.hive2hive.core.processes.files.list.FileListPage;
 import org.hive2hive.core.processes.files.list.FileNode;
 import org.hive2hive.core.processes.files.recover.IVersionSelector;
 import org.hive2hive.processframework.interfaces.IProcessComponent;
@@ -130,6 +133,23 @@ public interface IFileManager {
 	 */
 	IProcessComponent<FileNode> createFileListProcess() throws NoPeerConnectionException, NoSessionException;
 
+	/**
+	 * List the files in the DHT below a folder page by page, without building the whole file tree. The nodes
+	 * are returned in preorder, the children of each folder sorted by name. Pass the cursor of a page to get
+	 * the next one.
+	 * 
+	 * @param folder The folder to list (use the root of the Hive2Hive directory to list all files).
+	 * @param recursive Whether the whole subtree or only the direct children of the folder are listed.
+	 * @param cursor The cursor of the previous page or <code>null</code> for the first page.
+	 * @param pageSize The maximum number of nodes per page.
+	 * @return A file list process.
+	 * @throws NoPeerConnectionException If the peer is not connected to the network.
+	 * @throws NoSessionException If no user has logged in.
+	 * @throws IllegalArgumentException If the provided parameters are incorrect.
+	 */
+	IProcessComponent<FileListPage> createFileListProcess(File folder, boolean recursive, String cursor, int pageSize)
+			throws NoPeerConnectionException, NoSessionException, IllegalArgumentException;
+
 	/**
 	 * Subscribe all file event handlers of the given listener instance.
 	 * <strong>Note:</strong> The listener needs to annotate the handlers with the @Handler annotation.
@@ -138,4 +158,19 @@ public interface IFileManager {
 	 */
 	void subscribeFileEvents(IFileEventListener listener);
 
+	/**
+	 * Subscribe the given listener to receive the file events in batches. The events are collected during the
+	 * batch interval of the event bus configuration.
+	 * 
+	 * @param listener receiving the batches
+	 */
+	void subscribeFileEvents(IFileEventBatchListener listener);
+
+	/**
+	 * Subscribe the given listener to receive the progress of the share processes started at this node.
+	 * 
+	 * @param listener receiving the progress
+	 */
+	void subscribeShareProgress(IShareProgressListener listener);
+
 }
@@ -3,6 +3,8 @@ package org.hive2hive.core.api.interfaces;
 import net.tomp2p.dht.PeerDHT;
 import net.tomp2p.rpc.ObjectDataReply;
 
+import org.hive2hive.core.metrics.H2HMetrics;
+
 /**
  * This interface represents the entry point of Hive2Hive and exposes the managers necessary for interaction.
  * 
@@ -86,4 +88,12 @@ public interface IH2HNode {
 	 *         returns null.
 	 */
 	PeerDHT getPeer();
+
+	/**
+	 * Returns the metrics of this node (DHT operations, messages, encryption, user profile access and file
+	 * transfers). The metrics are also registered over JMX while the node is connected.
+	 * 
+	 * @return the metrics registry given at the node creation
+	 */
+	H2HMetrics getMetrics();
 }
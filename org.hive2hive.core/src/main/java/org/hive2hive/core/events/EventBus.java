@@ -1,25 +1,238 @@
 package org.hive2hive.core.events;
 
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.bus.MessagePublication;
 import net.engio.mbassy.bus.config.BusConfiguration;
 import net.engio.mbassy.bus.config.Feature;
 
+import org.hive2hive.core.api.configs.EventBusConfiguration;
+import org.hive2hive.core.api.interfaces.IEventBusConfiguration;
+import org.hive2hive.core.api.interfaces.IEventBusConfiguration.OverflowPolicy;
 import org.hive2hive.core.events.framework.IEvent;
+import org.hive2hive.core.events.framework.interfaces.IFileEventBatchListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * The event bus of a node. All queues are bounded by the {@link IEventBusConfiguration}:
+ * <ul>
+ * <li>Asynchronously published events wait until a dispatcher thread is free. The publisher blocks if the
+ * queue is full.</li>
+ * <li>Asynchronous handlers wait until a handler thread is free. If the queue is full, the configured
+ * {@link OverflowPolicy} applies.</li>
+ * <li>{@link IFileEventBatchListener}s receive the events collected during the batch interval. If their queue
+ * is full, the configured {@link OverflowPolicy} applies.</li>
+ * </ul>
+ * 
+ * @author Nico
+ *
+ */
 public class EventBus extends MBassador<IEvent> {
 
+	private static final Logger logger = LoggerFactory.getLogger(EventBus.class);
+
+	private final IEventBusConfiguration config;
+	private final EventBusMetrics metrics;
+	private final BlockingQueue<MessagePublication> pendingMessages;
+	private final ThreadPoolExecutor handlerExecutor;
+	private final Map<IFileEventBatchListener, FileEventBatcher> batchers;
+	private ScheduledExecutorService batchScheduler;
+
 	public EventBus() {
-		super(createBusConfiguration());
+		this(EventBusConfiguration.createDefault());
+	}
+
+	public EventBus(IEventBusConfiguration config) {
+		this(config, new EventBusMetrics());
+	}
+
+	private EventBus(IEventBusConfiguration config, EventBusMetrics metrics) {
+		this(config, metrics, createBusConfiguration(config, metrics));
+	}
+
+	private EventBus(IEventBusConfiguration config, EventBusMetrics metrics, BusConfiguration busConfig) {
+		super(busConfig);
+		this.config = config;
+		this.metrics = metrics;
+		this.pendingMessages = busConfig.getFeature(Feature.AsynchronousMessageDispatch.class).getPendingMessages();
+		this.handlerExecutor = (ThreadPoolExecutor) busConfig.getFeature(Feature.AsynchronousHandlerInvocation.class)
+				.getExecutor();
+		this.batchers = new ConcurrentHashMap<IFileEventBatchListener, FileEventBatcher>();
 	}
 
-	private static BusConfiguration createBusConfiguration() {
-		BusConfiguration config = new BusConfiguration();
+	private static BusConfiguration createBusConfiguration(IEventBusConfiguration config, EventBusMetrics metrics) {
+		BusConfiguration busConfig = new BusConfiguration();
 		// synchronous dispatching of events
-		config.addFeature(Feature.SyncPubSub.Default());
+		busConfig.addFeature(Feature.SyncPubSub.Default());
+
 		// asynchronous dispatching of events
-		config.addFeature(Feature.AsynchronousHandlerInvocation.Default());
-		config.addFeature(Feature.AsynchronousMessageDispatch.Default());
-		return config;
+		ThreadPoolExecutor handlerExecutor = new MeteredExecutor(config, metrics, new DaemonThreadFactory(
+				"H2H-EventHandler"));
+		busConfig.addFeature(new Feature.AsynchronousHandlerInvocation().setExecutor(handlerExecutor));
+		busConfig.addFeature(new Feature.AsynchronousMessageDispatch()
+				.setNumberOfMessageDispatchers(config.getDispatcherThreads())
+				.setMessageQueue(new LinkedBlockingQueue<MessagePublication>(config.getQueueCapacity()))
+				.setDispatcherThreadFactory(new DaemonThreadFactory("H2H-EventDispatcher")));
+		return busConfig;
+	}
+
+	/**
+	 * Subscribes the handlers of the listener. {@link IFileEventBatchListener}s receive the file events in
+	 * batches.
+	 */
+	@Override
+	public void subscribe(Object listener) {
+		if (listener instanceof IFileEventBatchListener) {
+			IFileEventBatchListener batchListener = (IFileEventBatchListener) listener;
+			synchronized (batchers) {
+				if (!batchers.containsKey(batchListener)) {
+					FileEventBatcher batcher = new FileEventBatcher(batchListener, config, metrics, getBatchScheduler());
+					batchers.put(batchListener, batcher);
+					super.subscribe(batcher);
+				}
+			}
+		} else {
+			super.subscribe(listener);
+		}
+	}
+
+	@Override
+	public boolean unsubscribe(Object listener) {
+		FileEventBatcher batcher = batchers.remove(listener);
+		if (batcher != null) {
+			boolean unsubscribed = super.unsubscribe(batcher);
+			batcher.stop();
+			return unsubscribed;
+		}
+		return super.unsubscribe(listener);
+	}
+
+	private synchronized ScheduledExecutorService getBatchScheduler() {
+		if (batchScheduler == null) {
+			batchScheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("H2H-EventBatcher"));
+		}
+		return batchScheduler;
 	}
 
+	@Override
+	public void shutdown() {
+		for (FileEventBatcher batcher : batchers.values()) {
+			batcher.stop();
+		}
+		batchers.clear();
+		synchronized (this) {
+			if (batchScheduler != null) {
+				batchScheduler.shutdownNow();
+			}
+		}
+		super.shutdown();
+		logger.debug("Event bus shut down ({}).", metrics);
+	}
+
+	/**
+	 * @return the counters of this event bus
+	 */
+	public EventBusMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the number of events currently waiting for the dispatcher and handler threads
+	 */
+	public int getQueueDepth() {
+		return pendingMessages.size() + handlerExecutor.getQueue().size();
+	}
+
+	/**
+	 * Invokes the asynchronous handlers with bounded queue, measuring the time the invocations wait. When the
+	 * queue is full, the overflow policy applies.
+	 */
+	private static class MeteredExecutor extends ThreadPoolExecutor {
+
+		private final EventBusMetrics metrics;
+
+		public MeteredExecutor(IEventBusConfiguration config, EventBusMetrics metrics, ThreadFactory threadFactory) {
+			super(config.getHandlerThreads(), config.getHandlerThreads(), 1, TimeUnit.MINUTES,
+					new LinkedBlockingQueue<Runnable>(config.getQueueCapacity()), threadFactory, createOverflowHandler(
+							config.getOverflowPolicy(), metrics));
+			this.metrics = metrics;
+		}
+
+		@Override
+		public void execute(final Runnable command) {
+			final long enqueued = System.nanoTime();
+			super.execute(new Runnable() {
+				@Override
+				public void run() {
+					metrics.recordDispatch(System.nanoTime() - enqueued);
+					command.run();
+				}
+			});
+			metrics.recordQueueDepth(getQueue().size());
+		}
+
+		private static RejectedExecutionHandler createOverflowHandler(OverflowPolicy policy,
+				final EventBusMetrics metrics) {
+			switch (policy) {
+				case BLOCK:
+					return new RejectedExecutionHandler() {
+						@Override
+						public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+							if (executor.isShutdown()) {
+								return;
+							}
+							try {
+								executor.getQueue().put(r);
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+								metrics.recordDrop();
+							}
+						}
+					};
+				case CALLER_RUNS:
+					return new ThreadPoolExecutor.CallerRunsPolicy();
+				default:
+					return new RejectedExecutionHandler() {
+						@Override
+						public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+							if (metrics.recordDrop() == 1) {
+								logger.warn("Event handler queue is full. Dropping events.");
+							}
+						}
+					};
+			}
+		}
+	}
+
+	/**
+	 * Creates named daemon threads such that the event bus does not prevent the JVM from exiting
+	 */
+	private static class DaemonThreadFactory implements ThreadFactory {
+
+		private final String name;
+		private final AtomicInteger counter = new AtomicInteger();
+
+		public DaemonThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
 }
@@ -0,0 +1,87 @@
+package org.hive2hive.core.events;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the {@link EventBus}. The dispatch latency is the time an event waits in a queue until it is
+ * delivered to an asynchronous handler or a batch listener.
+ * 
+ * @author Nico
+ *
+ */
+public class EventBusMetrics {
+
+	private final AtomicLong dispatched = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong totalLatency = new AtomicLong();
+	private final AtomicLong maxLatency = new AtomicLong();
+	private final AtomicLong maxQueueDepth = new AtomicLong();
+
+	void recordDispatch(long latencyNanos) {
+		dispatched.incrementAndGet();
+		totalLatency.addAndGet(latencyNanos);
+		updateMax(maxLatency, latencyNanos);
+	}
+
+	long recordDrop() {
+		return dropped.incrementAndGet();
+	}
+
+	void recordQueueDepth(int depth) {
+		updateMax(maxQueueDepth, depth);
+	}
+
+	private static void updateMax(AtomicLong max, long value) {
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * @return the number of events delivered through a queue
+	 */
+	public long getDispatchedEvents() {
+		return dispatched.get();
+	}
+
+	/**
+	 * @return the number of events dropped because a queue was full
+	 */
+	public long getDroppedEvents() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return the mean time in milliseconds an event waited in a queue
+	 */
+	public double getMeanDispatchLatencyMs() {
+		long count = dispatched.get();
+		if (count == 0) {
+			return 0;
+		}
+		return (double) totalLatency.get() / count / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/**
+	 * @return the longest time in milliseconds an event waited in a queue
+	 */
+	public long getMaxDispatchLatencyMs() {
+		return TimeUnit.NANOSECONDS.toMillis(maxLatency.get());
+	}
+
+	/**
+	 * @return the maximum number of events that waited in a single queue at the same time
+	 */
+	public long getMaxQueueDepth() {
+		return maxQueueDepth.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("dispatched=%s, dropped=%s, meanLatency=%.2fms, maxLatency=%sms, maxQueueDepth=%s",
+				getDispatchedEvents(), getDroppedEvents(), getMeanDispatchLatencyMs(), getMaxDispatchLatencyMs(),
+				getMaxQueueDepth());
+	}
+}
@@ -0,0 +1,131 @@
+package org.hive2hive.core.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import net.engio.mbassy.listener.Handler;
+import net.engio.mbassy.listener.Listener;
+import net.engio.mbassy.listener.References;
+
+import org.hive2hive.core.api.interfaces.IEventBusConfiguration;
+import org.hive2hive.core.api.interfaces.IEventBusConfiguration.OverflowPolicy;
+import org.hive2hive.core.events.framework.interfaces.IFileEventBatchListener;
+import org.hive2hive.core.events.framework.interfaces.file.IFileEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Subscribed to the {@link EventBus} on behalf of a {@link IFileEventBatchListener}. Collects the file events in
+ * a bounded queue and delivers them periodically.
+ * 
+ * @author Nico
+ *
+ */
+@Listener(references = References.Strong)
+public class FileEventBatcher implements Runnable {
+
+	private static final Logger logger = LoggerFactory.getLogger(FileEventBatcher.class);
+
+	private final IFileEventBatchListener listener;
+	private final OverflowPolicy overflowPolicy;
+	private final EventBusMetrics metrics;
+	private final BlockingQueue<PendingEvent> queue;
+	private final ScheduledFuture<?> schedule;
+
+	public FileEventBatcher(IFileEventBatchListener listener, IEventBusConfiguration config, EventBusMetrics metrics,
+			ScheduledExecutorService scheduler) {
+		this.listener = listener;
+		this.overflowPolicy = config.getOverflowPolicy();
+		this.metrics = metrics;
+		this.queue = new ArrayBlockingQueue<PendingEvent>(config.getQueueCapacity());
+		this.schedule = scheduler.scheduleWithFixedDelay(this, config.getBatchIntervalMs(),
+				config.getBatchIntervalMs(), TimeUnit.MILLISECONDS);
+	}
+
+	@Handler
+	public void onFileEvent(IFileEvent fileEvent) {
+		PendingEvent pending = new PendingEvent(fileEvent);
+		if (!queue.offer(pending)) {
+			switch (overflowPolicy) {
+				case BLOCK:
+					try {
+						queue.put(pending);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						drop(fileEvent);
+					}
+					break;
+				case CALLER_RUNS:
+					// make space by delivering the pending events in the publishing thread
+					flush();
+					if (!queue.offer(pending)) {
+						drop(fileEvent);
+					}
+					break;
+				default:
+					drop(fileEvent);
+					break;
+			}
+		}
+		metrics.recordQueueDepth(queue.size());
+	}
+
+	private void drop(IFileEvent fileEvent) {
+		if (metrics.recordDrop() == 1) {
+			logger.warn("Event queue of batch listener is full. Dropping events, starting with {}.", fileEvent);
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			// do not cancel the schedule
+			logger.error("Batch listener failed to handle the file events.", e);
+		}
+	}
+
+	/**
+	 * Delivers all pending events
+	 */
+	public synchronized void flush() {
+		List<PendingEvent> pending = new ArrayList<PendingEvent>(queue.size());
+		queue.drainTo(pending);
+		if (pending.isEmpty()) {
+			return;
+		}
+
+		long now = System.nanoTime();
+		List<IFileEvent> events = new ArrayList<IFileEvent>(pending.size());
+		for (PendingEvent event : pending) {
+			events.add(event.fileEvent);
+			metrics.recordDispatch(now - event.enqueued);
+		}
+		listener.onFileEvents(events);
+	}
+
+	/**
+	 * Stops the periodic delivery after delivering the pending events
+	 */
+	public void stop() {
+		schedule.cancel(false);
+		run();
+	}
+
+	private static class PendingEvent {
+
+		private final IFileEvent fileEvent;
+		private final long enqueued;
+
+		public PendingEvent(IFileEvent fileEvent) {
+			this.fileEvent = fileEvent;
+			this.enqueued = System.nanoTime();
+		}
+	}
+}
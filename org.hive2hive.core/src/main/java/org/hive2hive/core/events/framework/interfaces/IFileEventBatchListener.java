@@ -0,0 +1,23 @@
+package org.hive2hive.core.events.framework.interfaces;
+
+import java.util.List;
+
+import org.hive2hive.core.events.framework.interfaces.file.IFileEvent;
+
+/**
+ * Listener that receives the file events in batches instead of one by one. The events are collected during
+ * the configured batch interval and delivered in the order they have been published. This relieves the
+ * publishing threads during bulk operations where thousands of events occur.
+ * 
+ * @author Nico
+ *
+ */
+public interface IFileEventBatchListener {
+
+	/**
+	 * Called with the events collected during the last interval
+	 * 
+	 * @param fileEvents the events in the order of publication (never empty)
+	 */
+	void onFileEvents(List<IFileEvent> fileEvents);
+}
@@ -0,0 +1,11 @@
+package org.hive2hive.core.events.framework.interfaces;
+
+import net.engio.mbassy.listener.Handler;
+
+import org.hive2hive.core.events.framework.interfaces.file.IShareProgressEvent;
+
+public interface IShareProgressListener {
+
+	@Handler
+	void onShareProgress(IShareProgressEvent progressEvent);
+}
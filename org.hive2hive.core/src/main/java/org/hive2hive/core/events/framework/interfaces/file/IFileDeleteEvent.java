@@ -1,4 +1,8 @@
 package org.hive2hive.core.events.framework.interfaces.file;
 
+/**
+ * A file or folder has been deleted. When a whole folder tree is deleted at once, a single event is triggered
+ * for the top folder. The folder must then be deleted together with all its content.
+ */
 public interface IFileDeleteEvent extends IFileEvent {
 }
@@ -0,0 +1,35 @@
+package org.hive2hive.core.events.framework.interfaces.file;
+
+import java.io.File;
+
+import org.hive2hive.core.events.framework.IEvent;
+
+/**
+ * Reports the progress of sharing a folder, i.e. how many of its contents got the protection keys of the
+ * shared folder. It is not an {@link IFileEvent}, thus file event (batch) listeners do not receive it.
+ * 
+ * @author Seppi
+ */
+public interface IShareProgressEvent extends IEvent {
+
+	/**
+	 * @return the folder that is being shared
+	 */
+	File getFile();
+
+	/**
+	 * @return the number of contents whose protection keys have been changed so far
+	 */
+	int getChangedCount();
+
+	/**
+	 * @return the number of contents whose protection keys need to be changed so far. More may follow while the
+	 *         share process is running.
+	 */
+	int getSubmittedCount();
+
+	/**
+	 * @return the changed contents relative to the submitted ones (between 0 and 1)
+	 */
+	double getProgress();
+}
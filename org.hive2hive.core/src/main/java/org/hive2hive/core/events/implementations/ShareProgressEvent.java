@@ -0,0 +1,38 @@
+package org.hive2hive.core.events.implementations;
+
+import java.io.File;
+
+import org.hive2hive.core.events.framework.interfaces.file.IShareProgressEvent;
+
+public class ShareProgressEvent implements IShareProgressEvent {
+
+	private final File file;
+	private final int changedCount;
+	private final int submittedCount;
+
+	public ShareProgressEvent(File file, int changedCount, int submittedCount) {
+		this.file = file;
+		this.changedCount = changedCount;
+		this.submittedCount = submittedCount;
+	}
+
+	@Override
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public int getChangedCount() {
+		return changedCount;
+	}
+
+	@Override
+	public int getSubmittedCount() {
+		return submittedCount;
+	}
+
+	@Override
+	public double getProgress() {
+		return submittedCount == 0 ? 1 : (double) changedCount / submittedCount;
+	}
+}
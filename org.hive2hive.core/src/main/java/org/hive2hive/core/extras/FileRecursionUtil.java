@@ -3,10 +3,11 @@ package org.hive2hive.core.extras;
 import java.io.File;
 import java.security.PublicKey;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Future;
 
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
@@ -101,10 +102,30 @@ public class FileRecursionUtil {
 	}
 
 	/**
-	 * Creates a process chain to delete all files in the list. Note that the list must be in pre-order, else
-	 * there will occur errors.
+	 * Creates a bulk upload process for many new files (e.g. a large folder tree). In contrast to
+	 * {@link #buildUploadProcess(List, FileProcessAction, NetworkManager, IFileConfiguration)}, the content of
+	 * all files is uploaded concurrently and the user profile is modified only a few times for all files
+	 * together (see {@link ProcessFactory#createBulkAddProcess(List, NetworkManager, IFileConfiguration)}).
 	 * 
-	 * @param files list of files to delete in preorder
+	 * @param files a list of new files to upload (order does not depend)
+	 * @param networkManager the network manager with a session
+	 * @param fileConfiguration the file configuration
+	 * @return the bulk add process
+	 * @throws NoSessionException if the user is not logged in
+	 * @throws NoPeerConnectionException if the peer has no connection
+	 */
+	public static IProcessComponent<Void> buildBulkAddProcess(List<File> files, NetworkManager networkManager,
+			IFileConfiguration fileConfiguration) throws NoSessionException, NoPeerConnectionException {
+		return ProcessFactory.instance().createBulkAddProcess(files, networkManager, fileConfiguration);
+	}
+
+	/**
+	 * Creates a process chain to delete all files in the list. Only the topmost files and folders of the list
+	 * are deleted explicitly; a folder is deleted together with its whole subtree in a single user profile
+	 * modification (see {@link ProcessFactory#createDeleteSubtreeProcess(File, NetworkManager)}). The
+	 * independent subtrees are deleted in parallel.
+	 * 
+	 * @param files list of files to delete (order does not depend)
 	 * @param networkManager the network manager with a session
 	 * @return the (async) root process component
 	 * @throws NoSessionException if the user is not logged in
@@ -115,18 +136,33 @@ public class FileRecursionUtil {
 		// the root process
 		SyncProcess rootProcess = new SyncProcess();
 
-		// deletion must happen in reverse tree order. Since this is very complicated when it contains
-		// asynchronous components, we simply delete them all in the same thread (reverse preorder of course)
-		Collections.reverse(files);
+		// files whose ancestor is in the list as well are deleted together with that ancestor
+		Set<File> allFiles = new HashSet<File>(files);
 		for (File file : files) {
-			IProcessComponent<Void> deletionProcess = ProcessFactory.instance().createDeleteFileProcess(file,
+			if (hasAncestorIn(file, allFiles)) {
+				continue;
+			}
+
+			// works for single files as well and does not depend on whether the file still exists on disk
+			IProcessComponent<Void> deletionProcess = ProcessFactory.instance().createDeleteSubtreeProcess(file,
 					networkManager);
-			rootProcess.add(deletionProcess);
+			rootProcess.add(new AsyncComponent<Void>(deletionProcess));
 		}
 
 		return new AsyncComponent<Void>(rootProcess);
 	}
 
+	private static boolean hasAncestorIn(File file, Set<File> files) {
+		File parent = file.getParentFile();
+		while (parent != null) {
+			if (files.contains(parent)) {
+				return true;
+			}
+			parent = parent.getParentFile();
+		}
+		return false;
+	}
+
 	/**
 	 * This is a workaround to delete files when a {@link FolderIndex} is already existent. Since the node is
 	 * already here, the deletion could be speed up because it must not be looked up in the user profile.
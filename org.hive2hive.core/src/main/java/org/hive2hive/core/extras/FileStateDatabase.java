@@ -0,0 +1,337 @@
+package org.hive2hive.core.extras;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.hive2hive.core.file.FileUtil;
+import org.hive2hive.core.security.HashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local database of the file states (size, modification time, inode and content hash) under the root
+ * folder. It allows generating the maps for the {@link FileSynchronizer} without reading the whole content of
+ * the root folder: Only files whose metadata differs from the recorded state are hashed again, the others keep
+ * their recorded hash. Files to hash are processed in parallel.<br>
+ * The database should be stored at logout (see {@link #save(File)}) and loaded at the next login (see
+ * {@link #load(File)}). The state before the scan is then the <code>before</code> map, the result of
+ * {@link #scan(File)} is the <code>now</code> map (see
+ * {@link FileSynchronizer#FileSynchronizer(File, org.hive2hive.core.model.versioned.UserProfile, FileStateDatabase)}).
+ *
+ * @author Nico
+ *
+ */
+@Extra
+public class FileStateDatabase {
+
+	private static final Logger logger = LoggerFactory.getLogger(FileStateDatabase.class);
+
+	// version of the stored format
+	private static final int FORMAT_VERSION = 1;
+	// files modified less than this before they were recorded are hashed again (mtime granularity)
+	private static final long RACY_WINDOW_MS = 2000;
+	// number of threads to hash the changed files
+	private static final int HASH_THREADS = Runtime.getRuntime().availableProcessors();
+
+	// key is the relative path (folders end with a separator)
+	private final Map<String, FileState> states;
+
+	/**
+	 * Creates an empty database, such that all files are hashed at the first scan.
+	 */
+	public FileStateDatabase() {
+		this.states = new HashMap<String, FileState>();
+	}
+
+	/**
+	 * Loads the database from the disk
+	 *
+	 * @param databaseFile the file where the database has been saved
+	 * @return the loaded database, or an empty one if the file does not exist, cannot be read or is corrupt
+	 */
+	public static FileStateDatabase load(File databaseFile) {
+		FileStateDatabase database = new FileStateDatabase();
+		if (!databaseFile.exists()) {
+			logger.debug("No file state database found at '{}'. Create a new one.", databaseFile);
+			return database;
+		}
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(databaseFile)));
+			if (in.readInt() != FORMAT_VERSION) {
+				logger.warn("File state database '{}' has an unknown format. Create a new one.", databaseFile);
+				return database;
+			}
+
+			// no count or length can exceed the size of the file itself
+			long limit = databaseFile.length();
+			int size = readLength(in, limit);
+			for (int i = 0; i < size; i++) {
+				String path = in.readUTF();
+				long length = in.readLong();
+				long lastModified = in.readLong();
+				long recorded = in.readLong();
+				String fileKey = in.readBoolean() ? in.readUTF() : null;
+				byte[] hash = new byte[readLength(in, limit)];
+				in.readFully(hash);
+				database.states.put(path, new FileState(length, lastModified, recorded, fileKey, hash));
+			}
+		} catch (IOException e) {
+			logger.error("Cannot read the file state database '{}' or it is corrupt. Create a new one.", databaseFile, e);
+			database.states.clear();
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+
+		logger.debug("Loaded {} file state(s) from '{}'.", database.states.size(), databaseFile);
+		return database;
+	}
+
+	/**
+	 * Reads a count or a length, which must not be negative and not exceed the given limit. Otherwise, the
+	 * database is corrupt.
+	 */
+	private static int readLength(DataInputStream in, long limit) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > limit) {
+			throw new IOException(String.format("Invalid length %s, the database has %s bytes", length, limit));
+		}
+		return length;
+	}
+
+	/**
+	 * Stores the database to the disk. The database is written to a temporary file first, which then replaces
+	 * the existing database, such that a crash while saving does not leave a truncated database.
+	 *
+	 * @param databaseFile the file to write the database to
+	 * @throws IOException if the database cannot be written
+	 */
+	public synchronized void save(File databaseFile) throws IOException {
+		File tempFile = new File(databaseFile.getAbsoluteFile().getParentFile(), databaseFile.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+		try {
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(states.size());
+			for (Entry<String, FileState> entry : states.entrySet()) {
+				FileState state = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeLong(state.length);
+				out.writeLong(state.lastModified);
+				out.writeLong(state.recorded);
+				out.writeBoolean(state.fileKey != null);
+				if (state.fileKey != null) {
+					out.writeUTF(state.fileKey);
+				}
+				out.writeInt(state.hash.length);
+				out.write(state.hash);
+			}
+		} catch (IOException e) {
+			out.close();
+			tempFile.delete();
+			throw e;
+		}
+		out.close();
+
+		try {
+			Files.move(tempFile.toPath(), databaseFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempFile.toPath(), databaseFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Returns the recorded hashes, i.e. the state at the last scan.
+	 *
+	 * @return a map where the key is the relative file path to the root and the value is the hash (same format
+	 *         as {@link FileSynchronizer#visitFiles(File)})
+	 */
+	public synchronized Map<String, byte[]> getHashes() {
+		Map<String, byte[]> hashes = new HashMap<String, byte[]>(states.size());
+		for (Entry<String, FileState> entry : states.entrySet()) {
+			hashes.put(entry.getKey(), entry.getValue().hash);
+		}
+		return hashes;
+	}
+
+	/**
+	 * Visits all files recursively and updates the database. Files whose size, modification time and inode
+	 * match the recorded state are not read again. The others are hashed in parallel.
+	 *
+	 * @param root the root folder
+	 * @return a map where the key is the relative file path to the root and the value is the hash (same format
+	 *         as {@link FileSynchronizer#visitFiles(File)})
+	 * @throws IOException if hashing fails
+	 */
+	public synchronized Map<String, byte[]> scan(File root) throws IOException {
+		long now = System.currentTimeMillis();
+		Set<String> visited = new HashSet<String>();
+		List<String> toHash = new ArrayList<String>();
+		List<File> toHashFiles = new ArrayList<File>();
+
+		Iterator<File> files = FileUtils.iterateFilesAndDirs(root, TrueFileFilter.TRUE, TrueFileFilter.TRUE);
+		while (files.hasNext()) {
+			File file = files.next();
+			if (file.equals(root)) {
+				// skip root folder
+				continue;
+			}
+
+			String path = FileUtil.relativize(root, file).toString();
+			BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class,
+					LinkOption.NOFOLLOW_LINKS);
+			if (attributes.isDirectory()) {
+				path += FileUtil.getFileSep();
+				visited.add(path);
+				if (!states.containsKey(path)) {
+					// same folder hash as FileSynchronizer#visitFiles(File)
+					states.put(path, new FileState(0, 0, now, null, HashUtil.hash(file)));
+				}
+				continue;
+			}
+
+			visited.add(path);
+			FileState state = states.get(path);
+			String fileKey = attributes.fileKey() == null ? null : attributes.fileKey().toString();
+			long lastModified = attributes.lastModifiedTime().toMillis();
+			if (state == null || !state.matches(attributes.size(), lastModified, fileKey)) {
+				// new or modified
+				states.put(path, new FileState(attributes.size(), lastModified, now, fileKey, null));
+				toHash.add(path);
+				toHashFiles.add(file);
+			}
+		}
+
+		// remove the files that do not exist anymore
+		states.keySet().retainAll(visited);
+
+		if (!toHash.isEmpty()) {
+			List<byte[]> hashes;
+			try {
+				hashes = hashAll(toHashFiles);
+			} catch (IOException e) {
+				// do not keep states without a hash
+				states.keySet().removeAll(toHash);
+				throw e;
+			}
+			for (int i = 0; i < toHash.size(); i++) {
+				states.get(toHash.get(i)).hash = hashes.get(i);
+			}
+		}
+
+		logger.debug("Scanned {} file(s) and folder(s), {} of them needed to be hashed.", visited.size(), toHash.size());
+		return getHashes();
+	}
+
+	private static List<byte[]> hashAll(List<File> files) throws IOException {
+		if (files.size() == 1 || HASH_THREADS <= 1) {
+			List<byte[]> hashes = new ArrayList<byte[]>(files.size());
+			for (File file : files) {
+				hashes.add(HashUtil.hash(file));
+			}
+			return hashes;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(HASH_THREADS, files.size()));
+		try {
+			List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>(files.size());
+			for (final File file : files) {
+				futures.add(executor.submit(new Callable<byte[]>() {
+					@Override
+					public byte[] call() throws IOException {
+						return HashUtil.hash(file);
+					}
+				}));
+			}
+
+			List<byte[]> hashes = new ArrayList<byte[]>(files.size());
+			for (Future<byte[]> future : futures) {
+				hashes.add(future.get());
+			}
+			return hashes;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while hashing the files", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Cannot hash the files", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the number of recorded files and folders
+	 */
+	public synchronized int size() {
+		return states.size();
+	}
+
+	/**
+	 * Recorded state of a single file
+	 */
+	private static class FileState {
+
+		private final long length;
+		private final long lastModified;
+		private final long recorded;
+		private final String fileKey;
+		private byte[] hash;
+
+		public FileState(long length, long lastModified, long recorded, String fileKey, byte[] hash) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.recorded = recorded;
+			this.fileKey = fileKey;
+			this.hash = hash;
+		}
+
+		/**
+		 * The recorded hash can be trusted if the metadata did not change. If the file was modified just before
+		 * it has been recorded, a later modification within the granularity of the timestamp could go
+		 * undetected, thus such files are hashed again.
+		 */
+		public boolean matches(long length, long lastModified, String fileKey) {
+			if (hash == null || recorded - this.lastModified < RACY_WINDOW_MS) {
+				return false;
+			}
+			return this.length == length && this.lastModified == lastModified
+					&& (this.fileKey == null ? fileKey == null : this.fileKey.equals(fileKey));
+		}
+	}
+}
@@ -8,7 +8,13 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.TrueFileFilter;
@@ -23,7 +29,8 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Helps to synchronize when a client comes online. It compares the meta data from last logout with the
- * current situation on disc and in the user profile.
+ * current situation on disc and in the user profile. All changes are computed at once, when the first of them
+ * is requested.
  * 
  * @author Nico
  * 
@@ -33,7 +40,13 @@ public class FileSynchronizer {
 
 	private static final Logger logger = LoggerFactory.getLogger(FileSynchronizer.class);
 
+	// number of entries (profile and file states) from which the comparison is split into parallel chunks
+	private static final int PARALLEL_THRESHOLD = 50000;
+	// number of threads comparing the chunks
+	private static final int DIFF_THREADS = Runtime.getRuntime().availableProcessors();
+
 	private final File root;
+	private final int parallelThreshold;
 	private final UserProfile userProfile;
 	private final FolderIndex profileRootNode;
 
@@ -41,18 +54,36 @@ public class FileSynchronizer {
 	private final Map<String, byte[]> before;
 	private final Map<String, byte[]> now;
 
+	// the changes, computed at the first request
+	private List<Index> deletedLocally;
+	private List<File> deletedRemotely;
+	private List<File> addedLocally;
+	private List<Index> addedRemotely;
+	private List<File> updatedLocally;
+	private List<FileIndex> updatedRemotely;
+
 	/**
 	 * @param rootDirectory the root Hive2Hive directory
 	 * @param userProfile the current user profile
 	 * @param before represents the file state at the last logout, before H2H was shutdown. The key of the map
 	 *            is the path, the byte[] is the hash of the file content.
-	 *            {@link FileSynchronizer#visitFiles(File)} can be used to generate this map.
+	 *            {@link FileSynchronizer#visitFiles(File)} or {@link FileStateDatabase#getHashes()} can be
+	 *            used to generate this map.
 	 * @param now represents the current file state. The key of the map is the path, the byte[] is the hash of
-	 *            the file content. {@link FileSynchronizer#visitFiles(File)} can be used to generate this
-	 *            map.
+	 *            the file content. {@link FileSynchronizer#visitFiles(File)} or
+	 *            {@link FileStateDatabase#scan(File)} can be used to generate this map.
 	 */
 	public FileSynchronizer(File rootDirectory, UserProfile userProfile, Map<String, byte[]> before, Map<String, byte[]> now) {
+		this(rootDirectory, userProfile, before, now, PARALLEL_THRESHOLD);
+	}
+
+	/**
+	 * @param parallelThreshold the number of entries from which the comparison is done in parallel
+	 */
+	FileSynchronizer(File rootDirectory, UserProfile userProfile, Map<String, byte[]> before, Map<String, byte[]> now,
+			int parallelThreshold) {
 		this.root = rootDirectory;
+		this.parallelThreshold = parallelThreshold;
 		this.userProfile = userProfile;
 		this.before = before;
 		this.now = now;
@@ -60,43 +91,31 @@ public class FileSynchronizer {
 	}
 
 	/**
-	 * Returns a list of files that have been deleted from the disc during this client was offline
+	 * Compares the state recorded in the database with the current state on disk. Only the files whose
+	 * metadata changed since the last scan are read. The database is updated to the current state and should
+	 * be saved afterwards (see {@link FileStateDatabase#save(File)}).
+	 * 
+	 * @param rootDirectory the root Hive2Hive directory
+	 * @param userProfile the current user profile
+	 * @param database the file states at the last logout (see {@link FileStateDatabase#load(File)})
+	 * @throws IOException if hashing the modified files fails
+	 */
+	public FileSynchronizer(File rootDirectory, UserProfile userProfile, FileStateDatabase database)
+			throws IOException {
+		// the arguments are evaluated from left to right, thus the recorded hashes are taken before the scan
+		this(rootDirectory, userProfile, database.getHashes(), database.scan(rootDirectory));
+	}
+
+	/**
+	 * Returns a list of files that have been deleted from the disc during this client was offline. The list is
+	 * in reverse pre-order, such that children are deleted before their parents.
 	 * 
 	 * @return a list of files that has been deleted locally
 	 */
 	public List<Index> getDeletedLocally() {
-		List<Index> deletedLocally = new ArrayList<Index>();
-
-		for (String path : before.keySet()) {
-			if (now.containsKey(path)) {
-				// skip, this file is still here
-				continue;
-			} else {
-				// test whether it is in the user profile
-				Index node = userProfile.getFileByPath(new File(root, path), root);
-				if (node != null) {
-					// file is still in user profile
-					if (node.isFolder()) {
-						deletedLocally.add(node);
-					} else {
-						// check the hash value to not delete a modified file
-						FileIndex fileNode = (FileIndex) node;
-						if (HashUtil.compare(fileNode.getHash(), before.get(path))) {
-							// file has not been modified remotely, delete it
-							logger.debug("File '{}' has been deleted locally during absence.", path);
-							deletedLocally.add(node);
-						}
-					}
-				}
-			}
-		}
-
-		// delete from behind
-		sortNodesPreorder(deletedLocally);
-		Collections.reverseOrder();
-
+		diff();
 		logger.info("Found {} files/folders that have been deleted locally during absence.", deletedLocally.size());
-		return deletedLocally;
+		return new ArrayList<Index>(deletedLocally);
 	}
 
 	/**
@@ -105,21 +124,9 @@ public class FileSynchronizer {
 	 * @return a list of files that has been deleted remotely
 	 */
 	public List<File> getDeletedRemotely() {
-		List<File> deletedRemotely = new ArrayList<File>();
-
-		for (String p : now.keySet()) {
-			File file = new File(root, p);
-			if (before.containsKey(p) && userProfile.getFileByPath(file, root) == null) {
-				// is on disk but deleted in the user profile
-				if (HashUtil.compare(before.get(p), now.get(p))) {
-					// only delete the file, if it was not modified locally
-					deletedRemotely.add(file);
-				}
-			}
-		}
-
+		diff();
 		logger.debug("Found {} files/folders that have been deleted remotely during absence.", deletedRemotely.size());
-		return deletedRemotely;
+		return new ArrayList<File>(deletedRemotely);
 	}
 
 	/**
@@ -129,49 +136,21 @@ public class FileSynchronizer {
 	 * @return a list of files that has been added locally
 	 */
 	public List<File> getAddedLocally() {
-		List<File> addedLocally = new ArrayList<File>();
-
-		for (String p : now.keySet()) {
-			File file = new File(root, p);
-			// test whether it is in the user profile
-			Index node = userProfile.getFileByPath(file, root);
-			if (node == null) {
-				// not in profile --> it has been added locally
-				logger.debug("File '{}' has been added locally during absence.", p);
-				addedLocally.add(file);
-			}
-		}
-
-		sortFilesPreorder(addedLocally);
+		diff();
 		logger.info("Found {} files/folders that have been added locally during absence.", addedLocally.size());
-		return addedLocally;
+		return new ArrayList<File>(addedLocally);
 	}
 
 	/**
-	 * Returns a list of files that are in the user profile but not on the local disk yet.
+	 * Returns a list of files that are in the user profile but not on the local disk yet. The list is in
+	 * pre-order.
 	 * 
 	 * @return a list of files that has been added remotely
 	 */
 	public List<Index> getAddedRemotely() {
-		List<Index> addedRemotely = new ArrayList<Index>();
-
-		// visit all files in the tree and compare to disk
-		List<Index> indexList = Index.getIndexList(profileRootNode);
-		indexList.remove(profileRootNode);
-
-		for (Index index : indexList) {
-			if (now.containsKey(index.getFullPath())) {
-				// was here before and is still here --> nothing to add
-				logger.trace("File '{}' was already here.", index.getFullPath());
-			} else {
-				logger.debug("File '{}' has been added remotely during absence.", index.getFullPath());
-				addedRemotely.add(index);
-			}
-		}
-
-		sortNodesPreorder(addedRemotely);
+		diff();
 		logger.info("Found {} files/folders that have been added remotely during absence.", addedRemotely.size());
-		return addedRemotely;
+		return new ArrayList<Index>(addedRemotely);
 	}
 
 	/**
@@ -180,40 +159,9 @@ public class FileSynchronizer {
 	 * @return a list of files that has been updated locally
 	 */
 	public List<File> getUpdatedLocally() {
-		List<File> updatedLocally = new ArrayList<File>();
-
-		for (String path : now.keySet()) {
-			if (!before.containsKey(path)) {
-				// was not here before --> skip
-				continue;
-			}
-
-			if (HashUtil.compare(before.get(path), now.get(path))) {
-				// hash before and after match --> nothing changed
-				continue;
-			}
-
-			File file = new File(root, path);
-			Index index = userProfile.getFileByPath(file, root);
-			if (index == null || index.isFolder()) {
-				// file not found --> skip, this is not the task of this method
-				// file node is a folder --> cannot compare the modification
-				continue;
-			}
-
-			FileIndex fileNode = (FileIndex) index;
-
-			// has been modified --> check if profile has same hash as 'before'. If not, there are three
-			// different versions. Thus, the profile wins.
-			if (HashUtil.compare(fileNode.getHash(), before.get(path)) && !HashUtil.compare(fileNode.getHash(), now.get(path))) {
-				logger.debug("File '{}' has been updated locally during absence.", path);
-				updatedLocally.add(file);
-			}
-		}
-
-		sortFilesPreorder(updatedLocally);
+		diff();
 		logger.info("Found {} files/folders that have been updated locally during absence.", updatedLocally.size());
-		return updatedLocally;
+		return new ArrayList<File>(updatedLocally);
 	}
 
 	/**
@@ -222,30 +170,84 @@ public class FileSynchronizer {
 	 * @return a list of files that has been updated remotely
 	 */
 	public List<FileIndex> getUpdatedRemotely() {
-		List<FileIndex> updatedRemotely = new ArrayList<FileIndex>();
+		diff();
+		logger.info("Found {} files/folders that have been updated remotely during absence.", updatedRemotely.size());
+		return new ArrayList<FileIndex>(updatedRemotely);
+	}
 
-		// visit all files in the tree and compare to disk
-		List<Index> indexList = Index.getIndexList(profileRootNode);
-		for (Index index : indexList) {
-			if (index.isFolder()) {
-				// folder cannot be modified
-				continue;
-			}
+	/**
+	 * Computes all changes at once. The user profile is flattened into a map and each of the file states is
+	 * visited once. Large inputs are split into chunks that are compared in parallel.
+	 */
+	private synchronized void diff() {
+		if (addedLocally != null) {
+			// already done
+			return;
+		}
 
-			FileIndex fileIndex = (FileIndex) index;
-			String path = fileIndex.getFullPath();
-			if (before.containsKey(path) && now.containsKey(path)) {
-				if (!HashUtil.compare(fileIndex.getHash(), now.get(path))
-						&& !HashUtil.compare(fileIndex.getHash(), before.get(path))) {
-					// different hashes than 'before' and 'now'
-					logger.debug("File '{}' has been updated remotely during absence.", path);
-					updatedRemotely.add(fileIndex);
+		Map<String, Index> profile = new HashMap<String, Index>();
+		List<Index> indices = new ArrayList<Index>();
+		List<String> fullPaths = new ArrayList<String>();
+		flatten(profileRootNode, "", profile, indices, fullPaths);
+
+		List<String> beforePaths = new ArrayList<String>(before.keySet());
+		List<String> nowPaths = new ArrayList<String>(now.keySet());
+
+		int entries = indices.size() + beforePaths.size() + nowPaths.size();
+		int chunks = entries < parallelThreshold ? 1 : Math.max(2, DIFF_THREADS);
+		List<DiffChunk> tasks = createChunks(profile, indices, fullPaths, beforePaths, nowPaths, chunks);
+
+		if (chunks == 1) {
+			tasks.get(0).call();
+		} else {
+			ExecutorService executor = Executors.newFixedThreadPool(chunks);
+			List<Future<DiffChunk>> futures = new ArrayList<Future<DiffChunk>>(chunks);
+			try {
+				for (DiffChunk task : tasks) {
+					futures.add(executor.submit(task));
 				}
+				for (Future<DiffChunk> future : futures) {
+					future.get();
+				}
+			} catch (InterruptedException | ExecutionException e) {
+				logger.warn("Cannot compare in parallel, compare sequentially.", e);
+				if (e instanceof InterruptedException) {
+					Thread.currentThread().interrupt();
+				}
+				for (Future<DiffChunk> future : futures) {
+					future.cancel(true);
+				}
+
+				// the cancelled chunks may still be running, thus do not reuse their results
+				tasks = createChunks(profile, indices, fullPaths, beforePaths, nowPaths, 1);
+				tasks.get(0).call();
+			} finally {
+				executor.shutdownNow();
 			}
 		}
 
-		logger.info("Found {} files/folders that have been updated remotely during absence.", updatedRemotely.size());
-		return updatedRemotely;
+		deletedLocally = new ArrayList<Index>();
+		deletedRemotely = new ArrayList<File>();
+		addedRemotely = new ArrayList<Index>();
+		updatedLocally = new ArrayList<File>();
+		updatedRemotely = new ArrayList<FileIndex>();
+		List<File> added = new ArrayList<File>();
+		for (DiffChunk task : tasks) {
+			deletedLocally.addAll(task.deletedLocally);
+			deletedRemotely.addAll(task.deletedRemotely);
+			added.addAll(task.addedLocally);
+			addedRemotely.addAll(task.addedRemotely);
+			updatedLocally.addAll(task.updatedLocally);
+			updatedRemotely.addAll(task.updatedRemotely);
+		}
+
+		// bring into dependency order: parents first, except for deletions
+		sortNodesPreorder(deletedLocally);
+		Collections.reverse(deletedLocally);
+		sortFilesPreorder(added);
+		sortNodesPreorder(addedRemotely);
+		sortFilesPreorder(updatedLocally);
+		addedLocally = added;
 	}
 
 	/**
@@ -278,8 +280,162 @@ public class FileSynchronizer {
 		});
 	}
 
+	/**
+	 * Flattens the user profile (except the root) into a map with the lookup key (see {@link #toKey(String)})
+	 * and into a list of the indices with their full paths.
+	 */
+	private static void flatten(FolderIndex folder, String path, Map<String, Index> profile, List<Index> indices,
+			List<String> fullPaths) {
+		for (Index child : folder.getChildren()) {
+			String childPath = path + child.getName();
+			if (child.isFolder()) {
+				childPath += FileUtil.getFileSep();
+			}
+			profile.put(toKey(childPath), child);
+			indices.add(child);
+			fullPaths.add(childPath);
+
+			if (child.isFolder()) {
+				flatten((FolderIndex) child, childPath, profile, indices, fullPaths);
+			}
+		}
+	}
+
+	/**
+	 * Paths in the user profile are found regardless of a trailing separator and ignoring the case, equal to
+	 * {@link UserProfile#getFileByPath(File, File)}.
+	 */
+	private static String toKey(String path) {
+		String key = path.endsWith(FileUtil.getFileSep()) ? path.substring(0, path.length()
+				- FileUtil.getFileSep().length()) : path;
+		return key.toLowerCase(Locale.ENGLISH);
+	}
+
+	private List<DiffChunk> createChunks(Map<String, Index> profile, List<Index> indices, List<String> fullPaths,
+			List<String> beforePaths, List<String> nowPaths, int chunks) {
+		List<DiffChunk> tasks = new ArrayList<DiffChunk>(chunks);
+		for (int i = 0; i < chunks; i++) {
+			tasks.add(new DiffChunk(profile, slice(indices, i, chunks), slice(fullPaths, i, chunks), slice(
+					beforePaths, i, chunks), slice(nowPaths, i, chunks)));
+		}
+		return tasks;
+	}
+
+	private static <T> List<T> slice(List<T> list, int index, int count) {
+		int size = list.size();
+		return list.subList(size * index / count, size * (index + 1) / count);
+	}
+
+	/**
+	 * Compares a slice of the user profile and the file states
+	 */
+	private class DiffChunk implements Callable<DiffChunk> {
+
+		private final Map<String, Index> profile;
+		private final List<Index> indices;
+		private final List<String> fullPaths;
+		private final List<String> beforePaths;
+		private final List<String> nowPaths;
+
+		private final List<Index> deletedLocally = new ArrayList<Index>();
+		private final List<File> deletedRemotely = new ArrayList<File>();
+		private final List<File> addedLocally = new ArrayList<File>();
+		private final List<Index> addedRemotely = new ArrayList<Index>();
+		private final List<File> updatedLocally = new ArrayList<File>();
+		private final List<FileIndex> updatedRemotely = new ArrayList<FileIndex>();
+
+		public DiffChunk(Map<String, Index> profile, List<Index> indices, List<String> fullPaths,
+				List<String> beforePaths, List<String> nowPaths) {
+			this.profile = profile;
+			this.indices = indices;
+			this.fullPaths = fullPaths;
+			this.beforePaths = beforePaths;
+			this.nowPaths = nowPaths;
+		}
+
+		@Override
+		public DiffChunk call() {
+			for (int i = 0; i < indices.size(); i++) {
+				visitProfile(indices.get(i), fullPaths.get(i));
+			}
+			for (String path : beforePaths) {
+				visitBefore(path);
+			}
+			for (String path : nowPaths) {
+				visitNow(path);
+			}
+			return this;
+		}
+
+		private void visitProfile(Index index, String path) {
+			if (!now.containsKey(path)) {
+				// not on disk yet
+				logger.debug("File '{}' has been added remotely during absence.", path);
+				addedRemotely.add(index);
+			} else if (index.isFile() && before.containsKey(path)) {
+				FileIndex fileIndex = (FileIndex) index;
+				if (!HashUtil.compare(fileIndex.getHash(), now.get(path))
+						&& !HashUtil.compare(fileIndex.getHash(), before.get(path))) {
+					// different hashes than 'before' and 'now'
+					logger.debug("File '{}' has been updated remotely during absence.", path);
+					updatedRemotely.add(fileIndex);
+				}
+			}
+		}
+
+		private void visitBefore(String path) {
+			if (now.containsKey(path)) {
+				// skip, this file is still here
+				return;
+			}
+
+			Index node = profile.get(toKey(path));
+			if (node == null) {
+				// deleted on both sides
+				return;
+			}
+
+			// check the hash value to not delete a modified file
+			if (node.isFolder() || HashUtil.compare(((FileIndex) node).getHash(), before.get(path))) {
+				logger.debug("File '{}' has been deleted locally during absence.", path);
+				deletedLocally.add(node);
+			}
+		}
+
+		private void visitNow(String path) {
+			Index node = profile.get(toKey(path));
+			if (node == null) {
+				// not in profile --> it has been added locally
+				logger.debug("File '{}' has been added locally during absence.", path);
+				File file = new File(root, path);
+				addedLocally.add(file);
+
+				if (before.containsKey(path) && HashUtil.compare(before.get(path), now.get(path))) {
+					// is on disk but deleted in the user profile and not modified locally
+					deletedRemotely.add(file);
+				}
+				return;
+			}
+
+			if (!before.containsKey(path) || node.isFolder() || HashUtil.compare(before.get(path), now.get(path))) {
+				// was not here before, is a folder or has not been modified
+				return;
+			}
+
+			// has been modified --> check if profile has same hash as 'before'. If not, there are three
+			// different versions. Thus, the profile wins.
+			FileIndex fileNode = (FileIndex) node;
+			if (HashUtil.compare(fileNode.getHash(), before.get(path)) && !HashUtil.compare(fileNode.getHash(), now.get(path))) {
+				logger.debug("File '{}' has been updated locally during absence.", path);
+				updatedLocally.add(new File(root, path));
+			}
+		}
+	}
+
 	/**
 	 * Visit all files recursively and calculate the hash of the file. Folders are also added to the result.
+	 * Note that this reads the content of all files, use a {@link FileStateDatabase} to only hash the files
+	 * which have been modified since the last scan.
 	 * 
 	 * @param root the root folder
 	 * @return a map where the key is the relative file path to the root and the value is the hash
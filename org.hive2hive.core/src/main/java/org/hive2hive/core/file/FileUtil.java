@@ -4,12 +4,16 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
 import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.network.PeerLivenessTable;
+import org.hive2hive.core.network.data.MetaFileCache;
 import org.hive2hive.core.network.data.PublicKeyManager;
+import org.hive2hive.core.network.data.vdht.VersionSnapshot;
 import org.hive2hive.core.serializer.IH2HSerialize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +21,9 @@ import org.slf4j.LoggerFactory;
 public class FileUtil {
 
 	private static final Logger logger = LoggerFactory.getLogger(FileUtil.class);
+	// precedes the persistent meta data, the last byte is the format version. Increase it whenever the
+	// persistent meta data changes incompatibly.
+	private static final byte[] META_DATA_HEADER = { 'H', '2', 'M', 2 };
 
 	private FileUtil() {
 		// only static methods
@@ -32,6 +39,56 @@ public class FileUtil {
 	 */
 	public static void writePersistentMetaData(IFileAgent fileAgent, PublicKeyManager keyManager, IH2HSerialize serializer)
 			throws IOException {
+		writePersistentMetaData(fileAgent, keyManager, null, serializer);
+	}
+
+	/**
+	 * Writes the meta data (used to synchronize) to the disk
+	 * 
+	 * @param fileAgent the file agent
+	 * @param keyManager the key manager
+	 * @param livenessTable the liveness of the contacted peers
+	 * @param serializer the serializer to use
+	 * @throws IOException if the data cannot be serialized or stored
+	 */
+	public static void writePersistentMetaData(IFileAgent fileAgent, PublicKeyManager keyManager,
+			PeerLivenessTable livenessTable, IH2HSerialize serializer) throws IOException {
+		writePersistentMetaData(fileAgent, keyManager, livenessTable, null, null, serializer);
+	}
+
+	/**
+	 * Writes the meta data (used to synchronize) to the disk
+	 * 
+	 * @param fileAgent the file agent
+	 * @param keyManager the key manager
+	 * @param livenessTable the liveness of the contacted peers
+	 * @param profileSnapshot the latest (encrypted) user profile, used to warm up the next session
+	 * @param locationsSnapshot the latest locations, used to warm up the next session
+	 * @param serializer the serializer to use
+	 * @throws IOException if the data cannot be serialized or stored
+	 */
+	public static void writePersistentMetaData(IFileAgent fileAgent, PublicKeyManager keyManager,
+			PeerLivenessTable livenessTable, VersionSnapshot profileSnapshot, VersionSnapshot locationsSnapshot,
+			IH2HSerialize serializer) throws IOException {
+		writePersistentMetaData(fileAgent, keyManager, livenessTable, profileSnapshot, locationsSnapshot, null,
+				serializer);
+	}
+
+	/**
+	 * Writes the meta data (used to synchronize) to the disk
+	 * 
+	 * @param fileAgent the file agent
+	 * @param keyManager the key manager
+	 * @param livenessTable the liveness of the contacted peers
+	 * @param profileSnapshot the latest (encrypted) user profile, used to warm up the next session
+	 * @param locationsSnapshot the latest locations, used to warm up the next session
+	 * @param metaFileCache the cached meta files, stored encrypted to warm up the next session
+	 * @param serializer the serializer to use
+	 * @throws IOException if the data cannot be serialized or stored
+	 */
+	public static void writePersistentMetaData(IFileAgent fileAgent, PublicKeyManager keyManager,
+			PeerLivenessTable livenessTable, VersionSnapshot profileSnapshot, VersionSnapshot locationsSnapshot,
+			MetaFileCache metaFileCache, IH2HSerialize serializer) throws IOException {
 		// generate the new persistent meta data
 		PersistentMetaData metaData = new PersistentMetaData();
 
@@ -40,8 +97,25 @@ public class FileUtil {
 			metaData.setPublicKeyCache(keyManager.getCachedPublicKeys());
 		}
 
+		// add the liveness of the peers
+		if (livenessTable != null) {
+			metaData.setPeerLiveness(livenessTable.getEntries());
+		}
+
+		// add the versions of the session
+		metaData.setProfileSnapshot(profileSnapshot);
+		metaData.setLocationsSnapshot(locationsSnapshot);
+
+		// add the encrypted meta files
+		if (metaFileCache != null) {
+			metaData.setMetaFiles(metaFileCache.getSnapshot());
+		}
+
 		byte[] encoded = serializer.serialize(metaData);
-		fileAgent.writeCache(H2HConstants.META_FILE_NAME, encoded);
+		byte[] versioned = new byte[META_DATA_HEADER.length + encoded.length];
+		System.arraycopy(META_DATA_HEADER, 0, versioned, 0, META_DATA_HEADER.length);
+		System.arraycopy(encoded, 0, versioned, META_DATA_HEADER.length, encoded.length);
+		fileAgent.writeCache(H2HConstants.META_FILE_NAME, versioned);
 	}
 
 	/**
@@ -49,7 +123,7 @@ public class FileUtil {
 	 * 
 	 * @param fileAgent the file agent
 	 * @param serializer the serializer to use
-	 * @return the read meta data (never null)
+	 * @return the read meta data (never null). Meta data written in another format is discarded.
 	 */
 	public static PersistentMetaData readPersistentMetaData(IFileAgent fileAgent, IH2HSerialize serializer) {
 		try {
@@ -58,13 +132,31 @@ public class FileUtil {
 				logger.warn("Not found the meta data. Create new one");
 				return new PersistentMetaData();
 			}
-			return (PersistentMetaData) serializer.deserialize(content);
-		} catch (IOException | ClassNotFoundException e) {
+			if (!hasMetaDataHeader(content)) {
+				logger.warn("The meta data has been written in another format. Discarding it.");
+				return new PersistentMetaData();
+			}
+			return (PersistentMetaData) serializer.deserialize(Arrays.copyOfRange(content, META_DATA_HEADER.length,
+					content.length));
+		} catch (IOException | ClassNotFoundException | RuntimeException e) {
+			// the meta data is only a cache, a corrupt file must not fail the login
 			logger.error("Cannot deserialize meta data. Reason: {}", e.getMessage());
 			return new PersistentMetaData();
 		}
 	}
 
+	private static boolean hasMetaDataHeader(byte[] content) {
+		if (content.length < META_DATA_HEADER.length) {
+			return false;
+		}
+		for (int i = 0; i < META_DATA_HEADER.length; i++) {
+			if (content[i] != META_DATA_HEADER[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Returns the file separator of the operating system
 	 * 
@@ -3,11 +3,23 @@ package org.hive2hive.core.file;
 import java.io.Serializable;
 import java.security.PublicKey;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.network.PeerLiveness;
+import org.hive2hive.core.network.data.MetaFileCache;
+import org.hive2hive.core.network.data.vdht.VersionSnapshot;
+
 /**
  * Holds all meta objects that need to be stored when a client goes offline. These data is used when a client
- * comes online again to compare the changes during absence.
+ * comes online again to compare the changes during absence.<br>
+ * The user profile snapshot stays encrypted with the key derived from the credentials. The locations and the
+ * public keys are stored unencrypted, they are public in the DHT as well. Encrypting them would require the
+ * key derivation to complete before the locations can be seeded at login. The cached meta files are stored in
+ * their encrypted form, they seed the {@link MetaFileCache}.
  * 
  * @author Nico
  * 
@@ -17,9 +29,14 @@ public class PersistentMetaData implements Serializable {
 	private static final long serialVersionUID = -1069468683019402537L;
 
 	private Map<String, PublicKey> publicKeyCache;
+	private Map<PeerAddress, PeerLiveness> peerLiveness;
+	private VersionSnapshot profileSnapshot;
+	private VersionSnapshot locationsSnapshot;
+	private LinkedHashMap<PublicKey, HybridEncryptedContent> metaFiles;
 
 	public PersistentMetaData() {
 		publicKeyCache = new HashMap<String, PublicKey>(0);
+		peerLiveness = new HashMap<PeerAddress, PeerLiveness>(0);
 	}
 
 	public Map<String, PublicKey> getPublicKeyCache() {
@@ -29,4 +46,49 @@ public class PersistentMetaData implements Serializable {
 	public void setPublicKeyCache(Map<String, PublicKey> publicKeyCache) {
 		this.publicKeyCache = publicKeyCache;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @return the liveness of the addresses of the own clients (can be <code>null</code> when written by an
+	 *         older version)
+	 */
+	public Map<PeerAddress, PeerLiveness> getPeerLiveness() {
+		return peerLiveness;
+	}
+
+	public void setPeerLiveness(Map<PeerAddress, PeerLiveness> peerLiveness) {
+		this.peerLiveness = peerLiveness;
+	}
+
+	/**
+	 * @return the (encrypted) user profile of the last session or <code>null</code> if none has been stored
+	 */
+	public VersionSnapshot getProfileSnapshot() {
+		return profileSnapshot;
+	}
+
+	public void setProfileSnapshot(VersionSnapshot profileSnapshot) {
+		this.profileSnapshot = profileSnapshot;
+	}
+
+	/**
+	 * @return the locations of the last session or <code>null</code> if none have been stored
+	 */
+	public VersionSnapshot getLocationsSnapshot() {
+		return locationsSnapshot;
+	}
+
+	public void setLocationsSnapshot(VersionSnapshot locationsSnapshot) {
+		this.locationsSnapshot = locationsSnapshot;
+	}
+
+	/**
+	 * @return the encrypted meta files of the last session or <code>null</code> if none have been stored
+	 */
+	public LinkedHashMap<PublicKey, HybridEncryptedContent> getMetaFiles() {
+		return metaFiles;
+	}
+
+	public void setMetaFiles(LinkedHashMap<PublicKey, HybridEncryptedContent> metaFiles) {
+		this.metaFiles = metaFiles;
+	}
+}
@@ -0,0 +1,277 @@
+package org.hive2hive.core.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the counters and histograms of a node. The metrics can be pulled with {@link #getCounters()}
+ * and {@link #getHistograms()} or viewed over JMX (see {@link #registerMBean(String)}).<br>
+ * Latencies are recorded in microseconds, throughputs in bytes per second. The names of the metrics are built
+ * from the prefixes defined here, DHT operations are additionally suffixed with the content key (e.g.
+ * <code>dht.get.USER_PROFILE</code>).
+ *
+ * @author Nico
+ *
+ */
+public class H2HMetrics implements H2HMetricsMXBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(H2HMetrics.class);
+
+	// DHT operations, followed by the content key
+	public static final String DHT_PUT = "dht.put.";
+	public static final String DHT_CONFIRM = "dht.confirm.";
+	public static final String DHT_GET = "dht.get.";
+	public static final String DHT_REMOVE = "dht.remove.";
+	public static final String DHT_DIGEST = "dht.digest.";
+	public static final String DHT_CHANGE_PROTECTION = "dht.changeProtection.";
+	// latest-version gets that were hedged because the quorum did not answer in time
+	public static final String DHT_GET_HEDGED = "dht.getHedged.";
+	// suffix of the counters of failed operations
+	public static final String FAILED = ".failed";
+
+	// messages
+	public static final String MESSAGE_SEND_ROUTED = "message.send.routed";
+	public static final String MESSAGE_SEND_DIRECT = "message.send.direct";
+	public static final String MESSAGE_RECEIVE = "message.receive";
+	// notification batches that were encrypted once for multiple notifications
+	public static final String NOTIFICATION_BATCH = "notification.batch";
+
+	// security
+	public static final String ENCRYPT_AES = "crypto.encrypt.aes";
+	public static final String DECRYPT_AES = "crypto.decrypt.aes";
+	public static final String ENCRYPT_HYBRID = "crypto.encrypt.hybrid";
+	public static final String DECRYPT_HYBRID = "crypto.decrypt.hybrid";
+	public static final String HASH_FILE = "hash.file";
+
+	// user profile
+	public static final String PROFILE_QUEUE_WAIT = "profile.queue.wait";
+	public static final String PROFILE_MODIFY = "profile.modify";
+	public static final String PROFILE_PUT = "profile.put";
+
+	// meta files
+	public static final String META_FILE_CACHE_HIT = "metafile.cache.hit";
+	public static final String META_FILE_CACHE_MISS = "metafile.cache.miss";
+
+	// files
+	public static final String UPLOAD_THROUGHPUT = "upload.throughput";
+	public static final String UPLOAD_BYTES = "upload.bytes";
+	public static final String DOWNLOAD_THROUGHPUT = "download.throughput";
+	public static final String DOWNLOAD_BYTES = "download.bytes";
+
+	private final boolean enabled;
+	private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+	private ObjectName registeredName;
+
+	/**
+	 * Creates an enabled metrics registry
+	 */
+	public H2HMetrics() {
+		this(true);
+	}
+
+	/**
+	 * @param enabled if <code>false</code>, nothing is recorded
+	 */
+	public H2HMetrics(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Records the time elapsed since the given start
+	 *
+	 * @param name the name of the histogram
+	 * @param startNanos the start, taken from {@link System#nanoTime()}
+	 */
+	public void recordLatency(String name, long startNanos) {
+		if (enabled) {
+			getOrCreateHistogram(name).record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+		}
+	}
+
+	/**
+	 * Records the throughput of a transfer that started at the given time and adds the bytes to a counter
+	 *
+	 * @param name the name of the throughput histogram
+	 * @param bytesCounter the name of the counter of the transferred bytes
+	 * @param bytes the number of transferred bytes
+	 * @param startNanos the start, taken from {@link System#nanoTime()}
+	 */
+	public void recordThroughput(String name, String bytesCounter, long bytes, long startNanos) {
+		if (enabled) {
+			long elapsed = Math.max(1, System.nanoTime() - startNanos);
+			getOrCreateHistogram(name).record(bytes * TimeUnit.SECONDS.toNanos(1) / elapsed);
+			add(bytesCounter, bytes);
+		}
+	}
+
+	/**
+	 * Records an arbitrary value
+	 *
+	 * @param name the name of the histogram
+	 * @param value the value
+	 */
+	public void recordValue(String name, long value) {
+		if (enabled) {
+			getOrCreateHistogram(name).record(value);
+		}
+	}
+
+	/**
+	 * Increments a counter by one
+	 *
+	 * @param name the name of the counter
+	 */
+	public void increment(String name) {
+		add(name, 1);
+	}
+
+	/**
+	 * Adds a value to a counter
+	 *
+	 * @param name the name of the counter
+	 * @param delta the value to add
+	 */
+	public void add(String name, long delta) {
+		if (enabled) {
+			AtomicLong counter = counters.get(name);
+			if (counter == null) {
+				AtomicLong newCounter = new AtomicLong();
+				counter = counters.putIfAbsent(name, newCounter);
+				if (counter == null) {
+					counter = newCounter;
+				}
+			}
+			counter.addAndGet(delta);
+		}
+	}
+
+	/**
+	 * @param name the name of the counter
+	 * @return the current value of the counter or 0 if nothing has been counted yet
+	 */
+	public long getCounter(String name) {
+		AtomicLong counter = counters.get(name);
+		return counter == null ? 0 : counter.get();
+	}
+
+	/**
+	 * @param name the name of the histogram
+	 * @return a snapshot of the histogram or <code>null</code> if nothing has been recorded yet
+	 */
+	public HistogramSnapshot getHistogram(String name) {
+		Histogram histogram = histograms.get(name);
+		return histogram == null ? null : histogram.getSnapshot();
+	}
+
+	/**
+	 * @param name the name of the histogram
+	 * @param percentile the percentile between 0 and 1 (e.g. 0.9)
+	 * @param minCount the minimal number of recorded values to get a meaningful result
+	 * @return the value at the percentile or -1 if less than <code>minCount</code> values have been recorded
+	 */
+	public long getPercentile(String name, double percentile, long minCount) {
+		Histogram histogram = histograms.get(name);
+		if (histogram == null || histogram.getCount() < Math.max(1, minCount)) {
+			return -1;
+		}
+		return histogram.getValueAtPercentile(percentile);
+	}
+
+	@Override
+	public Map<String, Long> getCounters() {
+		Map<String, Long> result = new TreeMap<String, Long>();
+		for (Entry<String, AtomicLong> entry : counters.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().get());
+		}
+		return result;
+	}
+
+	@Override
+	public Map<String, HistogramSnapshot> getHistograms() {
+		Map<String, HistogramSnapshot> result = new TreeMap<String, HistogramSnapshot>();
+		for (Entry<String, Histogram> entry : histograms.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().getSnapshot());
+		}
+		return result;
+	}
+
+	@Override
+	public void reset() {
+		for (AtomicLong counter : counters.values()) {
+			counter.set(0);
+		}
+		for (Histogram histogram : histograms.values()) {
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * Makes the metrics available over JMX. A previous registration of this instance is replaced.
+	 *
+	 * @param nodeId the identifier of the node, used in the name of the MBean
+	 */
+	public synchronized void registerMBean(String nodeId) {
+		unregisterMBean();
+		try {
+			ObjectName name = new ObjectName("org.hive2hive:type=Metrics,node=" + ObjectName.quote(nodeId));
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(name)) {
+				// e.g. when the same node id is used twice in the same VM
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+			registeredName = name;
+		} catch (JMException e) {
+			logger.warn("Cannot register the metrics of node '{}' at the MBean server.", nodeId, e);
+		}
+	}
+
+	/**
+	 * Removes the metrics from JMX if they have been registered
+	 */
+	public synchronized void unregisterMBean() {
+		if (registeredName == null) {
+			return;
+		}
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+		} catch (JMException e) {
+			logger.warn("Cannot unregister the metrics '{}' from the MBean server.", registeredName, e);
+		} finally {
+			registeredName = null;
+		}
+	}
+
+	private Histogram getOrCreateHistogram(String name) {
+		Histogram histogram = histograms.get(name);
+		if (histogram == null) {
+			Histogram newHistogram = new Histogram();
+			histogram = histograms.putIfAbsent(name, newHistogram);
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+		return histogram;
+	}
+}
@@ -0,0 +1,32 @@
+package org.hive2hive.core.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link H2HMetrics} of a node.
+ *
+ * @author Nico
+ *
+ */
+public interface H2HMetricsMXBean {
+
+	/**
+	 * @return whether the metrics are recorded
+	 */
+	boolean isEnabled();
+
+	/**
+	 * @return all counters by their name
+	 */
+	Map<String, Long> getCounters();
+
+	/**
+	 * @return a snapshot of all histograms by their name
+	 */
+	Map<String, HistogramSnapshot> getHistograms();
+
+	/**
+	 * Clears all counters and histograms
+	 */
+	void reset();
+}
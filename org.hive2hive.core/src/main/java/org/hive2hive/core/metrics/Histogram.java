@@ -0,0 +1,142 @@
+package org.hive2hive.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram with logarithmic buckets (similar to an HDR histogram). Every power of two is split
+ * into {@link #SUB_BUCKETS} linear buckets, thus the relative error of the reported percentiles is bounded by
+ * about 3%, independent of the magnitude of the values. Recording a value is a few atomic increments, thus it
+ * can be used on hot paths.
+ *
+ * @author Nico
+ *
+ */
+public class Histogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// values below SUB_BUCKETS are exact, then SUB_BUCKETS buckets for every remaining power of two
+	private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 *
+	 * @param value the value to record
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+
+		buckets.incrementAndGet(bucketIndex(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+
+		long currentMin;
+		while (value < (currentMin = min.get()) && !min.compareAndSet(currentMin, value)) {
+			// retry
+		}
+		long currentMax;
+		while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+			// retry
+		}
+	}
+
+	/**
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Creates a snapshot of the current state. Values that are recorded concurrently may or may not be part
+	 * of the snapshot.
+	 *
+	 * @return the snapshot
+	 */
+	public HistogramSnapshot getSnapshot() {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+
+		if (total == 0) {
+			return new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0, 0);
+		}
+
+		long minValue = min.get();
+		long maxValue = max.get();
+		double mean = (double) sum.get() / count.get();
+		return new HistogramSnapshot(total, minValue, maxValue, mean, percentile(counts, total, 0.5, maxValue),
+				percentile(counts, total, 0.9, maxValue), percentile(counts, total, 0.99, maxValue), percentile(counts,
+						total, 0.999, maxValue));
+	}
+
+	/**
+	 * @param percentile the percentile between 0 and 1 (e.g. 0.9)
+	 * @return the (upper bound of the) value at the given percentile or 0 if nothing has been recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		return total == 0 ? 0 : percentile(counts, total, percentile, max.get());
+	}
+
+	/**
+	 * Clears all recorded values
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		min.set(Long.MAX_VALUE);
+		max.set(Long.MIN_VALUE);
+	}
+
+	private static long percentile(long[] counts, long total, double percentile, long maxValue) {
+		long rank = (long) Math.ceil(percentile * total);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(highestValueInBucket(i), maxValue);
+			}
+		}
+		return maxValue;
+	}
+
+	static int bucketIndex(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+	}
+
+	static long highestValueInBucket(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+		long subBucket = SUB_BUCKETS + (index - SUB_BUCKETS) % SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
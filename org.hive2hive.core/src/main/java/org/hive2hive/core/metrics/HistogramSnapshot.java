@@ -0,0 +1,72 @@
+package org.hive2hive.core.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Immutable state of a {@link Histogram} at a point in time. The unit of the values depends on the recorded
+ * metric (see {@link H2HMetrics}).
+ *
+ * @author Nico
+ *
+ */
+public class HistogramSnapshot {
+
+	private final long count;
+	private final long min;
+	private final long max;
+	private final double mean;
+	private final long p50;
+	private final long p90;
+	private final long p99;
+	private final long p999;
+
+	@ConstructorProperties({ "count", "min", "max", "mean", "p50", "p90", "p99", "p999" })
+	public HistogramSnapshot(long count, long min, long max, double mean, long p50, long p90, long p99, long p999) {
+		this.count = count;
+		this.min = min;
+		this.max = max;
+		this.mean = mean;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.p999 = p999;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMin() {
+		return min;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public long getP90() {
+		return p90;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public long getP999() {
+		return p999;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%s, min=%s, mean=%.1f, p50=%s, p90=%s, p99=%s, p99.9=%s, max=%s", count, min, mean,
+				p50, p90, p99, p999, max);
+	}
+}
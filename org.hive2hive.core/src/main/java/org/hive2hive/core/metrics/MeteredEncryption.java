@@ -0,0 +1,108 @@
+package org.hive2hive.core.metrics;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+import javax.crypto.SecretKey;
+
+import org.hive2hive.core.model.BaseNetworkContent;
+import org.hive2hive.core.model.versioned.EncryptedNetworkContent;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
+import org.hive2hive.core.security.IH2HEncryption;
+
+/**
+ * Decorates any {@link IH2HEncryption} implementation and records the duration of the encryption and
+ * decryption calls.
+ *
+ * @author Nico
+ *
+ */
+public class MeteredEncryption implements IH2HEncryption {
+
+	private final IH2HEncryption encryption;
+	private final H2HMetrics metrics;
+
+	public MeteredEncryption(IH2HEncryption encryption, H2HMetrics metrics) {
+		this.encryption = encryption;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public String getSecurityProvider() {
+		return encryption.getSecurityProvider();
+	}
+
+	@Override
+	public EncryptedNetworkContent encryptAES(BaseNetworkContent content, SecretKey aesKey) throws IOException,
+			GeneralSecurityException {
+		long start = System.nanoTime();
+		try {
+			return encryption.encryptAES(content, aesKey);
+		} finally {
+			metrics.recordLatency(H2HMetrics.ENCRYPT_AES, start);
+		}
+	}
+
+	@Override
+	public BaseNetworkContent decryptAES(EncryptedNetworkContent content, SecretKey aesKey)
+			throws ClassNotFoundException, IOException, GeneralSecurityException {
+		long start = System.nanoTime();
+		try {
+			return encryption.decryptAES(content, aesKey);
+		} finally {
+			metrics.recordLatency(H2HMetrics.DECRYPT_AES, start);
+		}
+	}
+
+	@Override
+	public HybridEncryptedContent encryptHybrid(BaseNetworkContent content, PublicKey publicKey) throws IOException,
+			GeneralSecurityException {
+		long start = System.nanoTime();
+		try {
+			return encryption.encryptHybrid(content, publicKey);
+		} finally {
+			metrics.recordLatency(H2HMetrics.ENCRYPT_HYBRID, start);
+		}
+	}
+
+	@Override
+	public HybridEncryptedContent encryptHybrid(byte[] content, PublicKey publicKey) throws GeneralSecurityException {
+		long start = System.nanoTime();
+		try {
+			return encryption.encryptHybrid(content, publicKey);
+		} finally {
+			metrics.recordLatency(H2HMetrics.ENCRYPT_HYBRID, start);
+		}
+	}
+
+	@Override
+	public BaseNetworkContent decryptHybrid(HybridEncryptedContent content, PrivateKey privateKey)
+			throws ClassNotFoundException, IOException, GeneralSecurityException {
+		long start = System.nanoTime();
+		try {
+			return encryption.decryptHybrid(content, privateKey);
+		} finally {
+			metrics.recordLatency(H2HMetrics.DECRYPT_HYBRID, start);
+		}
+	}
+
+	@Override
+	public byte[] decryptHybridRaw(HybridEncryptedContent content, PrivateKey privateKey)
+			throws ClassNotFoundException, IOException, GeneralSecurityException {
+		long start = System.nanoTime();
+		try {
+			return encryption.decryptHybridRaw(content, privateKey);
+		} finally {
+			metrics.recordLatency(H2HMetrics.DECRYPT_HYBRID, start);
+		}
+	}
+
+	@Override
+	public KeyPair generateRSAKeyPair(RSA_KEYLENGTH length) {
+		return encryption.generateRSAKeyPair(length);
+	}
+}
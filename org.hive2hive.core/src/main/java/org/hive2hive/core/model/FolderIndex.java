@@ -2,8 +2,14 @@ package org.hive2hive.core.model;
 
 import java.security.KeyPair;
 import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.hive2hive.core.file.FileUtil;
@@ -19,11 +25,32 @@ public class FolderIndex extends Index {
 
 	private static final long serialVersionUID = 3798065400562165454L;
 
+	// flags of the memoized attributes
+	private static final int SHARED = 1;
+	private static final int PROTECTION_KEYS = 1 << 1;
+	private static final int SHARED_TOP_FOLDER = 1 << 2;
+	private static final int USER_PERMISSIONS = 1 << 3;
+	private static final int USER_LIST = 1 << 4;
+
 	private Set<Index> children = new HashSet<Index>();
 	private Set<UserPermission> userPermissions = new HashSet<UserPermission>();
 	private KeyPair protectionKeys = null;
 	private boolean isShared = false;
 
+	// attributes derived from this node and its ancestors, valid if their flag is set (see invalidate())
+	private transient volatile int valid;
+	private transient boolean calculatedShared;
+	private transient KeyPair calculatedProtectionKeys;
+	private transient FolderIndex sharedTopFolder;
+	private transient Set<UserPermission> calculatedUserPermissions;
+	private transient Set<String> calculatedUserList;
+	// derived from the descendants, null if not known (see invalidateSharedChildren())
+	private transient Boolean hasSharedChildren;
+	// the children by their normalized name, built lazily from the children (see getChildrenByName())
+	private transient Map<String, Index> childrenByName;
+	// the children sorted by their name, built lazily (see getSortedChildren())
+	private transient List<Index> sortedChildren;
+
 	/**
 	 * Constructor for the root folder.
 	 * 
@@ -53,11 +80,15 @@ public class FolderIndex extends Index {
 		super(folderIndex.fileKeys, folderIndex.name, folderIndex.parent);
 		this.children = new HashSet<Index>();
 		for (Index child : folderIndex.children) {
+			Index childCopy;
 			if (child.isFolder()) {
-				this.children.add(new FolderIndex((FolderIndex) child));
+				childCopy = new FolderIndex((FolderIndex) child);
 			} else {
-				this.children.add(new FileIndex((FileIndex) child));
+				childCopy = new FileIndex((FileIndex) child);
 			}
+			// link the copy to this copy instead of the original folder
+			childCopy.setParent(this);
+			this.children.add(childCopy);
 		}
 		this.userPermissions = new HashSet<UserPermission>();
 		for (UserPermission userPermission : folderIndex.userPermissions) {
@@ -79,10 +110,11 @@ public class FolderIndex extends Index {
 	/**
 	 * Returns all direct children of this node
 	 * 
-	 * @return all childrens of this node
+	 * @return all childrens of this node (read-only, use {@link #addChild(Index)} and
+	 *         {@link #removeChild(Index)} to modify them)
 	 */
 	public Set<Index> getChildren() {
-		return children;
+		return Collections.unmodifiableSet(children);
 	}
 
 	/**
@@ -94,6 +126,10 @@ public class FolderIndex extends Index {
 		// only add once
 		if (getChildByName(child.getName()) == null) {
 			children.add(child);
+			getChildrenByName().put(normalize(child.getName()), child);
+			sortedChildren = null;
+			child.invalidate();
+			invalidateSharedChildren();
 		}
 	}
 
@@ -103,10 +139,17 @@ public class FolderIndex extends Index {
 	 * @param child the child to remove (file or folder)
 	 */
 	public void removeChild(Index child) {
+		Index removed = child;
 		if (!children.remove(child)) {
 			// remove by name
-			children.remove(getChildByName(child.getName()));
+			removed = getChildByName(child.getName());
+			children.remove(removed);
+		}
+		if (removed != null) {
+			getChildrenByName().remove(normalize(removed.getName()));
+			sortedChildren = null;
 		}
+		invalidateSharedChildren();
 	}
 
 	/**
@@ -117,14 +160,73 @@ public class FolderIndex extends Index {
 	 */
 	public Index getChildByName(String name) {
 		if (name != null) {
-			String withoutSeparator = name.replace(FileUtil.getFileSep(), "");
-			for (Index child : children) {
-				if (child.getName().equalsIgnoreCase(withoutSeparator)) {
-					return child;
+			return getChildrenByName().get(normalize(name.replace(FileUtil.getFileSep(), "")));
+		}
+		return null;
+	}
+
+	/**
+	 * Keeps the name lookup consistent when a child is renamed
+	 * 
+	 * @param child the renamed child
+	 * @param oldName the name of the child before
+	 */
+	void childRenamed(Index child, String oldName) {
+		Map<String, Index> byName = getChildrenByName();
+		// the child may already be detached from this folder
+		if (byName.get(normalize(oldName)) == child) {
+			byName.remove(normalize(oldName));
+			byName.put(normalize(child.getName()), child);
+			sortedChildren = null;
+		}
+	}
+
+	/**
+	 * Returns the direct children sorted by their name, ignoring the case. The sorted list is kept until the
+	 * children change, thus listing a large folder page by page sorts it only once.
+	 * 
+	 * @return the sorted children (read-only)
+	 */
+	public List<Index> getSortedChildren() {
+		List<Index> sorted = sortedChildren;
+		if (sorted == null) {
+			List<Index> list = new ArrayList<Index>(children);
+			Collections.sort(list, new Comparator<Index>() {
+				@Override
+				public int compare(Index index1, Index index2) {
+					return String.CASE_INSENSITIVE_ORDER.compare(index1.getName(), index2.getName());
 				}
+			});
+			sorted = Collections.unmodifiableList(list);
+			sortedChildren = sorted;
+		}
+		return sorted;
+	}
+
+	private Map<String, Index> getChildrenByName() {
+		if (childrenByName == null) {
+			// not serialized, thus rebuilt after deserialization
+			Map<String, Index> byName = new HashMap<String, Index>(children.size() * 2);
+			for (Index child : children) {
+				byName.put(normalize(child.getName()), child);
 			}
+			childrenByName = byName;
 		}
-		return null;
+		return childrenByName;
+	}
+
+	/**
+	 * Two names are equal if they are equal ignoring the case (see {@link String#equalsIgnoreCase(String)}).
+	 */
+	private static String normalize(String name) {
+		if (name == null) {
+			return null;
+		}
+		char[] chars = name.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		return new String(chars);
 	}
 
 	/**
@@ -142,6 +244,8 @@ public class FolderIndex extends Index {
 
 		this.isShared = true;
 		this.protectionKeys = protectionKeys;
+		invalidate();
+		invalidateSharedChildren();
 	}
 
 	/**
@@ -152,6 +256,8 @@ public class FolderIndex extends Index {
 		this.protectionKeys = null;
 
 		userPermissions.clear();
+		invalidate();
+		invalidateSharedChildren();
 	}
 
 	/**
@@ -162,6 +268,7 @@ public class FolderIndex extends Index {
 	 */
 	public void addUserPermissions(UserPermission userPermission) {
 		userPermissions.add(userPermission);
+		invalidate();
 	}
 
 	/**
@@ -177,48 +284,75 @@ public class FolderIndex extends Index {
 				iter.remove();
 			}
 		}
+		invalidate();
+	}
+
+	/**
+	 * Removes all permissions assigned to this node. The node then inherits the permissions of its parent.
+	 */
+	public void clearUserPermissions() {
+		userPermissions.clear();
+		invalidate();
 	}
 
 	/**
 	 * Returns a list of the permissions for this node. Note that the returned permissions are not inherited
 	 * from nodes above; Only the assigned permissions for this node are returned.
 	 * 
-	 * @return the user permissions of this index.
+	 * @return the user permissions of this index (read-only).
 	 */
 	public Set<UserPermission> getUserPermissions() {
-		return userPermissions;
+		return Collections.unmodifiableSet(userPermissions);
 	}
 
 	/**
 	 * Returns a list of the permissions of this node together with the inherited permissions from the parent
 	 * nodes.
 	 * 
-	 * @return the set of user permissions (inherited from parent folder)
+	 * @return the set of user permissions (inherited from parent folder, read-only)
 	 */
 	public Set<UserPermission> getCalculatedUserPermissions() {
-		// if there is a parent and no user permissions, ask parent
-		if (parent != null && userPermissions.isEmpty()) {
-			return parent.getCalculatedUserPermissions();
+		if ((valid & USER_PERMISSIONS) == 0) {
+			if (parent != null && userPermissions.isEmpty()) {
+				// if there is a parent and no user permissions, ask parent
+				calculatedUserPermissions = parent.getCalculatedUserPermissions();
+			} else {
+				// if there is no parent or user permission list is not empty
+				calculatedUserPermissions = getUserPermissions();
+			}
+			valid |= USER_PERMISSIONS;
 		}
-
-		// if there is no parent or user permission list is not empty
-		return userPermissions;
+		return calculatedUserPermissions;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * The returned set is read-only.
+	 */
 	@Override
 	public Set<String> getCalculatedUserList() {
-		// gather the own user list
-		Set<String> users = new HashSet<String>();
-		for (UserPermission permission : userPermissions) {
-			users.add(permission.getUserId());
-		}
+		if ((valid & USER_LIST) == 0) {
+			// gather the own user list
+			Set<String> users = new HashSet<String>();
+			for (UserPermission permission : userPermissions) {
+				users.add(permission.getUserId());
+			}
 
-		// combine with parent user list (recursion)
-		if (parent != null) {
-			users.addAll(parent.getCalculatedUserList());
-		}
+			// combine with parent user list
+			if (parent != null) {
+				Set<String> parentUsers = parent.getCalculatedUserList();
+				if (parentUsers.containsAll(users)) {
+					// share the parent's set if nothing is added
+					users = parentUsers;
+				} else {
+					users.addAll(parentUsers);
+				}
+			}
 
-		return users;
+			calculatedUserList = Collections.unmodifiableSet(users);
+			valid |= USER_LIST;
+		}
+		return calculatedUserList;
 	}
 
 	@Override
@@ -257,38 +391,96 @@ public class FolderIndex extends Index {
 	 */
 	public void setProtectionKeys(KeyPair protectionKeys) {
 		this.protectionKeys = protectionKeys;
+		invalidate();
 	}
 
 	@Override
 	public KeyPair getProtectionKeys() {
-		if (isShared) {
-			// the shared flag is on, return the protection keys (can be null)
-			return protectionKeys;
+		if ((valid & PROTECTION_KEYS) == 0) {
+			if (isShared || protectionKeys != null) {
+				// the shared flag is on (the protection keys can be null) or this is the root
+				calculatedProtectionKeys = protectionKeys;
+			} else {
+				// inherit parent's protection keys
+				calculatedProtectionKeys = parent.getProtectionKeys();
+			}
+			valid |= PROTECTION_KEYS;
 		}
+		return calculatedProtectionKeys;
+	}
 
-		if (protectionKeys == null) {
-			// inherit parent's protection keys
-			return parent.getProtectionKeys();
+	@Override
+	public boolean isShared() {
+		if ((valid & SHARED) == 0) {
+			// this folder is shared, root is never shared, else ask the parent whether this subfolder is shared
+			calculatedShared = isShared || (!isRoot() && parent.isShared());
+			valid |= SHARED;
 		}
-
-		// is root
-		return protectionKeys;
+		return calculatedShared;
 	}
 
 	@Override
-	public boolean isShared() {
-		if (isShared) {
-			// this folder is shared
-			return true;
+	public FolderIndex getSharedTopFolder() {
+		if ((valid & SHARED_TOP_FOLDER) == 0) {
+			if (isShared) {
+				// this is the top-most shared folder because the shared flag is activated
+				sharedTopFolder = this;
+			} else if (isRoot()) {
+				// the root folder is never shared
+				sharedTopFolder = null;
+			} else {
+				// ask one level up
+				sharedTopFolder = parent.getSharedTopFolder();
+			}
+			valid |= SHARED_TOP_FOLDER;
 		}
+		return sharedTopFolder;
+	}
 
-		if (isRoot()) {
-			// root is never shared
-			return false;
+	/**
+	 * @return whether any descendant folder is the top folder of a share
+	 */
+	boolean hasSharedChildren() {
+		if (hasSharedChildren == null) {
+			boolean shared = false;
+			for (Index child : children) {
+				if (child.isFolder()) {
+					FolderIndex subfolder = (FolderIndex) child;
+					if (subfolder.getSharedFlag() || subfolder.hasSharedChildren()) {
+						shared = true;
+						break;
+					}
+				}
+			}
+			hasSharedChildren = shared;
+		}
+		return hasSharedChildren;
+	}
+
+	@Override
+	protected void invalidate() {
+		super.invalidate();
+		valid = 0;
+		calculatedProtectionKeys = null;
+		sharedTopFolder = null;
+		calculatedUserPermissions = null;
+		calculatedUserList = null;
+		// the children are not yet initialized while the super constructor adds this node to its parent
+		if (children != null) {
+			for (Index child : children) {
+				child.invalidate();
+			}
 		}
+	}
 
-		// ask the parent whether this subfolder is shared
-		return parent.isShared();
+	/**
+	 * The shared state of a subfolder changed, thus this folder and its ancestors need to check their children
+	 * again.
+	 */
+	private void invalidateSharedChildren() {
+		for (FolderIndex folder = this; folder != null; folder = folder.parent) {
+			folder.hasSharedChildren = null;
+		}
 	}
 
 	/**
@@ -19,6 +19,9 @@ public abstract class Index implements Comparable<Index>, Serializable {
 	protected String name;
 	protected FolderIndex parent;
 
+	// derived from this node and its ancestors, computed lazily (see invalidate())
+	private transient String fullPath;
+
 	/**
 	 * Constructor for root node.
 	 * 
@@ -73,7 +76,12 @@ public abstract class Index implements Comparable<Index>, Serializable {
 	 * @param name the name of the index
 	 */
 	public void setName(String name) {
+		String oldName = this.name;
 		this.name = name;
+		if (parent != null) {
+			parent.childRenamed(this, oldName);
+		}
+		invalidate();
 	}
 
 	/**
@@ -86,10 +94,20 @@ public abstract class Index implements Comparable<Index>, Serializable {
 			throw new IllegalArgumentException("Parent can't be null.");
 		}
 		this.parent = parent;
+		invalidate();
 	}
 
 	public void decoupleFromParent() {
 		this.parent = null;
+		invalidate();
+	}
+
+	/**
+	 * Drops the memoized attributes of this node and all its descendants. Needs to be called whenever
+	 * something they are derived from (the name, the parent or the sharing state of an ancestor) changes.
+	 */
+	protected void invalidate() {
+		fullPath = null;
 	}
 
 	/**
@@ -107,23 +125,8 @@ public abstract class Index implements Comparable<Index>, Serializable {
 	 * @return the top folder of the share
 	 */
 	public FolderIndex getSharedTopFolder() {
-		if (this instanceof FileIndex) {
-			// is not shared and is of type files (this has no children)
-			return parent.getSharedTopFolder();
-		} else {
-			// is of type folder
-			FolderIndex folder = (FolderIndex) this;
-			if (folder.getSharedFlag()) {
-				// this is the top-most shared folder because the shared flag is activated
-				return folder;
-			} else if (folder.isRoot()) {
-				// the root folder is never shared
-				return null;
-			} else {
-				// move one level up (recursion)
-				return parent.getSharedTopFolder();
-			}
-		}
+		// files have no children, folders determine their own share
+		return parent.getSharedTopFolder();
 	}
 
 	/**
@@ -142,19 +145,8 @@ public abstract class Index implements Comparable<Index>, Serializable {
 			return false;
 		} else {
 			// is of type 'folder', check all subfolders
-			List<Index> children = getIndexList(this);
-			for (Index child : children) {
-				if (child.isFolder()) {
-					FolderIndex subfolder = (FolderIndex) child;
-					if (subfolder.getSharedFlag()) {
-						return true;
-					}
-				}
-			}
+			return ((FolderIndex) this).hasSharedChildren();
 		}
-
-		// no case above matches
-		return false;
 	}
 
 	/**
@@ -163,15 +155,16 @@ public abstract class Index implements Comparable<Index>, Serializable {
 	 * @return the full path, whereas names are separated with the operating systems file separator
 	 */
 	public String getFullPath() {
-		if (parent == null) {
-			return "";
-		} else {
-			if (isFile()) {
-				return parent.getFullPath() + name;
+		if (fullPath == null) {
+			if (parent == null) {
+				fullPath = "";
+			} else if (isFile()) {
+				fullPath = parent.getFullPath() + name;
 			} else {
-				return parent.getFullPath() + name + FileUtil.getFileSep();
+				fullPath = parent.getFullPath() + name + FileUtil.getFileSep();
 			}
 		}
+		return fullPath;
 	}
 
 	/**
@@ -3,14 +3,20 @@ package org.hive2hive.core.network;
 import net.tomp2p.dht.PeerDHT;
 
 import org.hive2hive.core.H2HSession;
+import org.hive2hive.core.api.configs.EventBusConfiguration;
+import org.hive2hive.core.api.interfaces.IEventBusConfiguration;
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
 import org.hive2hive.core.api.interfaces.INetworkConfiguration;
 import org.hive2hive.core.events.EventBus;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.metrics.H2HMetrics;
+import org.hive2hive.core.metrics.MeteredEncryption;
 import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.download.ChunkCache;
 import org.hive2hive.core.network.data.download.DownloadManager;
 import org.hive2hive.core.network.messages.MessageManager;
+import org.hive2hive.core.processes.notify.NotificationDispatcher;
 import org.hive2hive.core.security.IH2HEncryption;
 import org.hive2hive.core.serializer.IH2HSerialize;
 import org.slf4j.Logger;
@@ -21,6 +27,7 @@ public class NetworkManager {
 	private static final Logger logger = LoggerFactory.getLogger(NetworkManager.class);
 
 	private final IH2HEncryption encryption;
+	private final H2HMetrics metrics;
 	private final Connection connection;
 	private final DataManager dataManager;
 	private final MessageManager messageManager;
@@ -28,14 +35,44 @@ public class NetworkManager {
 	private H2HSession session;
 
 	private EventBus eventBus;
+	private final IEventBusConfiguration eventBusConfig;
+	private final ChunkCache chunkCache;
 	private final DownloadManager downloadManager;
+	private final NotificationDispatcher notificationDispatcher;
+	private final PeerLivenessTable livenessTable;
 
 	public NetworkManager(IH2HEncryption encryption, IH2HSerialize serializer, IFileConfiguration fileConfig) {
-		this.encryption = encryption;
+		this(encryption, serializer, fileConfig, EventBusConfiguration.createDefault());
+	}
+
+	public NetworkManager(IH2HEncryption encryption, IH2HSerialize serializer, IFileConfiguration fileConfig,
+			IEventBusConfiguration eventBusConfig) {
+		this(encryption, serializer, fileConfig, eventBusConfig, new H2HMetrics());
+	}
+
+	public NetworkManager(IH2HEncryption encryption, IH2HSerialize serializer, IFileConfiguration fileConfig,
+			IEventBusConfiguration eventBusConfig, H2HMetrics metrics) {
+		this.metrics = metrics;
+		this.encryption = metrics.isEnabled() ? new MeteredEncryption(encryption, metrics) : encryption;
+		this.eventBusConfig = eventBusConfig;
 		connection = new Connection(this, serializer);
-		dataManager = new DataManager(connection, serializer, encryption);
+		dataManager = new DataManager(connection, serializer, this.encryption, metrics);
 		messageManager = new MessageManager(this, serializer);
-		downloadManager = new DownloadManager(this, fileConfig);
+		chunkCache = createChunkCache(fileConfig);
+		downloadManager = new DownloadManager(this, fileConfig, chunkCache);
+		notificationDispatcher = new NotificationDispatcher(this);
+		livenessTable = new PeerLivenessTable();
+	}
+
+	/**
+	 * Creates the chunk cache. The cache is shared by all nodes using the same directory. Without a
+	 * configured directory, only chunks of local files are served.
+	 */
+	private static ChunkCache createChunkCache(IFileConfiguration fileConfig) {
+		if (fileConfig.getChunkCacheDirectory() == null) {
+			return new ChunkCache(null, 0);
+		}
+		return ChunkCache.getShared(fileConfig.getChunkCacheDirectory(), fileConfig.getChunkCacheSize());
 	}
 
 	/**
@@ -45,8 +82,9 @@ public class NetworkManager {
 	 * @return <code>true</code> if the connection was successful, <code>false</code> otherwise
 	 */
 	public boolean connect(INetworkConfiguration networkConfiguration) {
-		this.eventBus = new EventBus();
+		this.eventBus = new EventBus(eventBusConfig);
 		this.nodeID = networkConfiguration.getNodeID();
+		registerMetrics();
 		return connection.connect(networkConfiguration);
 	}
 
@@ -58,11 +96,18 @@ public class NetworkManager {
 	 * @return <code>true</code> if the connection was successful, <code>false</code> otherwise
 	 */
 	public boolean connect(PeerDHT peer, boolean startReplication) {
-		this.eventBus = new EventBus();
+		this.eventBus = new EventBus(eventBusConfig);
 		this.nodeID = peer.peerID().toString();
+		registerMetrics();
 		return connection.connect(peer, startReplication);
 	}
 
+	private void registerMetrics() {
+		if (metrics.isEnabled()) {
+			metrics.registerMBean(nodeID);
+		}
+	}
+
 	/**
 	 * Disconnects from the network.
 	 * 
@@ -79,8 +124,10 @@ public class NetworkManager {
 			}
 		}
 
+		notificationDispatcher.shutdown();
 		eventBus.shutdown();
 		logger.debug("Eventbus stopped");
+		metrics.unregisterMBean();
 
 		return connection.disconnect();
 	}
@@ -152,6 +199,21 @@ public class NetworkManager {
 		return downloadManager;
 	}
 
+	public ChunkCache getChunkCache() {
+		return chunkCache;
+	}
+
+	public NotificationDispatcher getNotificationDispatcher() {
+		return notificationDispatcher;
+	}
+
+	/**
+	 * @return the round trip times and liveness of the peers that have been contacted
+	 */
+	public PeerLivenessTable getLivenessTable() {
+		return livenessTable;
+	}
+
 	public EventBus getEventBus() {
 		if (eventBus == null) {
 			throw new IllegalStateException("No EventBus instance provided.");
@@ -163,4 +225,11 @@ public class NetworkManager {
 	public IH2HEncryption getEncryption() {
 		return encryption;
 	}
+
+	/**
+	 * @return the counters and latency histograms of this node
+	 */
+	public H2HMetrics getMetrics() {
+		return metrics;
+	}
 }
@@ -0,0 +1,78 @@
+package org.hive2hive.core.network;
+
+import java.io.Serializable;
+
+/**
+ * The observed liveness of a peer address. The round trip time is estimated like the retransmission timer of
+ * TCP (smoothed round trip time and its variation). The score is a moving average of the probe results.
+ * 
+ * @author Nico
+ */
+public class PeerLiveness implements Serializable {
+
+	private static final long serialVersionUID = -2715440393418255946L;
+
+	// score of an address that has never been probed
+	private static final double INITIAL_SCORE = 0.5;
+
+	private long smoothedRtt;
+	private long rttVariation;
+	private double score;
+	private int consecutiveFailures;
+
+	public PeerLiveness() {
+		this.smoothedRtt = -1;
+		this.rttVariation = 0;
+		this.score = INITIAL_SCORE;
+		this.consecutiveFailures = 0;
+	}
+
+	/**
+	 * The peer responded
+	 * 
+	 * @param rtt the round trip time in milliseconds
+	 */
+	public synchronized void recordResponse(long rtt) {
+		if (smoothedRtt < 0) {
+			smoothedRtt = rtt;
+			rttVariation = rtt / 2;
+		} else {
+			rttVariation = (3 * rttVariation + Math.abs(smoothedRtt - rtt)) / 4;
+			smoothedRtt = (7 * smoothedRtt + rtt) / 8;
+		}
+		score = (score + 1) / 2;
+		consecutiveFailures = 0;
+	}
+
+	/**
+	 * The peer did not respond in time
+	 */
+	public synchronized void recordFailure() {
+		score = score / 2;
+		consecutiveFailures++;
+	}
+
+	/**
+	 * @return the time to wait for a response or -1 if the round trip time is not known yet
+	 */
+	public synchronized long getTimeout() {
+		if (smoothedRtt < 0) {
+			return -1;
+		}
+		return smoothedRtt + 4 * rttVariation;
+	}
+
+	public synchronized double getScore() {
+		return score;
+	}
+
+	public synchronized int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("PeerLiveness[rtt=%s, variation=%s, score=%.2f, failures=%s]", smoothedRtt,
+				rttVariation, score, consecutiveFailures);
+	}
+}
@@ -0,0 +1,148 @@
+package org.hive2hive.core.network;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.H2HConstants;
+
+/**
+ * Remembers the liveness of the peer addresses the own clients have been contacted at. It is used to adapt
+ * the time to wait for a response per peer, to contact the most likely alive peers first and to drop
+ * addresses that did not respond multiple times in a row. The table is persisted together with the other
+ * meta data at the logout.
+ * 
+ * @author Nico
+ */
+public class PeerLivenessTable {
+
+	// iteration order is the access order, the least recently used addresses are evicted
+	private final Map<PeerAddress, PeerLiveness> entries;
+
+	public PeerLivenessTable() {
+		this.entries = new LinkedHashMap<PeerAddress, PeerLiveness>(16, 0.75f, true) {
+			private static final long serialVersionUID = 2093532780012593212L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<PeerAddress, PeerLiveness> eldest) {
+				return size() > H2HConstants.MAX_LIVENESS_ENTRIES;
+			}
+		};
+	}
+
+	private synchronized PeerLiveness getOrCreate(PeerAddress address) {
+		PeerLiveness liveness = entries.get(address);
+		if (liveness == null) {
+			liveness = new PeerLiveness();
+			entries.put(address, liveness);
+		}
+		return liveness;
+	}
+
+	/**
+	 * Returns the time to wait for a response of the peer. It is based on the round trip times measured
+	 * before, bounded by {@link H2HConstants#CONTACT_PEERS_MIN_AWAIT_MS} and the default waiting time.
+	 * 
+	 * @param address the address of the peer
+	 * @return the timeout in milliseconds
+	 */
+	public long getTimeout(PeerAddress address) {
+		long maxTimeout = address.isSlow() ? H2HConstants.CONTACT_SLOW_PEERS_AWAIT_MS
+				: H2HConstants.CONTACT_PEERS_AWAIT_MS;
+
+		PeerLiveness liveness;
+		synchronized (this) {
+			liveness = entries.get(address);
+		}
+
+		long timeout = liveness == null ? -1 : liveness.getTimeout();
+		if (timeout < 0) {
+			// not known yet
+			return maxTimeout;
+		}
+		return Math.min(maxTimeout, Math.max(H2HConstants.CONTACT_PEERS_MIN_AWAIT_MS, timeout));
+	}
+
+	/**
+	 * @param address the address of the peer
+	 * @return <code>true</code> if the peer did not respond too many times in a row
+	 */
+	public synchronized boolean isDropped(PeerAddress address) {
+		PeerLiveness liveness = entries.get(address);
+		return liveness != null
+				&& liveness.getConsecutiveFailures() >= H2HConstants.CONTACT_PEERS_DROP_AFTER_FAILURES;
+	}
+
+	/**
+	 * Sorts the addresses such that the peers that are most likely alive are first
+	 * 
+	 * @param addresses the addresses to sort
+	 */
+	public void sortByLiveness(List<PeerAddress> addresses) {
+		final Map<PeerAddress, Double> scores = new HashMap<PeerAddress, Double>();
+		for (PeerAddress address : addresses) {
+			scores.put(address, getOrCreate(address).getScore());
+		}
+
+		Collections.sort(addresses, new Comparator<PeerAddress>() {
+			@Override
+			public int compare(PeerAddress address1, PeerAddress address2) {
+				return Double.compare(scores.get(address2), scores.get(address1));
+			}
+		});
+	}
+
+	/**
+	 * The peer responded
+	 * 
+	 * @param address the address of the peer
+	 * @param rtt the time from sending the request until the response arrived
+	 */
+	public void recordResponse(PeerAddress address, long rtt) {
+		getOrCreate(address).recordResponse(rtt);
+	}
+
+	/**
+	 * The peer did not respond in time
+	 * 
+	 * @param address the address of the peer
+	 */
+	public void recordFailure(PeerAddress address) {
+		getOrCreate(address).recordFailure();
+	}
+
+	/**
+	 * Forgets the liveness of the peer, e.g. after it has been dropped
+	 * 
+	 * @param address the address of the peer
+	 */
+	public synchronized void remove(PeerAddress address) {
+		entries.remove(address);
+	}
+
+	/**
+	 * @return a copy of the table (e.g. to persist it)
+	 */
+	public synchronized Map<PeerAddress, PeerLiveness> getEntries() {
+		return new HashMap<PeerAddress, PeerLiveness>(entries);
+	}
+
+	/**
+	 * Adds the persisted entries. Entries that are already present are kept.
+	 * 
+	 * @param persisted the entries to add
+	 */
+	public synchronized void addEntries(Map<PeerAddress, PeerLiveness> persisted) {
+		for (Entry<PeerAddress, PeerLiveness> entry : persisted.entrySet()) {
+			if (!entries.containsKey(entry.getKey())) {
+				entries.put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+}
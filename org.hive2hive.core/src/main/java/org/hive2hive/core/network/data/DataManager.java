@@ -2,19 +2,30 @@ package org.hive2hive.core.network.data;
 
 import java.io.IOException;
 import java.security.KeyPair;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import net.tomp2p.dht.FutureDigest;
 import net.tomp2p.dht.FutureGet;
 import net.tomp2p.dht.FuturePut;
 import net.tomp2p.dht.FutureRemove;
 import net.tomp2p.dht.PeerDHT;
+import net.tomp2p.futures.BaseFuture;
+import net.tomp2p.futures.BaseFutureAdapter;
+import net.tomp2p.p2p.RequestP2PConfiguration;
 import net.tomp2p.peers.Number160;
 import net.tomp2p.peers.Number640;
 import net.tomp2p.storage.Data;
 
 import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.metrics.H2HMetrics;
 import org.hive2hive.core.model.BaseNetworkContent;
 import org.hive2hive.core.network.IPeerHolder;
 import org.hive2hive.core.network.data.futures.FutureChangeProtectionListener;
@@ -45,12 +56,19 @@ public class DataManager {
 	private final IH2HSerialize serializer;
 	private final IPeerHolder peerHolder;
 	private final IH2HEncryption encryption;
+	private final H2HMetrics metrics;
 	private final H2HSlowPeerFilter slowPeerFilter = new H2HSlowPeerFilter();
+	private final MetaFileCache metaFileCache = new MetaFileCache();
 
 	public DataManager(IPeerHolder peerHolder, IH2HSerialize serializer, IH2HEncryption encryption) {
+		this(peerHolder, serializer, encryption, new H2HMetrics(false));
+	}
+
+	public DataManager(IPeerHolder peerHolder, IH2HSerialize serializer, IH2HEncryption encryption, H2HMetrics metrics) {
 		this.peerHolder = peerHolder;
 		this.serializer = serializer;
 		this.encryption = encryption;
+		this.metrics = metrics;
 	}
 
 	public IH2HEncryption getEncryption() {
@@ -61,6 +79,17 @@ public class DataManager {
 		return serializer;
 	}
 
+	public H2HMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the cache of the decrypted meta files of this node
+	 */
+	public MetaFileCache getMetaFileCache() {
+		return metaFileCache;
+	}
+
 	private PeerDHT getPeer() {
 		return peerHolder.getPeer();
 	}
@@ -88,9 +117,11 @@ public class DataManager {
 		data = data.duplicateMeta();
 
 		// change the protection key through a put meta
-		return getPeer().put(parameters.getLKey()).domainKey(parameters.getDKey()).putMeta()
-				.data(parameters.getCKey(), data).versionKey(parameters.getVersionKey())
-				.addPostRoutingFilter(slowPeerFilter).keyPair(parameters.getProtectionKeys()).start();
+		long start = System.nanoTime();
+		return metered(H2HMetrics.DHT_CHANGE_PROTECTION, parameters, start, getPeer().put(parameters.getLKey())
+				.domainKey(parameters.getDKey()).putMeta().data(parameters.getCKey(), data)
+				.versionKey(parameters.getVersionKey()).addPostRoutingFilter(slowPeerFilter)
+				.keyPair(parameters.getProtectionKeys()).start());
 	}
 
 	public H2HPutStatus put(IParameters parameters) {
@@ -121,6 +152,7 @@ public class DataManager {
 
 	public FuturePut putUnblocked(IParameters parameters) {
 		logger.debug("Put. {}", parameters.toString());
+		long start = System.nanoTime();
 		try {
 			// serialize with custom serializer (TomP2P would use Java serializer)
 			Data data = new Data(serializer.serialize(parameters.getNetworkContent()));
@@ -129,6 +161,9 @@ public class DataManager {
 			if (parameters.getBasedOnKey() != null) {
 				data.addBasedOn(parameters.getBasedOnKey());
 			}
+			for (Number160 mergedKey : parameters.getMergedVersionKeys()) {
+				data.addBasedOn(mergedKey);
+			}
 			if (parameters.hasPrepareFlag()) {
 				data.prepareFlag();
 			}
@@ -141,32 +176,39 @@ public class DataManager {
 			// cache data
 			parameters.setData(data);
 
-			return getPeer().put(parameters.getLKey()).data(parameters.getCKey(), data).domainKey(parameters.getDKey())
-					.addPostRoutingFilter(slowPeerFilter).versionKey(parameters.getVersionKey())
-					.keyPair(parameters.getProtectionKeys()).start();
+			return metered(H2HMetrics.DHT_PUT, parameters, start,
+					getPeer().put(parameters.getLKey()).data(parameters.getCKey(), data).domainKey(parameters.getDKey())
+							.addPostRoutingFilter(slowPeerFilter).versionKey(parameters.getVersionKey())
+							.keyPair(parameters.getProtectionKeys()).start());
 		} catch (IOException e) {
 			logger.error("Put failed. {}.", parameters.toString(), e);
+			metrics.increment(metricName(H2HMetrics.DHT_PUT, parameters) + H2HMetrics.FAILED);
 			return null;
 		}
 	}
 
 	public FuturePut confirmUnblocked(IParameters parameters) {
 		logger.debug("Confirm. {}", parameters.toString());
+		long start = System.nanoTime();
 
 		Data data = new Data();
 		data.ttlSeconds(parameters.getTTL());
 		if (parameters.getBasedOnKey() != null) {
 			data.addBasedOn(parameters.getBasedOnKey());
 		}
+		for (Number160 mergedKey : parameters.getMergedVersionKeys()) {
+			data.addBasedOn(mergedKey);
+		}
 
 		// check if data to put is content protected
 		if (parameters.getProtectionKeys() != null) {
 			data.protectEntry(parameters.getProtectionKeys());
 		}
 
-		return getPeer().put(parameters.getLKey()).data(parameters.getCKey(), data).domainKey(parameters.getDKey())
-				.addPostRoutingFilter(slowPeerFilter).versionKey(parameters.getVersionKey())
-				.keyPair(parameters.getProtectionKeys()).putConfirm().start();
+		return metered(H2HMetrics.DHT_CONFIRM, parameters, start,
+				getPeer().put(parameters.getLKey()).data(parameters.getCKey(), data).domainKey(parameters.getDKey())
+						.addPostRoutingFilter(slowPeerFilter).versionKey(parameters.getVersionKey())
+						.keyPair(parameters.getProtectionKeys()).putConfirm().start());
 	}
 
 	public BaseNetworkContent get(IParameters parameters) {
@@ -185,10 +227,11 @@ public class DataManager {
 
 	public BaseNetworkContent getUserProfileTask(String userId) {
 		IParameters parameters = new Parameters().setLocationKey(userId).setDomainKey(H2HConstants.USER_PROFILE_TASK_DOMAIN);
-		FutureGet futureGet = getPeer().get(parameters.getLKey())
+		long start = System.nanoTime();
+		FutureGet futureGet = metered(H2HMetrics.DHT_GET, parameters, start, getPeer().get(parameters.getLKey())
 				.from(new Number640(parameters.getLKey(), parameters.getDKey(), Number160.ZERO, Number160.ZERO))
 				.to(new Number640(parameters.getLKey(), parameters.getDKey(), Number160.MAX_VALUE, Number160.MAX_VALUE))
-				.ascending().returnNr(1).addPostRoutingFilter(slowPeerFilter).start();
+				.ascending().returnNr(1).addPostRoutingFilter(slowPeerFilter).start());
 		FutureGetListener listener = new FutureGetListener(parameters, serializer);
 		futureGet.addListener(listener);
 		return listener.awaitAndGet();
@@ -196,22 +239,137 @@ public class DataManager {
 
 	public FutureGet getUnblocked(IParameters parameters) {
 		logger.debug("Get. {}", parameters.toString());
-		return getPeer().get(parameters.getLKey())
+		long start = System.nanoTime();
+		return metered(H2HMetrics.DHT_GET, parameters, start, getPeer().get(parameters.getLKey())
 				.from(new Number640(parameters.getLKey(), parameters.getDKey(), parameters.getCKey(), Number160.ZERO))
 				.to(new Number640(parameters.getLKey(), parameters.getDKey(), parameters.getCKey(), Number160.MAX_VALUE))
-				.descending().returnNr(1).fastGet(false).addPostRoutingFilter(slowPeerFilter).start();
+				.descending().returnNr(1).fastGet(false).addPostRoutingFilter(slowPeerFilter).start());
 	}
 
 	public FutureGet getVersionUnblocked(IParameters parameters) {
 		logger.debug("Get version. {}", parameters.toString());
-		return getPeer().get(parameters.getLKey()).domainKey(parameters.getDKey()).contentKey(parameters.getCKey())
-				.versionKey(parameters.getVersionKey()).addPostRoutingFilter(slowPeerFilter).start();
+		long start = System.nanoTime();
+		return metered(H2HMetrics.DHT_GET, parameters, start, getPeer().get(parameters.getLKey())
+				.domainKey(parameters.getDKey()).contentKey(parameters.getCKey()).versionKey(parameters.getVersionKey())
+				.addPostRoutingFilter(slowPeerFilter).start());
 	}
 
 	public FutureGet getLatestUnblocked(IParameters parameters) {
 		logger.debug("Get latest version. {}", parameters.toString());
-		return getPeer().get(parameters.getLKey()).domainKey(parameters.getDKey()).contentKey(parameters.getCKey())
-				.getLatest().withDigest().fastGet(false).addPostRoutingFilter(slowPeerFilter).start();
+		long start = System.nanoTime();
+		return metered(H2HMetrics.DHT_GET, parameters, start, getPeer().get(parameters.getLKey())
+				.domainKey(parameters.getDKey()).contentKey(parameters.getCKey()).getLatest().withDigest().fastGet(false)
+				.addPostRoutingFilter(slowPeerFilter).start());
+	}
+
+	/**
+	 * Gets the latest version together with the digest (blocking). The get returns as soon as
+	 * {@link H2HConstants#GET_LATEST_QUORUM} replicas agree on the latest version. If they do not within the
+	 * usual latency of such gets (see {@link H2HConstants#GET_HEDGE_PERCENTILE}), a hedged get to all replicas
+	 * is started and the first sufficient result is taken.
+	 * 
+	 * @param parameters the parameters of the content
+	 * @return the completed get
+	 */
+	public FutureGet getLatest(IParameters parameters) {
+		if (H2HConstants.GET_LATEST_QUORUM <= 0) {
+			FutureGet futureGet = getLatestUnblocked(parameters);
+			futureGet.awaitUninterruptibly(H2HConstants.AWAIT_NETWORK_OPERATION_MS);
+			return futureGet;
+		}
+
+		long hedgeDelay = getHedgeDelay(parameters);
+		final FutureGet quorumGet = getLatestQuorumUnblocked(parameters, H2HConstants.GET_LATEST_QUORUM);
+		if (quorumGet.awaitUninterruptibly(hedgeDelay) && hasQuorum(quorumGet, H2HConstants.GET_LATEST_QUORUM)) {
+			return quorumGet;
+		}
+
+		logger.debug("No quorum after {} ms. Hedging the get. {}", hedgeDelay, parameters.toString());
+		metrics.increment(metricName(H2HMetrics.DHT_GET_HEDGED, parameters));
+		final FutureGet fullGet = getLatestUnblocked(parameters);
+
+		// take whichever is first: the quorum or the answer of all replicas. A failed get only counts when the
+		// other one is done as well.
+		final CountDownLatch firstResult = new CountDownLatch(1);
+		quorumGet.addListener(new BaseFutureAdapter<FutureGet>() {
+			@Override
+			public void operationComplete(FutureGet completed) {
+				if (hasQuorum(completed, H2HConstants.GET_LATEST_QUORUM) || fullGet.isCompleted()) {
+					firstResult.countDown();
+				}
+			}
+		});
+		fullGet.addListener(new BaseFutureAdapter<FutureGet>() {
+			@Override
+			public void operationComplete(FutureGet completed) {
+				if (!completed.isFailed() || quorumGet.isCompleted()) {
+					firstResult.countDown();
+				}
+			}
+		});
+
+		try {
+			firstResult.await(H2HConstants.AWAIT_NETWORK_OPERATION_MS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			logger.warn("Interrupted while waiting for the latest version. {}", parameters.toString());
+			Thread.currentThread().interrupt();
+		}
+
+		if (quorumGet.isCompleted() && hasQuorum(quorumGet, H2HConstants.GET_LATEST_QUORUM)) {
+			return quorumGet;
+		} else if (fullGet.isFailed() && quorumGet.isCompleted() && !quorumGet.isFailed()) {
+			// better the answers of less replicas than none
+			return quorumGet;
+		}
+		return fullGet;
+	}
+
+	/**
+	 * Gets the latest version and the digest from the replicas until <code>quorum</code> of them answered.
+	 */
+	public FutureGet getLatestQuorumUnblocked(IParameters parameters, int quorum) {
+		logger.debug("Get latest version (quorum {}). {}", quorum, parameters.toString());
+		long start = System.nanoTime();
+		return metered(H2HMetrics.DHT_GET, parameters, start, getPeer().get(parameters.getLKey())
+				.domainKey(parameters.getDKey()).contentKey(parameters.getCKey()).getLatest().withDigest().fastGet(true)
+				.requestP2PConfiguration(new RequestP2PConfiguration(quorum, H2HConstants.REPLICATION_FACTOR, 0))
+				.addPostRoutingFilter(slowPeerFilter).start());
+	}
+
+	/**
+	 * Checks whether at least <code>quorum</code> replicas returned the newest version of all replicas.
+	 */
+	private static boolean hasQuorum(FutureGet futureGet, int quorum) {
+		if (futureGet.isFailed() || futureGet.rawData() == null) {
+			return false;
+		}
+
+		Map<Number160, Integer> votes = new HashMap<Number160, Integer>();
+		Number160 newest = null;
+		for (Map<Number640, Data> replica : futureGet.rawData().values()) {
+			if (replica == null || replica.isEmpty()) {
+				continue;
+			}
+			Number160 versionKey = Collections.max(replica.keySet()).versionKey();
+			Integer count = votes.get(versionKey);
+			votes.put(versionKey, count == null ? 1 : count + 1);
+			if (newest == null || versionKey.compareTo(newest) > 0) {
+				newest = versionKey;
+			}
+		}
+		return newest != null && votes.get(newest) >= quorum;
+	}
+
+	/**
+	 * The time to wait for the quorum before hedging, based on the latencies of the past gets of this content
+	 */
+	private long getHedgeDelay(IParameters parameters) {
+		long latency = metrics.getPercentile(metricName(H2HMetrics.DHT_GET, parameters),
+				H2HConstants.GET_HEDGE_PERCENTILE, H2HConstants.GET_HEDGE_MIN_SAMPLES);
+		if (latency < 0) {
+			return H2HConstants.GET_HEDGE_DEFAULT_DELAY_MS;
+		}
+		return Math.max(H2HConstants.GET_HEDGE_MIN_DELAY_MS, TimeUnit.MICROSECONDS.toMillis(latency));
 	}
 
 	public boolean remove(IParameters parameters) {
@@ -228,6 +386,37 @@ public class DataManager {
 		return listener.await();
 	}
 
+	/**
+	 * Removes all given entries (all versions) concurrently. At most
+	 * {@link H2HConstants#MAX_CONCURRENT_REMOVES} removes are in flight at the same time. This call blocks
+	 * until all removes are done.
+	 * 
+	 * @param parameters the entries to remove
+	 * @return the parameters of the entries that could not be removed (empty if all succeeded)
+	 */
+	public List<IParameters> removeBatch(List<IParameters> parameters) {
+		List<IParameters> failed = new ArrayList<IParameters>();
+		for (int start = 0; start < parameters.size(); start += H2HConstants.MAX_CONCURRENT_REMOVES) {
+			List<IParameters> batch = parameters.subList(start,
+					Math.min(start + H2HConstants.MAX_CONCURRENT_REMOVES, parameters.size()));
+
+			// start all removes of this batch before awaiting the first one
+			List<FutureRemoveListener> listeners = new ArrayList<FutureRemoveListener>(batch.size());
+			for (IParameters param : batch) {
+				FutureRemoveListener listener = new FutureRemoveListener(param, false, this);
+				removeUnblocked(param).addListener(listener);
+				listeners.add(listener);
+			}
+
+			for (int i = 0; i < listeners.size(); i++) {
+				if (!listeners.get(i).await()) {
+					failed.add(batch.get(i));
+				}
+			}
+		}
+		return failed;
+	}
+
 	public boolean removeUserProfileTask(String userId, Number160 contentKey, KeyPair protectionKey) {
 		IParameters parameters = new Parameters().setLocationKey(userId).setDomainKey(H2HConstants.USER_PROFILE_TASK_DOMAIN)
 				.setContentKey(contentKey).setProtectionKeys(protectionKey);
@@ -239,17 +428,19 @@ public class DataManager {
 
 	public FutureRemove removeUnblocked(IParameters parameters) {
 		logger.debug("Remove. {}", parameters.toString());
-		return getPeer().remove(parameters.getLKey())
+		long start = System.nanoTime();
+		return metered(H2HMetrics.DHT_REMOVE, parameters, start, getPeer().remove(parameters.getLKey())
 				.from(new Number640(parameters.getLKey(), parameters.getDKey(), parameters.getCKey(), Number160.ZERO))
 				.to(new Number640(parameters.getLKey(), parameters.getDKey(), parameters.getCKey(), Number160.MAX_VALUE))
-				.keyPair(parameters.getProtectionKeys()).addPostRoutingFilter(slowPeerFilter).start();
+				.keyPair(parameters.getProtectionKeys()).addPostRoutingFilter(slowPeerFilter).start());
 	}
 
 	public FutureRemove removeVersionUnblocked(IParameters parameters) {
 		logger.debug("Remove version. {}", parameters.toString());
-		return getPeer().remove(parameters.getLKey()).domainKey(parameters.getDKey()).contentKey(parameters.getCKey())
-				.versionKey(parameters.getVersionKey()).keyPair(parameters.getProtectionKeys())
-				.addPostRoutingFilter(slowPeerFilter).start();
+		long start = System.nanoTime();
+		return metered(H2HMetrics.DHT_REMOVE, parameters, start, getPeer().remove(parameters.getLKey())
+				.domainKey(parameters.getDKey()).contentKey(parameters.getCKey()).versionKey(parameters.getVersionKey())
+				.keyPair(parameters.getProtectionKeys()).addPostRoutingFilter(slowPeerFilter).start());
 	}
 
 	public NavigableMap<Number640, Collection<Number160>> getDigestLatest(IParameters parameters) {
@@ -261,18 +452,49 @@ public class DataManager {
 
 	public FutureDigest getDigestLatestUnblocked(IParameters parameters) {
 		logger.debug("Get digest (latest). {}", parameters.toString());
-		return getPeer().digest(parameters.getLKey())
+		long start = System.nanoTime();
+		return metered(H2HMetrics.DHT_DIGEST, parameters, start, getPeer().digest(parameters.getLKey())
 				.from(new Number640(parameters.getLKey(), parameters.getDKey(), parameters.getCKey(), Number160.ZERO))
 				.to(new Number640(parameters.getLKey(), parameters.getDKey(), parameters.getCKey(), Number160.MAX_VALUE))
-				.descending().returnNr(1).fastGet(false).addPostRoutingFilter(slowPeerFilter).start();
+				.descending().returnNr(1).fastGet(false).addPostRoutingFilter(slowPeerFilter).start());
 	}
 
 	public FutureDigest getDigestUnblocked(IParameters parameters) {
 		logger.debug("Get digest. {}", parameters.toString());
-		return getPeer().digest(parameters.getLKey())
+		long start = System.nanoTime();
+		return metered(H2HMetrics.DHT_DIGEST, parameters, start, getPeer().digest(parameters.getLKey())
 				.from(new Number640(parameters.getLKey(), parameters.getDKey(), parameters.getCKey(), Number160.ZERO))
 				.to(new Number640(parameters.getLKey(), parameters.getDKey(), parameters.getCKey(), Number160.MAX_VALUE))
-				.fastGet(false).addPostRoutingFilter(slowPeerFilter).start();
+				.fastGet(false).addPostRoutingFilter(slowPeerFilter).start());
+	}
 
+	/**
+	 * Records the duration of the operation when the future completes
+	 */
+	private <T extends BaseFuture> T metered(String prefix, IParameters parameters, final long start, T future) {
+		if (!metrics.isEnabled()) {
+			return future;
+		}
+
+		final String name = metricName(prefix, parameters);
+		future.addListener(new BaseFutureAdapter<T>() {
+			@Override
+			public void operationComplete(T completed) {
+				metrics.recordLatency(name, start);
+				if (completed.isFailed()) {
+					metrics.increment(name + H2HMetrics.FAILED);
+				}
+			}
+		});
+		return future;
+	}
+
+	private static String metricName(String prefix, IParameters parameters) {
+		if (parameters.getContentKey() != null) {
+			return prefix + parameters.getContentKey();
+		} else if (parameters.getDomainKey() != null) {
+			return prefix + parameters.getDomainKey();
+		}
+		return prefix + "unknown";
 	}
 }
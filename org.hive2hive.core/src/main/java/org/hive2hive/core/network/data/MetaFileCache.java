@@ -0,0 +1,175 @@
+package org.hive2hive.core.network.data;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.tomp2p.peers.Number160;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.model.versioned.BaseMetaFile;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+
+/**
+ * A bounded cache of decrypted meta files, such that repeated operations on the same file do not need to fetch
+ * and decrypt its meta file again. The meta files are identified by the public key of the file. An entry is
+ * only valid as long as its version is the latest version in the DHT, which has to be checked by the caller
+ * (see {@link CachedMetaFile#getVersionKey()}). When the cache is full, the least recently used meta files are
+ * evicted.<br>
+ * The encrypted meta files are persisted between two sessions (see {@link #getSnapshot()} and
+ * {@link #seed(Map)}). Seeded entries are not decrypted yet, the caller decrypts them with the private key of
+ * the file. The decrypted meta files and the private keys are never persisted.
+ *
+ * @author Nico
+ */
+public class MetaFileCache {
+
+	private final LinkedHashMap<PublicKey, CachedMetaFile> entries;
+
+	public MetaFileCache() {
+		this(H2HConstants.META_FILE_CACHE_SIZE);
+	}
+
+	/**
+	 * Creates a meta file cache
+	 *
+	 * @param capacity the maximum number of cached meta files
+	 */
+	public MetaFileCache(final int capacity) {
+		this.entries = new LinkedHashMap<PublicKey, CachedMetaFile>(16, 0.75f, true) {
+			private static final long serialVersionUID = 2896312738195743104L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<PublicKey, CachedMetaFile> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached meta file. A decrypted entry is only returned to callers knowing the private key of
+	 * the file. A seeded entry is returned to every caller, but it is still encrypted (see
+	 * {@link CachedMetaFile#isDecrypted()}).
+	 *
+	 * @param fileKey the public key of the file
+	 * @param decryptionKey the private key of the file
+	 * @return the cached entry or <code>null</code> if there is none
+	 */
+	public synchronized CachedMetaFile get(PublicKey fileKey, PrivateKey decryptionKey) {
+		CachedMetaFile cached = entries.get(fileKey);
+		if (cached == null || (cached.isDecrypted() && !cached.decryptionKey.equals(decryptionKey))) {
+			return null;
+		}
+		return cached;
+	}
+
+	/**
+	 * Adds or replaces the meta file of a file
+	 *
+	 * @param fileKey the public key of the file
+	 * @param decryptionKey the private key of the file
+	 * @param versionKey the version of the meta file
+	 * @param encrypted the meta file as stored in the DHT
+	 * @param serialized the serialized (decrypted) meta file
+	 */
+	public synchronized void put(PublicKey fileKey, PrivateKey decryptionKey, Number160 versionKey,
+			HybridEncryptedContent encrypted, byte[] serialized) {
+		entries.put(fileKey, new CachedMetaFile(decryptionKey, versionKey, encrypted, serialized));
+	}
+
+	/**
+	 * Removes the meta file of a file, e.g. because it has been updated or deleted
+	 *
+	 * @param fileKey the public key of the file
+	 */
+	public synchronized void invalidate(PublicKey fileKey) {
+		entries.remove(fileKey);
+	}
+
+	/**
+	 * Returns the encrypted meta files to persist them until the next session.
+	 *
+	 * @return the encrypted meta files by the public key of their file, the least recently used first
+	 */
+	public synchronized LinkedHashMap<PublicKey, HybridEncryptedContent> getSnapshot() {
+		LinkedHashMap<PublicKey, HybridEncryptedContent> snapshot = new LinkedHashMap<PublicKey, HybridEncryptedContent>();
+		for (Entry<PublicKey, CachedMetaFile> entry : entries.entrySet()) {
+			if (entry.getValue().encrypted != null) {
+				snapshot.put(entry.getKey(), entry.getValue().encrypted);
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Adds the encrypted meta files of the last session. Meta files that are already cached are kept.
+	 *
+	 * @param snapshot the encrypted meta files by the public key of their file (see {@link #getSnapshot()}),
+	 *            can be <code>null</code>
+	 */
+	public synchronized void seed(Map<PublicKey, HybridEncryptedContent> snapshot) {
+		if (snapshot == null) {
+			return;
+		}
+
+		for (Entry<PublicKey, HybridEncryptedContent> entry : snapshot.entrySet()) {
+			if (!entries.containsKey(entry.getKey())) {
+				entries.put(entry.getKey(), new CachedMetaFile(null, entry.getValue().getVersionKey(), entry.getValue(),
+						null));
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * A cached {@link BaseMetaFile}. It is kept serialized such that every caller gets its own instance which
+	 * can be modified.
+	 */
+	public static class CachedMetaFile {
+
+		private final PrivateKey decryptionKey;
+		private final Number160 versionKey;
+		private final HybridEncryptedContent encrypted;
+		private final byte[] serialized;
+
+		private CachedMetaFile(PrivateKey decryptionKey, Number160 versionKey, HybridEncryptedContent encrypted,
+				byte[] serialized) {
+			this.decryptionKey = decryptionKey;
+			this.versionKey = versionKey;
+			this.encrypted = encrypted;
+			this.serialized = serialized;
+		}
+
+		public Number160 getVersionKey() {
+			return versionKey;
+		}
+
+		public HybridEncryptedContent getEncrypted() {
+			return encrypted;
+		}
+
+		/**
+		 * @return the serialized meta file or <code>null</code> if the entry has not been decrypted yet
+		 */
+		public byte[] getSerialized() {
+			return serialized;
+		}
+
+		/**
+		 * @return <code>false</code> if the entry has been seeded from the last session and still needs to be
+		 *         decrypted
+		 */
+		public boolean isDecrypted() {
+			return serialized != null;
+		}
+	}
+}
@@ -3,7 +3,10 @@ package org.hive2hive.core.network.data;
 import java.security.KeyPair;
 import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.crypto.SecretKey;
@@ -13,8 +16,11 @@ import org.hive2hive.core.exceptions.AbortModifyException;
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.PutFailedException;
 import org.hive2hive.core.exceptions.VersionForkAfterPutException;
+import org.hive2hive.core.metrics.H2HMetrics;
 import org.hive2hive.core.model.versioned.UserProfile;
 import org.hive2hive.core.network.data.vdht.AESEncryptedVersionManager;
+import org.hive2hive.core.network.data.vdht.UserProfileMergeStrategy;
+import org.hive2hive.core.network.data.vdht.VersionSnapshot;
 import org.hive2hive.core.security.PasswordUtil;
 import org.hive2hive.core.security.UserCredentials;
 import org.slf4j.Logger;
@@ -36,6 +42,7 @@ public class UserProfileManager {
 
 	private final AESEncryptedVersionManager<UserProfile> versionManager;
 	private final UserCredentials credentials;
+	private final H2HMetrics metrics;
 
 	private final Object queueWaiter = new Object();
 	private final Queue<QueueEntry> readOnlyQueue = new ConcurrentLinkedQueue<QueueEntry>();
@@ -48,15 +55,49 @@ public class UserProfileManager {
 	private Thread workerThread;
 
 	public UserProfileManager(DataManager dataManager, UserCredentials credentials) {
-		this.credentials = credentials;
+		this(dataManager, credentials, deriveKey(credentials));
+	}
 
-		SecretKey passwordKey = PasswordUtil.generateAESKeyFromPassword(credentials.getPassword(), credentials.getPin(),
-				H2HConstants.KEYLENGTH_USER_PROFILE);
+	/**
+	 * Creates a user profile manager whose key may still be derived in the background. Reading the user profile
+	 * already fetches it from the network and only waits for the key to decrypt it.
+	 * 
+	 * @param dataManager the data manager
+	 * @param credentials the credentials of the user
+	 * @param passwordKey the (future) key derived from the credentials, see {@link #createKeyDerivation(UserCredentials)}
+	 */
+	public UserProfileManager(DataManager dataManager, UserCredentials credentials, Future<SecretKey> passwordKey) {
+		this.credentials = credentials;
+		this.metrics = dataManager.getMetrics();
 		this.versionManager = new AESEncryptedVersionManager<UserProfile>(dataManager, passwordKey,
 				credentials.getProfileLocationKey(), H2HConstants.USER_PROFILE);
+		this.versionManager.setMergeStrategy(new UserProfileMergeStrategy());
 		startQueueWorker();
 	}
 
+	/**
+	 * Creates a task deriving the key which encrypts the user profile. The (expensive) derivation happens when
+	 * the task is run.
+	 * 
+	 * @param credentials the credentials of the user
+	 * @return the task deriving the key
+	 */
+	public static FutureTask<SecretKey> createKeyDerivation(final UserCredentials credentials) {
+		return new FutureTask<SecretKey>(new Callable<SecretKey>() {
+			@Override
+			public SecretKey call() {
+				return PasswordUtil.generateAESKeyFromPassword(credentials.getPassword(), credentials.getPin(),
+						H2HConstants.KEYLENGTH_USER_PROFILE);
+			}
+		});
+	}
+
+	private static Future<SecretKey> deriveKey(UserCredentials credentials) {
+		FutureTask<SecretKey> derivation = createKeyDerivation(credentials);
+		derivation.run();
+		return derivation;
+	}
+
 	public void stopQueueWorker() {
 		if (!running.get()) {
 			logger.warn("The user profile manager has already been shutdown");
@@ -90,6 +131,32 @@ public class UserProfileManager {
 		return credentials;
 	}
 
+	/**
+	 * @return the metrics of the node this profile manager belongs to
+	 */
+	public H2HMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return a snapshot of the latest known (encrypted) user profile to persist for the next session or
+	 *         <code>null</code> if none is cached
+	 */
+	public VersionSnapshot getSnapshot() {
+		return versionManager.getSnapshot();
+	}
+
+	/**
+	 * Seeds the cache with the user profile of the last session. Reading the user profile then only fetches it
+	 * if the network holds a newer version.
+	 * 
+	 * @param snapshot the persisted snapshot
+	 * @return <code>true</code> if the snapshot belongs to this user
+	 */
+	public boolean seed(VersionSnapshot snapshot) {
+		return versionManager.seed(snapshot);
+	}
+
 	/**
 	 * Gets the user profile (read-only). The call blocks until the most recent profile is here.
 	 * 
@@ -98,13 +165,19 @@ public class UserProfileManager {
 	 */
 	public UserProfile readUserProfile() throws GetFailedException {
 		QueueEntry entry = new QueueEntry();
+		long start = System.nanoTime();
 		readOnlyQueue.add(entry);
 
 		synchronized (queueWaiter) {
 			queueWaiter.notify();
 		}
 
-		UserProfile profile = entry.getUserProfile();
+		UserProfile profile;
+		try {
+			profile = entry.getUserProfile();
+		} finally {
+			metrics.recordLatency(H2HMetrics.PROFILE_QUEUE_WAIT, start);
+		}
 		if (profile == null) {
 			throw new GetFailedException("User Profile not found");
 		}
@@ -114,6 +187,8 @@ public class UserProfileManager {
 	/**
 	 * Gets the user profile and allows to modify it. The call blocks until
 	 * {@link IUserProfileModification#modifyUserProfile(UserProfile)} is called or an exception is thrown.
+	 * Version forks are merged by the version manager. If they cannot be merged, the modification is repeated
+	 * on the latest profile after a back off, a limited number of times.
 	 * 
 	 * @param pid the process identifier
 	 * @param modifier the implementation where the modification is done
@@ -123,7 +198,36 @@ public class UserProfileManager {
 	 */
 	public void modifyUserProfile(String pid, IUserProfileModification modifier)
 			throws GetFailedException, PutFailedException, AbortModifyException {
+		int forkCounter = 0;
+		int forkWaitTime = new Random().nextInt(1000) + 500;
+		while (true) {
+			try {
+				modifyAndPut(pid, modifier);
+				return;
+			} catch (VersionForkAfterPutException e) {
+				// the version manager could not merge the fork (e.g. conflicting changes)
+				if (forkCounter++ >= FORK_LIMIT) {
+					logger.warn("Giving up after {} version forks that could not be merged.", forkCounter);
+					throw e;
+				}
+				logger.warn("Version fork after put could not be merged. Retrying the modification.");
+
+				// exponential back off waiting and retry to modify the latest user profile
+				try {
+					Thread.sleep(forkWaitTime);
+				} catch (InterruptedException e1) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+				forkWaitTime = forkWaitTime * 2;
+			}
+		}
+	}
+
+	private void modifyAndPut(String pid, IUserProfileModification modifier) throws GetFailedException,
+			PutFailedException, AbortModifyException {
 		PutQueueEntry entry = new PutQueueEntry(pid);
+		long start = System.nanoTime();
 		modifyQueue.add(entry);
 
 		synchronized (queueWaiter) {
@@ -133,6 +237,7 @@ public class UserProfileManager {
 		UserProfile profile;
 		try {
 			profile = entry.getUserProfile();
+			metrics.recordLatency(H2HMetrics.PROFILE_QUEUE_WAIT, start);
 			if (profile == null) {
 				throw new GetFailedException("User Profile not found");
 			}
@@ -144,45 +249,25 @@ public class UserProfileManager {
 			throw e;
 		}
 
-		boolean retryPut = true;
-		int forkCounter = 0;
-		int forkWaitTime = new Random().nextInt(1000) + 500;
-		while (retryPut) {
-			// user starts modifying it
+		// user starts modifying it
+		long modifyStart = System.nanoTime();
+		try {
 			modifier.modifyUserProfile(profile);
+		} finally {
+			metrics.recordLatency(H2HMetrics.PROFILE_MODIFY, modifyStart);
+		}
 
-			try {
-				// put the updated user profile
-				if (protectionKeys == null) {
-					protectionKeys = profile.getProtectionKeys();
-				}
-
-				if (modifying != null && modifying.getPid().equals(pid)) {
-					modifying.setUserProfile(profile);
-					modifying.readyToPut();
-					modifying.waitForPut();
-
-					// successfully put the user profile
-					retryPut = false;
-				} else {
-					throw new PutFailedException("Not allowed to put anymore");
-				}
-			} catch (VersionForkAfterPutException e) {
-				if (forkCounter++ > FORK_LIMIT) {
-					logger.warn("Ignoring fork after {} rejects and retries.", forkCounter);
-					retryPut = false;
-				} else {
-					logger.warn("Version fork after put detected. Rejecting and retrying put.");
+		// put the updated user profile, version forks are merged by the version manager
+		if (protectionKeys == null) {
+			protectionKeys = profile.getProtectionKeys();
+		}
 
-					// exponential back off waiting and retry to update the user profile
-					try {
-						Thread.sleep(forkWaitTime);
-					} catch (InterruptedException e1) {
-						// ignore
-					}
-					forkWaitTime = forkWaitTime * 2;
-				}
-			}
+		if (modifying != null && modifying.getPid().equals(pid)) {
+			modifying.setUserProfile(profile);
+			modifying.readyToPut();
+			modifying.waitForPut();
+		} else {
+			throw new PutFailedException("Not allowed to put anymore");
 		}
 	}
 
@@ -254,7 +339,9 @@ public class UserProfileManager {
 						logger.trace("Process {} made modifcations and uploads them now.", modifying.getPid());
 						try {
 							// put updated user profile version into network
+							long putStart = System.nanoTime();
 							versionManager.put(userProfile, protectionKeys);
+							metrics.recordLatency(H2HMetrics.PROFILE_PUT, putStart);
 							modifying.notifyPut();
 
 							// notify all read only processes with newest version
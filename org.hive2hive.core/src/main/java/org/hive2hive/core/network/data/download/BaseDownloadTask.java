@@ -5,10 +5,12 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -18,23 +20,43 @@ import org.hive2hive.core.events.framework.interfaces.IFileEventGenerator;
 import org.hive2hive.core.file.FileChunkUtil;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.network.data.PublicKeyManager;
+import org.hive2hive.core.security.EncryptionUtil;
+import org.hive2hive.core.security.HashUtil;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
 import org.hive2hive.processframework.interfaces.IProcessComponent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * A download of a single file. The chunks are downloaded into a temporary folder whose name is derived from
+ * the destination and the chunks to download. The chunks that are already downloaded are tracked in a
+ * completion bitmap in the temporary folder. Thus, a download of the same file (version) can be resumed
+ * after a restart without fetching the finished chunks again. While a download is running, its temporary
+ * folder is claimed, such that a concurrent download of the same file uses a separate folder. The folder is
+ * deleted when the download finishes or is aborted.
+ * 
+ * @author Nico
+ */
 public abstract class BaseDownloadTask implements Serializable, IFileEventGenerator {
 
 	private static final long serialVersionUID = 1580305288943800375L;
 	private static final Logger logger = LoggerFactory.getLogger(BaseDownloadTask.class);
+	private static final String PROGRESS_FILE_NAME = ".progress";
+
+	// the temporary folders of the running downloads
+	private static final Set<File> claimedFolders = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
 
 	private final List<MetaChunk> metaChunks;
 	private final File destination;
+	private final String downloadId;
 	private final File tempFolder;
+	private final File progressFile;
 	private final PublicKeyManager keyManager;
 	protected final EventBus eventBus;
 
 	private final File[] downloadedChunks;
+	private final long[] chunkLengths;
+	private final BitSet completed;
 	// when the download has finished
 	private final CountDownLatch finishedLatch;
 	private final Set<IDownloadListener> listeners;
@@ -42,6 +64,11 @@ public abstract class BaseDownloadTask implements Serializable, IFileEventGenera
 	private final AtomicBoolean aborted;
 	private String reason;
 
+	// explicitly requested downloads are scheduled before others
+	private volatile boolean prioritized;
+	// the size of the file in bytes or -1 if unknown
+	private volatile long fileSize = -1;
+
 	public BaseDownloadTask(List<MetaChunk> metaChunks, File destination, EventBus eventBus, PublicKeyManager keyManager) {
 		this.metaChunks = metaChunks;
 		this.destination = destination;
@@ -53,16 +80,101 @@ public abstract class BaseDownloadTask implements Serializable, IFileEventGenera
 
 		// init array as null
 		this.downloadedChunks = new File[metaChunks.size()];
+		this.chunkLengths = new long[metaChunks.size()];
 		for (int i = 0; i < downloadedChunks.length; i++) {
 			downloadedChunks[i] = null;
 		}
 
-		// create the download folder
-		String folderName = destination.getName() + "-" + UUID.randomUUID().toString();
-		tempFolder = new File(FileUtils.getTempDirectory(), folderName);
-		if (!tempFolder.mkdirs()) {
+		// create the download folder. The name is deterministic such that a restarted download finds the
+		// already downloaded parts again
+		downloadId = createDownloadId(metaChunks, destination);
+		tempFolder = claimTempFolder(destination.getName() + "-" + downloadId);
+		progressFile = new File(tempFolder, PROGRESS_FILE_NAME);
+		if (!tempFolder.exists() && !tempFolder.mkdirs()) {
 			logger.warn("Cannot create temporary download folder {}", tempFolder.getAbsolutePath());
 		}
+
+		this.completed = readProgress();
+	}
+
+	/**
+	 * Creates an id that is unique for the destination and the chunks to download.
+	 */
+	private static String createDownloadId(List<MetaChunk> metaChunks, File destination) {
+		StringBuilder builder = new StringBuilder(destination.getAbsolutePath());
+		for (MetaChunk metaChunk : metaChunks) {
+			builder.append(metaChunk.getChunkId()).append(metaChunk.getIndex());
+			if (metaChunk.getChunkHash() != null) {
+				builder.append(EncryptionUtil.byteToHex(metaChunk.getChunkHash()));
+			}
+		}
+		return EncryptionUtil.byteToHex(HashUtil.hash(builder.toString().getBytes()));
+	}
+
+	/**
+	 * Claims the temporary folder with the given name. If it is used by another running download of the same
+	 * file, a numbered folder is claimed instead.
+	 */
+	private static File claimTempFolder(String folderName) {
+		File folder = new File(FileUtils.getTempDirectory(), folderName);
+		for (int i = 1; !claimedFolders.add(folder); i++) {
+			folder = new File(FileUtils.getTempDirectory(), folderName + "-" + i);
+		}
+		return folder;
+	}
+
+	/**
+	 * Releases the temporary folder such that another download of the same file can use it. The downloaded
+	 * parts are kept.
+	 */
+	protected void releaseTempFolder() {
+		claimedFolders.remove(tempFolder);
+	}
+
+	/**
+	 * Deletes the downloaded parts and the progress bitmap and releases the temporary folder
+	 */
+	private synchronized void deleteTempFolder() {
+		if (tempFolder.exists() && !FileUtils.deleteQuietly(tempFolder)) {
+			logger.warn("Couldn't delete temporary download folder '{}'.", tempFolder);
+		}
+		releaseTempFolder();
+	}
+
+	/**
+	 * Reads the completion bitmap of a previous run and marks all chunks as downloaded whose part still
+	 * exists in the temporary folder.
+	 */
+	private BitSet readProgress() {
+		BitSet progress = new BitSet(downloadedChunks.length);
+		if (!progressFile.exists()) {
+			return progress;
+		}
+
+		try {
+			BitSet stored = BitSet.valueOf(FileUtils.readFileToByteArray(progressFile));
+			for (int i = stored.nextSetBit(0); i >= 0 && i < downloadedChunks.length; i = stored.nextSetBit(i + 1)) {
+				File filePart = getChunkFile(i);
+				if (filePart.exists()) {
+					downloadedChunks[i] = filePart;
+					chunkLengths[i] = filePart.length();
+					progress.set(i);
+				}
+			}
+			logger.debug("Resuming download of file {}. {} of {} chunks are already downloaded.", getDestinationName(),
+					progress.cardinality(), downloadedChunks.length);
+		} catch (IOException e) {
+			logger.warn("Cannot read the download progress of file {}. Downloading all chunks.", getDestinationName());
+		}
+		return progress;
+	}
+
+	private void writeProgress() {
+		try {
+			FileUtils.writeByteArrayToFile(progressFile, completed.toByteArray());
+		} catch (IOException e) {
+			logger.warn("Cannot persist the download progress of file {}.", getDestinationName());
+		}
 	}
 
 	/**
@@ -81,6 +193,47 @@ public abstract class BaseDownloadTask implements Serializable, IFileEventGenera
 		return openChunks;
 	}
 
+	/**
+	 * @return the meta data of all chunks of this file
+	 */
+	public List<MetaChunk> getMetaChunks() {
+		return metaChunks;
+	}
+
+	/**
+	 * Returns the length of a downloaded chunk.
+	 * 
+	 * @param chunkIndex the index of the chunk
+	 * @return the number of bytes of the chunk or 0 if not downloaded yet
+	 */
+	public long getChunkLength(int chunkIndex) {
+		return chunkLengths[chunkIndex];
+	}
+
+	/**
+	 * @return the size of the file in bytes or -1 if unknown
+	 */
+	public long getFileSize() {
+		return fileSize;
+	}
+
+	/**
+	 * Sets the size of the file, which is used to schedule smaller files first. This must be set before
+	 * submitting the task.
+	 * 
+	 * @param fileSize the size of the file in bytes
+	 */
+	public void setFileSize(long fileSize) {
+		this.fileSize = fileSize;
+	}
+
+	/**
+	 * @return the total number of chunks of this file
+	 */
+	public int getNumberOfChunks() {
+		return metaChunks.size();
+	}
+
 	public File getDestination() {
 		return destination;
 	}
@@ -95,6 +248,40 @@ public abstract class BaseDownloadTask implements Serializable, IFileEventGenera
 		return tempFolder;
 	}
 
+	/**
+	 * @return an id that is unique for the destination and the chunks (version) to download
+	 */
+	String getDownloadId() {
+		return downloadId;
+	}
+
+	/**
+	 * Returns the temporary file where the chunk with the given index is stored
+	 * 
+	 * @param chunkIndex the index of the chunk
+	 * @return the file part in the temporary folder
+	 */
+	public File getChunkFile(int chunkIndex) {
+		return new File(tempFolder, getDestinationName() + "-" + chunkIndex);
+	}
+
+	/**
+	 * @return whether this download should be scheduled before others
+	 */
+	public boolean isPrioritized() {
+		return prioritized;
+	}
+
+	/**
+	 * Marks this download as explicitly requested. Prioritized downloads are scheduled before the background
+	 * downloads. This must be set before submitting the task.
+	 * 
+	 * @param prioritized whether the download is prioritized
+	 */
+	public void setPrioritized(boolean prioritized) {
+		this.prioritized = prioritized;
+	}
+
 	public void abortDownload(String reason) {
 		if (aborted.get()) {
 			// already aborted
@@ -105,6 +292,8 @@ public abstract class BaseDownloadTask implements Serializable, IFileEventGenera
 
 		logger.error("Download of file {} aborted. Reason: {}", getDestinationName(), reason);
 		this.reason = reason;
+		// the parts are not needed anymore. Only a download that is still queued is resumed.
+		deleteTempFolder();
 
 		// notify listeners
 		for (IDownloadListener listener : listeners) {
@@ -136,9 +325,25 @@ public abstract class BaseDownloadTask implements Serializable, IFileEventGenera
 	 * @param filePart the file holding the content of the chunk
 	 */
 	public synchronized void markDownloaded(int chunkIndex, File filePart) {
+		if (isAborted()) {
+			// the chunk was in flight while aborting, remove the part and the folder written with it
+			deleteTempFolder();
+			return;
+		}
+
 		logger.debug("Successfully downloaded chunk {} of file {}", chunkIndex, getDestinationName());
 		downloadedChunks[chunkIndex] = filePart;
+		chunkLengths[chunkIndex] = filePart.length();
+		completed.set(chunkIndex);
+		writeProgress();
+		finishIfComplete();
+	}
 
+	/**
+	 * Reassembles the file if all chunks are available. This is also required when all chunks have already
+	 * been downloaded in a previous run.
+	 */
+	synchronized void finishIfComplete() {
 		if (isAborted()) {
 			// no need for further processing
 			return;
@@ -164,9 +369,13 @@ public abstract class BaseDownloadTask implements Serializable, IFileEventGenera
 				}
 
 				// delete the temporary download folder
+				if (!progressFile.delete()) {
+					logger.warn("Couldn't delete the download progress file '{}'.", progressFile);
+				}
 				if (!tempFolder.delete()) {
 					logger.warn("Couldn't delete temporary download folder '{}'.", tempFolder);
 				}
+				releaseTempFolder();
 
 				// release the lock
 				finishedLatch.countDown();
@@ -0,0 +1,398 @@
+package org.hive2hive.core.network.data.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.security.EncryptionUtil;
+import org.hive2hive.core.security.HashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A local, content-addressed cache for the data of chunks. The chunks are identified by the hash of their
+ * {@link MetaChunk}. The cache consists of two parts:
+ * <ul>
+ * <li>A bounded on-disk store holding the data of recently downloaded chunks. When the size budget is
+ * exceeded, the least recently used chunks are evicted.</li>
+ * <li>An index of chunks that are part of files in the user's root. The data is read from the file directly,
+ * as long as the file has not been modified since it has been indexed.</li>
+ * </ul>
+ * Thus, a chunk that is already available locally (e.g. a moved or copied file, an older version or another
+ * file with the same content) does not need to be downloaded and decrypted again.<br>
+ * The stored chunks are decrypted, therefore the directory and the chunks are only accessible by the owner.
+ * If the permissions cannot be restricted, no chunks are stored. Every chunk is verified against the hash of
+ * its {@link MetaChunk} when it is added and when it is read. All nodes using the same directory should share
+ * one instance (see {@link #getShared(File, long)}), such that they share the size budget. A cache without a
+ * directory only serves the chunks of the indexed local files.
+ * 
+ * @author Nico
+ */
+public class ChunkCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(ChunkCache.class);
+	private static final Set<PosixFilePermission> OWNER_DIRECTORY = EnumSet.of(PosixFilePermission.OWNER_READ,
+			PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE);
+	private static final Set<PosixFilePermission> OWNER_FILE = EnumSet.of(PosixFilePermission.OWNER_READ,
+			PosixFilePermission.OWNER_WRITE);
+
+	// the caches in use, by their directory
+	private static final Map<File, ChunkCache> sharedCaches = new HashMap<File, ChunkCache>();
+
+	private final File directory;
+	private final long maxSize;
+	// whether chunks can be stored in the directory
+	private boolean storeEnabled;
+
+	// key is the hex-encoded chunk hash, value the size of the stored chunk. Iteration is in access order
+	private final LinkedHashMap<String, Long> storedChunks;
+	private final LinkedHashMap<String, ChunkLocation> localIndex;
+	private long currentSize;
+
+	/**
+	 * Returns the cache of the given directory. The cache is created at the first call, later calls return
+	 * the same instance.
+	 * 
+	 * @param directory the directory where the chunks are stored
+	 * @param maxSize the maximum number of bytes stored in the directory (only used at creation)
+	 * @return the shared cache of the directory
+	 */
+	public static ChunkCache getShared(File directory, long maxSize) {
+		synchronized (sharedCaches) {
+			ChunkCache cache = sharedCaches.get(directory.getAbsoluteFile());
+			if (cache == null) {
+				cache = new ChunkCache(directory, maxSize);
+				sharedCaches.put(directory.getAbsoluteFile(), cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Creates a chunk cache
+	 * 
+	 * @param directory the directory where the chunks are stored or <code>null</code> to store no chunks
+	 * @param maxSize the maximum number of bytes stored in the directory
+	 */
+	public ChunkCache(File directory, long maxSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+		this.storedChunks = new LinkedHashMap<String, Long>(16, 0.75f, true);
+		this.localIndex = new LinkedHashMap<String, ChunkLocation>(16, 0.75f, true) {
+			private static final long serialVersionUID = -5230573496227883283L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<String, ChunkLocation> eldest) {
+				return size() > H2HConstants.CHUNK_CACHE_MAX_INDEX_ENTRIES;
+			}
+		};
+		this.currentSize = 0;
+
+		loadDirectory();
+	}
+
+	/**
+	 * Adds the chunks that survived a restart. The oldest ones are evicted first.
+	 */
+	private void loadDirectory() {
+		if (directory == null) {
+			logger.debug("No chunk cache directory configured. No chunks are stored.");
+			return;
+		} else if (!directory.exists() && !directory.mkdirs()) {
+			logger.warn("Cannot create the chunk cache directory {}", directory);
+			return;
+		} else if (!restrictToOwner(directory, OWNER_DIRECTORY)) {
+			logger.warn("Cannot restrict the access to the chunk cache directory {}. No chunks are stored.", directory);
+			return;
+		}
+
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				return Long.compare(f1.lastModified(), f2.lastModified());
+			}
+		});
+
+		synchronized (this) {
+			for (File file : files) {
+				if (file.getName().endsWith(".tmp")) {
+					// leftover of an interrupted write
+					FileUtils.deleteQuietly(file);
+				} else if (file.isFile()) {
+					storedChunks.put(file.getName(), file.length());
+					currentSize += file.length();
+				}
+			}
+			storeEnabled = true;
+			evict();
+		}
+	}
+
+	/**
+	 * Restricts the access to the file to its owner
+	 * 
+	 * @return <code>false</code> if the permissions cannot be set, e.g. because the file is not owned by the
+	 *         current user
+	 */
+	private static boolean restrictToOwner(File file, Set<PosixFilePermission> permissions) {
+		try {
+			Files.setPosixFilePermissions(file.toPath(), permissions);
+			return true;
+		} catch (UnsupportedOperationException e) {
+			// not a POSIX file system
+			boolean executable = permissions.contains(PosixFilePermission.OWNER_EXECUTE);
+			return file.setReadable(false, false) && file.setReadable(true, true) && file.setWritable(false, false)
+					&& file.setWritable(true, true) && file.setExecutable(false, false)
+					&& (!executable || file.setExecutable(true, true));
+		} catch (IOException | SecurityException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the data of the chunk if it is available locally and matches the hash of the chunk.
+	 * 
+	 * @param metaChunk the meta data of the chunk
+	 * @return the data of the chunk or <code>null</code> if not available
+	 */
+	public byte[] get(MetaChunk metaChunk) {
+		String key = getKey(metaChunk);
+		if (key == null) {
+			return null;
+		}
+
+		byte[] data = readStored(key);
+		if (data != null && !matches(metaChunk, data)) {
+			logger.warn("Cached chunk {} is corrupt.", key);
+			removeStored(key);
+			data = null;
+		}
+
+		if (data == null) {
+			data = readIndexed(key);
+			if (data != null && !matches(metaChunk, data)) {
+				logger.debug("Indexed chunk {} does not match its hash anymore.", key);
+				synchronized (this) {
+					localIndex.remove(key);
+				}
+				data = null;
+			}
+		}
+		return data;
+	}
+
+	private static boolean matches(MetaChunk metaChunk, byte[] data) {
+		return HashUtil.compare(HashUtil.hash(data), metaChunk.getChunkHash());
+	}
+
+	private void removeStored(String key) {
+		synchronized (this) {
+			Long size = storedChunks.remove(key);
+			if (size != null) {
+				currentSize -= size;
+			}
+		}
+		FileUtils.deleteQuietly(new File(directory, key));
+	}
+
+	private byte[] readStored(String key) {
+		synchronized (this) {
+			// touch the entry such that it is the most recently used one
+			if (storedChunks.get(key) == null) {
+				return null;
+			}
+		}
+
+		File file = new File(directory, key);
+		try {
+			return FileUtils.readFileToByteArray(file);
+		} catch (IOException e) {
+			logger.debug("Cached chunk {} is not readable anymore.", key);
+			removeStored(key);
+			return null;
+		}
+	}
+
+	private byte[] readIndexed(String key) {
+		ChunkLocation location;
+		synchronized (this) {
+			location = localIndex.get(key);
+		}
+
+		if (location == null) {
+			return null;
+		} else if (!location.isValid()) {
+			logger.debug("File {} has been modified since chunk {} was indexed.", location.file, key);
+			synchronized (this) {
+				localIndex.remove(key);
+			}
+			return null;
+		}
+
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(location.file, "r");
+			byte[] data = new byte[location.length];
+			raf.seek(location.offset);
+			raf.readFully(data);
+			return data;
+		} catch (IOException e) {
+			logger.debug("Cannot read indexed chunk {} from file {}.", key, location.file);
+			synchronized (this) {
+				localIndex.remove(key);
+			}
+			return null;
+		} finally {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stores the data of a chunk in the cache. If the size budget is exceeded, the least recently used chunks
+	 * are removed. Data not matching the hash of the chunk is not stored.
+	 * 
+	 * @param metaChunk the meta data of the chunk
+	 * @param data the (decrypted) data of the chunk
+	 */
+	public void put(MetaChunk metaChunk, byte[] data) {
+		String key = getKey(metaChunk);
+		if (key == null || data == null || data.length > maxSize) {
+			return;
+		} else if (!matches(metaChunk, data)) {
+			logger.warn("Chunk {} does not match its hash and is not cached.", key);
+			return;
+		}
+
+		synchronized (this) {
+			if (!storeEnabled || storedChunks.containsKey(key)) {
+				return;
+			}
+		}
+
+		// write to a temporary file first such that a reader never sees a partial chunk. The permissions are
+		// restricted before the data is written
+		File tempFile = new File(directory, key + "-" + Thread.currentThread().getId() + ".tmp");
+		File file = new File(directory, key);
+		try {
+			FileUtils.deleteQuietly(tempFile);
+			if (!tempFile.createNewFile() || !restrictToOwner(tempFile, OWNER_FILE)) {
+				logger.warn("Cannot create a private file for chunk {} in the cache.", key);
+				return;
+			}
+			FileUtils.writeByteArrayToFile(tempFile, data);
+			if (!tempFile.renameTo(file) && !file.exists()) {
+				logger.warn("Cannot move chunk {} into the cache.", key);
+				return;
+			}
+		} catch (IOException e) {
+			logger.warn("Cannot write chunk {} into the cache. Reason: {}", key, e.getMessage());
+			return;
+		} finally {
+			FileUtils.deleteQuietly(tempFile);
+		}
+
+		synchronized (this) {
+			if (storedChunks.put(key, (long) data.length) == null) {
+				currentSize += data.length;
+			}
+			evict();
+		}
+	}
+
+	/**
+	 * Registers a chunk that is part of a local file. The file must not be modified, else the location
+	 * becomes invalid.
+	 * 
+	 * @param metaChunk the meta data of the chunk
+	 * @param file the file containing the chunk
+	 * @param offset the position of the chunk in the file
+	 * @param length the length of the chunk
+	 */
+	public void addLocation(MetaChunk metaChunk, File file, long offset, int length) {
+		String key = getKey(metaChunk);
+		if (key == null || !file.isFile()) {
+			return;
+		}
+
+		ChunkLocation location = new ChunkLocation(file, offset, length);
+		synchronized (this) {
+			localIndex.put(key, location);
+		}
+	}
+
+	/**
+	 * @return the number of bytes currently stored in the cache directory
+	 */
+	public synchronized long getSize() {
+		return currentSize;
+	}
+
+	private void evict() {
+		Iterator<Entry<String, Long>> iterator = storedChunks.entrySet().iterator();
+		while (currentSize > maxSize && iterator.hasNext()) {
+			Entry<String, Long> eldest = iterator.next();
+			iterator.remove();
+			currentSize -= eldest.getValue();
+			if (!new File(directory, eldest.getKey()).delete()) {
+				logger.trace("Cannot delete evicted chunk {}.", eldest.getKey());
+			}
+		}
+	}
+
+	private static String getKey(MetaChunk metaChunk) {
+		if (metaChunk.getChunkHash() == null || metaChunk.getChunkHash().length == 0) {
+			return null;
+		}
+		return EncryptionUtil.byteToHex(metaChunk.getChunkHash());
+	}
+
+	/**
+	 * Location of a chunk within a local file. The modification date and length of the file are used to
+	 * detect whether the file has been changed in the meantime.
+	 */
+	private static class ChunkLocation {
+
+		private final File file;
+		private final long offset;
+		private final int length;
+		private final long lastModified;
+		private final long fileLength;
+
+		public ChunkLocation(File file, long offset, int length) {
+			this.file = file;
+			this.offset = offset;
+			this.length = length;
+			this.lastModified = file.lastModified();
+			this.fileLength = file.length();
+		}
+
+		public boolean isValid() {
+			return file.lastModified() == lastModified && file.length() == fileLength;
+		}
+	}
+}
@@ -1,10 +1,21 @@
 package org.hive2hive.core.network.data.download;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Set;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
@@ -22,7 +33,12 @@ import org.slf4j.LoggerFactory;
  * A download manager handling downloads. Downloading chunks happens concurrently. It is possible to download
  * multiple files at a time. The number of concurrent downloads is configurable over the
  * {@link H2HConstants#CONCURRENT_DOWNLOADS} field. <br>
- * Downloaded chunks are stored in a temporary folder and assembled when all chunks are downloaded.
+ * Files are scheduled by priority: prioritized (explicitly requested) downloads first, then smaller files
+ * (in bytes) before larger ones. A single file never occupies more than {@link H2HConstants#CONCURRENT_DOWNLOADS_PER_FILE}
+ * download threads, such that a large file cannot starve the others. <br>
+ * Downloaded chunks are stored in a temporary folder and assembled when all chunks are downloaded. Chunks that
+ * are available locally are served by the {@link ChunkCache} instead of being downloaded. A download of
+ * another version of the same file supersedes the queued one, whose temporary folder is deleted.
  * 
  * @author Nico
  * 
@@ -33,16 +49,41 @@ public class DownloadManager {
 
 	private final NetworkManager networkManager;
 	private final IFileConfiguration fileConfig;
-	private final Set<BaseDownloadTask> openTasks;
+	private final Map<BaseDownloadTask, ScheduledDownload> openTasks;
+	private final ChunkCache chunkCache;
+
+	// used to keep the order of submission among tasks with the same priority
+	private final AtomicLong sequenceNumber;
+	// incremented at every restart such that chunks of a stopped executor are not counted anymore
+	private final AtomicInteger generation;
 
 	private ExecutorService executor;
 
+	/**
+	 * Creates a download manager using the chunk cache of the node
+	 * 
+	 * @param networkManager the node
+	 * @param fileConfig the file configuration
+	 */
 	public DownloadManager(NetworkManager networkManager, IFileConfiguration fileConfig) {
+		this(networkManager, fileConfig, networkManager.getChunkCache());
+	}
+
+	public DownloadManager(NetworkManager networkManager, IFileConfiguration fileConfig, ChunkCache chunkCache) {
 		this.networkManager = networkManager;
 		this.fileConfig = fileConfig;
-		this.openTasks = Collections.newSetFromMap(new ConcurrentHashMap<BaseDownloadTask, Boolean>());
+		this.chunkCache = chunkCache;
+		this.openTasks = new ConcurrentHashMap<BaseDownloadTask, ScheduledDownload>();
+		this.sequenceNumber = new AtomicLong(0);
+		this.generation = new AtomicInteger(0);
 		// start executor
-		this.executor = Executors.newFixedThreadPool(H2HConstants.CONCURRENT_DOWNLOADS);
+		this.executor = createExecutor();
+	}
+
+	private static ExecutorService createExecutor() {
+		// the queue orders the waiting chunks by the priority of their download
+		return new ThreadPoolExecutor(H2HConstants.CONCURRENT_DOWNLOADS, H2HConstants.CONCURRENT_DOWNLOADS, 0L,
+				TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>());
 	}
 
 	/**
@@ -53,56 +94,248 @@ public class DownloadManager {
 	 */
 	public void submit(BaseDownloadTask task) throws NoPeerConnectionException {
 		logger.debug("Submitted to download {}", task.getDestinationName());
+		abortSuperseded(task);
 
 		// store the task for possible later recovery
-		openTasks.add(task);
+		ScheduledDownload download = new ScheduledDownload(task, estimateSize(task), sequenceNumber.getAndIncrement());
+		openTasks.put(task, download);
 
 		// add a listener
 		task.addListener(new DownloadListener());
 
 		// start the execution
-		schedule(task);
+		schedule(download);
 	}
 
-	private void schedule(BaseDownloadTask task) throws NoPeerConnectionException {
+	/**
+	 * Aborts the open downloads of another version of the same file. Their parts would not be used anymore.
+	 */
+	private void abortSuperseded(BaseDownloadTask task) {
+		for (BaseDownloadTask open : openTasks.keySet()) {
+			if (open.getDestination().equals(task.getDestination()) && !open.getDownloadId().equals(task.getDownloadId())) {
+				open.abortDownload("Superseded by the download of another version");
+			}
+		}
+	}
+
+	/**
+	 * Returns the size of the file to download. If the task does not know it, every chunk is assumed to have
+	 * the configured chunk size.
+	 */
+	private long estimateSize(BaseDownloadTask task) {
+		if (task.getFileSize() >= 0) {
+			return task.getFileSize();
+		}
+		return (long) task.getNumberOfChunks() * fileConfig.getChunkSize();
+	}
+
+	private void schedule(ScheduledDownload download) throws NoPeerConnectionException {
+		BaseDownloadTask task = download.task;
 		if (task.isDirectDownload()) {
 			// first get the locations of all users having access to this file
 			DownloadTaskDirect directTask = (DownloadTaskDirect) task;
 			directTask.startFetchLocations(networkManager.getDataManager());
+		}
 
-			// then download all chunks in separate threads
-			for (MetaChunk chunk : task.getOpenChunks()) {
-				DownloadChunkRunnableDirect runnable = new DownloadChunkRunnableDirect(directTask, chunk,
-						networkManager.getMessageManager(), fileConfig);
-				executor.submit(runnable);
+		List<MetaChunk> openChunks = task.getOpenChunks();
+		if (openChunks.isEmpty()) {
+			// all chunks have been downloaded in a previous run
+			task.finishIfComplete();
+			return;
+		}
+
+		download.reset(openChunks);
+		dispatch(download);
+	}
+
+	/**
+	 * Hands the next chunks of the download to the executor, as long as the download does not exceed its
+	 * number of concurrent chunks.
+	 */
+	private void dispatch(ScheduledDownload download) throws NoPeerConnectionException {
+		synchronized (download) {
+			while (download.inFlight < H2HConstants.CONCURRENT_DOWNLOADS_PER_FILE && !download.pending.isEmpty()) {
+				MetaChunk chunk = download.pending.poll();
+				try {
+					executor.execute(new ChunkJob(download, chunk, createRunnable(download.task, chunk), generation.get()));
+					download.inFlight++;
+				} catch (RejectedExecutionException e) {
+					logger.warn("Cannot schedule chunk {} of file {} because the downloads are stopped.",
+							chunk.getIndex(), download.task.getDestinationName());
+					download.pending.add(chunk);
+					return;
+				}
 			}
+		}
+	}
+
+	protected Runnable createRunnable(BaseDownloadTask task, MetaChunk chunk) throws NoPeerConnectionException {
+		if (task.isDirectDownload()) {
+			return new DownloadChunkRunnableDirect((DownloadTaskDirect) task, chunk, networkManager.getMessageManager(),
+					fileConfig, chunkCache);
 		} else {
-			// submit each chunk as a separate thread
-			for (MetaChunk chunk : task.getOpenChunks()) {
-				DownloadChunkRunnableDHT runnable = new DownloadChunkRunnableDHT((DownloadTaskDHT) task, chunk,
-						networkManager.getDataManager(), networkManager.getEncryption());
-				executor.submit(runnable);
+			return new DownloadChunkRunnableDHT((DownloadTaskDHT) task, chunk, networkManager.getDataManager(),
+					networkManager.getEncryption(), chunkCache);
+		}
+	}
+
+	/**
+	 * Registers the chunks of a completely downloaded file in the local index of the chunk cache
+	 */
+	private void indexChunks(BaseDownloadTask task) {
+		List<MetaChunk> sorted = new ArrayList<MetaChunk>(task.getMetaChunks());
+		Collections.sort(sorted, new Comparator<MetaChunk>() {
+			@Override
+			public int compare(MetaChunk c1, MetaChunk c2) {
+				return Integer.compare(c1.getIndex(), c2.getIndex());
 			}
+		});
+
+		File destination = task.getDestination();
+		long offset = 0;
+		for (MetaChunk metaChunk : sorted) {
+			long length = task.getChunkLength(metaChunk.getIndex());
+			chunkCache.addLocation(metaChunk, destination, offset, (int) length);
+			offset += length;
 		}
 	}
 
 	/**
-	 * Stop the downloads
+	 * @return the cache holding locally available chunks
+	 */
+	public ChunkCache getChunkCache() {
+		return chunkCache;
+	}
+
+	private void chunkDone(ChunkJob job) {
+		if (job.generation != generation.get()) {
+			// belongs to a stopped run
+			return;
+		}
+
+		ScheduledDownload download = job.download;
+		synchronized (download) {
+			download.inFlight--;
+		}
+
+		if (download.task.isAborted() || !openTasks.containsKey(download.task)) {
+			// download failed or is already done
+			return;
+		}
+
+		try {
+			dispatch(download);
+		} catch (NoPeerConnectionException e) {
+			download.task.abortDownload("Peer is not connected anymore");
+		}
+	}
+
+	/**
+	 * Stop the downloads. The queued chunks are dropped and the running chunks are interrupted.
 	 */
 	public void stopBackgroundProcesses() {
+		generation.incrementAndGet();
 		executor.shutdownNow();
 		logger.debug("All downloads stopped");
 	}
 
 	/**
-	 * Start / continue the downloads
+	 * Start / continue the downloads. Chunks that have been downloaded before are not downloaded again.
 	 * 
 	 * @throws NoPeerConnectionException if the peer is not connected
 	 */
 	public void startBackgroundProcess() throws NoPeerConnectionException {
-		executor = Executors.newFixedThreadPool(H2HConstants.CONCURRENT_DOWNLOADS);
-		for (BaseDownloadTask task : openTasks) {
-			schedule(task);
+		generation.incrementAndGet();
+		ExecutorService stopped = executor;
+		stopped.shutdownNow();
+		try {
+			// let the interrupted chunks of the previous run finish, such that they are not downloaded twice
+			if (!stopped.awaitTermination(H2HConstants.AWAIT_NETWORK_OPERATION_MS, TimeUnit.MILLISECONDS)) {
+				logger.warn("Not all downloads of the previous run have stopped.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		executor = createExecutor();
+		for (ScheduledDownload download : openTasks.values()) {
+			schedule(download);
+		}
+	}
+
+	/**
+	 * The scheduling state of a download task
+	 */
+	private static class ScheduledDownload implements Comparable<ScheduledDownload> {
+
+		private final BaseDownloadTask task;
+		private final long size;
+		private final long sequenceNumber;
+		private final Queue<MetaChunk> pending;
+		private int inFlight;
+
+		public ScheduledDownload(BaseDownloadTask task, long size, long sequenceNumber) {
+			this.task = task;
+			this.size = size;
+			this.sequenceNumber = sequenceNumber;
+			this.pending = new LinkedList<MetaChunk>();
+		}
+
+		public synchronized void reset(List<MetaChunk> openChunks) {
+			pending.clear();
+			pending.addAll(openChunks);
+			inFlight = 0;
+		}
+
+		@Override
+		public int compareTo(ScheduledDownload other) {
+			if (task.isPrioritized() != other.task.isPrioritized()) {
+				return task.isPrioritized() ? -1 : 1;
+			} else if (size != other.size) {
+				// smaller files first
+				return size < other.size ? -1 : 1;
+			}
+			return Long.compare(sequenceNumber, other.sequenceNumber);
+		}
+	}
+
+	/**
+	 * Wraps the download of a single chunk such that it can be ordered in the queue of the executor
+	 */
+	private class ChunkJob implements Runnable, Comparable<ChunkJob> {
+
+		private final ScheduledDownload download;
+		private final MetaChunk chunk;
+		private final Runnable runnable;
+		private final int generation;
+
+		public ChunkJob(ScheduledDownload download, MetaChunk chunk, Runnable runnable, int generation) {
+			this.download = download;
+			this.chunk = chunk;
+			this.runnable = runnable;
+			this.generation = generation;
+		}
+
+		@Override
+		public void run() {
+			if (generation != DownloadManager.this.generation.get()) {
+				// the downloads have been stopped or restarted in the meantime
+				return;
+			}
+
+			try {
+				runnable.run();
+			} finally {
+				chunkDone(this);
+			}
+		}
+
+		@Override
+		public int compareTo(ChunkJob other) {
+			int result = download.compareTo(other.download);
+			if (result == 0) {
+				return Integer.compare(chunk.getIndex(), other.chunk.getIndex());
+			}
+			return result;
 		}
 	}
 
@@ -115,6 +348,7 @@ public class DownloadManager {
 		public void downloadFinished(BaseDownloadTask task) {
 			// remove it from the task list
 			openTasks.remove(task);
+			indexChunks(task);
 			logger.debug("Task for downloading '{}' finished.", task.getDestinationName());
 		}
 
@@ -1,6 +1,7 @@
 package org.hive2hive.core.network.data.parameters;
 
 import java.security.KeyPair;
+import java.util.Set;
 
 import net.tomp2p.peers.Number160;
 import net.tomp2p.peers.Number640;
@@ -75,6 +76,14 @@ public interface IParameters {
 	 */
 	public Number160 getBasedOnKey();
 
+	/**
+	 * The versions of a fork that have been merged into the content. They are stored as additional
+	 * predecessors, such that the put resolves the fork.
+	 * 
+	 * @return the merged version keys, never <code>null</code>
+	 */
+	public Set<Number160> getMergedVersionKeys();
+
 	/**
 	 * Get the key containing all four <code>TomP2P</code> key dimensions.
 	 * 
@@ -2,6 +2,9 @@ package org.hive2hive.core.network.data.parameters;
 
 import java.security.KeyPair;
 import java.security.PublicKey;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import net.tomp2p.peers.Number160;
 import net.tomp2p.peers.Number640;
@@ -27,6 +30,7 @@ public class Parameters implements IParameters {
 	private Number160 cKey = H2HConstants.TOMP2P_DEFAULT_KEY;
 	private Number160 vKey = H2HConstants.TOMP2P_DEFAULT_KEY;
 	private Number160 bKey = null;
+	private Set<Number160> mergedKeys = Collections.emptySet();
 	private BaseNetworkContent networkContent;
 	private Data data;
 	private KeyPair protectionKeys;
@@ -118,6 +122,16 @@ public class Parameters implements IParameters {
 		return bKey;
 	}
 
+	public Parameters setMergedVersionKeys(Set<Number160> mergedKeys) {
+		this.mergedKeys = new HashSet<Number160>(mergedKeys);
+		return this;
+	}
+
+	@Override
+	public Set<Number160> getMergedVersionKeys() {
+		return mergedKeys;
+	}
+
 	public Parameters setNetworkContent(BaseNetworkContent networkContent) {
 		this.networkContent = networkContent;
 		return this;
@@ -233,6 +247,10 @@ public class Parameters implements IParameters {
 			builder.append("based on key = '").append(bKey.timestamp()).append("' ");
 		}
 
+		if (!mergedKeys.isEmpty()) {
+			builder.append("merged versions = '").append(mergedKeys.size()).append("' ");
+		}
+
 		if (ttl != -1) {
 			builder.append("ttl = '").append(ttl).append("' ");
 		}
@@ -0,0 +1,62 @@
+package org.hive2hive.core.network.data.vdht;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.crypto.SecretKey;
+
+import org.hive2hive.core.model.versioned.BaseVersionedNetworkContent;
+import org.hive2hive.core.model.versioned.EncryptedNetworkContent;
+import org.hive2hive.core.security.IH2HEncryption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the content encrypted with a symmetric AES key.
+ * 
+ * @author Seppi
+ *
+ * @param <T> the type of the versioned content
+ */
+public class AESVersionCodec<T extends BaseVersionedNetworkContent> implements IVersionCodec<T> {
+
+	private static final Logger logger = LoggerFactory.getLogger(AESVersionCodec.class);
+
+	private final IH2HEncryption encryption;
+	// the key may still be derived while the data is fetched
+	private final Future<SecretKey> encryptionKey;
+
+	public AESVersionCodec(IH2HEncryption encryption, Future<SecretKey> encryptionKey) {
+		this.encryption = encryption;
+		this.encryptionKey = encryptionKey;
+	}
+
+	@Override
+	public BaseVersionedNetworkContent encode(T content) throws IOException, GeneralSecurityException {
+		return encryption.encryptAES(content, getEncryptionKey());
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T decode(BaseVersionedNetworkContent stored) throws ClassNotFoundException, IOException,
+			GeneralSecurityException {
+		if (!(stored instanceof EncryptedNetworkContent)) {
+			throw new GeneralSecurityException("The stored version is not encrypted.");
+		}
+		logger.trace("Decrypting with 256-bit AES key.");
+		return (T) encryption.decryptAES((EncryptedNetworkContent) stored, getEncryptionKey());
+	}
+
+	/**
+	 * Waits until the key is available
+	 */
+	private SecretKey getEncryptionKey() throws GeneralSecurityException {
+		try {
+			return encryptionKey.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new GeneralSecurityException("The encryption key is not available.", e);
+		}
+	}
+}
@@ -1,28 +1,44 @@
 package org.hive2hive.core.network.data.vdht;
 
 import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.Random;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
+import net.tomp2p.dht.FutureGet;
 import net.tomp2p.peers.Number160;
 import net.tomp2p.peers.Number640;
 import net.tomp2p.peers.PeerAddress;
 import net.tomp2p.rpc.DigestResult;
 import net.tomp2p.storage.Data;
 
+import org.hive2hive.core.exceptions.GetFailedException;
+import org.hive2hive.core.exceptions.PutFailedException;
+import org.hive2hive.core.exceptions.VersionForkAfterPutException;
 import org.hive2hive.core.model.versioned.BaseVersionedNetworkContent;
 import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.DataManager.H2HPutStatus;
 import org.hive2hive.core.network.data.parameters.IParameters;
 import org.hive2hive.core.network.data.parameters.Parameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Resolves the latest version of versioned content. Delays and forks of the versions are handled here, the
+ * conversion of the stored form (e.g. encrypted) is delegated to a {@link IVersionCodec}. Fetched versions are
+ * only decoded when they are returned.
+ */
 public abstract class BaseVersionManager<T extends BaseVersionedNetworkContent> {
 
 	private static final Logger logger = LoggerFactory.getLogger(BaseVersionManager.class);
@@ -33,77 +49,536 @@ public abstract class BaseVersionManager<T extends BaseVersionedNetworkContent>
 	protected static final int DELAY_LIMIT = 2;
 
 	protected final DataManager dataManager;
+	protected final IVersionCodec<T> codec;
 	protected final IParameters parameters;
 	protected final Random random = new Random();
 
 	// caches
-	protected Cache<Set<Number160>> digestCache = new Cache<Set<Number160>>();
+	protected Cache<Collection<Number160>> digestCache = new Cache<Collection<Number160>>();
 	protected Cache<T> contentCache = new Cache<T>();
+	// the stored versions, not yet deserialized and decoded
+	protected Cache<Data> rawCache = new Cache<Data>();
 
-	public BaseVersionManager(DataManager dataManager, String locationKey, String contentKey) {
+	// version key of a merged version -> the other versions of the fork which are merged into it
+	private final Map<Number160, Set<Number160>> mergedVersions = new ConcurrentHashMap<Number160, Set<Number160>>();
+	private volatile IMergeStrategy<T> mergeStrategy;
+
+	public BaseVersionManager(DataManager dataManager, IVersionCodec<T> codec, String locationKey, String contentKey) {
 		this.dataManager = dataManager;
+		this.codec = codec;
 		this.parameters = new Parameters().setLocationKey(locationKey).setContentKey(contentKey);
 	}
 
-	protected NavigableMap<Number160, Set<Number160>> buildDigest(Map<PeerAddress, DigestResult> rawDigest) {
-		NavigableMap<Number160, Set<Number160>> digestMap = new TreeMap<Number160, Set<Number160>>();
+	/**
+	 * Sets the strategy to merge version forks. Without a strategy, forks are waited out and finally rejected.
+	 * 
+	 * @param mergeStrategy the strategy or <code>null</code> to disable merging
+	 */
+	public void setMergeStrategy(IMergeStrategy<T> mergeStrategy) {
+		this.mergeStrategy = mergeStrategy;
+	}
+
+	public IMergeStrategy<T> getMergeStrategy() {
+		return mergeStrategy;
+	}
+
+	/**
+	 * Performs a get call (blocking).
+	 * 
+	 * @return the latest version
+	 * @throws GetFailedException if the data cannot be fetched
+	 */
+	public T get() throws GetFailedException {
+		// load the current digest list from network. Without a cached version, the digest is fetched together
+		// with the data. A stale cache thus costs a second round trip for the data, because the replicas cannot
+		// return the data only if it is newer. Always fetching the data would transfer it for every cache hit.
+		Number160 cachedKey = contentCache.isEmpty() ? rawCache.lastKey() : contentCache.lastKey();
+		NavigableMap<Number640, Collection<Number160>> digest = cachedKey == null ? null : dataManager
+				.getDigestLatest(parameters);
+		// compare the latest version key with the cached one
+		T cached = null;
+		if (cachedKey != null && digest != null && digest.lastEntry() != null
+				&& digest.lastEntry().getKey().versionKey().equals(cachedKey)) {
+			cached = getCached(cachedKey);
+		}
+		if (cached != null) {
+			logger.debug("No need for getting from network. Returning cached version. {}", parameters.toString());
+			return cached;
+		} else {
+			int delayCounter = 0;
+			int delayWaitTime = random.nextInt(1000) + 1000;
+			int forkAfterGetCounter = 0;
+			int forkAfterGetWaitTime = random.nextInt(1000) + 1000;
+			// fetch latest versions from the network, request also digest
+			while (true) {
+				Cache<Data> fetchedVersions = new Cache<Data>();
+				int getCounter = 0;
+				int getWaitTime = random.nextInt(1000) + 1000;
+				while (true) {
+					// load latest data
+					FutureGet futureGet = dataManager.getLatest(parameters);
+
+					// merge the version tree from raw digest result into the cache
+					mergeDigest(futureGet.rawDigest(), digestCache);
+					// join all freshly loaded versions in one map
+					buildData(futureGet.rawData(), fetchedVersions);
+					// merge freshly loaded versions with cache
+					rawCache.putAll(fetchedVersions);
+
+					// check if get was successful
+					if (futureGet.isFailed() || fetchedVersions.isEmpty()) {
+						if (getCounter > GET_FAILED_LIMIT) {
+							logger.warn("Loading of data failed after {} tries. {}", getCounter, parameters.toString());
+							throw new GetFailedException("Couldn't load data.");
+						} else {
+							logger.warn("Couldn't get data. Try #{}. Retrying. reason = '{}' {}", getCounter++,
+									futureGet.failedReason(), parameters.toString());
+
+							// TODO reput latest versions for maintenance
+
+							// exponential back off waiting
+							try {
+								Thread.sleep(getWaitTime);
+								getWaitTime = getWaitTime * 2;
+							} catch (InterruptedException ignore) {
+							}
+						}
+					} else {
+						break;
+					}
+				}
+
+				// check if version delays or forks occurred
+				if (hasVersionDelay(fetchedVersions, digestCache) && delayCounter < DELAY_LIMIT) {
+					logger.warn("Detected a version delay. #{}", delayCounter++);
+
+					// TODO reput latest versions for maintenance, consider only latest
+
+					// exponential back off waiting
+					try {
+						Thread.sleep(delayWaitTime);
+						delayWaitTime = delayWaitTime * 2;
+					} catch (InterruptedException ignore) {
+					}
+					continue;
+				}
+
+				// check for version fork according cache
+				if (countLatest(digestCache) > 1 && delayCounter < DELAY_LIMIT) {
+					List<Number160> latestVersionKeys = getLatest(digestCache);
+					T merged = mergeFork(latestVersionKeys);
+					if (merged != null) {
+						logger.debug("Merged a version fork of {} versions. {}", latestVersionKeys.size(),
+								parameters.toString());
+						return merged;
+					}
+
+					if (forkAfterGetCounter < FORK_AFTER_GET_LIMIT) {
+						logger.warn("Got a version fork. Waiting. #{}", forkAfterGetCounter++);
+						// exponential back off waiting
+						try {
+							Thread.sleep(forkAfterGetWaitTime);
+							forkAfterGetWaitTime = forkAfterGetWaitTime * 2;
+						} catch (InterruptedException ignore) {
+						}
+						continue;
+					}
+					logger.warn("Got a version fork.");
+					throw new GetFailedException("Got a version fork.");
+				} else {
+					if (delayCounter >= DELAY_LIMIT) {
+						logger.warn("Ignoring delay after {} retries.", delayCounter);
+					}
+					if (rawCache.isEmpty()) {
+						logger.warn("Did not find any version.");
+						throw new GetFailedException("No version found. Got null.");
+					} else {
+						// only the latest version gets decoded
+						Number160 latestKey = rawCache.lastKey();
+						try {
+							T content = decode(latestKey, deserialize(rawCache.lastValue()));
+							contentCache.put(latestKey, content);
+							return content;
+						} catch (GeneralSecurityException e) {
+							logger.error("Cannot decrypt the version.");
+							throw new GetFailedException("Cannot decrypt the version.");
+						} catch (Exception e) {
+							logger.error("Cannot get the version.", e);
+							throw new GetFailedException(
+									String.format("Cannot get the version. reason = '%s'", e.getMessage()));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a cached version. A version which is only available in its stored form (e.g. from a
+	 * {@link VersionSnapshot}) is decoded first.
+	 * 
+	 * @return the cached version or <code>null</code> if it cannot be decoded
+	 */
+	private T getCached(Number160 versionKey) {
+		T cached = contentCache.get(versionKey);
+		if (cached != null) {
+			return cached;
+		}
+
+		Data data = rawCache.get(versionKey);
+		if (data == null) {
+			return null;
+		}
+		try {
+			cached = decode(versionKey, deserialize(data));
+			contentCache.put(versionKey, cached);
+			return cached;
+		} catch (ClassNotFoundException | ClassCastException | IOException | GeneralSecurityException e) {
+			// e.g. a snapshot of another user, fetch the version from the network instead
+			logger.warn("Cannot decode the cached version. reason = '{}' {}", e.getMessage(), parameters);
+			rawCache.remove(versionKey);
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a snapshot of the latest cached version, which can be persisted and used to seed the version
+	 * manager of the next session.
+	 * 
+	 * @return the snapshot or <code>null</code> if no version is cached in its stored form
+	 */
+	public VersionSnapshot getSnapshot() {
+		Number160 versionKey = contentCache.isEmpty() ? rawCache.lastKey() : contentCache.lastKey();
+		Data data = versionKey == null ? null : rawCache.get(versionKey);
+		if (data == null) {
+			// e.g. a merged version which has not been put yet
+			return null;
+		}
+		return new VersionSnapshot(parameters.getLocationKey(), parameters.getContentKey(), versionKey, data.toBytes(),
+				digestCache);
+	}
+
+	/**
+	 * Seeds the caches with a version of a previous session. The next {@link #get()} only fetches the content
+	 * when the DHT holds a newer version than the snapshot. The snapshot is decoded lazily.
+	 * 
+	 * @param snapshot the persisted snapshot
+	 * @return <code>true</code> if the snapshot belongs to this content and has been added to the caches
+	 */
+	public boolean seed(VersionSnapshot snapshot) {
+		if (snapshot == null || snapshot.getVersionKey() == null || snapshot.getStoredContent() == null
+				|| !parameters.getLocationKey().equals(snapshot.getLocationKey())
+				|| !parameters.getContentKey().equals(snapshot.getContentKey())) {
+			return false;
+		}
+
+		for (Entry<Number160, HashSet<Number160>> entry : snapshot.getDigest().entrySet()) {
+			if (!digestCache.containsKey(entry.getKey())) {
+				digestCache.put(entry.getKey(), entry.getValue());
+			}
+		}
+		if (!rawCache.containsKey(snapshot.getVersionKey())) {
+			rawCache.put(snapshot.getVersionKey(), new Data(snapshot.getStoredContent()));
+		}
+		logger.debug("Seeded the cache with version {}. {}", snapshot.getVersionKey(), parameters);
+		return true;
+	}
+
+	/**
+	 * Puts a new version (blocking). If the put is rejected because of a version fork and a merge strategy is
+	 * set, the content is merged with the latest version and put once more.
+	 * 
+	 * @param networkContent the content to put
+	 * @param protectionKeys the keys to protect the data
+	 * @throws PutFailedException if the content cannot be put
+	 */
+	public void put(T networkContent, KeyPair protectionKeys) throws PutFailedException {
+		Number160 basedOnKey = networkContent.getVersionKey();
+		try {
+			putVersion(networkContent, protectionKeys);
+		} catch (VersionForkAfterPutException e) {
+			T merged = mergeAfterPut(basedOnKey, networkContent);
+			if (merged == null) {
+				throw e;
+			}
+			logger.debug("Merged the rejected version with the latest version. Putting it again. {}", parameters);
+			putVersion(merged, protectionKeys);
+		}
+	}
+
+	/**
+	 * Encodes and puts a single version. The versions which have been merged into the content become its
+	 * predecessors.
+	 */
+	protected void putVersion(T networkContent, KeyPair protectionKeys) throws PutFailedException {
+		try {
+			Set<Number160> mergedVersions = getMergedVersions(networkContent.getVersionKey());
+			BaseVersionedNetworkContent stored = codec.encode(networkContent);
+			stored.setBasedOnKey(networkContent.getBasedOnKey());
+			stored.setVersionKey(networkContent.getVersionKey());
+			stored.generateVersionKey();
+
+			IParameters parameters = new Parameters().setLocationKey(this.parameters.getLocationKey())
+					.setContentKey(this.parameters.getContentKey()).setVersionKey(stored.getVersionKey())
+					.setBasedOnKey(stored.getBasedOnKey()).setMergedVersionKeys(mergedVersions)
+					.setNetworkContent(stored).setProtectionKeys(protectionKeys)
+					.setTTL(networkContent.getTimeToLive()).setPrepareFlag(true);
+
+			H2HPutStatus status = dataManager.put(parameters);
+			if (status.equals(H2HPutStatus.FAILED)) {
+				throw new PutFailedException("Put failed.");
+			} else if (status.equals(H2HPutStatus.VERSION_FORK)) {
+				logger.warn("Version fork after put detected. Rejecting put");
+				if (!dataManager.remove(parameters)) {
+					logger.warn("Removing of conflicting version failed.");
+				}
+				throw new VersionForkAfterPutException();
+			} else {
+				clearMergedVersions(stored.getBasedOnKey());
+				networkContent.setVersionKey(stored.getVersionKey());
+				networkContent.setBasedOnKey(stored.getBasedOnKey());
+				// cache digest
+				digestCache.put(parameters.getVersionKey(), new HashSet<Number160>(parameters.getData().basedOnSet()));
+				// cache network content
+				contentCache.put(parameters.getVersionKey(), networkContent);
+				// cache stored network content
+				rawCache.put(parameters.getVersionKey(), parameters.getData());
+			}
+		} catch (GeneralSecurityException | IOException e) {
+			logger.error("Cannot encode the content. reason = '{}'", e.getMessage());
+			throw new PutFailedException(String.format("Cannot encode the content. reason = '%s'", e.getMessage()));
+		}
+	}
+
+	/**
+	 * Fetches a specific version. The returned instance is not shared with any cache and can be modified.
+	 * 
+	 * @param versionKey the key of the version
+	 * @return the version or <code>null</code> if it is not available
+	 */
+	protected T getVersion(Number160 versionKey) {
+		try {
+			// always decode a fresh instance, the cached ones may have been modified by the callers
+			Data data = rawCache.get(versionKey);
+			if (data != null) {
+				return decode(versionKey, deserialize(data));
+			}
+
+			IParameters versionParameters = new Parameters().setLocationKey(parameters.getLocationKey())
+					.setContentKey(parameters.getContentKey()).setVersionKey(versionKey);
+			BaseVersionedNetworkContent stored = (BaseVersionedNetworkContent) dataManager.getVersion(versionParameters);
+			return stored == null ? null : decode(versionKey, stored);
+		} catch (ClassNotFoundException | ClassCastException | IOException | GeneralSecurityException e) {
+			logger.error("Cannot decode the version. reason = '{}'", e.getMessage());
+			return null;
+		}
+	}
+
+	private BaseVersionedNetworkContent deserialize(Data data) throws IOException, ClassNotFoundException {
+		return (BaseVersionedNetworkContent) dataManager.getSerializer().deserialize(data.toBytes());
+	}
+
+	private T decode(Number160 versionKey, BaseVersionedNetworkContent stored) throws ClassNotFoundException,
+			IOException, GeneralSecurityException {
+		T content = codec.decode(stored);
+		content.setVersionKey(versionKey);
+		content.setBasedOnKey(stored.getBasedOnKey());
+		return content;
+	}
+
+	/**
+	 * @param versionKey the version key of the content to put
+	 * @return the versions which have been merged into the content and need to become predecessors of the next
+	 *         version
+	 */
+	protected Set<Number160> getMergedVersions(Number160 versionKey) {
+		Set<Number160> merged = mergedVersions.get(versionKey);
+		return merged == null ? Collections.<Number160> emptySet() : merged;
+	}
+
+	/**
+	 * Must be called after a successful put
+	 * 
+	 * @param basedOnKey the version the put content is based on
+	 */
+	protected void clearMergedVersions(Number160 basedOnKey) {
+		mergedVersions.remove(basedOnKey);
+	}
+
+	/**
+	 * Merges all latest versions of a fork into the newest one. The merged version keeps the version key of the
+	 * newest version and is cached as such. With the next put, all versions of the fork become its predecessors,
+	 * which resolves the fork.
+	 * 
+	 * @param latestVersionKeys the latest versions (the heads of the fork) in ascending order
+	 * @return the merged version or <code>null</code> if the fork cannot be merged
+	 */
+	protected T mergeFork(List<Number160> latestVersionKeys) {
+		IMergeStrategy<T> strategy = mergeStrategy;
+		if (strategy == null) {
+			return null;
+		}
+
+		Number160 ancestorKey = findCommonAncestor(latestVersionKeys);
+		T ancestor = ancestorKey == null ? null : getVersion(ancestorKey);
+		Number160 newestKey = latestVersionKeys.get(latestVersionKeys.size() - 1);
+		T merged = getVersion(newestKey);
+		if (merged == null) {
+			logger.warn("Cannot merge the fork, the newest version is not available. {}", parameters);
+			return null;
+		}
+
+		Set<Number160> others = new HashSet<Number160>();
+		for (Number160 versionKey : latestVersionKeys.subList(0, latestVersionKeys.size() - 1)) {
+			T other = getVersion(versionKey);
+			if (other == null) {
+				logger.warn("Cannot merge the fork, a version is not available. {}", parameters);
+				return null;
+			}
+			merged = strategy.merge(ancestor, merged, other);
+			if (merged == null) {
+				logger.warn("Cannot merge the fork, the versions conflict. {}", parameters);
+				return null;
+			}
+			others.add(versionKey);
+		}
+
+		merged.setVersionKey(newestKey);
+		mergedVersions.put(newestKey, others);
+		contentCache.put(newestKey, merged);
+		return merged;
+	}
+
+	/**
+	 * Merges a version that has been rejected because of a version fork with the latest version.
+	 * 
+	 * @param basedOnKey the version the rejected content is based on
+	 * @param ours the rejected content
+	 * @return the merged content, ready to be put, or <code>null</code> if it cannot be merged
+	 */
+	protected T mergeAfterPut(Number160 basedOnKey, T ours) {
+		IMergeStrategy<T> strategy = mergeStrategy;
+		if (strategy == null) {
+			return null;
+		}
+
+		T theirs;
+		try {
+			theirs = get();
+		} catch (GetFailedException e) {
+			logger.warn("Cannot merge the rejected version, the latest version is not available. {}", parameters);
+			return null;
+		}
+
+		T ancestor = Number160.ZERO.equals(basedOnKey) ? null : getVersion(basedOnKey);
+		T merged = strategy.merge(ancestor, ours, theirs);
+		if (merged == null) {
+			logger.warn("Cannot merge the rejected version, it conflicts with the latest version. {}", parameters);
+			return null;
+		}
+
+		merged.setVersionKey(theirs.getVersionKey());
+		merged.setBasedOnKey(theirs.getBasedOnKey());
+		return merged;
+	}
+
+	/**
+	 * Finds the latest version all given versions are based on, using the cached digest.
+	 * 
+	 * @param versionKeys the versions
+	 * @return the key of the common ancestor or <code>null</code> if there is none in the digest
+	 */
+	protected Number160 findCommonAncestor(Collection<Number160> versionKeys) {
+		Set<Number160> common = null;
+		for (Number160 versionKey : versionKeys) {
+			Set<Number160> predecessors = getPredecessors(versionKey);
+			if (common == null) {
+				common = predecessors;
+			} else {
+				common.retainAll(predecessors);
+			}
+		}
+
+		if (common == null) {
+			return null;
+		}
+		common.remove(Number160.ZERO);
+		return common.isEmpty() ? null : Collections.max(common);
+	}
+
+	private Set<Number160> getPredecessors(Number160 versionKey) {
+		Set<Number160> predecessors = new HashSet<Number160>();
+		ArrayDeque<Number160> open = new ArrayDeque<Number160>();
+		open.add(versionKey);
+		while (!open.isEmpty()) {
+			Collection<Number160> basedOnSet = digestCache.get(open.poll());
+			if (basedOnSet != null) {
+				for (Number160 basedOnKey : basedOnSet) {
+					if (predecessors.add(basedOnKey)) {
+						open.add(basedOnKey);
+					}
+				}
+			}
+		}
+		return predecessors;
+	}
+
+	/**
+	 * Adds the versions of the digests returned by the replicas to the cached version tree. All replicas store
+	 * the same predecessors for a version, thus the collections of the first replica are taken as they are.
+	 */
+	protected void mergeDigest(Map<PeerAddress, DigestResult> rawDigest, Cache<Collection<Number160>> digestCache) {
 		if (rawDigest == null) {
-			return digestMap;
+			return;
 		}
-		for (PeerAddress peerAddress : rawDigest.keySet()) {
-			NavigableMap<Number640, Collection<Number160>> tmp = rawDigest.get(peerAddress).keyDigest();
+		for (DigestResult digestResult : rawDigest.values()) {
+			NavigableMap<Number640, Collection<Number160>> tmp = digestResult.keyDigest();
 			if (tmp == null || tmp.isEmpty()) {
 				// ignore this peer
 			} else {
-				for (Number640 key : tmp.keySet()) {
-					for (Number160 bKey : tmp.get(key)) {
-						if (!digestMap.containsKey(key.versionKey())) {
-							digestMap.put(key.versionKey(), new HashSet<Number160>());
-						}
-						digestMap.get(key.versionKey()).add(bKey);
+				for (Entry<Number640, Collection<Number160>> entry : tmp.entrySet()) {
+					Number160 versionKey = entry.getKey().versionKey();
+					if (!digestCache.containsKey(versionKey)) {
+						digestCache.put(versionKey, entry.getValue());
 					}
 				}
 			}
 		}
-		return digestMap;
 	}
 
-	@SuppressWarnings("unchecked")
-	protected NavigableMap<Number160, T> buildData(Map<PeerAddress, Map<Number640, Data>> rawData) {
-		NavigableMap<Number160, T> dataMap = new TreeMap<Number160, T>();
+	/**
+	 * Joins the versions returned by the replicas. The replicas return identical payloads for the same version
+	 * key, thus every version is kept only once. The versions are not deserialized here.
+	 */
+	protected void buildData(Map<PeerAddress, Map<Number640, Data>> rawData, Cache<Data> dataMap) {
 		if (rawData == null) {
-			return dataMap;
+			return;
 		}
 		for (PeerAddress peerAddress : rawData.keySet()) {
 			Map<Number640, Data> tmp = rawData.get(peerAddress);
 			if (tmp == null || tmp.isEmpty()) {
 				// ignore this peer
 			} else {
-				for (Number640 key : tmp.keySet()) {
-					try {
-						byte[] buffer = tmp.get(key).toBytes();
-						if (buffer != null && buffer.length > 0) {
-							T object = (T) dataManager.getSerializer().deserialize(buffer);
-							dataMap.put(key.versionKey(), object);
-						} else {
-							logger.warn(
-									"Received unreadable buffer object = '{}'",
-									tmp.get(key).object().getClass().getSimpleName());
-						}
-					} catch (IOException e) {
-						logger.warn("Could not deserialize the data. Data could be null. Reason = '{}'", e.getMessage());
-					} catch (Exception e) {
-						logger.warn("Could not get data. Reason = '{}'", e.getMessage());
+				for (Entry<Number640, Data> entry : tmp.entrySet()) {
+					Number160 versionKey = entry.getKey().versionKey();
+					if (dataMap.containsKey(versionKey)) {
+						// already received from another replica
+						continue;
+					}
+					Data data = entry.getValue();
+					if (data != null && data.length() > 0) {
+						dataMap.put(versionKey, data);
+					} else {
+						logger.warn("Received an empty version from peer {}. {}", peerAddress, parameters);
 					}
 				}
 			}
 		}
-		return dataMap;
 	}
 
-	protected boolean hasVersionDelay(Map<Number160, ?> latestVersions, Cache<Set<Number160>> digestCache) {
-		for (Number160 version : digestCache.keySet()) {
-			for (Number160 basedOnKey : digestCache.get(version)) {
+	protected boolean hasVersionDelay(Cache<?> latestVersions, Cache<Collection<Number160>> digestCache) {
+		for (int i = 0; i < digestCache.size(); i++) {
+			for (Number160 basedOnKey : digestCache.valueAt(i)) {
 				if (latestVersions.containsKey(basedOnKey)) {
 					return true;
 				}
@@ -112,34 +587,41 @@ public abstract class BaseVersionManager<T extends BaseVersionedNetworkContent>
 		return false;
 	}
 
-	protected Cache<Set<Number160>> getLatest(Cache<Set<Number160>> cache) {
-		// delete all predecessors
-		Cache<Set<Number160>> tmp = new Cache<Set<Number160>>(cache);
-		Cache<Set<Number160>> result = new Cache<Set<Number160>>();
-		while (!tmp.isEmpty()) {
-			// last entry is a latest version
-			Entry<Number160, Set<Number160>> latest = tmp.lastEntry();
-			// store in results list
-			result.put(latest.getKey(), latest.getValue());
-			// delete all predecessors of latest entry
-			deletePredecessors(latest.getKey(), tmp);
+	/**
+	 * Counts the latest versions, which are the versions no other cached version is based on. More than one
+	 * latest version is a fork.
+	 */
+	protected int countLatest(Cache<Collection<Number160>> digestCache) {
+		int count = 0;
+		for (int i = 0; i < digestCache.size(); i++) {
+			if (isLatest(i, digestCache)) {
+				count++;
+			}
 		}
-		return result;
+		return count;
 	}
 
-	protected void deletePredecessors(Number160 key, Cache<Set<Number160>> cache) {
-		Set<Number160> basedOnSet = cache.remove(key);
-		// check if set has been already deleted
-		if (basedOnSet == null) {
-			return;
-		}
-		// check if version is initial version
-		if (basedOnSet.isEmpty()) {
-			return;
+	/**
+	 * @return the latest versions in ascending order
+	 */
+	protected List<Number160> getLatest(Cache<Collection<Number160>> digestCache) {
+		List<Number160> latest = new ArrayList<Number160>();
+		for (int i = 0; i < digestCache.size(); i++) {
+			if (isLatest(i, digestCache)) {
+				latest.add(digestCache.keyAt(i));
+			}
 		}
-		// remove all predecessor versions recursively
-		for (Number160 basedOnKey : basedOnSet) {
-			deletePredecessors(basedOnKey, cache);
+		return latest;
+	}
+
+	private static boolean isLatest(int index, Cache<Collection<Number160>> digestCache) {
+		Number160 versionKey = digestCache.keyAt(index);
+		// only younger versions can be based on it
+		for (int i = index + 1; i < digestCache.size(); i++) {
+			if (digestCache.valueAt(i).contains(versionKey)) {
+				return false;
+			}
 		}
+		return true;
 	}
 }
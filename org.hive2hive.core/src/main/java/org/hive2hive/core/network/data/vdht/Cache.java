@@ -1,43 +1,209 @@
 package org.hive2hive.core.network.data.vdht;
 
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Arrays;
 
 import net.tomp2p.peers.Number160;
 
 import org.hive2hive.core.H2HConstants;
 
-public class Cache<V> extends TreeMap<Number160, V> {
+/**
+ * Bounded version history, ordered by the version keys (timestamp and hash). The entries are kept in a ring
+ * buffer. Versions which are {@link H2HConstants#MAX_VERSIONS_HISTORY} or more counters older than the latest
+ * version are dropped from the front. Looking up or iterating the entries (using {@link #keyAt(int)} and
+ * {@link #valueAt(int)}) does not allocate.
+ *
+ * @author Seppi
+ *
+ * @param <V> the type of the cached values
+ */
+public class Cache<V> {
 
-	private static final long serialVersionUID = 7731754953812711346L;
+	private final int historyLength;
+
+	private Number160[] keys;
+	private Object[] values;
+	// the physical position of the oldest entry
+	private int head = 0;
+	private int size = 0;
 
 	public Cache() {
-		super();
+		this(H2HConstants.MAX_VERSIONS_HISTORY);
 	}
 
-	public Cache(Cache<V> cache) {
-		super(cache);
+	public Cache(int historyLength) {
+		this.historyLength = historyLength;
+		this.keys = new Number160[Math.max(historyLength, 2)];
+		this.values = new Object[keys.length];
 	}
 
-	@Override
-	public void putAll(Map<? extends Number160, ? extends V> map) {
-		super.putAll(map);
-		cleanUp();
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @param index the position in ascending version order, from <code>0</code> to <code>size() - 1</code>
+	 * @return the version key at this position
+	 */
+	public Number160 keyAt(int index) {
+		checkIndex(index);
+		return keys[physical(index)];
+	}
+
+	/**
+	 * @param index the position in ascending version order, from <code>0</code> to <code>size() - 1</code>
+	 * @return the value at this position
+	 */
+	@SuppressWarnings("unchecked")
+	public V valueAt(int index) {
+		checkIndex(index);
+		return (V) values[physical(index)];
+	}
+
+	/**
+	 * @return the latest version key or <code>null</code> if the cache is empty
+	 */
+	public Number160 lastKey() {
+		return isEmpty() ? null : keyAt(size - 1);
+	}
+
+	/**
+	 * @return the value of the latest version or <code>null</code> if the cache is empty
+	 */
+	public V lastValue() {
+		return isEmpty() ? null : valueAt(size - 1);
+	}
+
+	public boolean containsKey(Number160 key) {
+		return indexOf(key) >= 0;
+	}
+
+	public V get(Number160 key) {
+		int index = indexOf(key);
+		return index < 0 ? null : valueAt(index);
 	}
 
 	public V put(Number160 key, V value) {
-		try {
-			return super.put(key, value);
-		} finally {
-			cleanUp();
+		int index = indexOf(key);
+		if (index >= 0) {
+			V previous = valueAt(index);
+			values[physical(index)] = value;
+			return previous;
+		}
+
+		if (size == keys.length) {
+			grow();
+		}
+		// shift the younger entries by one to make space
+		int insertion = -(index + 1);
+		for (int i = size; i > insertion; i--) {
+			keys[physical(i)] = keys[physical(i - 1)];
+			values[physical(i)] = values[physical(i - 1)];
+		}
+		keys[physical(insertion)] = key;
+		values[physical(insertion)] = value;
+		size++;
+		cleanUp();
+		return null;
+	}
+
+	public void putAll(Cache<? extends V> cache) {
+		for (int i = 0; i < cache.size(); i++) {
+			put(cache.keyAt(i), cache.valueAt(i));
 		}
 	}
 
+	public V remove(Number160 key) {
+		int index = indexOf(key);
+		if (index < 0) {
+			return null;
+		}
+
+		V removed = valueAt(index);
+		for (int i = index; i < size - 1; i++) {
+			keys[physical(i)] = keys[physical(i + 1)];
+			values[physical(i)] = values[physical(i + 1)];
+		}
+		keys[physical(size - 1)] = null;
+		values[physical(size - 1)] = null;
+		size--;
+		return removed;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, null);
+		Arrays.fill(values, null);
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * Binary search over the entries.
+	 *
+	 * @return the index of the key or <code>-(insertion point) - 1</code> if it is not contained
+	 */
+	private int indexOf(Number160 key) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = keys[physical(middle)].compareTo(key);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
 	private void cleanUp() {
-		if (!isEmpty()) {
-			while (firstKey().timestamp() + H2HConstants.MAX_VERSIONS_HISTORY <= lastKey().timestamp()) {
-				pollFirstEntry();
+		long latest = keyAt(size - 1).timestamp();
+		while (keys[head].timestamp() + historyLength <= latest) {
+			keys[head] = null;
+			values[head] = null;
+			head = (head + 1) % keys.length;
+			size--;
+		}
+	}
+
+	private void grow() {
+		// forks can hold more versions than the history length, reorder the entries starting at 0
+		Number160[] grownKeys = new Number160[keys.length * 2];
+		Object[] grownValues = new Object[grownKeys.length];
+		for (int i = 0; i < size; i++) {
+			grownKeys[i] = keys[physical(i)];
+			grownValues[i] = values[physical(i)];
+		}
+		keys = grownKeys;
+		values = grownValues;
+		head = 0;
+	}
+
+	private int physical(int index) {
+		return (head + index) % keys.length;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("{");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				builder.append(", ");
 			}
+			builder.append(keyAt(i)).append('=').append(valueAt(i));
 		}
+		return builder.append('}').toString();
 	}
 }
@@ -0,0 +1,26 @@
+package org.hive2hive.core.network.data.vdht;
+
+import org.hive2hive.core.model.versioned.BaseVersionedNetworkContent;
+
+/**
+ * Resolves a version fork of versioned content by merging the concurrent versions.
+ *
+ * @author Seppi
+ *
+ * @param <T> the type of the versioned content
+ */
+public interface IMergeStrategy<T extends BaseVersionedNetworkContent> {
+
+	/**
+	 * Three-way merge of two concurrent versions. The changes of <code>theirs</code> (compared to the
+	 * ancestor) are applied to <code>ours</code>. The version keys are handled by the version manager.
+	 *
+	 * @param ancestor the latest common predecessor of both versions. Is <code>null</code> if it is not
+	 *            known, the strategy then has to merge the two versions without it.
+	 * @param ours the version the changes are applied to
+	 * @param theirs the concurrent version
+	 * @return the merged version (usually <code>ours</code>) or <code>null</code> if the versions conflict.
+	 *         In case of a conflict, <code>ours</code> must not be modified.
+	 */
+	T merge(T ancestor, T ours, T theirs);
+}
@@ -0,0 +1,37 @@
+package org.hive2hive.core.network.data.vdht;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+import org.hive2hive.core.model.versioned.BaseVersionedNetworkContent;
+
+/**
+ * Converts versioned content from and to the form it is stored in the DHT (e.g. encrypted).
+ * 
+ * @author Seppi
+ *
+ * @param <T> the type of the versioned content
+ */
+public interface IVersionCodec<T extends BaseVersionedNetworkContent> {
+
+	/**
+	 * Encodes the content before it is put. The version keys are handled by the version manager.
+	 * 
+	 * @param content the content to encode
+	 * @return the content to store
+	 * @throws IOException if the content cannot be processed
+	 * @throws GeneralSecurityException if the content cannot be encrypted
+	 */
+	BaseVersionedNetworkContent encode(T content) throws IOException, GeneralSecurityException;
+
+	/**
+	 * Decodes a stored version. The version manager only decodes the versions it actually returns.
+	 * 
+	 * @param stored a freshly deserialized stored version
+	 * @return the content, which must not be shared with any other caller
+	 * @throws ClassNotFoundException if the decoded content has an unknown type
+	 * @throws IOException if the content cannot be processed
+	 * @throws GeneralSecurityException if the content cannot be decrypted
+	 */
+	T decode(BaseVersionedNetworkContent stored) throws ClassNotFoundException, IOException, GeneralSecurityException;
+}
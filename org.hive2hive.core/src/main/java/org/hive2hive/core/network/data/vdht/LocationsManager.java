@@ -21,19 +21,38 @@ import org.slf4j.LoggerFactory;
 public class LocationsManager {
 	private static final Logger logger = LoggerFactory.getLogger(LocationsManager.class);
 
-	private final KeyPair protectionKeys;
 	private final VersionManager<Locations> versionManager;
 	private final DataManager dataManager;
 	private final String userId;
+	private volatile KeyPair protectionKeys;
 
 	public LocationsManager(DataManager dataManager, String userId, KeyPair protectionKeys) {
+		this(dataManager, userId);
+		this.protectionKeys = protectionKeys;
+	}
+
+	/**
+	 * Creates a locations manager which can already get the locations. The protection keys are stored in the user
+	 * profile and must be set before the locations can be put or repaired.
+	 * 
+	 * @param dataManager the data manager
+	 * @param userId the owner of the locations
+	 */
+	public LocationsManager(DataManager dataManager, String userId) {
 		this.dataManager = dataManager;
 		this.userId = userId;
-		this.protectionKeys = protectionKeys;
 		versionManager = new VersionManager<Locations>(dataManager, userId, H2HConstants.USER_LOCATIONS);
+		versionManager.setMergeStrategy(new LocationsMergeStrategy());
+	}
+
+	public void setProtectionKeys(KeyPair protectionKeys) {
+		this.protectionKeys = protectionKeys;
 	}
 
 	public void put(Locations locations) throws PutFailedException {
+		if (protectionKeys == null) {
+			throw new PutFailedException("The protection keys of the locations are not known.");
+		}
 		versionManager.put(locations, protectionKeys);
 	}
 
@@ -41,6 +60,23 @@ public class LocationsManager {
 		return versionManager.get();
 	}
 
+	/**
+	 * @return a snapshot of the latest known locations to persist for the next session or <code>null</code>
+	 */
+	public VersionSnapshot getSnapshot() {
+		return versionManager.getSnapshot();
+	}
+
+	/**
+	 * Seeds the cache with the locations of the last session, see {@link BaseVersionManager#seed(VersionSnapshot)}
+	 * 
+	 * @param snapshot the persisted snapshot
+	 * @return <code>true</code> if the snapshot belongs to this user
+	 */
+	public boolean seed(VersionSnapshot snapshot) {
+		return versionManager.seed(snapshot);
+	}
+
 	/**
 	 * The locations file might have a conflict or is missing during the login. Here we try to repair it.
 	 * Only call this if the locations are gone or ongoing version forks are detected. All entries of old
@@ -49,6 +85,11 @@ public class LocationsManager {
 	 * @return the new locations or <code>null</code> if it failed
 	 */
 	public Locations repairLocations() {
+		if (protectionKeys == null) {
+			logger.warn("Cannot repair the locations of user {} without protection keys", userId);
+			return null;
+		}
+
 		Parameters removeParams = new Parameters().setContentKey(H2HConstants.USER_LOCATIONS).setLocationKey(userId)
 				.setProtectionKeys(protectionKeys);
 		logger.info("Start repairing the locations of user {}", userId);
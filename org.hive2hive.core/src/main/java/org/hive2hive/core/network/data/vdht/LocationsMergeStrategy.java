@@ -0,0 +1,39 @@
+package org.hive2hive.core.network.data.vdht;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.model.versioned.Locations;
+
+/**
+ * Merges concurrent {@link Locations}. Addresses added in the other version are added, addresses removed in
+ * the other version are removed. Without a common ancestor, the union of both versions is built. Two versions
+ * of the locations never conflict.
+ *
+ * @author Nico
+ *
+ */
+public class LocationsMergeStrategy implements IMergeStrategy<Locations> {
+
+	@Override
+	public Locations merge(Locations ancestor, Locations ours, Locations theirs) {
+		if (!ours.getUserId().equals(theirs.getUserId())) {
+			return null;
+		}
+
+		Set<PeerAddress> base = ancestor == null ? new HashSet<PeerAddress>() : ancestor.getPeerAddresses();
+		for (PeerAddress address : theirs.getPeerAddresses()) {
+			if (!base.contains(address)) {
+				ours.addPeerAddress(address);
+			}
+		}
+		for (PeerAddress address : base) {
+			if (!theirs.getPeerAddresses().contains(address)) {
+				ours.removePeerAddress(address);
+			}
+		}
+		return ours;
+	}
+}
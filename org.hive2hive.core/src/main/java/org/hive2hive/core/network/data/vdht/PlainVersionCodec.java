@@ -0,0 +1,24 @@
+package org.hive2hive.core.network.data.vdht;
+
+import org.hive2hive.core.model.versioned.BaseVersionedNetworkContent;
+
+/**
+ * Stores the content as it is.
+ * 
+ * @author Seppi
+ *
+ * @param <T> the type of the versioned content
+ */
+public class PlainVersionCodec<T extends BaseVersionedNetworkContent> implements IVersionCodec<T> {
+
+	@Override
+	public BaseVersionedNetworkContent encode(T content) {
+		return content;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T decode(BaseVersionedNetworkContent stored) {
+		return (T) stored;
+	}
+}
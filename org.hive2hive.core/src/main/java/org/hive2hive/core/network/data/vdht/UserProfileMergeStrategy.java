@@ -0,0 +1,331 @@
+package org.hive2hive.core.network.data.vdht;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.UserPermission;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Structural three-way merge of concurrent {@link UserProfile}s. The nodes of the file tree are identified by
+ * their file keys. Nodes added, deleted, moved, renamed, updated (hashes) or (un-)shared in the other version
+ * are applied to our version, as long as our version did not change the same node differently. The merge
+ * fails if
+ * <ul>
+ * <li>both versions changed the same property of a node to different values</li>
+ * <li>a node is deleted in one version but modified in the other</li>
+ * <li>the merged tree would be inconsistent (e.g. a node in a deleted folder or two nodes with the same
+ * name)</li>
+ * <li>both versions changed the sharing of folders</li>
+ * </ul>
+ * Without a common ancestor, only nodes that exist in a single version are merged.
+ *
+ * @author Nico
+ *
+ */
+public class UserProfileMergeStrategy implements IMergeStrategy<UserProfile> {
+
+	private static final Logger logger = LoggerFactory.getLogger(UserProfileMergeStrategy.class);
+
+	@Override
+	public UserProfile merge(UserProfile ancestor, UserProfile ours, UserProfile theirs) {
+		if (!ours.getUserId().equals(theirs.getUserId())) {
+			return null;
+		}
+
+		Map<PublicKey, Index> base = ancestor == null ? new HashMap<PublicKey, Index>() : index(ancestor.getRoot());
+		Map<PublicKey, Index> mine = index(ours.getRoot());
+		Map<PublicKey, Index> other = index(theirs.getRoot());
+
+		// check everything before modifying our version
+		if (hasConflict(base, mine, other)) {
+			return null;
+		}
+
+		// apply the modifications of the other version, detach the nodes it moved or renamed
+		List<Index> detached = new ArrayList<Index>();
+		List<PublicKey> targets = new ArrayList<PublicKey>();
+		for (Index node : other.values()) {
+			Index baseNode = base.get(node.getFilePublicKey());
+			Index myNode = mine.get(node.getFilePublicKey());
+			if (baseNode != null && myNode != null) {
+				update(baseNode, myNode, node);
+				boolean moved = !equal(parentKey(baseNode), parentKey(node));
+				boolean renamed = !equal(baseNode.getName(), node.getName());
+				if (moved || renamed) {
+					targets.add(moved ? parentKey(node) : parentKey(myNode));
+					myNode.getParent().removeChild(myNode);
+					if (renamed) {
+						myNode.setName(node.getName());
+					}
+					detached.add(myNode);
+				}
+			}
+		}
+
+		// remove the nodes deleted in the other version
+		for (PublicKey key : base.keySet()) {
+			Index myNode = mine.get(key);
+			if (!other.containsKey(key) && myNode != null && myNode.getParent() != null) {
+				myNode.getParent().removeChild(myNode);
+			}
+		}
+
+		// add the nodes created in the other version, parents first
+		for (Index node : Index.getIndexList(theirs.getRoot())) {
+			PublicKey key = node.getFilePublicKey();
+			if (!base.containsKey(key) && !mine.containsKey(key)) {
+				FolderIndex parent = (FolderIndex) mine.get(node.getParent().getFilePublicKey());
+				mine.put(key, copy(node, parent));
+			}
+		}
+
+		// attach the moved and renamed nodes at their new place
+		for (int i = 0; i < detached.size(); i++) {
+			FolderIndex target = (FolderIndex) mine.get(targets.get(i));
+			detached.get(i).setParent(target);
+			target.addChild(detached.get(i));
+		}
+
+		return ours;
+	}
+
+	private boolean hasConflict(Map<PublicKey, Index> base, Map<PublicKey, Index> mine, Map<PublicKey, Index> other) {
+		boolean mineShares = false;
+		boolean otherShares = false;
+
+		// the parent and name of every node in the merged version
+		Map<PublicKey, PublicKey> parents = new HashMap<PublicKey, PublicKey>();
+		Map<PublicKey, String> names = new HashMap<PublicKey, String>();
+
+		Set<PublicKey> keys = new HashSet<PublicKey>(base.keySet());
+		keys.addAll(mine.keySet());
+		keys.addAll(other.keySet());
+		for (PublicKey key : keys) {
+			Index baseNode = base.get(key);
+			Index myNode = mine.get(key);
+			Index otherNode = other.get(key);
+
+			if (baseNode == null) {
+				// created in one or both versions
+				if (myNode != null && otherNode != null && !sameState(myNode, otherNode)) {
+					logger.debug("'{}' has been created differently in both versions.", myNode.getName());
+					return true;
+				}
+				Index node = myNode == null ? otherNode : myNode;
+				mineShares |= myNode != null && otherNode == null && isSharedFolder(myNode);
+				otherShares |= myNode == null && isSharedFolder(otherNode);
+				parents.put(key, parentKey(node));
+				names.put(key, node.getName());
+			} else if (myNode == null || otherNode == null) {
+				// deleted in one or both versions
+				Index remaining = myNode == null ? otherNode : myNode;
+				if (remaining != null && !sameState(baseNode, remaining)) {
+					logger.debug("'{}' has been deleted in one version and modified in the other.", baseNode.getName());
+					return true;
+				}
+			} else {
+				if (conflicts(parentKey(baseNode), parentKey(myNode), parentKey(otherNode))
+						|| conflicts(baseNode.getName(), myNode.getName(), otherNode.getName())) {
+					logger.debug("'{}' has been moved or renamed differently in both versions.", baseNode.getName());
+					return true;
+				}
+
+				if (baseNode.isFile()) {
+					FileIndex baseFile = (FileIndex) baseNode;
+					FileIndex myFile = (FileIndex) myNode;
+					FileIndex otherFile = (FileIndex) otherNode;
+					if (conflicts(baseFile.getHash(), myFile.getHash(), otherFile.getHash())
+							|| conflicts(baseFile.getMetaFileHash(), myFile.getMetaFileHash(), otherFile.getMetaFileHash())) {
+						logger.debug("'{}' has been updated in both versions.", baseNode.getName());
+						return true;
+					}
+				} else {
+					boolean myShareChanged = !sameShare(baseNode, myNode);
+					boolean otherShareChanged = !sameShare(baseNode, otherNode);
+					if (myShareChanged && otherShareChanged && !sameShare(myNode, otherNode)) {
+						logger.debug("'{}' has been shared differently in both versions.", baseNode.getName());
+						return true;
+					}
+					mineShares |= myShareChanged;
+					otherShares |= otherShareChanged;
+				}
+
+				boolean moved = !equal(parentKey(baseNode), parentKey(otherNode));
+				boolean renamed = !equal(baseNode.getName(), otherNode.getName());
+				parents.put(key, moved ? parentKey(otherNode) : parentKey(myNode));
+				names.put(key, renamed ? otherNode.getName() : myNode.getName());
+			}
+		}
+
+		if (mineShares && otherShares) {
+			logger.debug("Both versions changed the sharing of folders.");
+			return true;
+		}
+
+		return !isConsistent(parents, names);
+	}
+
+	/**
+	 * Checks that every node of the merged tree has a parent, no node is its own ancestor and the names within
+	 * a folder are unique.
+	 */
+	private static boolean isConsistent(Map<PublicKey, PublicKey> parents, Map<PublicKey, String> names) {
+		Map<PublicKey, Set<String>> childNames = new HashMap<PublicKey, Set<String>>();
+		for (Entry<PublicKey, PublicKey> entry : parents.entrySet()) {
+			PublicKey parent = entry.getValue();
+			if (parent == null) {
+				// the root
+				continue;
+			} else if (!parents.containsKey(parent)) {
+				logger.debug("'{}' would be in a deleted folder.", names.get(entry.getKey()));
+				return false;
+			}
+
+			Set<String> siblings = childNames.get(parent);
+			if (siblings == null) {
+				siblings = new HashSet<String>();
+				childNames.put(parent, siblings);
+			}
+			if (!siblings.add(names.get(entry.getKey()).toLowerCase())) {
+				logger.debug("There would be two files named '{}' in the same folder.", names.get(entry.getKey()));
+				return false;
+			}
+
+			// walk up to the root
+			int depth = 0;
+			while (parent != null) {
+				if (parent.equals(entry.getKey()) || depth++ > parents.size()) {
+					logger.debug("'{}' would be moved into itself.", names.get(entry.getKey()));
+					return false;
+				}
+				parent = parents.get(parent);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Applies the changed hashes and sharing of the other version
+	 */
+	private static void update(Index baseNode, Index myNode, Index otherNode) {
+		if (myNode.isFile()) {
+			FileIndex baseFile = (FileIndex) baseNode;
+			FileIndex myFile = (FileIndex) myNode;
+			FileIndex otherFile = (FileIndex) otherNode;
+			if (!equal(baseFile.getHash(), otherFile.getHash())) {
+				myFile.setHash(otherFile.getHash());
+			}
+			if (!equal(baseFile.getMetaFileHash(), otherFile.getMetaFileHash())) {
+				myFile.setMetaFileHash(otherFile.getMetaFileHash());
+			}
+		} else if (!sameShare(baseNode, otherNode)) {
+			applyShare((FolderIndex) myNode, (FolderIndex) otherNode);
+		}
+	}
+
+	private static Index copy(Index node, FolderIndex parent) {
+		if (node.isFolder()) {
+			FolderIndex folder = new FolderIndex(parent, node.getFileKeys(), node.getName());
+			applyShare(folder, (FolderIndex) node);
+			return folder;
+		} else {
+			FileIndex file = (FileIndex) node;
+			FileIndex copy = new FileIndex(parent, file.getFileKeys(), file.getName(), file.getHash());
+			copy.setMetaFileHash(file.getMetaFileHash());
+			return copy;
+		}
+	}
+
+	private static void applyShare(FolderIndex target, FolderIndex source) {
+		if (source.getSharedFlag() && !target.getSharedFlag()) {
+			target.share(source.getProtectionKeys());
+		} else if (!source.getSharedFlag() && target.getSharedFlag()) {
+			target.unshare();
+		} else if (source.getSharedFlag()) {
+			target.setProtectionKeys(source.getProtectionKeys());
+		}
+
+		target.clearUserPermissions();
+		for (UserPermission permission : source.getUserPermissions()) {
+			target.addUserPermissions(new UserPermission(permission));
+		}
+	}
+
+	private static Map<PublicKey, Index> index(FolderIndex root) {
+		Map<PublicKey, Index> nodes = new HashMap<PublicKey, Index>();
+		for (Index node : Index.getIndexList(root)) {
+			nodes.put(node.getFilePublicKey(), node);
+		}
+		return nodes;
+	}
+
+	private static boolean sameState(Index first, Index second) {
+		if (first.isFolder() != second.isFolder() || !equal(parentKey(first), parentKey(second))
+				|| !equal(first.getName(), second.getName())) {
+			return false;
+		} else if (first.isFile()) {
+			FileIndex firstFile = (FileIndex) first;
+			FileIndex secondFile = (FileIndex) second;
+			return equal(firstFile.getHash(), secondFile.getHash())
+					&& equal(firstFile.getMetaFileHash(), secondFile.getMetaFileHash());
+		} else {
+			return sameShare(first, second);
+		}
+	}
+
+	private static boolean sameShare(Index first, Index second) {
+		if (first.isFile()) {
+			return true;
+		}
+
+		FolderIndex firstFolder = (FolderIndex) first;
+		FolderIndex secondFolder = (FolderIndex) second;
+		if (firstFolder.getSharedFlag() != secondFolder.getSharedFlag()) {
+			return false;
+		} else if (firstFolder.getSharedFlag()
+				&& !equal(publicKey(firstFolder.getProtectionKeys()), publicKey(secondFolder.getProtectionKeys()))) {
+			return false;
+		}
+		return firstFolder.getUserPermissions().equals(secondFolder.getUserPermissions());
+	}
+
+	private static boolean isSharedFolder(Index node) {
+		return node.isFolder() && ((FolderIndex) node).getSharedFlag();
+	}
+
+	private static PublicKey parentKey(Index node) {
+		return node.getParent() == null ? null : node.getParent().getFilePublicKey();
+	}
+
+	private static PublicKey publicKey(KeyPair keyPair) {
+		return keyPair == null ? null : keyPair.getPublic();
+	}
+
+	/**
+	 * @return <code>true</code> if both versions changed the value differently
+	 */
+	private static boolean conflicts(Object base, Object mine, Object other) {
+		return !equal(base, mine) && !equal(base, other) && !equal(mine, other);
+	}
+
+	private static boolean equal(Object first, Object second) {
+		if (first instanceof byte[] && second instanceof byte[]) {
+			return Arrays.equals((byte[]) first, (byte[]) second);
+		}
+		return first == null ? second == null : first.equals(second);
+	}
+}
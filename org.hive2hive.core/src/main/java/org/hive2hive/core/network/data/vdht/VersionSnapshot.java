@@ -0,0 +1,67 @@
+package org.hive2hive.core.network.data.vdht;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import net.tomp2p.peers.Number160;
+
+/**
+ * The latest known version of versioned content, persisted between two sessions. The content is kept in its
+ * stored form (as it is in the DHT), thus encrypted content stays encrypted on disk. When the next session
+ * starts, a {@link BaseVersionManager} is seeded with the snapshot and only fetches the content if the DHT holds
+ * a newer version.
+ *
+ * @author Seppi
+ */
+public class VersionSnapshot implements Serializable {
+
+	private static final long serialVersionUID = 5208167311283949817L;
+
+	private final String locationKey;
+	private final String contentKey;
+	private final Number160 versionKey;
+	private final byte[] storedContent;
+	// version key -> the keys of the versions it is based on
+	private final HashMap<Number160, HashSet<Number160>> digest;
+
+	public VersionSnapshot(String locationKey, String contentKey, Number160 versionKey, byte[] storedContent,
+			Cache<Collection<Number160>> digestCache) {
+		this.locationKey = locationKey;
+		this.contentKey = contentKey;
+		this.versionKey = versionKey;
+		this.storedContent = storedContent;
+		this.digest = new HashMap<Number160, HashSet<Number160>>(digestCache.size());
+		for (int i = 0; i < digestCache.size(); i++) {
+			digest.put(digestCache.keyAt(i), new HashSet<Number160>(digestCache.valueAt(i)));
+		}
+	}
+
+	public String getLocationKey() {
+		return locationKey;
+	}
+
+	public String getContentKey() {
+		return contentKey;
+	}
+
+	public Number160 getVersionKey() {
+		return versionKey;
+	}
+
+	/**
+	 * @return the serialized content in its stored form (e.g. encrypted)
+	 */
+	public byte[] getStoredContent() {
+		return storedContent;
+	}
+
+	/**
+	 * @return the version tree of the content
+	 */
+	public Map<Number160, HashSet<Number160>> getDigest() {
+		return digest;
+	}
+}
@@ -1,9 +1,12 @@
 package org.hive2hive.core.network.messages;
 
 import java.security.PublicKey;
+import java.util.Collection;
+import java.util.Map;
 
 import net.tomp2p.futures.FutureDirect;
 import net.tomp2p.futures.FutureResponse;
+import net.tomp2p.peers.PeerAddress;
 
 import org.hive2hive.core.network.messages.direct.BaseDirectMessage;
 import org.hive2hive.core.network.messages.futures.FutureDirectListener;
@@ -47,4 +50,23 @@ public interface IMessageManager {
 	 */
 	boolean sendDirect(BaseDirectMessage message, PublicKey targetPublicKey);
 
+	/**
+	 * Send the same message directly to multiple nodes. The message is signed and encrypted only once, thus
+	 * all receivers must have the private key belonging to the given public key (i.e. they are clients of the
+	 * same user). The {@link BaseDirectMessage#getTargetAddress()} of the message is ignored.<br>
+	 * <br>
+	 * <b>Design decision:</b>In contrast to {@link #sendDirect(BaseDirectMessage, PublicKey)}, the message
+	 * is not re-sent if a receiver does not accept it. This is left to the caller.
+	 * 
+	 * @param message
+	 *            a direct message to send
+	 * @param targetPublicKey
+	 *            the public key of the receivers to encrypt the message
+	 * @param receivers
+	 *            the peer addresses of the receivers
+	 * @return the reply of every receiver
+	 */
+	Map<PeerAddress, AcceptanceReply> sendDirect(BaseDirectMessage message, PublicKey targetPublicKey,
+			Collection<PeerAddress> receivers);
+
 }
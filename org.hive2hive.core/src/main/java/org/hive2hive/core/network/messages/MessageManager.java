@@ -5,12 +5,16 @@ import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.PublicKey;
 import java.security.SignatureException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.metrics.H2HMetrics;
 import org.hive2hive.core.model.versioned.HybridEncryptedContent;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.network.messages.direct.BaseDirectMessage;
@@ -29,6 +33,7 @@ import net.tomp2p.futures.FutureDirect;
 import net.tomp2p.message.Buffer;
 import net.tomp2p.p2p.RequestP2PConfiguration;
 import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.PeerAddress;
 
 /**
  * This class handles the sending of messages.
@@ -59,6 +64,7 @@ public final class MessageManager implements IMessageManager {
 		}
 
 		// prepare message
+		long start = System.nanoTime();
 		prepareMessage(message);
 		message.increaseRoutedSendingCounter();
 
@@ -85,6 +91,7 @@ public final class MessageManager implements IMessageManager {
 		FutureRoutedListener listener = new FutureRoutedListener(message, targetPublicKey, this, serializer);
 		futureSend.addListener(listener);
 		boolean success = listener.await();
+		recordSending(H2HMetrics.MESSAGE_SEND_ROUTED, start, success);
 
 		if (success) {
 			logger.debug("Message sent. Target key = '{}', Message ID = '{}'.", message.getTargetKey(),
@@ -106,6 +113,7 @@ public final class MessageManager implements IMessageManager {
 		}
 
 		// prepare message
+		long start = System.nanoTime();
 		prepareMessage(message);
 		message.increaseDirectSendingCounter();
 
@@ -131,6 +139,7 @@ public final class MessageManager implements IMessageManager {
 		FutureDirectListener listener = new FutureDirectListener(message, targetPublicKey, this, serializer);
 		futureDirect.addListener(listener);
 		boolean success = listener.await();
+		recordSending(H2HMetrics.MESSAGE_SEND_DIRECT, start, success);
 
 		if (success) {
 			logger.debug("Message (direct) sent. Message ID = '{}', Target address = '{}', Sender address = '{}'.",
@@ -143,6 +152,63 @@ public final class MessageManager implements IMessageManager {
 		return success;
 	}
 
+	@Override
+	public Map<PeerAddress, AcceptanceReply> sendDirect(BaseDirectMessage message, PublicKey targetPublicKey,
+			Collection<PeerAddress> receivers) {
+		if (targetPublicKey == null) {
+			throw new IllegalArgumentException("Target public key cannot be null.");
+		}
+
+		// prepare message
+		long start = System.nanoTime();
+		prepareMessage(message);
+		message.increaseDirectSendingCounter();
+
+		// encrypt the message only once for all receivers
+		Map<PeerAddress, AcceptanceReply> replies = new HashMap<PeerAddress, AcceptanceReply>(receivers.size());
+		HybridEncryptedContent encryptedMessage = signAndEncryptMessage(message, targetPublicKey);
+		byte[] data = null;
+		if (encryptedMessage != null) {
+			try {
+				data = serializer.serialize(encryptedMessage);
+			} catch (IOException e) {
+				logger.error("Cannot serialize the encrypted message", e);
+			}
+		}
+
+		if (data == null) {
+			for (PeerAddress receiver : receivers) {
+				replies.put(receiver, AcceptanceReply.FAILURE);
+			}
+			return replies;
+		}
+
+		// send to all receivers in parallel
+		Map<PeerAddress, FutureDirect> futures = new HashMap<PeerAddress, FutureDirect>(receivers.size());
+		for (PeerAddress receiver : receivers) {
+			futures.put(receiver, networkManager.getConnection().getPeer().peer().sendDirect(receiver)
+					.buffer(new Buffer(Unpooled.wrappedBuffer(data))).start());
+		}
+
+		for (Entry<PeerAddress, FutureDirect> entry : futures.entrySet()) {
+			AcceptanceReply reply;
+			if (entry.getValue().awaitUninterruptibly(H2HConstants.AWAIT_NETWORK_OPERATION_MS)) {
+				reply = FutureDirectListener.extractAcceptanceReply(entry.getValue(), serializer);
+			} else {
+				reply = AcceptanceReply.FUTURE_FAILURE;
+			}
+
+			boolean success = reply == AcceptanceReply.OK || reply == AcceptanceReply.OK_PROVISIONAL;
+			recordSending(H2HMetrics.MESSAGE_SEND_DIRECT, start, success);
+			if (!success) {
+				logger.warn("Message (direct) not accepted. Message ID = '{}', Target address = '{}', Reply = '{}'.",
+						message.getMessageID(), entry.getKey(), reply);
+			}
+			replies.put(entry.getKey(), reply);
+		}
+		return replies;
+	}
+
 	/**
 	 * Gets and removes a message callback handler
 	 * 
@@ -181,6 +247,14 @@ public final class MessageManager implements IMessageManager {
 		}
 	}
 
+	private void recordSending(String name, long start, boolean success) {
+		H2HMetrics metrics = networkManager.getMetrics();
+		metrics.recordLatency(name, start);
+		if (!success) {
+			metrics.increment(name + H2HMetrics.FAILED);
+		}
+	}
+
 	private RequestP2PConfiguration createSendingConfiguration() {
 		return new RequestP2PConfiguration(1, 10, 0);
 	}
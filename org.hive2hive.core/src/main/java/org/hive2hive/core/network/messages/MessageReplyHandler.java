@@ -9,6 +9,7 @@ import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.metrics.H2HMetrics;
 import org.hive2hive.core.model.versioned.HybridEncryptedContent;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.security.EncryptionUtil;
@@ -89,6 +90,20 @@ public class MessageReplyHandler implements RawDataReply, ObjectDataReply
 
 	@Override
 	public Object reply(PeerAddress sender, Object request)
+	{
+		long start = System.nanoTime();
+		Object reply = handleRequest(sender, request);
+
+		H2HMetrics metrics = networkManager.getMetrics();
+		metrics.recordLatency(H2HMetrics.MESSAGE_RECEIVE, start);
+		if (reply != AcceptanceReply.OK && reply != AcceptanceReply.OK_PROVISIONAL)
+		{
+			metrics.increment(H2HMetrics.MESSAGE_RECEIVE + H2HMetrics.FAILED);
+		}
+		return reply;
+	}
+
+	private Object handleRequest(PeerAddress sender, Object request)
 	{
 		if (!(request instanceof HybridEncryptedContent))
 		{
@@ -115,7 +115,7 @@ public class FutureDirectListener extends BaseFutureAdapter<FutureDirect> {
 
 	@Override
 	public void operationComplete(FutureDirect future) throws Exception {
-		AcceptanceReply reply = extractAcceptanceReply(future);
+		AcceptanceReply reply = extractAcceptanceReply(future, serializer);
 		if (reply == AcceptanceReply.OK || reply == AcceptanceReply.OK_PROVISIONAL) {
 			// notify the listener about the success of sending the message
 			state = DeliveryState.SUCCESS;
@@ -149,9 +149,11 @@ public class FutureDirectListener extends BaseFutureAdapter<FutureDirect> {
 	 * 
 	 * @param future
 	 *            a future
+	 * @param serializer
+	 *            the serializer to read the reply
 	 * @return a reply showing the result of sending
 	 */
-	private AcceptanceReply extractAcceptanceReply(FutureDirect future) {
+	public static AcceptanceReply extractAcceptanceReply(FutureDirect future, IH2HSerialize serializer) {
 		String errorReason = "";
 		if (future.isSuccess()) {
 			try {
@@ -2,10 +2,13 @@ package org.hive2hive.core.processes;
 
 import java.io.File;
 import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import net.tomp2p.peers.PeerAddress;
 
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
@@ -13,9 +16,12 @@ import org.hive2hive.core.exceptions.NoSessionException;
 import org.hive2hive.core.model.UserPermission;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.vdht.LocationsManager;
 import org.hive2hive.core.processes.common.userprofiletask.GetUserProfileTaskStep;
 import org.hive2hive.core.processes.context.AddFileProcessContext;
+import org.hive2hive.core.processes.context.BulkAddProcessContext;
 import org.hive2hive.core.processes.context.DeleteFileProcessContext;
+import org.hive2hive.core.processes.context.DeleteSubtreeProcessContext;
 import org.hive2hive.core.processes.context.DownloadFileContext;
 import org.hive2hive.core.processes.context.LoginProcessContext;
 import org.hive2hive.core.processes.context.MoveFileProcessContext;
@@ -35,13 +41,20 @@ import org.hive2hive.core.processes.files.InitializeMetaUpdateStep;
 import org.hive2hive.core.processes.files.PutMetaFileStep;
 import org.hive2hive.core.processes.files.ValidateFileStep;
 import org.hive2hive.core.processes.files.add.AddIndexToUserProfileStep;
+import org.hive2hive.core.processes.files.add.AddIndexesToUserProfileStep;
+import org.hive2hive.core.processes.files.add.CheckBulkWriteAccessStep;
 import org.hive2hive.core.processes.files.add.CreateFileKeysStep;
 import org.hive2hive.core.processes.files.add.CreateMetaFileStep;
 import org.hive2hive.core.processes.files.add.PrepareAddNotificationStep;
+import org.hive2hive.core.processes.files.add.PrepareBulkAddNotificationStep;
 import org.hive2hive.core.processes.files.delete.DeleteFromUserProfileStep;
+import org.hive2hive.core.processes.files.delete.DeleteSubtreeContentStep;
+import org.hive2hive.core.processes.files.delete.DeleteSubtreeFromUserProfileStep;
 import org.hive2hive.core.processes.files.delete.PrepareDeleteNotificationStep;
 import org.hive2hive.core.processes.files.download.FindInUserProfileStep;
+import org.hive2hive.core.processes.files.list.FileListPage;
 import org.hive2hive.core.processes.files.list.FileNode;
+import org.hive2hive.core.processes.files.list.GetFileListPageStep;
 import org.hive2hive.core.processes.files.list.GetFileListStep;
 import org.hive2hive.core.processes.files.move.RelinkUserProfileStep;
 import org.hive2hive.core.processes.files.recover.IVersionSelector;
@@ -52,8 +65,11 @@ import org.hive2hive.core.processes.files.update.PrepareUpdateNotificationStep;
 import org.hive2hive.core.processes.files.update.UpdateHashInUserProfileStep;
 import org.hive2hive.core.processes.login.ContactOtherClientsStep;
 import org.hive2hive.core.processes.login.GetLocationsStep;
+import org.hive2hive.core.processes.login.ReadPersistentMetaDataStep;
+import org.hive2hive.core.processes.login.RepairLocationsStep;
 import org.hive2hive.core.processes.login.SessionCreationStep;
 import org.hive2hive.core.processes.login.SessionParameters;
+import org.hive2hive.core.processes.login.WarmPublicKeyCacheStep;
 import org.hive2hive.core.processes.logout.DeleteSessionStep;
 import org.hive2hive.core.processes.logout.RemoveOwnLocationsStep;
 import org.hive2hive.core.processes.logout.SendLogoutNotificationStep;
@@ -140,15 +156,35 @@ public final class ProcessFactory {
 	public IProcessComponent<Void> createLoginProcess(UserCredentials credentials, SessionParameters params,
 			NetworkManager networkManager) throws NoPeerConnectionException {
 
-		LoginProcessContext context = new LoginProcessContext(credentials, params);
+		LocationsManager locationsManager = new LocationsManager(networkManager.getDataManager(),
+				credentials.getUserId());
+		LoginProcessContext context = new LoginProcessContext(credentials, params, locationsManager);
 
 		// process composition
 		SyncProcess process = new SyncProcess();
 
-		process.add(new SessionCreationStep(context, networkManager));
-		process.add(new GetLocationsStep(context, networkManager));
-		process.add(new ContactOtherClientsStep(context, networkManager));
-		process.add(new org.hive2hive.core.processes.login.PutLocationsStep(context, networkManager));
+		// the cached items of the last session are read from disk first, they seed the user profile, the
+		// locations and the meta files such that these are only fetched when they changed in the meantime
+		process.add(new ReadPersistentMetaDataStep(context, networkManager.getDataManager().getMetaFileCache(),
+				networkManager.getDataManager().getSerializer()));
+
+		// independent work runs concurrently: the session creation (deriving the key while fetching the user
+		// profile) and getting the locations
+		SyncProcess prepareProcess = new SyncProcess();
+		prepareProcess.add(new AsyncComponent<>(new SessionCreationStep(context, networkManager)));
+		prepareProcess.add(new AsyncComponent<>(new GetLocationsStep(context)));
+		process.add(prepareProcess);
+
+		// contacting the other clients requires both the session and the locations
+		SyncProcess locationsProcess = new SyncProcess();
+		locationsProcess.add(new RepairLocationsStep(context));
+		locationsProcess.add(new ContactOtherClientsStep(context, networkManager));
+		locationsProcess.add(new org.hive2hive.core.processes.login.PutLocationsStep(context, networkManager));
+
+		SyncProcess finishProcess = new SyncProcess();
+		finishProcess.add(new AsyncComponent<>(locationsProcess));
+		finishProcess.add(new AsyncComponent<>(new WarmPublicKeyCacheStep(context, networkManager)));
+		process.add(finishProcess);
 
 		process.setName("Login Process");
 		return process;
@@ -195,7 +231,8 @@ public final class ProcessFactory {
 		parentProcess.add(new AsyncComponent<>(new StopDownloadsStep(session.getDownloadManager())));
 		parentProcess.add(new AsyncComponent<>(new StopUserQueueWorkerStep(session.getProfileManager())));
 		parentProcess.add(new AsyncComponent<>(new WritePersistentStep(session.getFileAgent(), session.getKeyManager(),
-				networkManager.getDataManager().getSerializer())));
+				networkManager.getLivenessTable(), session.getProfileManager(), session.getLocationsManager(),
+				networkManager.getDataManager().getMetaFileCache(), networkManager.getDataManager().getSerializer())));
 
 		parentProcess.setName("Logout Process");
 		return parentProcess;
@@ -251,6 +288,79 @@ public final class ProcessFactory {
 		return process;
 	}
 
+	/**
+	 * Creates a process that adds many new files at once, e.g. when importing a large folder tree. The content
+	 * of the files is uploaded concurrently across all directories (see {@link H2HConstants#BULK_ADD_THREADS}).
+	 * Afterwards, the new indexes are committed to the user profile in a few batched modifications and a
+	 * single notification is sent for every top file (whose parent is not part of the list). The receivers
+	 * trigger an add event for every file within the top file, such that they download the whole tree.
+	 * 
+	 * @param files the new files and folders to add (order does not depend)
+	 * @param networkManager the network manager with a session
+	 * @param fileConfiguration the file configuration
+	 * @return the bulk add process
+	 * @throws NoPeerConnectionException if the peer has no connection
+	 * @throws NoSessionException if the user is not logged in
+	 */
+	public IProcessComponent<Void> createBulkAddProcess(List<File> files, NetworkManager networkManager,
+			IFileConfiguration fileConfiguration) throws NoPeerConnectionException, NoSessionException {
+		if (files == null || files.isEmpty()) {
+			throw new IllegalArgumentException("Files can't be null or empty.");
+		}
+		H2HSession session = networkManager.getSession();
+		DataManager dataManager = networkManager.getDataManager();
+
+		List<AddFileProcessContext> fileContexts = new ArrayList<AddFileProcessContext>(files.size());
+		for (File file : files) {
+			fileContexts.add(new AddFileProcessContext(file, session, fileConfiguration, networkManager.getEncryption()));
+		}
+		BulkAddProcessContext context = new BulkAddProcessContext(session, fileContexts);
+
+		// process composition
+		SyncProcess process = new SyncProcess();
+		process.add(new CheckBulkWriteAccessStep(context, session.getProfileManager()));
+
+		// upload the content of the files in a bounded number of parallel lanes
+		List<SyncProcess> lanes = new ArrayList<SyncProcess>();
+		for (int i = 0; i < Math.min(H2HConstants.BULK_ADD_THREADS, files.size()); i++) {
+			lanes.add(new SyncProcess());
+		}
+		int laneIndex = 0;
+		for (AddFileProcessContext fileContext : context.consumeFileContexts()) {
+			SyncProcess lane = lanes.get(laneIndex++ % lanes.size());
+			lane.add(new ValidateFileStep(fileContext));
+			lane.add(new CreateFileKeysStep(fileContext));
+			if (fileContext.consumeFile().isFile()) {
+				lane.add(new InitializeChunksStep(fileContext, dataManager));
+				lane.add(new CreateMetaFileStep(fileContext));
+				lane.add(new PutMetaFileStep(fileContext, dataManager));
+			}
+		}
+		SyncProcess uploadProcess = new SyncProcess();
+		for (SyncProcess lane : lanes) {
+			uploadProcess.add(new AsyncComponent<>(lane));
+		}
+		process.add(uploadProcess);
+
+		// commit the indexes in batches, parents are always in the same or an earlier batch
+		List<AddFileProcessContext> sorted = context.consumeFileContexts();
+		for (int start = 0; start < sorted.size(); start += H2HConstants.BULK_ADD_INDEXES_PER_MODIFICATION) {
+			List<AddFileProcessContext> batch = sorted.subList(start,
+					Math.min(start + H2HConstants.BULK_ADD_INDEXES_PER_MODIFICATION, sorted.size()));
+			process.add(new AddIndexesToUserProfileStep(context, batch, session.getProfileManager()));
+		}
+
+		// one notification per top file, containing the whole subtree. The receivers announce every file of it
+		process.add(new PrepareBulkAddNotificationStep(context, session.getProfileManager()));
+		for (AddFileProcessContext topContext : context.consumeTopContexts()) {
+			process.add(new PrepareAddNotificationStep(topContext, true));
+			process.add(createNotificationProcess(topContext, networkManager));
+		}
+
+		process.setName("Bulk Add Process");
+		return process;
+	}
+
 	public IProcessComponent<Void> createUpdateFileProcess(File file, NetworkManager networkManager,
 			IFileConfiguration fileConfiguration) throws NoPeerConnectionException, NoSessionException {
 		DataManager dataManager = networkManager.getDataManager();
@@ -290,7 +400,7 @@ public final class ProcessFactory {
 	public IProcessComponent<Void> createDownloadFileProcess(File file, NetworkManager networkManager)
 			throws NoPeerConnectionException, NoSessionException {
 
-		return createDownloadFileProcess(null, file, DownloadFileContext.NEWEST_VERSION_INDEX, null, networkManager);
+		return createDownloadFileProcess(null, file, DownloadFileContext.NEWEST_VERSION_INDEX, null, true, networkManager);
 	}
 
 	/**
@@ -323,7 +433,7 @@ public final class ProcessFactory {
 	public IProcessComponent<Void> createDownloadFileProcess(PublicKey fileKey, int versionToDownload, File destination,
 			NetworkManager networkManager) throws NoPeerConnectionException, NoSessionException {
 
-		return createDownloadFileProcess(fileKey, null, versionToDownload, destination, networkManager);
+		return createDownloadFileProcess(fileKey, null, versionToDownload, destination, true, networkManager);
 	}
 
 	/**
@@ -343,9 +453,30 @@ public final class ProcessFactory {
 	public IProcessComponent<Void> createDownloadFileProcess(PublicKey fileKey, File file, int versionToDownload,
 			File destination, NetworkManager networkManager) throws NoPeerConnectionException, NoSessionException {
 
+		return createDownloadFileProcess(fileKey, file, versionToDownload, destination, false, networkManager);
+	}
+
+	/**
+	 * Process for downloading with some extra parameters. Prioritized downloads are scheduled before the other
+	 * downloads, which is useful for files that are explicitly requested by the user.
+	 * 
+	 * @param fileKey the file key to download
+	 * @param file the file to download
+	 * @param versionToDownload the version to download
+	 * @param destination the destination to download the file to
+	 * @param prioritized whether the download should be scheduled before background downloads
+	 * @param networkManager the network manager
+	 * @return the process
+	 * @throws NoPeerConnectionException if the peer is not connected
+	 * @throws NoSessionException if there is no user session. Login first.
+	 */
+	public IProcessComponent<Void> createDownloadFileProcess(PublicKey fileKey, File file, int versionToDownload,
+			File destination, boolean prioritized, NetworkManager networkManager) throws NoPeerConnectionException,
+			NoSessionException {
+
 		// precondition: session is existent
 		networkManager.getSession();
-		DownloadFileContext context = new DownloadFileContext(fileKey, file, destination, versionToDownload);
+		DownloadFileContext context = new DownloadFileContext(fileKey, file, destination, versionToDownload, prioritized);
 
 		// process composition
 		SyncProcess process = new SyncProcess();
@@ -386,6 +517,37 @@ public final class ProcessFactory {
 		return process;
 	}
 
+	/**
+	 * Creates a process that deletes a file or a whole folder tree. The tree is removed from the user profile
+	 * in a single modification, then the meta files and chunks of all contained files are removed in batches.
+	 * Other clients receive a single notification for the top folder, which they delete with all its content.
+	 * Users of shared folders within the tree are notified to remove these folders.
+	 * 
+	 * @param file the file or folder to delete (a folder does not need to be empty)
+	 * @param networkManager the network manager with a session
+	 * @return the deletion process
+	 * @throws NoPeerConnectionException if the peer has no connection
+	 * @throws NoSessionException if the user is not logged in
+	 */
+	public IProcessComponent<Void> createDeleteSubtreeProcess(File file, NetworkManager networkManager)
+			throws NoPeerConnectionException, NoSessionException {
+
+		H2HSession session = networkManager.getSession();
+
+		DeleteSubtreeProcessContext context = new DeleteSubtreeProcessContext(file, session, networkManager.getEncryption());
+
+		// process composition
+		SyncProcess process = new SyncProcess();
+
+		process.add(new DeleteSubtreeFromUserProfileStep(context, networkManager));
+		process.add(new DeleteSubtreeContentStep(context, networkManager.getDataManager()));
+		process.add(new PrepareDeleteNotificationStep(context));
+		process.add(createNotificationProcess(context, networkManager));
+
+		process.setName("Delete Subtree Process");
+		return process;
+	}
+
 	public IProcessComponent<Void> createMoveFileProcess(File source, File destination, NetworkManager networkManager)
 			throws NoPeerConnectionException, NoSessionException {
 
@@ -431,7 +593,8 @@ public final class ProcessFactory {
 
 		process.add(new VerifyFriendIdStep(networkManager.getSession().getKeyManager(), permission.getUserId()));
 		process.add(new UpdateUserProfileStep(context, networkManager.getSession(), networkManager.getEncryption()));
-		process.add(new InitializeMetaUpdateStep(context, networkManager.getDataManager()));
+		process.add(new InitializeMetaUpdateStep(context, networkManager.getDataManager(), networkManager.getEventBus(),
+				folder));
 		process.add(new PrepareNotificationsStep(context, networkManager.getUserId(), networkManager.getEncryption()));
 		process.add(createNotificationProcess(context, networkManager));
 
@@ -468,6 +631,30 @@ public final class ProcessFactory {
 		return step;
 	}
 
+	/**
+	 * Creates and returns a process listing a page of a folder.
+	 * 
+	 * @param folder The folder to list.
+	 * @param recursive Whether the whole subtree or only the direct children are listed.
+	 * @param cursor The cursor of the previous page or <code>null</code> for the first page.
+	 * @param pageSize The maximum number of nodes in the page.
+	 * @param networkManager The network manager / node on which the file list operations should be executed.
+	 * @return A file list process.
+	 * @throws NoPeerConnectionException if the peer is not connected.
+	 * @throws NoSessionException if the user has no session. Login first.
+	 */
+	public IProcessComponent<FileListPage> createFileListProcess(File folder, boolean recursive, String cursor,
+			int pageSize, NetworkManager networkManager) throws NoPeerConnectionException, NoSessionException {
+		H2HSession session = networkManager.getSession();
+
+		// only one process step
+		IProcessComponent<FileListPage> step = new GetFileListPageStep(session.getProfileManager(),
+				session.getRootFile(), folder, recursive, cursor, pageSize);
+
+		step.setName("File List Page Process");
+		return step;
+	}
+
 	public IProcessComponent<Void> createNotificationProcess(final BaseNotificationMessageFactory messageFactory,
 			final Set<String> usersToNotify, NetworkManager networkManager)
 			throws NoPeerConnectionException, NoSessionException {
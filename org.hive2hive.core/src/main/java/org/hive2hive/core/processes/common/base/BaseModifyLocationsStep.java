@@ -40,53 +40,16 @@ public abstract class BaseModifyLocationsStep extends ProcessStep<Void> {
 
 	@Override
 	protected final Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
-		Locations locations;
 		try {
-			locations = locationsManager.get();
-		} catch (GetFailedException ex) {
+			modifyAndPut(false);
+		} catch (GetFailedException | PutFailedException ex) {
 			throw new ProcessExecutionException(this, ex);
 		}
 
-		modify(locations);
-
-		try {
-			putLocations(locations);
-		} catch (PutFailedException e) {
-			throw new ProcessExecutionException(this, e);
-		}
-
+		setRequiresRollback(true);
 		return null;
 	}
 
-	private void putLocations(Locations locations) throws PutFailedException {
-		boolean retryPut = true;
-		int forkCounter = 0;
-		int forkWaitTime = new Random().nextInt(1000) + 500;
-		while (retryPut) {
-			try {
-				locationsManager.put(locations);
-				setRequiresRollback(true);
-			} catch (VersionForkAfterPutException ex) {
-				if (forkCounter++ > FORK_LIMIT) {
-					logger.warn("Ignoring fork after {} rejects and retries.", forkCounter);
-					retryPut = false;
-				} else {
-					logger.warn("Version fork after put detected. Rejecting and retrying put.");
-
-					// exponential back off waiting and retry to update the user profile
-					try {
-						Thread.sleep(forkWaitTime);
-					} catch (InterruptedException e1) {
-						// ignore
-					}
-					forkWaitTime = forkWaitTime * 2;
-				}
-			}
-
-			break;
-		}
-	}
-
 	/**
 	 * Un-modify the Locations
 	 * 
@@ -96,21 +59,50 @@ public abstract class BaseModifyLocationsStep extends ProcessStep<Void> {
 
 	@Override
 	protected final Void doRollback() throws InvalidProcessStateException, ProcessRollbackException {
-		Locations locations;
 		try {
-			locations = locationsManager.get();
-		} catch (GetFailedException ex) {
+			modifyAndPut(true);
+		} catch (GetFailedException | PutFailedException ex) {
 			throw new ProcessRollbackException(this, ex);
 		}
 
-		rollback(locations);
+		return null;
+	}
 
-		try {
-			putLocations(locations);
-		} catch (PutFailedException e) {
-			throw new ProcessRollbackException(this, e);
-		}
+	/**
+	 * Gets the latest locations, (un-)modifies and puts them. A version fork is merged by the locations
+	 * manager. If it cannot be merged, the modification is repeated on the latest locations after a back off.
+	 */
+	private void modifyAndPut(boolean rollback) throws GetFailedException, PutFailedException {
+		int forkCounter = 0;
+		int forkWaitTime = new Random().nextInt(1000) + 500;
+		while (true) {
+			Locations locations = locationsManager.get();
+			if (rollback) {
+				rollback(locations);
+			} else {
+				modify(locations);
+			}
 
-		return null;
+			try {
+				locationsManager.put(locations);
+				return;
+			} catch (VersionForkAfterPutException ex) {
+				if (forkCounter++ >= FORK_LIMIT) {
+					logger.warn("Giving up after {} version forks of the locations that could not be merged.",
+							forkCounter);
+					throw ex;
+				}
+				logger.warn("Version fork of the locations could not be merged. Retrying the modification.");
+
+				// exponential back off waiting
+				try {
+					Thread.sleep(forkWaitTime);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw ex;
+				}
+				forkWaitTime = forkWaitTime * 2;
+			}
+		}
 	}
 }
@@ -1,11 +1,16 @@
 package org.hive2hive.core.processes.common.base;
 
+import java.io.File;
+import java.io.IOException;
+
 import org.hive2hive.core.exceptions.AbortModifyException;
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.PutFailedException;
+import org.hive2hive.core.metrics.H2HMetrics;
 import org.hive2hive.core.model.versioned.UserProfile;
 import org.hive2hive.core.network.data.IUserProfileModification;
 import org.hive2hive.core.network.data.UserProfileManager;
+import org.hive2hive.core.security.HashUtil;
 import org.hive2hive.processframework.ProcessStep;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
@@ -64,6 +69,22 @@ public abstract class BaseModifyUserProfileStep extends ProcessStep<Void> implem
 		// optional to overwrite
 	}
 
+	/**
+	 * Hashes the file (e.g. in {@link #beforeModify()}) and records the duration in the metrics.
+	 * 
+	 * @param file the file to hash
+	 * @return the hash of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	protected byte[] hashFile(File file) throws IOException {
+		long start = System.nanoTime();
+		try {
+			return HashUtil.hash(file);
+		} finally {
+			profileManager.getMetrics().recordLatency(H2HMetrics.HASH_FILE, start);
+		}
+	}
+
 	/**
 	 * Is called <strong>after</strong> {@link IUserProfileModification#modifyUserProfile(UserProfile)}. It's
 	 * good for preparation of next process steps, cleanups or other things that should be done only once.
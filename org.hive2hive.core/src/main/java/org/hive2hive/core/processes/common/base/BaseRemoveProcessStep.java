@@ -33,7 +33,7 @@ public abstract class BaseRemoveProcessStep extends ProcessStep<Void> {
 	private static final Logger logger = LoggerFactory.getLogger(BaseRemoveProcessStep.class);
 
 	private IParameters parameters;
-	private final DataManager dataManager;
+	protected final DataManager dataManager;
 
 	public BaseRemoveProcessStep(DataManager dataManager) {
 		this.setName(getClass().getName());
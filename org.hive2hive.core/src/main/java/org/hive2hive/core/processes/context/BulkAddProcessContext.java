@@ -0,0 +1,92 @@
+package org.hive2hive.core.processes.context;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hive2hive.core.H2HSession;
+
+/**
+ * The context for adding many new files at once (e.g. importing a large folder tree). Every file has its own
+ * {@link AddFileProcessContext} for the upload of its content. The user profile is modified for all files
+ * together.
+ * 
+ * @author Nico
+ */
+public class BulkAddProcessContext {
+
+	private final H2HSession session;
+	private final List<AddFileProcessContext> fileContexts;
+	private final List<AddFileProcessContext> topContexts;
+	private final Map<File, byte[]> hashes;
+
+	/**
+	 * @param session the session of the current user
+	 * @param fileContexts the contexts of all files to add
+	 */
+	public BulkAddProcessContext(H2HSession session, List<AddFileProcessContext> fileContexts) {
+		this.session = session;
+		this.hashes = new ConcurrentHashMap<File, byte[]>();
+
+		// parents must be added before their children, thus order by the depth in the tree
+		this.fileContexts = new ArrayList<AddFileProcessContext>(fileContexts);
+		Collections.sort(this.fileContexts, new Comparator<AddFileProcessContext>() {
+			@Override
+			public int compare(AddFileProcessContext c1, AddFileProcessContext c2) {
+				return Integer.compare(getDepth(c1.consumeFile()), getDepth(c2.consumeFile()));
+			}
+		});
+
+		// the top files are the ones whose parent is not added with this bulk
+		Set<File> files = new HashSet<File>();
+		for (AddFileProcessContext context : fileContexts) {
+			files.add(context.consumeFile());
+		}
+		this.topContexts = new ArrayList<AddFileProcessContext>();
+		for (AddFileProcessContext context : this.fileContexts) {
+			if (!files.contains(context.consumeFile().getParentFile())) {
+				topContexts.add(context);
+			}
+		}
+	}
+
+	private static int getDepth(File file) {
+		int depth = 0;
+		for (File parent = file.getParentFile(); parent != null; parent = parent.getParentFile()) {
+			depth++;
+		}
+		return depth;
+	}
+
+	public File consumeRoot() {
+		return session.getRootFile();
+	}
+
+	/**
+	 * @return the contexts of all files, parents are always before their children
+	 */
+	public List<AddFileProcessContext> consumeFileContexts() {
+		return fileContexts;
+	}
+
+	/**
+	 * @return the contexts of the files whose parent already exists in the user profile
+	 */
+	public List<AddFileProcessContext> consumeTopContexts() {
+		return topContexts;
+	}
+
+	public void provideHash(File file, byte[] hash) {
+		hashes.put(file, hash);
+	}
+
+	public byte[] consumeHash(File file) {
+		return hashes.get(file);
+	}
+}
@@ -0,0 +1,31 @@
+package org.hive2hive.core.processes.context;
+
+import java.io.File;
+import java.util.List;
+
+import org.hive2hive.core.H2HSession;
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.security.IH2HEncryption;
+
+/**
+ * Context for the bulk deletion of a whole folder tree. The provided index is the top folder of the tree,
+ * the files are all files within the tree whose meta file and chunks need to be removed.
+ * 
+ * @author Nico
+ */
+public class DeleteSubtreeProcessContext extends DeleteFileProcessContext {
+
+	private List<FileIndex> filesToDelete;
+
+	public DeleteSubtreeProcessContext(File folder, H2HSession session, IH2HEncryption encrpytion) {
+		super(folder, session, encrpytion);
+	}
+
+	public void provideFilesToDelete(List<FileIndex> filesToDelete) {
+		this.filesToDelete = filesToDelete;
+	}
+
+	public List<FileIndex> consumeFilesToDelete() {
+		return filesToDelete;
+	}
+}
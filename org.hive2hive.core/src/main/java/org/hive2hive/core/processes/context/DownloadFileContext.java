@@ -28,15 +28,22 @@ public class DownloadFileContext implements IGetMetaFileContext {
 	private final File file;
 	private final File destination; // set null for default
 	private final int versionToDownload;
+	private final boolean prioritized;
 
 	private Index index;
 	private BaseMetaFile metaFile;
 
 	public DownloadFileContext(PublicKey fileKey, File file, File destination, int versionToDownload) {
+		this(fileKey, file, destination, versionToDownload, false);
+	}
+
+	public DownloadFileContext(PublicKey fileKey, File file, File destination, int versionToDownload,
+			boolean prioritized) {
 		this.fileKey = fileKey;
 		this.file = file;
 		this.destination = destination;
 		this.versionToDownload = versionToDownload;
+		this.prioritized = prioritized;
 	}
 
 	public PublicKey getFileKey() {
@@ -88,6 +95,13 @@ public class DownloadFileContext implements IGetMetaFileContext {
 		return versionToDownload == NEWEST_VERSION_INDEX;
 	}
 
+	/**
+	 * @return Returns whether the download has explicitly been requested and should be scheduled first
+	 */
+	public boolean isPrioritized() {
+		return prioritized;
+	}
+
 	public void provideIndex(Index index) {
 		this.index = index;
 	}
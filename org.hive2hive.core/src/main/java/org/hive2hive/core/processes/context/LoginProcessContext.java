@@ -1,6 +1,8 @@
 package org.hive2hive.core.processes.context;
 
+import org.hive2hive.core.file.PersistentMetaData;
 import org.hive2hive.core.model.versioned.Locations;
+import org.hive2hive.core.network.data.vdht.LocationsManager;
 import org.hive2hive.core.processes.login.SessionParameters;
 import org.hive2hive.core.security.UserCredentials;
 
@@ -8,12 +10,15 @@ public class LoginProcessContext {
 
 	private final UserCredentials credentials;
 	private final SessionParameters params;
+	private final LocationsManager locationsManager;
 
-	private Locations locations;
+	private volatile Locations locations;
+	private volatile PersistentMetaData metaData;
 
-	public LoginProcessContext(UserCredentials credentials, SessionParameters params) {
+	public LoginProcessContext(UserCredentials credentials, SessionParameters params, LocationsManager locationsManager) {
 		this.credentials = credentials;
 		this.params = params;
+		this.locationsManager = locationsManager;
 	}
 
 	public UserCredentials consumeUserCredentials() {
@@ -28,6 +33,10 @@ public class LoginProcessContext {
 		return params;
 	}
 
+	public LocationsManager consumeLocationsManager() {
+		return locationsManager;
+	}
+
 	public void provideLocations(Locations locations) {
 		this.locations = locations;
 	}
@@ -36,4 +45,12 @@ public class LoginProcessContext {
 		return locations;
 	}
 
+	public void providePersistentMetaData(PersistentMetaData metaData) {
+		this.metaData = metaData;
+	}
+
+	public PersistentMetaData consumePersistentMetaData() {
+		return metaData;
+	}
+
 }
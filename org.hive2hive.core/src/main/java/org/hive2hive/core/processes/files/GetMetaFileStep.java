@@ -3,22 +3,34 @@ package org.hive2hive.core.processes.files;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
+import java.util.Collection;
+import java.util.NavigableMap;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.Number640;
 
 import org.hive2hive.core.H2HConstants;
-import org.hive2hive.core.model.BaseNetworkContent;
+import org.hive2hive.core.metrics.H2HMetrics;
 import org.hive2hive.core.model.versioned.BaseMetaFile;
 import org.hive2hive.core.model.versioned.BaseVersionedNetworkContent;
 import org.hive2hive.core.model.versioned.HybridEncryptedContent;
 import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.MetaFileCache;
+import org.hive2hive.core.network.data.MetaFileCache.CachedMetaFile;
+import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.network.data.parameters.Parameters;
 import org.hive2hive.core.processes.common.base.BaseGetProcessStep;
 import org.hive2hive.core.processes.context.interfaces.IGetMetaFileContext;
+import org.hive2hive.core.security.H2HDefaultEncryption;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Gets a {@link BaseMetaFile} from the DHT and decrypts it.
+ * Gets a {@link BaseMetaFile} from the DHT and decrypts it. A meta file in the {@link MetaFileCache} is taken
+ * as long as it is the latest version in the DHT. A meta file seeded from the last session only needs to be
+ * decrypted, not fetched.
  * 
  * @author Nico
  */
@@ -38,6 +50,11 @@ public class GetMetaFileStep extends BaseGetProcessStep {
 	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
 		KeyPair keyPair = context.consumeMetaFileEncryptionKeys();
 
+		if (getCached(keyPair)) {
+			return null;
+		}
+		dataManager.getMetrics().increment(H2HMetrics.META_FILE_CACHE_MISS);
+
 		BaseVersionedNetworkContent loadedContent = (BaseVersionedNetworkContent) get(keyPair.getPublic(),
 				H2HConstants.META_FILE);
 
@@ -49,24 +66,81 @@ public class GetMetaFileStep extends BaseGetProcessStep {
 		HybridEncryptedContent encryptedContent = (HybridEncryptedContent) loadedContent;
 
 		// decrypt meta document
-		BaseNetworkContent decryptedContent = null;
+		BaseMetaFile metaFile = null;
 		try {
-			decryptedContent = dataManager.getEncryption().decryptHybrid(encryptedContent, keyPair.getPrivate());
-		} catch (GeneralSecurityException | IllegalStateException | ClassNotFoundException | IOException ex) {
+			byte[] decrypted = dataManager.getEncryption().decryptHybridRaw(encryptedContent, keyPair.getPrivate());
+			metaFile = provide(decrypted, encryptedContent);
+			dataManager.getMetaFileCache().put(keyPair.getPublic(), keyPair.getPrivate(),
+					encryptedContent.getVersionKey(), encryptedContent, decrypted);
+		} catch (GeneralSecurityException | IllegalStateException | ClassNotFoundException | IOException
+				| ClassCastException ex) {
 			throw new ProcessExecutionException(this, ex, "Meta file could not be decrypted.");
 		}
 
-		BaseMetaFile metaFile = (BaseMetaFile) decryptedContent;
-		metaFile.setBasedOnKey(loadedContent.getBasedOnKey());
-		metaFile.setVersionKey(loadedContent.getVersionKey());
+		logger.debug("Got and decrypted the meta file {}.", metaFile.getVersionKey());
+
+		return null;
+	}
+
+	/**
+	 * Provides the cached meta file if it is still the latest version in the DHT. Only the digest is fetched to
+	 * verify it, the meta file does not need to be fetched and decrypted again.
+	 * 
+	 * @return <code>true</code> if the cached meta file has been provided
+	 */
+	private boolean getCached(KeyPair keyPair) {
+		MetaFileCache cache = dataManager.getMetaFileCache();
+		CachedMetaFile cached = cache.get(keyPair.getPublic(), keyPair.getPrivate());
+		if (cached == null) {
+			return false;
+		}
+
+		IParameters parameters = new Parameters().setLocationKey(H2HDefaultEncryption.key2String(keyPair.getPublic()))
+				.setContentKey(H2HConstants.META_FILE);
+		NavigableMap<Number640, Collection<Number160>> digest = dataManager.getDigestLatest(parameters);
+		if (digest == null || digest.isEmpty() || !digest.lastKey().versionKey().equals(cached.getVersionKey())) {
+			// outdated or not verifiable
+			cache.invalidate(keyPair.getPublic());
+			return false;
+		}
+
+		byte[] serialized = cached.getSerialized();
+		try {
+			if (!cached.isDecrypted()) {
+				// seeded from the last session
+				serialized = dataManager.getEncryption().decryptHybridRaw(cached.getEncrypted(), keyPair.getPrivate());
+			}
+			provide(serialized, cached.getEncrypted());
+		} catch (GeneralSecurityException | IllegalStateException | ClassNotFoundException | IOException
+				| ClassCastException e) {
+			logger.warn("Cannot decrypt or deserialize the cached meta file.", e);
+			cache.invalidate(keyPair.getPublic());
+			return false;
+		}
+
+		if (!cached.isDecrypted()) {
+			cache.put(keyPair.getPublic(), keyPair.getPrivate(), cached.getVersionKey(), cached.getEncrypted(),
+					serialized);
+		}
+
+		dataManager.getMetrics().increment(H2HMetrics.META_FILE_CACHE_HIT);
+		logger.debug("Got the cached meta file {}.", cached.getVersionKey());
+		return true;
+	}
+
+	/**
+	 * Deserializes a fresh instance of the meta file and provides it to the context
+	 */
+	private BaseMetaFile provide(byte[] serialized, HybridEncryptedContent encryptedContent) throws IOException,
+			ClassNotFoundException {
+		BaseMetaFile metaFile = (BaseMetaFile) dataManager.getSerializer().deserialize(serialized);
+		metaFile.setBasedOnKey(encryptedContent.getBasedOnKey());
+		metaFile.setVersionKey(encryptedContent.getVersionKey());
 
 		context.provideMetaFile(metaFile);
 		context.provideEncryptedMetaFile(encryptedContent);
 		setRequiresRollback(true);
-
-		logger.debug("Got and decrypted the meta file.");
-
-		return null;
+		return metaFile;
 	}
 
 	@Override
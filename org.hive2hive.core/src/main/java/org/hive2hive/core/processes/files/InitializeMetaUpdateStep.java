@@ -1,29 +1,33 @@
 package org.hive2hive.core.processes.files;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
-import org.hive2hive.core.exceptions.NoPeerConnectionException;
-import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.events.EventBus;
 import org.hive2hive.core.model.FileIndex;
-import org.hive2hive.core.model.FolderIndex;
 import org.hive2hive.core.model.Index;
 import org.hive2hive.core.network.data.DataManager;
 import org.hive2hive.core.processes.context.MetaDocumentPKUpdateContext;
 import org.hive2hive.core.processes.context.interfaces.IInitializeMetaUpdateContext;
+import org.hive2hive.core.processes.share.pkupdate.AwaitProtectionKeyUpdateStep;
 import org.hive2hive.core.processes.share.pkupdate.ChangeProtectionKeysStep;
 import org.hive2hive.core.processes.share.pkupdate.InitializeChunkUpdateStep;
+import org.hive2hive.core.processes.share.pkupdate.ProtectionKeyUpdater;
 import org.hive2hive.processframework.ProcessStep;
 import org.hive2hive.processframework.composites.SyncProcess;
 import org.hive2hive.processframework.decorators.AsyncComponent;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
-import org.hive2hive.processframework.interfaces.IProcessComponent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Takes the shared folder and iteratively changes the protection keys of all meta files. Appends further
- * steps to change the content protection key of all contained chunks.
+ * Takes the shared folder and changes the protection keys of all meta files, using a bounded number of parallel
+ * lanes (see {@link H2HConstants#SHARE_UPDATE_THREADS}). The changes of the contained chunks are submitted to a
+ * {@link ProtectionKeyUpdater}, which bounds the changes in flight, and are awaited afterwards. The progress of
+ * the changes is published to the event bus.
  * 
  * @author Nico, Seppi
  */
@@ -33,11 +37,26 @@ public class InitializeMetaUpdateStep extends ProcessStep<Void> {
 
 	private final IInitializeMetaUpdateContext context;
 	private final DataManager dataManager;
+	private final EventBus eventBus;
+	private final File folder;
 
 	public InitializeMetaUpdateStep(IInitializeMetaUpdateContext context, DataManager dataManager) {
+		this(context, dataManager, null, null);
+	}
+
+	/**
+	 * @param context the context
+	 * @param dataManager the data manager
+	 * @param eventBus the event bus to publish the progress, can be <code>null</code>
+	 * @param folder the shared folder, the progress is reported for
+	 */
+	public InitializeMetaUpdateStep(IInitializeMetaUpdateContext context, DataManager dataManager, EventBus eventBus,
+			File folder) {
 		this.setName(getClass().getName());
 		this.context = context;
 		this.dataManager = dataManager;
+		this.eventBus = eventBus;
+		this.folder = folder;
 	}
 
 	@Override
@@ -48,51 +67,52 @@ public class InitializeMetaUpdateStep extends ProcessStep<Void> {
 		}
 
 		Index index = context.consumeIndex();
-
-		try {
-			if (index.isFolder()) {
-				FolderIndex folderIndex = (FolderIndex) index;
-				initForFolder(folderIndex);
-			} else {
-				FileIndex fileIndex = (FileIndex) index;
-				initForFile(fileIndex);
+		List<FileIndex> files = new ArrayList<FileIndex>();
+		if (index.isFolder()) {
+			for (Index child : Index.getIndexList(index)) {
+				if (child.isFile()) {
+					files.add((FileIndex) child);
+				}
 			}
-		} catch (NoSessionException | NoPeerConnectionException ex) {
-			throw new ProcessExecutionException(this, ex);
+		} else {
+			files.add((FileIndex) index);
 		}
 
-		return null;
-	}
-
-	private void initForFolder(FolderIndex folderIndex) throws ProcessExecutionException, NoSessionException,
-			NoPeerConnectionException {
-		List<Index> indexList = Index.getIndexList(folderIndex);
-		for (Index index : indexList) {
-			if (index.isFile()) {
-				initForFile((FileIndex) index);
-			}
+		if (files.isEmpty()) {
+			logger.debug("No files need to update their protection keys.");
+			return null;
 		}
-	}
 
-	private void initForFile(FileIndex fileIndex) throws NoSessionException, NoPeerConnectionException {
-		logger.debug("Initialize to change the protection keys of meta document of index '{}'.", fileIndex.getName());
-		// create the process and wrap it to make it asynchronous
-		getParent().insertAfter(new AsyncComponent<>(buildProcess(fileIndex)), this);
-	}
+		// the meta files are processed in a bounded number of parallel lanes, the chunks are handed to the updater
+		ProtectionKeyUpdater updater = new ProtectionKeyUpdater(dataManager, eventBus, folder);
+		List<SyncProcess> lanes = new ArrayList<SyncProcess>();
+		for (int i = 0; i < Math.min(H2HConstants.SHARE_UPDATE_THREADS, files.size()); i++) {
+			lanes.add(new SyncProcess());
+		}
+		int laneIndex = 0;
+		for (FileIndex fileIndex : files) {
+			logger.debug("Initialize to change the protection keys of meta document of index '{}'.", fileIndex.getName());
+			addSteps(fileIndex, lanes.get(laneIndex++ % lanes.size()), updater);
+		}
 
-	private IProcessComponent<Void> buildProcess(FileIndex index) throws NoSessionException, NoPeerConnectionException {
+		SyncProcess updateProcess = new SyncProcess();
+		for (SyncProcess lane : lanes) {
+			updateProcess.add(new AsyncComponent<>(lane));
+		}
 
-		// create a new sub-process
-		SyncProcess subProcess = new SyncProcess();
+		// results in: this, updateProcess, awaitStep
+		getParent().insertAfter(new AwaitProtectionKeyUpdateStep(updater), this);
+		getParent().insertAfter(updateProcess, this);
+		return null;
+	}
 
+	private void addSteps(FileIndex index, SyncProcess lane, ProtectionKeyUpdater updater) {
 		// each meta document gets own context
 		MetaDocumentPKUpdateContext metaContext = new MetaDocumentPKUpdateContext(context.consumeOldProtectionKeys(),
 				context.consumeNewProtectionKeys(), index.getFilePublicKey(), index);
 
-		subProcess.add(new GetMetaFileStep(metaContext, dataManager));
-		subProcess.add(new ChangeProtectionKeysStep(metaContext, dataManager));
-		subProcess.add(new InitializeChunkUpdateStep(metaContext, dataManager));
-
-		return subProcess;
+		lane.add(new GetMetaFileStep(metaContext, dataManager));
+		lane.add(new ChangeProtectionKeysStep(metaContext, dataManager));
+		lane.add(new InitializeChunkUpdateStep(metaContext, updater));
 	}
 }
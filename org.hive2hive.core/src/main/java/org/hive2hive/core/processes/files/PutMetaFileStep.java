@@ -19,7 +19,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Puts a {@link MetaFileSmall} object into the DHT after encrypting it with the given key.
+ * Puts a {@link MetaFileSmall} object into the DHT after encrypting it with the given key. The put version is
+ * added to the meta file cache.
  * 
  * @author Nico, Seppi
  */
@@ -43,7 +44,11 @@ public class PutMetaFileStep extends BasePutProcessStep {
 			KeyPair encryptionKeys = context.consumeMetaFileEncryptionKeys();
 
 			logger.trace("Encrypting meta file in a hybrid manner.");
-			HybridEncryptedContent encrypted = context.getEncryption().encryptHybrid(metaFile, encryptionKeys.getPublic());
+			// keep the serialized meta file for the cache
+			byte[] serialized = dataManager.getSerializer().serialize(metaFile);
+			HybridEncryptedContent encrypted = context.getEncryption().encryptHybrid(serialized,
+					encryptionKeys.getPublic());
+			encrypted.setTimeToLive(metaFile.getTimeToLive());
 			encrypted.setBasedOnKey(metaFile.getBasedOnKey());
 			encrypted.setVersionKey(metaFile.getVersionKey());
 			encrypted.generateVersionKey();
@@ -59,6 +64,9 @@ public class PutMetaFileStep extends BasePutProcessStep {
 			// store the hash
 			context.provideMetaFileHash(parameters.getHash());
 			setRequiresRollback(true);
+			// the put version is the latest one, following operations do not need to fetch it again
+			dataManager.getMetaFileCache().put(metaFile.getId(), encryptionKeys.getPrivate(),
+					encrypted.getVersionKey(), encrypted, serialized);
 
 		} catch (IOException | GeneralSecurityException | IllegalStateException ex) {
 			throw new ProcessExecutionException(this, ex, "Meta file could not be encrypted.");
@@ -71,6 +79,7 @@ public class PutMetaFileStep extends BasePutProcessStep {
 	@Override
 	protected Void doRollback() throws InvalidProcessStateException {
 		super.doRollback();
+		dataManager.getMetaFileCache().invalidate(context.consumeMetaFile().getId());
 
 		// remove provided hash
 		context.provideMetaFileHash(null);
@@ -8,6 +8,7 @@ import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
 import org.hive2hive.core.exceptions.PutFailedException;
 import org.hive2hive.core.file.FileChunkUtil;
+import org.hive2hive.core.metrics.H2HMetrics;
 import org.hive2hive.core.model.Chunk;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.model.versioned.HybridEncryptedContent;
@@ -15,6 +16,7 @@ import org.hive2hive.core.network.data.DataManager;
 import org.hive2hive.core.network.data.parameters.Parameters;
 import org.hive2hive.core.processes.common.base.BasePutProcessStep;
 import org.hive2hive.core.processes.context.interfaces.IUploadContext;
+import org.hive2hive.core.security.HashUtil;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
 import org.slf4j.Logger;
@@ -55,6 +57,7 @@ public class PutSingleChunkStep extends BasePutProcessStep {
 		}
 
 		if (chunk != null) {
+			long start = System.nanoTime();
 			try {
 				// encrypt the chunk prior to put such that nobody can read it
 				HybridEncryptedContent encryptedContent = context.getEncryption().encryptHybrid(chunk,
@@ -69,9 +72,12 @@ public class PutSingleChunkStep extends BasePutProcessStep {
 				parameters.setHashFlag(true);
 				// put the encrypted chunk into the network
 				put(parameters);
+				dataManager.getMetrics().recordThroughput(H2HMetrics.UPLOAD_THROUGHPUT, H2HMetrics.UPLOAD_BYTES,
+						chunk.getData().length, start);
 
-				// store the hash in the index of the meta file
-				context.getMetaChunks().add(new MetaChunk(chunkId, parameters.getHash(), index));
+				// store the hash of the content in the index of the meta file, such that the chunk can be verified
+				// after the download
+				context.getMetaChunks().add(new MetaChunk(chunkId, HashUtil.hash(chunk.getData()), index));
 			} catch (IOException | IllegalStateException | GeneralSecurityException | PutFailedException ex) {
 				throw new ProcessExecutionException(this, ex, "Could not encrypt and put the chunk.");
 			}
@@ -12,7 +12,6 @@ import org.hive2hive.core.model.versioned.UserProfile;
 import org.hive2hive.core.network.data.UserProfileManager;
 import org.hive2hive.core.processes.common.base.BaseModifyUserProfileStep;
 import org.hive2hive.core.processes.context.AddFileProcessContext;
-import org.hive2hive.core.security.HashUtil;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,7 +40,7 @@ public class AddIndexToUserProfileStep extends BaseModifyUserProfileStep {
 		File file = context.consumeFile();
 		if (file.isFile()) {
 			try {
-				hash = HashUtil.hash(file);
+				hash = hashFile(file);
 			} catch (IOException e) {
 				logger.error("Creating hash of file '{}' was not possible.", file.getName(), e);
 				throw new ProcessExecutionException(this, "Cannot calculate the hash of the file " + file.getName());
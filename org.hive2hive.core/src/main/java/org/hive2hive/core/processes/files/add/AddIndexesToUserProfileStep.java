@@ -0,0 +1,124 @@
+package org.hive2hive.core.processes.files.add;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.exceptions.AbortModificationCode;
+import org.hive2hive.core.exceptions.AbortModifyException;
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.network.data.UserProfileManager;
+import org.hive2hive.core.processes.common.base.BaseModifyUserProfileStep;
+import org.hive2hive.core.processes.context.AddFileProcessContext;
+import org.hive2hive.core.processes.context.BulkAddProcessContext;
+import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+
+/**
+ * Adds the indexes of multiple new files into the user profile with a single modification. The files must be
+ * ordered such that parents are added before their children (see
+ * {@link BulkAddProcessContext#consumeFileContexts()}).
+ * 
+ * @author Nico
+ */
+public class AddIndexesToUserProfileStep extends BaseModifyUserProfileStep {
+
+	private final BulkAddProcessContext context;
+	private final List<AddFileProcessContext> batch;
+
+	/**
+	 * @param context the context of the bulk add
+	 * @param batch the files that are added with this modification
+	 * @param profileManager the profile manager of the user
+	 */
+	public AddIndexesToUserProfileStep(BulkAddProcessContext context, List<AddFileProcessContext> batch,
+			UserProfileManager profileManager) {
+		super(profileManager);
+		this.setName(getClass().getName());
+		this.context = context;
+		this.batch = batch;
+	}
+
+	@Override
+	protected void beforeModify() throws ProcessExecutionException {
+		// hashing is the slow part, thus hash the files of this batch in parallel
+		ExecutorService executor = Executors.newFixedThreadPool(H2HConstants.BULK_ADD_THREADS);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (AddFileProcessContext fileContext : batch) {
+				final File file = fileContext.consumeFile();
+				if (file.isFile() && context.consumeHash(file) == null) {
+					futures.add(executor.submit(new Callable<Void>() {
+						@Override
+						public Void call() throws IOException {
+							context.provideHash(file, hashFile(file));
+							return null;
+						}
+					}));
+				}
+			}
+
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new ProcessExecutionException(this, e, "Cannot calculate the hashes of the files.");
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Override
+	public void modifyUserProfile(UserProfile userProfile) throws AbortModifyException {
+		File root = context.consumeRoot();
+
+		for (AddFileProcessContext fileContext : batch) {
+			File file = fileContext.consumeFile();
+
+			// the parent has been added before (in this or in a previous batch)
+			FolderIndex parentNode = (FolderIndex) userProfile.getFileByPath(file.getParentFile(), root);
+			if (parentNode == null) {
+				throw new AbortModifyException(AbortModificationCode.FILE_INDEX_NOT_FOUND, String.format(
+						"Parent of '%s' not found in the user profile.", file.getName()));
+			} else if (!parentNode.canWrite()) {
+				throw new AbortModifyException(AbortModificationCode.NO_WRITE_PERM, "This directory is write protected (and we don't have the keys).");
+			}
+
+			if (file.isDirectory()) {
+				FolderIndex folderIndex = new FolderIndex(parentNode, fileContext.consumeMetaFileEncryptionKeys(),
+						file.getName());
+				fileContext.provideIndex(folderIndex);
+			} else {
+				FileIndex fileIndex = new FileIndex(parentNode, fileContext.consumeMetaFileEncryptionKeys(),
+						file.getName(), context.consumeHash(file));
+				fileContext.provideIndex(fileIndex);
+			}
+		}
+	}
+
+	@Override
+	protected void modifyRollback(UserProfile userProfile) {
+		File root = context.consumeRoot();
+
+		// remove the children before their parents
+		for (int i = batch.size() - 1; i >= 0; i--) {
+			File file = batch.get(i).consumeFile();
+			FolderIndex parentNode = (FolderIndex) userProfile.getFileByPath(file.getParentFile(), root);
+			if (parentNode != null) {
+				Index childNode = parentNode.getChildByName(file.getName());
+				if (childNode != null) {
+					parentNode.removeChild(childNode);
+				}
+			}
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package org.hive2hive.core.processes.files.add;
 
 import java.security.PublicKey;
+import java.util.Collections;
+import java.util.List;
 
 import net.tomp2p.peers.PeerAddress;
 
@@ -16,6 +18,12 @@ import org.hive2hive.core.network.messages.direct.BaseDirectMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Notifies another client of the same user about a new file. If the children have been added together with
+ * the file, an event is triggered for each of them.
+ * 
+ * @author Nico, Seppi
+ */
 public class AddNotificationMessage extends BaseDirectMessage implements IFileEventGenerator {
 
 	private static final long serialVersionUID = -695268345354561544L;
@@ -23,10 +31,16 @@ public class AddNotificationMessage extends BaseDirectMessage implements IFileEv
 	private static final Logger logger = LoggerFactory.getLogger(AddNotificationMessage.class);
 
 	private final PublicKey fileKey;
+	private final boolean withChildren;
 
 	public AddNotificationMessage(PeerAddress targetAddress, PublicKey fileKey) {
+		this(targetAddress, fileKey, false);
+	}
+
+	public AddNotificationMessage(PeerAddress targetAddress, PublicKey fileKey, boolean withChildren) {
 		super(targetAddress);
 		this.fileKey = fileKey;
+		this.withChildren = withChildren;
 	}
 
 	@Override
@@ -57,7 +71,10 @@ public class AddNotificationMessage extends BaseDirectMessage implements IFileEv
 			return;
 		}
 
-		// trigger event
-		getEventBus().publish(new FileAddEvent(addedFile.asFile(session.getRootFile()), addedFile.isFile()));
+		// trigger events, parents before their children
+		List<Index> addedFiles = withChildren ? Index.getIndexList(addedFile) : Collections.singletonList(addedFile);
+		for (Index index : addedFiles) {
+			getEventBus().publish(new FileAddEvent(index.asFile(session.getRootFile()), index.isFile()));
+		}
 	}
 }
@@ -11,7 +11,8 @@ import org.hive2hive.core.processes.notify.BaseNotificationMessageFactory;
 import org.hive2hive.core.security.IH2HEncryption;
 
 /**
- * The notification message factory is used when a file has been added.
+ * The notification message factory is used when a file has been added. If a whole folder tree has been added
+ * at once, the receivers announce every file within the tree.
  * 
  * @author Nico, Seppi
  */
@@ -19,6 +20,7 @@ public class AddNotificationMessageFactory extends BaseNotificationMessageFactor
 
 	private final Index addedFileIndex;
 	private final PublicKey parentKey;
+	private final boolean withChildren;
 
 	/**
 	 * @param encryption the encryption implementation
@@ -26,18 +28,30 @@ public class AddNotificationMessageFactory extends BaseNotificationMessageFactor
 	 * @param parentKey the new parent's public key
 	 */
 	public AddNotificationMessageFactory(IH2HEncryption encryption, Index addedFileIndex, PublicKey parentKey) {
+		this(encryption, addedFileIndex, parentKey, false);
+	}
+
+	/**
+	 * @param encryption the encryption implementation
+	 * @param addedFileIndex the index that has been added (may contain sub-files)
+	 * @param parentKey the new parent's public key
+	 * @param withChildren whether the children of the index have been added together with it
+	 */
+	public AddNotificationMessageFactory(IH2HEncryption encryption, Index addedFileIndex, PublicKey parentKey,
+			boolean withChildren) {
 		super(encryption);
 		this.addedFileIndex = addedFileIndex;
 		this.parentKey = parentKey;
+		this.withChildren = withChildren;
 	}
 
 	@Override
 	public BaseDirectMessage createPrivateNotificationMessage(PeerAddress receiver) {
-		return new AddNotificationMessage(receiver, addedFileIndex.getFilePublicKey());
+		return new AddNotificationMessage(receiver, addedFileIndex.getFilePublicKey(), withChildren);
 	}
 
 	@Override
 	public UserProfileTask createUserProfileTask(String sender) {
-		return new AddUserProfileTask(sender, generateProtectionKeys(), addedFileIndex, parentKey);
+		return new AddUserProfileTask(sender, generateProtectionKeys(), addedFileIndex, parentKey, withChildren);
 	}
 }
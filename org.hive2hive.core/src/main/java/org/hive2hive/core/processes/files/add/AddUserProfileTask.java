@@ -2,6 +2,8 @@ package org.hive2hive.core.processes.files.add;
 
 import java.security.KeyPair;
 import java.security.PublicKey;
+import java.util.Collections;
+import java.util.List;
 
 import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.events.framework.interfaces.IFileEventGenerator;
@@ -21,6 +23,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Adds a new file of another user to the user profile. If the children have been added together with the
+ * file, an event is triggered for each of them.
+ * 
  * @author Nico, Seppi
  */
 public class AddUserProfileTask extends UserProfileTask implements IUserProfileModification, IFileEventGenerator {
@@ -30,11 +35,18 @@ public class AddUserProfileTask extends UserProfileTask implements IUserProfileM
 
 	private final Index addedFileIndex;
 	private final PublicKey parentKey;
+	private final boolean withChildren;
 
 	public AddUserProfileTask(String sender, KeyPair protectionKeys, Index index, PublicKey parentKey) {
+		this(sender, protectionKeys, index, parentKey, false);
+	}
+
+	public AddUserProfileTask(String sender, KeyPair protectionKeys, Index index, PublicKey parentKey,
+			boolean withChildren) {
 		super(sender, protectionKeys);
 		this.addedFileIndex = index;
 		this.parentKey = parentKey;
+		this.withChildren = withChildren;
 	}
 
 	@Override
@@ -57,15 +69,19 @@ public class AddUserProfileTask extends UserProfileTask implements IUserProfileM
 
 		try {
 			// notify own other clients
-			notifyOtherClients(new AddNotificationMessageFactory(networkManager.getEncryption(), addedFileIndex, parentKey));
+			notifyOtherClients(new AddNotificationMessageFactory(networkManager.getEncryption(), addedFileIndex, parentKey,
+					withChildren));
 			logger.debug("Notified other clients that a file has been updated by another user.");
 		} catch (IllegalArgumentException | NoPeerConnectionException | NoSessionException e) {
 			logger.error("Could not notify other clients of me about the new file.", e);
 		}
 
-		// trigger event
-		networkManager.getEventBus().publish(
-				new FileAddEvent(addedFileIndex.asFile(session.getRootFile()), addedFileIndex.isFile()));
+		// trigger events, parents before their children
+		List<Index> addedFiles = withChildren ? Index.getIndexList(addedFileIndex) : Collections
+				.singletonList(addedFileIndex);
+		for (Index index : addedFiles) {
+			networkManager.getEventBus().publish(new FileAddEvent(index.asFile(session.getRootFile()), index.isFile()));
+		}
 	}
 
 	@Override
@@ -0,0 +1,89 @@
+package org.hive2hive.core.processes.files.add;
+
+import java.io.File;
+
+import org.hive2hive.core.exceptions.GetFailedException;
+import org.hive2hive.core.exceptions.ParentInUserProfileNotFoundException;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.network.data.UserProfileManager;
+import org.hive2hive.core.processes.context.AddFileProcessContext;
+import org.hive2hive.core.processes.context.BulkAddProcessContext;
+import org.hive2hive.processframework.ProcessStep;
+import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
+import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks the write access for all files of a bulk add with a single read of the user profile. Files within
+ * new folders inherit the protection keys of the nearest folder that already exists in the user profile.
+ * 
+ * @author Nico
+ */
+public class CheckBulkWriteAccessStep extends ProcessStep<Void> {
+
+	private static final Logger logger = LoggerFactory.getLogger(CheckBulkWriteAccessStep.class);
+
+	private final BulkAddProcessContext context;
+	private final UserProfileManager profileManager;
+
+	public CheckBulkWriteAccessStep(BulkAddProcessContext context, UserProfileManager profileManager) {
+		this.setName(getClass().getName());
+		this.context = context;
+		this.profileManager = profileManager;
+	}
+
+	@Override
+	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
+		UserProfile userProfile = null;
+		try {
+			// fetch user profile (only read)
+			userProfile = profileManager.readUserProfile();
+		} catch (GetFailedException e) {
+			throw new ProcessExecutionException(this, e);
+		}
+
+		File root = context.consumeRoot();
+		for (AddFileProcessContext fileContext : context.consumeTopContexts()) {
+			File file = fileContext.consumeFile();
+			FolderIndex parentNode = (FolderIndex) userProfile.getFileByPath(file.getParentFile(), root);
+			if (parentNode == null) {
+				throw new ProcessExecutionException(this, new ParentInUserProfileNotFoundException(String.format(
+						"Parent of '%s' not found.", file.getName())));
+			} else if (!parentNode.canWrite()) {
+				throw new ProcessExecutionException(this, String.format(
+						"The directory '%s' is write protected (and we don't have the keys).", file.getParentFile()
+								.getName()));
+			}
+		}
+
+		// all files within the same top folder share the protection keys of its parent
+		for (AddFileProcessContext fileContext : context.consumeFileContexts()) {
+			File ancestor = fileContext.consumeFile().getParentFile();
+			FolderIndex existing = (FolderIndex) userProfile.getFileByPath(ancestor, root);
+			while (existing == null) {
+				ancestor = ancestor.getParentFile();
+				existing = (FolderIndex) userProfile.getFileByPath(ancestor, root);
+			}
+
+			fileContext.provideChunkProtectionKeys(existing.getProtectionKeys());
+			fileContext.provideMetaFileProtectionKeys(existing.getProtectionKeys());
+		}
+
+		logger.debug("Write access check for {} files has been passed.", context.consumeFileContexts().size());
+		setRequiresRollback(true);
+		return null;
+	}
+
+	@Override
+	protected Void doRollback() throws InvalidProcessStateException {
+		for (AddFileProcessContext fileContext : context.consumeFileContexts()) {
+			fileContext.provideChunkProtectionKeys(null);
+			fileContext.provideMetaFileProtectionKeys(null);
+		}
+		setRequiresRollback(false);
+		return null;
+	}
+
+}
@@ -13,17 +13,24 @@ import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
 
 /**
- * Provide the needed data for the add notification.
+ * Provide the needed data for the add notification. When the children are added together with the index
+ * (bulk add), the receivers are told to announce them as well.
  * 
  * @author Nico, Seppi
  */
 public class PrepareAddNotificationStep extends ProcessStep<Void> {
 
 	private final AddFileProcessContext context;
+	private final boolean withChildren;
 
 	public PrepareAddNotificationStep(AddFileProcessContext context) {
+		this(context, false);
+	}
+
+	public PrepareAddNotificationStep(AddFileProcessContext context, boolean withChildren) {
 		this.setName(getClass().getName());
 		this.context = context;
+		this.withChildren = withChildren;
 	}
 
 	@Override
@@ -53,7 +60,7 @@ public class PrepareAddNotificationStep extends ProcessStep<Void> {
 		indexToSend.decoupleFromParent();
 
 		AddNotificationMessageFactory messageFactory = new AddNotificationMessageFactory(context.getEncryption(),
-				indexToSend, parentKey);
+				indexToSend, parentKey, withChildren);
 		context.provideMessageFactory(messageFactory);
 
 		return null;
@@ -0,0 +1,51 @@
+package org.hive2hive.core.processes.files.add;
+
+import org.hive2hive.core.exceptions.GetFailedException;
+import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.network.data.UserProfileManager;
+import org.hive2hive.core.processes.context.AddFileProcessContext;
+import org.hive2hive.core.processes.context.BulkAddProcessContext;
+import org.hive2hive.processframework.ProcessStep;
+import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
+import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+
+/**
+ * The indexes of a bulk add are added in multiple user profile modifications. This step loads the complete
+ * subtrees of the top files such that a single notification per top file covers all its children.
+ * 
+ * @author Nico
+ */
+public class PrepareBulkAddNotificationStep extends ProcessStep<Void> {
+
+	private final BulkAddProcessContext context;
+	private final UserProfileManager profileManager;
+
+	public PrepareBulkAddNotificationStep(BulkAddProcessContext context, UserProfileManager profileManager) {
+		this.setName(getClass().getName());
+		this.context = context;
+		this.profileManager = profileManager;
+	}
+
+	@Override
+	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
+		UserProfile userProfile;
+		try {
+			userProfile = profileManager.readUserProfile();
+		} catch (GetFailedException e) {
+			throw new ProcessExecutionException(this, e);
+		}
+
+		for (AddFileProcessContext topContext : context.consumeTopContexts()) {
+			Index index = userProfile.getFileById(topContext.consumeMetaFileEncryptionKeys().getPublic());
+			if (index == null) {
+				throw new ProcessExecutionException(this, String.format("Added file '%s' not found in the user profile.",
+						topContext.consumeFile().getName()));
+			}
+			topContext.provideIndex(index);
+		}
+
+		return null;
+	}
+
+}
@@ -32,6 +32,7 @@ public class DeleteMetaFileStep extends BaseRemoveProcessStep {
 
 		try {
 			remove(context.consumeMetaFile().getId(), H2HConstants.META_FILE, context.consumeProtectionKeys());
+			dataManager.getMetaFileCache().invalidate(context.consumeMetaFile().getId());
 		} catch (RemoveFailedException ex) {
 			throw new ProcessExecutionException(this, ex, "Remove of meta document failed.");
 		}
@@ -1,6 +1,8 @@
 package org.hive2hive.core.processes.files.delete;
 
 import java.security.PublicKey;
+import java.util.Collections;
+import java.util.List;
 
 import net.tomp2p.peers.PeerAddress;
 
@@ -15,14 +17,25 @@ public class DeleteNotifyMessageFactory extends BaseNotificationMessageFactory {
 	private final PublicKey parentFileKey;
 	private final String fileName;
 	private final boolean isFile;
+	private final List<PublicKey> sharedFolderKeys;
 
 	public DeleteNotifyMessageFactory(IH2HEncryption encryption, PublicKey fileKey, PublicKey parentFileKey,
 			String fileName, boolean isFile) {
+		this(encryption, fileKey, parentFileKey, fileName, isFile, Collections.<PublicKey> emptyList());
+	}
+
+	/**
+	 * @param sharedFolderKeys the keys of the shared folders within a deleted folder tree. Users of these
+	 *            folders do not know the deleted folder, but remove the shared folders instead.
+	 */
+	public DeleteNotifyMessageFactory(IH2HEncryption encryption, PublicKey fileKey, PublicKey parentFileKey,
+			String fileName, boolean isFile, List<PublicKey> sharedFolderKeys) {
 		super(encryption);
 		this.fileKey = fileKey;
 		this.parentFileKey = parentFileKey;
 		this.fileName = fileName;
 		this.isFile = isFile;
+		this.sharedFolderKeys = sharedFolderKeys;
 	}
 
 	@Override
@@ -32,7 +45,7 @@ public class DeleteNotifyMessageFactory extends BaseNotificationMessageFactory {
 
 	@Override
 	public UserProfileTask createUserProfileTask(String sender) {
-		return new DeleteUserProfileTask(sender, generateProtectionKeys(), fileKey);
+		return new DeleteUserProfileTask(sender, generateProtectionKeys(), fileKey, sharedFolderKeys);
 	}
 
 }
@@ -0,0 +1,129 @@
+package org.hive2hive.core.processes.files.delete;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.model.BaseNetworkContent;
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FileVersion;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.model.versioned.BaseMetaFile;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.model.versioned.MetaFileSmall;
+import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.processes.context.DeleteSubtreeProcessContext;
+import org.hive2hive.core.security.H2HDefaultEncryption;
+import org.hive2hive.processframework.ProcessStep;
+import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
+import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Removes the meta files and all chunks of the files within a deleted folder tree. The meta files are fetched
+ * in parallel, the removals are issued in batches (see {@link DataManager#removeBatch(List)}).<br>
+ * The user profile is already consistent at this point, thus failures are only logged. The remaining data
+ * is cleaned up by its time-to-live.
+ * 
+ * @author Nico
+ */
+public class DeleteSubtreeContentStep extends ProcessStep<Void> {
+
+	private static final Logger logger = LoggerFactory.getLogger(DeleteSubtreeContentStep.class);
+
+	private final DeleteSubtreeProcessContext context;
+	private final DataManager dataManager;
+
+	public DeleteSubtreeContentStep(DeleteSubtreeProcessContext context, DataManager dataManager) {
+		this.setName(getClass().getName());
+		this.context = context;
+		this.dataManager = dataManager;
+	}
+
+	@Override
+	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
+		List<FileIndex> files = context.consumeFilesToDelete();
+		if (files == null) {
+			throw new ProcessExecutionException(this, "No files to delete given.");
+		} else if (files.isEmpty()) {
+			logger.debug("Deleted folder tree does not contain any files.");
+			return null;
+		}
+
+		final List<IParameters> toRemove = Collections.synchronizedList(new ArrayList<IParameters>());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(files.size(), H2HConstants.BULK_DELETE_THREADS));
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(files.size());
+			for (final FileIndex fileIndex : files) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						collectRemovals(fileIndex, toRemove);
+					}
+				}));
+			}
+
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new ProcessExecutionException(this, e, "Could not collect the content of the deleted files.");
+		} finally {
+			executor.shutdown();
+		}
+
+		List<IParameters> failed = dataManager.removeBatch(toRemove);
+		if (failed.isEmpty()) {
+			logger.debug("Removed {} meta files and chunks of {} deleted files.", toRemove.size(), files.size());
+		} else {
+			logger.warn("Could not remove {} of {} meta files and chunks of the deleted files.", failed.size(),
+					toRemove.size());
+		}
+
+		return null;
+	}
+
+	/**
+	 * Fetches the meta file of the given file and adds the meta file itself and all its chunks to the list
+	 */
+	private void collectRemovals(FileIndex fileIndex, List<IParameters> toRemove) {
+		String metaLocation = H2HDefaultEncryption.key2String(fileIndex.getFilePublicKey());
+		BaseNetworkContent loaded = dataManager.get(new Parameters().setLocationKey(metaLocation).setContentKey(
+				H2HConstants.META_FILE));
+		if (loaded == null) {
+			logger.warn("Meta file of '{}' not found.", fileIndex.getFullPath());
+			return;
+		}
+
+		BaseMetaFile metaFile;
+		try {
+			metaFile = (BaseMetaFile) dataManager.getEncryption().decryptHybrid((HybridEncryptedContent) loaded,
+					fileIndex.getFileKeys().getPrivate());
+		} catch (GeneralSecurityException | IllegalStateException | ClassNotFoundException | IOException e) {
+			logger.warn("Meta file of '{}' could not be decrypted.", fileIndex.getFullPath(), e);
+			return;
+		}
+
+		if (metaFile.isSmall()) {
+			for (FileVersion version : ((MetaFileSmall) metaFile).getVersions()) {
+				for (MetaChunk metaChunk : version.getMetaChunks()) {
+					toRemove.add(new Parameters().setLocationKey(metaChunk.getChunkId())
+							.setContentKey(H2HConstants.FILE_CHUNK).setProtectionKeys(fileIndex.getProtectionKeys()));
+				}
+			}
+		}
+
+		toRemove.add(new Parameters().setLocationKey(metaLocation).setContentKey(H2HConstants.META_FILE)
+				.setProtectionKeys(fileIndex.getProtectionKeys()));
+	}
+}
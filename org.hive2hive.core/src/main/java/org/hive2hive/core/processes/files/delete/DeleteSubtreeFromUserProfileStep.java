@@ -0,0 +1,84 @@
+package org.hive2hive.core.processes.files.delete;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hive2hive.core.exceptions.AbortModificationCode;
+import org.hive2hive.core.exceptions.AbortModifyException;
+import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.processes.common.base.BaseModifyUserProfileStep;
+import org.hive2hive.core.processes.context.DeleteSubtreeProcessContext;
+import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+
+/**
+ * Removes a file or a whole folder tree from the user profile in a single modification. Unlike
+ * {@link DeleteFromUserProfileStep}, the folder does not need to be empty. All files within the tree are
+ * provided to the context such that their meta files and chunks can be removed afterwards.
+ * 
+ * @author Nico
+ */
+public class DeleteSubtreeFromUserProfileStep extends BaseModifyUserProfileStep {
+
+	private final DeleteSubtreeProcessContext context;
+
+	public DeleteSubtreeFromUserProfileStep(DeleteSubtreeProcessContext context, NetworkManager networkManager)
+			throws NoSessionException {
+		super(networkManager.getSession().getProfileManager());
+		this.setName(getClass().getName());
+		this.context = context;
+	}
+
+	@Override
+	public void modifyUserProfile(UserProfile userProfile) throws AbortModifyException {
+		File file = context.consumeFile();
+		File root = context.consumeRoot();
+
+		Index topIndex = userProfile.getFileByPath(file, root);
+
+		// validate
+		if (topIndex == null) {
+			throw new AbortModifyException(AbortModificationCode.FILE_INDEX_NOT_FOUND, "File index not found in user profile");
+		} else if (topIndex.getParent() == null) {
+			throw new AbortModifyException(AbortModificationCode.ROOT_DELETE_ATTEMPT, "The root cannot be deleted");
+		} else if (!topIndex.canWrite()) {
+			throw new AbortModifyException(AbortModificationCode.NO_WRITE_PERM, "Not allowed to delete this file (read-only permissions)");
+		}
+
+		// remove the whole tree at once
+		FolderIndex parentIndex = topIndex.getParent();
+		parentIndex.removeChild(topIndex);
+
+		// store for later
+		context.provideIndex(topIndex);
+	}
+
+	@Override
+	protected void afterModify() throws ProcessExecutionException {
+		List<FileIndex> files = new ArrayList<FileIndex>();
+		for (Index index : Index.getIndexList(context.consumeIndex())) {
+			if (index.isFile()) {
+				files.add((FileIndex) index);
+			}
+		}
+		context.provideFilesToDelete(files);
+	}
+
+	@Override
+	protected void modifyRollback(UserProfile userProfile) {
+		File file = context.consumeFile();
+		File root = context.consumeRoot();
+		Index index = context.consumeIndex();
+
+		// re-add the tree to user profile
+		FolderIndex parent = (FolderIndex) userProfile.getFileByPath(file.getParentFile(), root);
+		parent.addChild(index);
+		index.setParent(parent);
+	}
+
+}
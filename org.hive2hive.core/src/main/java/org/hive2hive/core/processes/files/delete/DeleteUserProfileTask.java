@@ -3,6 +3,9 @@ package org.hive2hive.core.processes.files.delete;
 import java.io.File;
 import java.security.KeyPair;
 import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.events.framework.interfaces.IFileEventGenerator;
@@ -24,6 +27,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Removes a deleted file or folder tree from the user profile of another user. If the user does not know the
+ * deleted file, the shared folders within the deleted tree are removed instead.
+ * 
  * @author Nico, Seppi
  */
 public class DeleteUserProfileTask extends UserProfileTask implements IFileEventGenerator {
@@ -33,10 +39,17 @@ public class DeleteUserProfileTask extends UserProfileTask implements IFileEvent
 	private static final long serialVersionUID = 4580106953301162049L;
 
 	private final PublicKey fileKey;
+	// the shared folders within a deleted folder tree
+	private final List<PublicKey> sharedFolderKeys;
 
 	public DeleteUserProfileTask(String sender, KeyPair protectionKeys, PublicKey fileKey) {
+		this(sender, protectionKeys, fileKey, Collections.<PublicKey> emptyList());
+	}
+
+	public DeleteUserProfileTask(String sender, KeyPair protectionKeys, PublicKey fileKey, List<PublicKey> sharedFolderKeys) {
 		super(sender, protectionKeys);
 		this.fileKey = fileKey;
+		this.sharedFolderKeys = sharedFolderKeys;
 	}
 
 	@Override
@@ -58,46 +71,79 @@ public class DeleteUserProfileTask extends UserProfileTask implements IFileEvent
 			return;
 		}
 
-		try {
-			// notify own other clients
-			notifyOtherClients(modification.getMessageFactory());
-			logger.debug("Notified other clients that a file has been deleted by another user.");
-		} catch (IllegalArgumentException | NoPeerConnectionException | NoSessionException e) {
-			logger.error("Could not notify other clients of me about the deleted file.", e);
+		for (BaseNotificationMessageFactory messageFactory : modification.getMessageFactories()) {
+			try {
+				// notify own other clients
+				notifyOtherClients(messageFactory);
+				logger.debug("Notified other clients that a file has been deleted by another user.");
+			} catch (IllegalArgumentException | NoPeerConnectionException | NoSessionException e) {
+				logger.error("Could not notify other clients of me about the deleted file.", e);
+			}
 		}
 
-		// trigger event
-		networkManager.getEventBus().publish(modification.getFileDeleteEvent());
+		// trigger events
+		for (FileDeleteEvent fileDeleteEvent : modification.getFileDeleteEvents()) {
+			networkManager.getEventBus().publish(fileDeleteEvent);
+		}
 	}
 
 	private class DeleteUPModification implements IUserProfileModification {
 
 		private final File root;
 		private final IH2HEncryption encryption;
-		private BaseNotificationMessageFactory messageFactory;
-		private FileDeleteEvent fileDeleteEvent;
+		private final List<BaseNotificationMessageFactory> messageFactories;
+		private final List<FileDeleteEvent> fileDeleteEvents;
 
 		public DeleteUPModification(File root, IH2HEncryption encryption) {
 			this.root = root;
 			this.encryption = encryption;
+			this.messageFactories = new ArrayList<BaseNotificationMessageFactory>();
+			this.fileDeleteEvents = new ArrayList<FileDeleteEvent>();
 		}
 
 		@Override
 		public void modifyUserProfile(UserProfile userProfile) throws AbortModifyException {
+			// the modification may be retried
+			messageFactories.clear();
+			fileDeleteEvents.clear();
+
+			List<Index> filesToDelete = new ArrayList<Index>();
 			Index fileToDelete = userProfile.getFileById(fileKey);
-			if (fileToDelete == null) {
+			if (fileToDelete != null) {
+				filesToDelete.add(fileToDelete);
+			} else if (sharedFolderKeys != null) {
+				// only shared folders within the deleted tree are known
+				for (PublicKey sharedFolderKey : sharedFolderKeys) {
+					Index sharedFolder = userProfile.getFileById(sharedFolderKey);
+					if (sharedFolder != null) {
+						filesToDelete.add(sharedFolder);
+					}
+				}
+			}
+
+			if (filesToDelete.isEmpty()) {
 				throw new AbortModifyException(AbortModificationCode.FILE_INDEX_NOT_FOUND,
 						"Got notified about a file we don't know.");
 			}
 
+			for (Index index : filesToDelete) {
+				delete(index);
+			}
+		}
+
+		private void delete(Index fileToDelete) throws AbortModifyException {
 			FolderIndex parent = fileToDelete.getParent();
 			if (parent == null) {
 				throw new AbortModifyException(AbortModificationCode.ROOT_DELETE_ATTEMPT,
 						"Got task to delete the root, which is invalid.");
 			}
 
-			// check write permission
-			if (!parent.canWrite(sender)) {
+			// check write permission. The parent of a shared folder is not shared with the sender
+			FolderIndex permissionFolder = parent;
+			if (fileToDelete.isFolder() && ((FolderIndex) fileToDelete).getSharedFlag()) {
+				permissionFolder = (FolderIndex) fileToDelete;
+			}
+			if (!permissionFolder.canWrite(sender)) {
 				throw new AbortModifyException(AbortModificationCode.NO_WRITE_PERM,
 						"User without WRITE permissions tried to delete a file.");
 			}
@@ -105,17 +151,17 @@ public class DeleteUserProfileTask extends UserProfileTask implements IFileEvent
 			parent.removeChild(fileToDelete);
 
 			// prepare objects for notification if the UP modification was successful
-			messageFactory = new DeleteNotifyMessageFactory(encryption, fileToDelete.getFilePublicKey(),
-					parent.getFilePublicKey(), fileToDelete.getName(), fileToDelete.isFile());
-			fileDeleteEvent = new FileDeleteEvent(fileToDelete.asFile(root), fileToDelete.isFile());
+			messageFactories.add(new DeleteNotifyMessageFactory(encryption, fileToDelete.getFilePublicKey(), parent
+					.getFilePublicKey(), fileToDelete.getName(), fileToDelete.isFile()));
+			fileDeleteEvents.add(new FileDeleteEvent(fileToDelete.asFile(root), fileToDelete.isFile()));
 		}
 
-		public BaseNotificationMessageFactory getMessageFactory() {
-			return messageFactory;
+		public List<BaseNotificationMessageFactory> getMessageFactories() {
+			return messageFactories;
 		}
 
-		public FileDeleteEvent getFileDeleteEvent() {
-			return fileDeleteEvent;
+		public List<FileDeleteEvent> getFileDeleteEvents() {
+			return fileDeleteEvents;
 		}
 	}
 
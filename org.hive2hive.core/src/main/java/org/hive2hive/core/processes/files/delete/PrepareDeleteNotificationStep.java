@@ -1,15 +1,20 @@
 package org.hive2hive.core.processes.files.delete;
 
+import java.security.PublicKey;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import org.hive2hive.core.model.FolderIndex;
 import org.hive2hive.core.model.Index;
 import org.hive2hive.core.processes.context.DeleteFileProcessContext;
 import org.hive2hive.processframework.ProcessStep;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 
 /**
- * Provide the needed data for the notification
+ * Provide the needed data for the notification. When a folder tree is deleted, the users of the folders
+ * shared within the tree are notified as well, such that they remove these folders from their profile.
  * 
  * @author Nico, Seppi
  */
@@ -27,13 +32,24 @@ public class PrepareDeleteNotificationStep extends ProcessStep<Void> {
 		// prepare the file tree node for sending to other users
 		Index fileNode = context.consumeIndex();
 
-		// provide the message factory
-		context.provideMessageFactory(new DeleteNotifyMessageFactory(context.getEncryption(), fileNode.getFilePublicKey(),
-				fileNode.getParent().getFilePublicKey(), fileNode.getName(), fileNode.isFile()));
-
 		Set<String> users = new HashSet<String>();
 		users.addAll(fileNode.getCalculatedUserList());
 
+		// the users of a shared folder below do not know the deleted top folder
+		List<PublicKey> sharedFolderKeys = new ArrayList<PublicKey>();
+		if (fileNode.isFolder()) {
+			for (Index index : Index.getIndexList(fileNode)) {
+				if (index != fileNode && index.isFolder() && ((FolderIndex) index).getSharedFlag()) {
+					sharedFolderKeys.add(index.getFilePublicKey());
+					users.addAll(index.getCalculatedUserList());
+				}
+			}
+		}
+
+		// provide the message factory
+		context.provideMessageFactory(new DeleteNotifyMessageFactory(context.getEncryption(), fileNode.getFilePublicKey(),
+				fileNode.getParent().getFilePublicKey(), fileNode.getName(), fileNode.isFile(), sharedFolderKeys));
+
 		// provide the user list
 		context.provideUsersToNotify(users);
 
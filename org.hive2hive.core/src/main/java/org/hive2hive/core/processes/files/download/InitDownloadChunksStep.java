@@ -9,6 +9,7 @@ import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
 import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FileVersion;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.model.versioned.BaseMetaFile;
 import org.hive2hive.core.model.versioned.MetaFileLarge;
@@ -65,12 +66,13 @@ public class InitDownloadChunksStep extends ProcessStep<Void> {
 			MetaFileSmall metaFileSmall = (MetaFileSmall) metaFile;
 
 			// support to download a specific version
-			List<MetaChunk> metaChunks;
+			FileVersion version;
 			if (context.downloadNewestVersion()) {
-				metaChunks = metaFileSmall.getNewestVersion().getMetaChunks();
+				version = metaFileSmall.getNewestVersion();
 			} else {
-				metaChunks = metaFileSmall.getVersionByIndex(context.getVersionToDownload()).getMetaChunks();
+				version = metaFileSmall.getVersionByIndex(context.getVersionToDownload());
 			}
+			List<MetaChunk> metaChunks = version.getMetaChunks();
 
 			// verify destination before downloading
 			if (destination.exists()) {
@@ -88,6 +90,8 @@ public class InitDownloadChunksStep extends ProcessStep<Void> {
 
 			DownloadTaskDHT task = new DownloadTaskDHT(metaChunks, destination, metaFileSmall.getChunkKey().getPrivate(),
 					networkManager.getEventBus(), session.getKeyManager());
+			task.setPrioritized(context.isPrioritized());
+			task.setFileSize(version.getSize().longValue());
 
 			// start the download
 			try {
@@ -110,6 +114,7 @@ public class InitDownloadChunksStep extends ProcessStep<Void> {
 			DownloadTaskDirect task = new DownloadTaskDirect(metaFileLarge.getMetaChunks(), destination, metaFile.getId(),
 					session.getUserId(), networkManager.getConnection().getPeer().peerAddress(), users,
 					networkManager.getEventBus(), session.getKeyManager());
+			task.setPrioritized(context.isPrioritized());
 			try {
 				session.getDownloadManager().submit(task);
 			} catch (NoPeerConnectionException e) {
@@ -6,19 +6,24 @@ import java.security.GeneralSecurityException;
 
 import org.apache.commons.io.FileUtils;
 import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.metrics.H2HMetrics;
 import org.hive2hive.core.model.BaseNetworkContent;
 import org.hive2hive.core.model.Chunk;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.model.versioned.HybridEncryptedContent;
 import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.download.ChunkCache;
 import org.hive2hive.core.network.data.parameters.IParameters;
 import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.security.HashUtil;
 import org.hive2hive.core.security.IH2HEncryption;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Downloads a chunk from the DHT and stores it into a temprary file
+ * Downloads a chunk from the DHT and stores it into a temprary file. If the chunk is available in the local
+ * {@link ChunkCache}, it is taken from there. The data of the chunk is verified against the hash in the
+ * {@link MetaChunk}.
  * 
  * @author Nico
  * 
@@ -32,15 +37,18 @@ public class DownloadChunkRunnableDHT implements Runnable {
 	private final File tempDestination;
 	private final DataManager dataManager;
 	private final IH2HEncryption encryption;
+	private final ChunkCache chunkCache;
 
-	public DownloadChunkRunnableDHT(DownloadTaskDHT task, MetaChunk chunk, DataManager dataManager, IH2HEncryption encryption) {
+	public DownloadChunkRunnableDHT(DownloadTaskDHT task, MetaChunk chunk, DataManager dataManager,
+			IH2HEncryption encryption, ChunkCache chunkCache) {
 		this.task = task;
 		this.metaChunk = chunk;
 		this.dataManager = dataManager;
 		this.encryption = encryption;
+		this.chunkCache = chunkCache;
 
 		// create temporary file
-		this.tempDestination = new File(task.getTempDirectory(), task.getDestinationName() + "-" + chunk.getIndex());
+		this.tempDestination = task.getChunkFile(chunk.getIndex());
 	}
 
 	@Override
@@ -53,9 +61,17 @@ public class DownloadChunkRunnableDHT implements Runnable {
 			return;
 		}
 
+		byte[] cached = chunkCache.get(metaChunk);
+		if (cached != null) {
+			logger.debug("Chunk {} of file {} is available locally", metaChunk.getIndex(), task.getDestinationName());
+			writeChunk(cached);
+			return;
+		}
+
 		logger.debug("Downloading chunk {} of file {} from the DHT", metaChunk.getIndex(), task.getDestinationName());
 		IParameters parameters = new Parameters().setLocationKey(metaChunk.getChunkId()).setContentKey(
 				H2HConstants.FILE_CHUNK);
+		long start = System.nanoTime();
 		BaseNetworkContent content = dataManager.get(parameters);
 		if (content == null) {
 			task.abortDownload("Chunk not found in the DHT");
@@ -73,15 +89,28 @@ public class DownloadChunkRunnableDHT implements Runnable {
 			return;
 		}
 
+		dataManager.getMetrics().recordThroughput(H2HMetrics.DOWNLOAD_THROUGHPUT, H2HMetrics.DOWNLOAD_BYTES,
+				chunk.getData().length, start);
+
+		// chunks of older files have no hash of their content
+		if (metaChunk.getChunkHash() != null
+				&& !HashUtil.compare(HashUtil.hash(chunk.getData()), metaChunk.getChunkHash())) {
+			task.abortDownload(String.format("Chunk %s does not match its hash", metaChunk.getIndex()));
+			return;
+		}
+
+		chunkCache.put(metaChunk, chunk.getData());
+		writeChunk(chunk.getData());
+	}
+
+	private void writeChunk(byte[] data) {
 		try {
-			FileUtils.writeByteArrayToFile(tempDestination, chunk.getData());
+			FileUtils.writeByteArrayToFile(tempDestination, data);
 		} catch (IOException e) {
 			task.abortDownload("Cannot write the chunk data to temporary file");
 			return;
 		}
 
-		// TODO verify hash here
-
 		// notify the task that this file part has been downloaded successfully
 		task.markDownloaded(metaChunk.getIndex(), tempDestination);
 	}
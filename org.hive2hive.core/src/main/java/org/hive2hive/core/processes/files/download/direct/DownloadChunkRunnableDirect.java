@@ -1,10 +1,14 @@
 package org.hive2hive.core.processes.files.download.direct;
 
 import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
 
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
 import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.network.data.download.ChunkCache;
 import org.hive2hive.core.network.messages.IMessageManager;
 import org.hive2hive.core.processes.files.download.direct.process.AskForChunkStep;
 import org.hive2hive.core.processes.files.download.direct.process.DownloadDirectContext;
@@ -30,20 +34,27 @@ public class DownloadChunkRunnableDirect implements Runnable {
 	private final File tempDestination;
 	private final IMessageManager messageManager;
 	private final IFileConfiguration config;
+	private final ChunkCache chunkCache;
 
 	public DownloadChunkRunnableDirect(DownloadTaskDirect task, MetaChunk metaChunk, IMessageManager messageManager,
-			IFileConfiguration config) {
+			IFileConfiguration config, ChunkCache chunkCache) {
 		this.task = task;
 		this.metaChunk = metaChunk;
 		this.messageManager = messageManager;
 		this.config = config;
+		this.chunkCache = chunkCache;
 
 		// create temporary file
-		this.tempDestination = new File(task.getTempDirectory(), task.getDestinationName() + "-" + metaChunk.getIndex());
+		this.tempDestination = task.getChunkFile(metaChunk.getIndex());
 	}
 
 	@Override
 	public void run() {
+		if (copyFromCache()) {
+			logger.debug("Chunk {} of file {} is available locally", metaChunk.getIndex(), task.getDestinationName());
+			return;
+		}
+
 		if (task.awaitLocations()) {
 			logger.debug("Locations are available and download can be started");
 		} else {
@@ -70,7 +81,7 @@ public class DownloadChunkRunnableDirect implements Runnable {
 
 			currentTry++;
 
-			DownloadDirectContext context = new DownloadDirectContext(task, metaChunk, tempDestination);
+			DownloadDirectContext context = new DownloadDirectContext(task, metaChunk, tempDestination, chunkCache);
 			SyncProcess process = new SyncProcess();
 			process.add(new SelectPeerForDownloadStep(context));
 			process.add(new AskForChunkStep(context, messageManager, config));
@@ -83,4 +94,26 @@ public class DownloadChunkRunnableDirect implements Runnable {
 			}
 		}
 	}
+
+	/**
+	 * Takes the chunk from the local cache if it is available there. The cache verifies the hash
+	 * 
+	 * @return <code>true</code> if the chunk could be taken from the cache
+	 */
+	private boolean copyFromCache() {
+		byte[] cached = chunkCache.get(metaChunk);
+		if (cached == null) {
+			return false;
+		}
+
+		try {
+			FileUtils.writeByteArrayToFile(tempDestination, cached);
+		} catch (IOException e) {
+			logger.warn("Cannot write the cached chunk {} to the temporary file", metaChunk.getIndex());
+			return false;
+		}
+
+		task.markDownloaded(metaChunk.getIndex(), tempDestination);
+		return true;
+	}
 }
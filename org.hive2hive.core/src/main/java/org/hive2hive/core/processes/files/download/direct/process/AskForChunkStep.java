@@ -129,7 +129,8 @@ public class AskForChunkStep extends BaseMessageProcessStep {
 			return;
 		}
 
-		// hash is ok, write it to the file
+		// hash is ok, keep it for later downloads and write it to the file
+		context.getChunkCache().put(metaChunk, chunk.getData());
 		try {
 			FileUtils.writeByteArrayToFile(context.getTempDestination(), chunk.getData());
 			logger.debug("Wrote chunk {} to temporary file {}", context.getMetaChunk().getIndex(),
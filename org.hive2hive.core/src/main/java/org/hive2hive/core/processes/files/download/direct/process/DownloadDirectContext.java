@@ -5,6 +5,7 @@ import java.io.File;
 import net.tomp2p.peers.PeerAddress;
 
 import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.network.data.download.ChunkCache;
 import org.hive2hive.core.processes.files.download.direct.DownloadTaskDirect;
 
 public class DownloadDirectContext {
@@ -12,14 +13,17 @@ public class DownloadDirectContext {
 	private final DownloadTaskDirect task;
 	private final MetaChunk metaChunk;
 	private final File tempDestination;
+	private final ChunkCache chunkCache;
 
 	private PeerAddress selectedPeer;
 	private String userName;
 
-	public DownloadDirectContext(DownloadTaskDirect task, MetaChunk metaChunk, File tempDestination) {
+	public DownloadDirectContext(DownloadTaskDirect task, MetaChunk metaChunk, File tempDestination,
+			ChunkCache chunkCache) {
 		this.task = task;
 		this.metaChunk = metaChunk;
 		this.tempDestination = tempDestination;
+		this.chunkCache = chunkCache;
 	}
 
 	public DownloadTaskDirect getTask() {
@@ -34,6 +38,10 @@ public class DownloadDirectContext {
 		return tempDestination;
 	}
 
+	public ChunkCache getChunkCache() {
+		return chunkCache;
+	}
+
 	public void setSelectedPeer(PeerAddress selectedPeer, String userName) {
 		this.userName = userName;
 		this.selectedPeer = selectedPeer;
@@ -0,0 +1,57 @@
+package org.hive2hive.core.processes.files.list;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A page of a file listing. The nodes are in preorder (the children of a folder sorted by name) and do not link
+ * to their parents or children. Use the cursor to request the next page.
+ * 
+ * @author Nico
+ * 
+ */
+public class FileListPage implements Iterable<FileNode> {
+
+	private final List<FileNode> nodes;
+	private final String nextCursor;
+
+	public FileListPage(List<FileNode> nodes, String nextCursor) {
+		this.nodes = Collections.unmodifiableList(nodes);
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * @return the nodes of this page
+	 */
+	public List<FileNode> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * The cursor to request the next page with. Files that are added or removed in between do not disturb the
+	 * position of the cursor.
+	 * 
+	 * @return the cursor or <code>null</code> if this is the last page
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * @return whether more nodes follow this page
+	 */
+	public boolean hasNext() {
+		return nextCursor != null;
+	}
+
+	@Override
+	public Iterator<FileNode> iterator() {
+		return nodes.iterator();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("FileListPage [nodes=%s next=%s]", nodes.size(), nextCursor);
+	}
+}
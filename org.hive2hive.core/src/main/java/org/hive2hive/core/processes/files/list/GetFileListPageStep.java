@@ -0,0 +1,190 @@
+package org.hive2hive.core.processes.files.list;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.hive2hive.core.exceptions.GetFailedException;
+import org.hive2hive.core.file.FileUtil;
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.UserPermission;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.network.data.UserProfileManager;
+import org.hive2hive.processframework.ProcessStep;
+import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
+import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+
+/**
+ * Lists a folder page by page. In contrast to the {@link GetFileListStep}, only the nodes of the requested page
+ * are created. The cursor is the path of the last node of the previous page, the listing continues after this
+ * path in preorder even if the node does not exist anymore.
+ * 
+ * @author Nico
+ * 
+ */
+public class GetFileListPageStep extends ProcessStep<FileListPage> {
+
+	private final UserProfileManager profileManager;
+	private final File rootFile;
+	private final File folder;
+	private final boolean recursive;
+	private final String cursor;
+	private final int pageSize;
+
+	public GetFileListPageStep(UserProfileManager profileManager, File root, File folder, boolean recursive,
+			String cursor, int pageSize) {
+		this.profileManager = profileManager;
+		this.rootFile = root;
+		this.folder = folder;
+		this.recursive = recursive;
+		this.cursor = cursor;
+		this.pageSize = pageSize;
+		setName(getClass().getName());
+	}
+
+	@Override
+	protected FileListPage doExecute() throws InvalidProcessStateException, ProcessExecutionException {
+		// get the user profile
+		UserProfile profile = null;
+		try {
+			profile = profileManager.readUserProfile();
+		} catch (GetFailedException e) {
+			throw new ProcessExecutionException(this, "User profile could not be loaded.");
+		}
+
+		Index index = profile.getFileByPath(folder, rootFile);
+		if (index == null || index.isFile()) {
+			throw new ProcessExecutionException(this, String.format("Folder '%s' does not exist in the user profile.",
+					folder));
+		}
+
+		try {
+			return listPage((FolderIndex) index, rootFile, recursive, cursor, pageSize);
+		} catch (IllegalArgumentException e) {
+			throw new ProcessExecutionException(this, e.getMessage());
+		}
+	}
+
+	/**
+	 * Lists the nodes below a folder (excluding the folder itself), continuing after the cursor
+	 * 
+	 * @param folder the folder to list
+	 * @param rootFile the root of the Hive2Hive directory
+	 * @param recursive whether the whole subtree or only the direct children are listed
+	 * @param cursor the cursor of the previous page or <code>null</code> to start at the beginning
+	 * @param pageSize the maximum number of nodes
+	 * @return the page
+	 * @throws IllegalArgumentException if the cursor does not belong to the folder
+	 */
+	static FileListPage listPage(FolderIndex folder, File rootFile, boolean recursive, String cursor, int pageSize) {
+		String[] cursorSegments = null;
+		if (cursor != null) {
+			String folderPath = folder.getFullPath();
+			if (!cursor.startsWith(folderPath) || cursor.length() == folderPath.length()) {
+				throw new IllegalArgumentException(String.format("Invalid cursor '%s'.", cursor));
+			}
+			cursorSegments = split(cursor.substring(folderPath.length()));
+		}
+
+		// collect one more node to know whether another page follows
+		int limit = pageSize < Integer.MAX_VALUE ? pageSize + 1 : pageSize;
+		List<FileNode> nodes = new ArrayList<FileNode>(Math.min(limit, 1024));
+		collect(folder, 0, cursorSegments, recursive, rootFile, nodes, limit);
+
+		String nextCursor = null;
+		if (nodes.size() > pageSize) {
+			nodes.remove(pageSize);
+			nextCursor = nodes.get(pageSize - 1).getPath();
+		}
+		return new FileListPage(nodes, nextCursor);
+	}
+
+	/**
+	 * Preorder traversal of the children of the folder which come after the cursor
+	 * 
+	 * @param cursor the remaining segments of the cursor or <code>null</code> if all children come after it
+	 * @return <code>true</code> if the limit is reached
+	 */
+	private static boolean collect(FolderIndex folder, int depth, String[] cursor, boolean recursive, File rootFile,
+			List<FileNode> nodes, int limit) {
+		// sorted once per folder and kept until the folder changes, not once per page
+		List<Index> children = folder.getSortedChildren();
+
+		int start = 0;
+		if (cursor != null && depth < cursor.length) {
+			// skip all children up to the cursor
+			int position = binarySearch(children, cursor[depth]);
+			if (position >= 0) {
+				Index child = children.get(position);
+				start = position + 1;
+				if (recursive && child.isFolder()) {
+					// either the cursor is this folder (its subtree follows) or the cursor lies within it
+					String[] remaining = depth == cursor.length - 1 ? null : cursor;
+					if (collect((FolderIndex) child, depth + 1, remaining, recursive, rootFile, nodes, limit)) {
+						return true;
+					}
+				}
+			} else {
+				start = -(position + 1);
+			}
+		}
+
+		for (int i = start; i < children.size(); i++) {
+			Index child = children.get(i);
+			nodes.add(createNode(child, rootFile));
+			if (nodes.size() >= limit) {
+				return true;
+			}
+			if (recursive && child.isFolder()) {
+				if (collect((FolderIndex) child, depth + 1, null, recursive, rootFile, nodes, limit)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static int binarySearch(List<Index> sortedChildren, String name) {
+		int low = 0;
+		int high = sortedChildren.size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = String.CASE_INSENSITIVE_ORDER.compare(sortedChildren.get(middle).getName(), name);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	private static FileNode createNode(Index index, File rootFile) {
+		String path = index.getFullPath();
+		byte[] hash = null;
+		Set<UserPermission> userPermissions;
+		if (index.isFile()) {
+			hash = ((FileIndex) index).getHash();
+			userPermissions = index.getParent().getCalculatedUserPermissions();
+		} else {
+			userPermissions = ((FolderIndex) index).getCalculatedUserPermissions();
+		}
+		return new FileNode(null, new File(rootFile, path), path, hash, userPermissions);
+	}
+
+	private static String[] split(String relativePath) {
+		List<String> segments = new ArrayList<String>(Arrays.asList(relativePath.split(Pattern.quote(FileUtil
+				.getFileSep()))));
+		// folder paths end with a separator
+		segments.removeAll(Collections.singleton(""));
+		return segments.toArray(new String[segments.size()]);
+	}
+}
@@ -39,7 +39,7 @@ public class UpdateHashInUserProfileStep extends BaseModifyUserProfileStep {
 	@Override
 	protected void beforeModify() throws ProcessExecutionException {
 		try {
-			newHash = HashUtil.hash(context.consumeFile());
+			newHash = hashFile(context.consumeFile());
 		} catch (IOException e) {
 			throw new ProcessExecutionException(this, "The new hash for the user profile could not be generated.");
 		}
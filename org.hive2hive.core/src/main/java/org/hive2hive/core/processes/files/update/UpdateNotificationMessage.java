@@ -8,6 +8,7 @@ import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.events.framework.interfaces.IFileEventGenerator;
 import org.hive2hive.core.events.implementations.FileUpdateEvent;
 import org.hive2hive.core.exceptions.GetFailedException;
+import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
 import org.hive2hive.core.model.Index;
 import org.hive2hive.core.model.versioned.UserProfile;
@@ -33,6 +34,13 @@ public class UpdateNotificationMessage extends BaseDirectMessage implements IFil
 	public void run() {
 		logger.debug("Update file notification message received.");
 
+		// the meta file has changed
+		try {
+			networkManager.getDataManager().getMetaFileCache().invalidate(fileKey);
+		} catch (NoPeerConnectionException e) {
+			logger.warn("Cannot invalidate the cached meta file.");
+		}
+
 		H2HSession session;
 		try {
 			session = networkManager.getSession();
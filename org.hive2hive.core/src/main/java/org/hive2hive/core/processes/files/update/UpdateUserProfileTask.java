@@ -44,6 +44,13 @@ public class UpdateUserProfileTask extends UserProfileTask implements IUserProfi
 
 	@Override
 	public void start() {
+		// the meta file has been updated by another user
+		try {
+			networkManager.getDataManager().getMetaFileCache().invalidate(fileKey);
+		} catch (NoPeerConnectionException e) {
+			logger.warn("Cannot invalidate the cached meta file.");
+		}
+
 		H2HSession session;
 		try {
 			session = networkManager.getSession();
@@ -2,22 +2,23 @@ package org.hive2hive.core.processes.login;
 
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 
 import net.tomp2p.peers.PeerAddress;
 
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.file.PersistentMetaData;
 import org.hive2hive.core.model.versioned.Locations;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.network.NetworkUtils;
+import org.hive2hive.core.network.PeerLivenessTable;
 import org.hive2hive.core.network.data.PublicKeyManager;
 import org.hive2hive.core.network.messages.MessageManager;
 import org.hive2hive.core.network.messages.direct.ContactPeerMessage;
@@ -25,12 +26,22 @@ import org.hive2hive.core.network.messages.direct.response.IResponseCallBackHand
 import org.hive2hive.core.network.messages.direct.response.ResponseMessage;
 import org.hive2hive.core.processes.ProcessFactory;
 import org.hive2hive.core.processes.context.LoginProcessContext;
+import org.hive2hive.core.processes.notify.NotificationDispatcher;
 import org.hive2hive.processframework.ProcessStep;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Contacts the other clients of the user to find out which of them are still alive. The clients are contacted
+ * in parallel by the threads of the node (see {@link NotificationDispatcher#executeContact(Runnable)}), the
+ * most likely alive ones first. Every client has its own deadline, which starts when its message is sent and
+ * is adapted to its round trip times observed before (see {@link PeerLivenessTable}). Clients whose message is
+ * still queued are given up after {@link H2HConstants#CONTACT_PEERS_AWAIT_MS}. The step completes as soon as
+ * all clients have either responded, failed or exceeded their deadline. Addresses that did not respond too
+ * many times in a row are dropped without being contacted.
+ */
 // TODO this class should be split up into multiple steps
 public class ContactOtherClientsStep extends ProcessStep<Void> implements IResponseCallBackHandler {
 
@@ -38,12 +49,15 @@ public class ContactOtherClientsStep extends ProcessStep<Void> implements IRespo
 
 	private final Map<PeerAddress, String> evidences = new ConcurrentHashMap<PeerAddress, String>();
 	private final Map<PeerAddress, Boolean> responses = new ConcurrentHashMap<PeerAddress, Boolean>();
-	private CountDownLatch waitForResponses;
-	private boolean isUpdated = false;
+	private final Map<PeerAddress, Long> sendTimes = new ConcurrentHashMap<PeerAddress, Long>();
+	// the peers that did not respond yet, with their deadline
+	private final Map<PeerAddress, Long> pending = new HashMap<PeerAddress, Long>();
+	private volatile boolean isUpdated = false;
 
 	private final LoginProcessContext context;
 	private final MessageManager messageManager;
 	private final NetworkManager networkManager;
+	private final PeerLivenessTable livenessTable;
 
 	public ContactOtherClientsStep(LoginProcessContext context, NetworkManager networkManager)
 			throws NoPeerConnectionException {
@@ -51,6 +65,7 @@ public class ContactOtherClientsStep extends ProcessStep<Void> implements IRespo
 		this.context = context;
 		this.networkManager = networkManager;
 		this.messageManager = networkManager.getMessageManager();
+		this.livenessTable = networkManager.getLivenessTable();
 	}
 
 	@Override
@@ -65,6 +80,12 @@ public class ContactOtherClientsStep extends ProcessStep<Void> implements IRespo
 		PublicKey ownPublicKey = keyManager.getOwnPublicKey();
 		Locations locations = context.consumeLocations();
 
+		// the liveness persisted at the last logout
+		PersistentMetaData metaData = context.consumePersistentMetaData();
+		if (metaData != null && metaData.getPeerLiveness() != null) {
+			livenessTable.addEntries(metaData.getPeerLiveness());
+		}
+
 		sendBlocking(locations.getPeerAddresses(), ownPublicKey);
 
 		locations.getPeerAddresses().clear();
@@ -97,41 +118,107 @@ public class ContactOtherClientsStep extends ProcessStep<Void> implements IRespo
 	}
 
 	private void sendBlocking(Set<PeerAddress> peerAddresses, final PublicKey ownPublicKey) {
-		waitForResponses = new CountDownLatch(peerAddresses.size());
-		boolean hasSlowPeers = false;
-		for (final PeerAddress address : peerAddresses) {
+		PeerAddress ownAddress = networkManager.getConnection().getPeer().peerAddress();
+		List<PeerAddress> toContact = new ArrayList<PeerAddress>();
+		for (PeerAddress address : peerAddresses) {
 			// contact all other clients (exclude self)
-			if (!address.equals(networkManager.getConnection().getPeer().peerAddress())) {
-				logger.debug("Sending contact message to check for aliveness to {}", address);
-				String evidence = UUID.randomUUID().toString();
-				evidences.put(address, evidence);
-				hasSlowPeers = hasSlowPeers || address.isSlow();
-
-				final ContactPeerMessage message = new ContactPeerMessage(address, evidence);
-				message.setCallBackHandler(this);
-
-				// asynchronously send all messages (parallel)
-				new Thread(new Runnable() {
-					@Override
-					public void run() {
-						if (!messageManager.sendDirect(message, ownPublicKey)) {
-							responses.put(address, false);
+			if (address.equals(ownAddress)) {
+				continue;
+			} else if (livenessTable.isDropped(address)) {
+				logger.debug("Dropping {} because it did not respond multiple times in a row.", address);
+				livenessTable.remove(address);
+			} else {
+				toContact.add(address);
+			}
+		}
+
+		// the most likely alive peers first
+		livenessTable.sortByLiveness(toContact);
+
+		// the deadline of a client starts when its message is sent, until then the overall deadline applies
+		long queueDeadline = System.currentTimeMillis() + H2HConstants.CONTACT_PEERS_AWAIT_MS;
+		synchronized (pending) {
+			for (PeerAddress address : toContact) {
+				pending.put(address, queueDeadline);
+			}
+		}
+
+		NotificationDispatcher dispatcher = networkManager.getNotificationDispatcher();
+		for (final PeerAddress address : toContact) {
+			logger.debug("Sending contact message to check for aliveness to {}", address);
+			String evidence = UUID.randomUUID().toString();
+			evidences.put(address, evidence);
+
+			final ContactPeerMessage message = new ContactPeerMessage(address, evidence);
+			message.setCallBackHandler(this);
+
+			// asynchronously send all messages (parallel)
+			dispatcher.executeContact(new Runnable() {
+				@Override
+				public void run() {
+					long sendTime = System.currentTimeMillis();
+					synchronized (pending) {
+						if (isUpdated || !pending.containsKey(address)) {
+							// already given up
+							return;
 						}
+						pending.put(address, sendTime + livenessTable.getTimeout(address));
+						pending.notifyAll();
 					}
-				}).start();
-			}
+					sendTimes.put(address, sendTime);
+					if (!messageManager.sendDirect(message, ownPublicKey)) {
+						complete(address, false);
+					}
+				}
+			});
 		}
 
-		// wait (blocking) until all responses are here or the time's up
-		int waitTime = hasSlowPeers ? H2HConstants.CONTACT_SLOW_PEERS_AWAIT_MS : H2HConstants.CONTACT_PEERS_AWAIT_MS;
+		// wait (blocking) until all responses are here or the deadlines have passed
 		try {
-			logger.debug("Waiting for at most {}ms for the response of other clients", waitTime);
-			waitForResponses.await(waitTime, TimeUnit.MILLISECONDS);
+			awaitPending();
 		} catch (InterruptedException e) {
 			logger.error("Could not wait the given time for the clients to respond.", e);
 		}
 
 		isUpdated = true;
+
+		// learn from the result
+		for (PeerAddress address : toContact) {
+			Boolean responded = responses.get(address);
+			if (responded == null || !responded) {
+				livenessTable.recordFailure(address);
+			}
+		}
+	}
+
+	private void awaitPending() throws InterruptedException {
+		synchronized (pending) {
+			while (!pending.isEmpty()) {
+				long now = System.currentTimeMillis();
+				long nextDeadline = Long.MAX_VALUE;
+				for (PeerAddress address : new ArrayList<PeerAddress>(pending.keySet())) {
+					long deadline = pending.get(address);
+					if (deadline <= now) {
+						logger.debug("Client {} did not respond in time.", address);
+						pending.remove(address);
+					} else {
+						nextDeadline = Math.min(nextDeadline, deadline);
+					}
+				}
+
+				if (!pending.isEmpty()) {
+					pending.wait(nextDeadline - now);
+				}
+			}
+		}
+	}
+
+	private void complete(PeerAddress address, boolean alive) {
+		responses.put(address, alive);
+		synchronized (pending) {
+			pending.remove(address);
+			pending.notifyAll();
+		}
 	}
 
 	@Override
@@ -144,10 +231,14 @@ public class ContactOtherClientsStep extends ProcessStep<Void> implements IRespo
 		}
 
 		// verify response
-		if (evidences.get(responseMessage.getSenderAddress()).equals((String) responseMessage.getContent())) {
-			logger.debug("Received valid response from {}", responseMessage.getSenderAddress());
-			responses.put(responseMessage.getSenderAddress(), true);
-			waitForResponses.countDown();
+		PeerAddress sender = responseMessage.getSenderAddress();
+		String evidence = evidences.get(sender);
+		if (evidence != null && evidence.equals((String) responseMessage.getContent())) {
+			Long sendTime = sendTimes.get(sender);
+			long rtt = sendTime == null ? 0 : System.currentTimeMillis() - sendTime;
+			logger.debug("Received valid response from {} after {} ms", sender, rtt);
+			livenessTable.recordResponse(sender, rtt);
+			complete(sender, true);
 		} else {
 			logger.error(
 					"Received during liveness check of other clients a wrong evidence content. Responding node = '{}'.",
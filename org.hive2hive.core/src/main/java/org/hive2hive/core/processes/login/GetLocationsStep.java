@@ -1,46 +1,36 @@
 package org.hive2hive.core.processes.login;
 
 import org.hive2hive.core.exceptions.GetFailedException;
-import org.hive2hive.core.exceptions.NoSessionException;
-import org.hive2hive.core.model.versioned.Locations;
-import org.hive2hive.core.network.NetworkManager;
-import org.hive2hive.core.network.data.vdht.LocationsManager;
 import org.hive2hive.core.processes.context.LoginProcessContext;
 import org.hive2hive.processframework.ProcessStep;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Gets the locations of the user. This does not require the session, thus it can run concurrently to the
+ * {@link SessionCreationStep}. If the locations cannot be fetched, they are repaired by the
+ * {@link RepairLocationsStep} as soon as the session exists.
+ */
 public class GetLocationsStep extends ProcessStep<Void> {
 
+	private static final Logger logger = LoggerFactory.getLogger(GetLocationsStep.class);
+
 	private final LoginProcessContext context;
-	private final NetworkManager networkManager;
 
-	public GetLocationsStep(LoginProcessContext context, NetworkManager networkManager) {
+	public GetLocationsStep(LoginProcessContext context) {
 		this.setName(getClass().getName());
 		this.context = context;
-		this.networkManager = networkManager;
 	}
 
 	@Override
 	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
-		LocationsManager locationsManager;
-		try {
-			locationsManager = networkManager.getSession().getLocationsManager();
-		} catch (NoSessionException ex) {
-			throw new ProcessExecutionException(this, ex);
-		}
-
 		try {
-			context.provideLocations(locationsManager.get());
+			context.provideLocations(context.consumeLocationsManager().get());
 		} catch (GetFailedException ex) {
-			Locations locations = locationsManager.repairLocations();
-			if (locations == null) {
-				// even repairing failed
-				throw new ProcessExecutionException(this, ex);
-			} else {
-				// repairing was successful
-				context.provideLocations(locations);
-			}
+			logger.warn("Cannot get the locations of user '{}'. They need to be repaired.", context.consumeUserId());
+			context.provideLocations(null);
 		}
 		return null;
 	}
@@ -0,0 +1,40 @@
+package org.hive2hive.core.processes.login;
+
+import org.hive2hive.core.file.FileUtil;
+import org.hive2hive.core.file.PersistentMetaData;
+import org.hive2hive.core.network.data.MetaFileCache;
+import org.hive2hive.core.processes.context.LoginProcessContext;
+import org.hive2hive.core.serializer.IH2HSerialize;
+import org.hive2hive.processframework.ProcessStep;
+import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
+import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+
+/**
+ * Reads the persistently cached items of the last session (from disk). The locations of the last session are
+ * used to seed the locations manager and the encrypted meta files seed the {@link MetaFileCache}. The user
+ * profile is seeded by the {@link SessionCreationStep}.
+ */
+public class ReadPersistentMetaDataStep extends ProcessStep<Void> {
+
+	private final LoginProcessContext context;
+	private final MetaFileCache metaFileCache;
+	private final IH2HSerialize serializer;
+
+	public ReadPersistentMetaDataStep(LoginProcessContext context, MetaFileCache metaFileCache,
+			IH2HSerialize serializer) {
+		this.setName(getClass().getName());
+		this.context = context;
+		this.metaFileCache = metaFileCache;
+		this.serializer = serializer;
+	}
+
+	@Override
+	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
+		SessionParameters params = context.consumeSessionParameters();
+		PersistentMetaData metaData = FileUtil.readPersistentMetaData(params.getFileAgent(), serializer);
+		context.consumeLocationsManager().seed(metaData.getLocationsSnapshot());
+		metaFileCache.seed(metaData.getMetaFiles());
+		context.providePersistentMetaData(metaData);
+		return null;
+	}
+}
@@ -0,0 +1,38 @@
+package org.hive2hive.core.processes.login;
+
+import org.hive2hive.core.model.versioned.Locations;
+import org.hive2hive.core.processes.context.LoginProcessContext;
+import org.hive2hive.processframework.ProcessStep;
+import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
+import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+
+/**
+ * Repairs the locations if the {@link GetLocationsStep} was not able to get them. Repairing requires the
+ * protection keys, thus it can only happen after the {@link SessionCreationStep}.
+ */
+public class RepairLocationsStep extends ProcessStep<Void> {
+
+	private final LoginProcessContext context;
+
+	public RepairLocationsStep(LoginProcessContext context) {
+		this.setName(getClass().getName());
+		this.context = context;
+	}
+
+	@Override
+	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
+		if (context.consumeLocations() != null) {
+			// nothing to repair
+			return null;
+		}
+
+		Locations locations = context.consumeLocationsManager().repairLocations();
+		if (locations == null) {
+			// even repairing failed
+			throw new ProcessExecutionException(this, "The locations could neither be fetched nor repaired.");
+		}
+
+		context.provideLocations(locations);
+		return null;
+	}
+}
@@ -1,12 +1,12 @@
 package org.hive2hive.core.processes.login;
 
-import java.security.PublicKey;
-import java.util.Map;
+import java.util.concurrent.FutureTask;
+
+import javax.crypto.SecretKey;
 
 import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
-import org.hive2hive.core.file.FileUtil;
 import org.hive2hive.core.file.PersistentMetaData;
 import org.hive2hive.core.model.versioned.UserProfile;
 import org.hive2hive.core.network.NetworkManager;
@@ -15,10 +15,16 @@ import org.hive2hive.core.network.data.UserProfileManager;
 import org.hive2hive.core.network.data.download.DownloadManager;
 import org.hive2hive.core.network.data.vdht.LocationsManager;
 import org.hive2hive.core.processes.context.LoginProcessContext;
+import org.hive2hive.core.security.UserCredentials;
 import org.hive2hive.processframework.ProcessStep;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
 
+/**
+ * Creates the session of the user. The key of the user profile is derived in a separate thread while the
+ * user profile is fetched from the network (or, if unchanged, taken from the last session). The cached public keys are added later by the
+ * {@link WarmPublicKeyCacheStep}.
+ */
 public class SessionCreationStep extends ProcessStep<Void> {
 
 	private final LoginProcessContext context;
@@ -35,33 +41,36 @@ public class SessionCreationStep extends ProcessStep<Void> {
 		H2HSession session;
 		try {
 			SessionParameters params = context.consumeSessionParameters();
+			UserCredentials credentials = context.consumeUserCredentials();
+
+			// derive the key of the user profile in the background
+			FutureTask<SecretKey> keyDerivation = UserProfileManager.createKeyDerivation(credentials);
+			Thread derivationThread = new Thread(keyDerivation, "H2H-ProfileKeyDerivation");
+			derivationThread.setDaemon(true);
+			derivationThread.start();
 
 			// create user profile manager
 			UserProfileManager userProfileManager = new UserProfileManager(networkManager.getDataManager(),
-					context.consumeUserCredentials());
+					credentials, keyDerivation);
 			params.setUserProfileManager(userProfileManager);
 
+			// with the profile of the last session, it's only fetched if it has changed in the meantime
+			PersistentMetaData metaData = context.consumePersistentMetaData();
+			if (metaData != null) {
+				userProfileManager.seed(metaData.getProfileSnapshot());
+			}
+
 			// load user profile
 			UserProfile userProfile = userProfileManager.readUserProfile();
 
-			// create the locations manager
-			LocationsManager locationsManager = new LocationsManager(networkManager.getDataManager(),
-					context.consumeUserId(), userProfile.getProtectionKeys());
+			// the locations manager may already be in use, it now gets the protection keys
+			LocationsManager locationsManager = context.consumeLocationsManager();
+			locationsManager.setProtectionKeys(userProfile.getProtectionKeys());
 			params.setLocationsManager(locationsManager);
 
-			// get the persistently cached items
-			PersistentMetaData metaData = FileUtil.readPersistentMetaData(params.getFileAgent(), networkManager
-					.getDataManager().getSerializer());
-
 			// create the key manager
 			PublicKeyManager keyManager = new PublicKeyManager(userProfile.getUserId(), userProfile.getEncryptionKeys(),
 					userProfile.getProtectionKeys(), networkManager.getDataManager());
-
-			// read eventually cached keys and add them to the key manager
-			Map<String, PublicKey> publicKeyCache = metaData.getPublicKeyCache();
-			for (String userId : publicKeyCache.keySet()) {
-				keyManager.putPublicKey(userId, publicKeyCache.get(userId));
-			}
 			params.setKeyManager(keyManager);
 
 			// create the download manager
@@ -0,0 +1,120 @@
+package org.hive2hive.core.processes.login;
+
+import java.security.PublicKey;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HSession;
+import org.hive2hive.core.exceptions.GetFailedException;
+import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.file.PersistentMetaData;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.UserPermission;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.data.PublicKeyManager;
+import org.hive2hive.core.processes.context.LoginProcessContext;
+import org.hive2hive.processframework.ProcessStep;
+import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
+import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fills the public key cache of the session. First, the keys cached during the last session are added. Then
+ * the missing keys of all users sharing a folder with this user are fetched in parallel in the background,
+ * such that the first notifications after the login do not need to fetch them. The login does not wait for
+ * them. Failures are not critical and only logged.
+ */
+public class WarmPublicKeyCacheStep extends ProcessStep<Void> {
+
+	private static final Logger logger = LoggerFactory.getLogger(WarmPublicKeyCacheStep.class);
+
+	private final LoginProcessContext context;
+	private final NetworkManager networkManager;
+
+	public WarmPublicKeyCacheStep(LoginProcessContext context, NetworkManager networkManager) {
+		this.setName(getClass().getName());
+		this.context = context;
+		this.networkManager = networkManager;
+	}
+
+	@Override
+	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
+		H2HSession session;
+		UserProfile userProfile;
+		try {
+			session = networkManager.getSession();
+			userProfile = session.getProfileManager().readUserProfile();
+		} catch (NoSessionException | GetFailedException ex) {
+			logger.warn("Cannot warm the public key cache.", ex);
+			return null;
+		}
+		final PublicKeyManager keyManager = session.getKeyManager();
+
+		// read eventually cached keys and add them to the key manager
+		PersistentMetaData metaData = context.consumePersistentMetaData();
+		if (metaData != null) {
+			Map<String, PublicKey> publicKeyCache = metaData.getPublicKeyCache();
+			for (String userId : publicKeyCache.keySet()) {
+				keyManager.putPublicKey(userId, publicKeyCache.get(userId));
+			}
+		}
+
+		Set<String> missing = getSharingPartners(userProfile);
+		missing.remove(userProfile.getUserId());
+		for (String userId : new HashSet<String>(missing)) {
+			if (keyManager.containsPublicKey(userId)) {
+				missing.remove(userId);
+			}
+		}
+
+		if (missing.isEmpty()) {
+			return null;
+		}
+
+		logger.debug("Prefetching the public keys of {} sharing partner(s).", missing.size());
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(missing.size(), H2HConstants.PUBLIC_KEY_PREFETCH_THREADS), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "H2H-PublicKeyPrefetch");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		for (final String userId : missing) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						keyManager.getPublicKey(userId);
+					} catch (GetFailedException | RuntimeException e) {
+						logger.warn("Cannot prefetch the public key of user '{}'.", userId, e);
+					}
+				}
+			});
+		}
+		// the threads terminate when all keys are fetched, the login does not wait for them
+		executor.shutdown();
+		return null;
+	}
+
+	private static Set<String> getSharingPartners(UserProfile userProfile) {
+		Set<String> userIds = new HashSet<String>();
+		for (Index index : Index.getIndexList(userProfile.getRoot())) {
+			if (index.isFolder() && ((FolderIndex) index).getSharedFlag()) {
+				for (UserPermission permission : ((FolderIndex) index).getUserPermissions()) {
+					userIds.add(permission.getUserId());
+				}
+			}
+		}
+		return userIds;
+	}
+}
@@ -4,7 +4,11 @@ import java.io.IOException;
 
 import org.hive2hive.core.file.FileUtil;
 import org.hive2hive.core.file.IFileAgent;
+import org.hive2hive.core.network.PeerLivenessTable;
+import org.hive2hive.core.network.data.MetaFileCache;
 import org.hive2hive.core.network.data.PublicKeyManager;
+import org.hive2hive.core.network.data.UserProfileManager;
+import org.hive2hive.core.network.data.vdht.LocationsManager;
 import org.hive2hive.core.serializer.IH2HSerialize;
 import org.hive2hive.processframework.ProcessStep;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
@@ -18,20 +22,31 @@ public class WritePersistentStep extends ProcessStep<Void> {
 
 	private final IFileAgent fileAgent;
 	private final PublicKeyManager keyManager;
+	private final PeerLivenessTable livenessTable;
+	private final UserProfileManager profileManager;
+	private final LocationsManager locationsManager;
+	private final MetaFileCache metaFileCache;
 	private final IH2HSerialize serializer;
 
-	public WritePersistentStep(IFileAgent fileAgent, PublicKeyManager keyManager, IH2HSerialize serializer) {
+	public WritePersistentStep(IFileAgent fileAgent, PublicKeyManager keyManager, PeerLivenessTable livenessTable,
+			UserProfileManager profileManager, LocationsManager locationsManager, MetaFileCache metaFileCache,
+			IH2HSerialize serializer) {
 		this.serializer = serializer;
+		this.metaFileCache = metaFileCache;
 		this.fileAgent = fileAgent;
 		this.keyManager = keyManager;
+		this.livenessTable = livenessTable;
+		this.profileManager = profileManager;
+		this.locationsManager = locationsManager;
 		this.setName(getClass().getName());
 	}
 
 	@Override
 	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
 		try {
-			// write the current state to a meta file
-			FileUtil.writePersistentMetaData(fileAgent, keyManager, serializer);
+			// write the current state to a meta file, including the latest versions to warm up the next login
+			FileUtil.writePersistentMetaData(fileAgent, keyManager, livenessTable, profileManager.getSnapshot(),
+					locationsManager.getSnapshot(), metaFileCache, serializer);
 		} catch (IOException ex) {
 			// it's not mandatory, but recommended. Thus we don't rollback the logout process here
 			logger.error("Meta data could not be persisted.", ex);
@@ -0,0 +1,77 @@
+package org.hive2hive.core.processes.notify;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.network.messages.AcceptanceReply;
+import org.hive2hive.core.network.messages.direct.BaseDirectMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Carries multiple notification messages for the peers of the same user, such that they are encrypted only
+ * once (see {@link NotificationDispatcher}). Every receiver handles the contained notifications that are
+ * addressed to it, in the order they have been added. The batch is only accepted if all of these
+ * notifications are accepted.
+ * 
+ * @author Nico
+ */
+public class BatchNotificationMessage extends BaseDirectMessage {
+
+	private static final long serialVersionUID = -3413722395712519735L;
+	private static final Logger logger = LoggerFactory.getLogger(BatchNotificationMessage.class);
+
+	private final List<BaseDirectMessage> notifications;
+	// the notifications for this peer, determined when the batch is accepted
+	private transient List<BaseDirectMessage> accepted;
+
+	public BatchNotificationMessage(PeerAddress targetAddress, List<BaseDirectMessage> notifications) {
+		super(targetAddress);
+		this.notifications = notifications;
+	}
+
+	@Override
+	public AcceptanceReply accept() {
+		PeerAddress ownAddress = networkManager.getConnection().getPeer().peerAddress();
+		List<BaseDirectMessage> forMe = new ArrayList<BaseDirectMessage>();
+		for (BaseDirectMessage notification : notifications) {
+			if (!ownAddress.equals(notification.getTargetAddress())) {
+				// addressed to another client of the same user
+				continue;
+			}
+
+			try {
+				notification.setSenderAddress(getSenderAddress());
+				notification.setNetworkManager(networkManager);
+			} catch (NoPeerConnectionException e) {
+				logger.error("Cannot process the notifications because the peer is not connected.", e);
+				return AcceptanceReply.FAILURE;
+			}
+
+			AcceptanceReply reply = notification.accept();
+			if (reply != AcceptanceReply.OK) {
+				// the sender must not consider the notification as delivered
+				logger.warn("Denied notification {} of the batch.", notification.getClass().getSimpleName());
+				return reply;
+			}
+			forMe.add(notification);
+		}
+
+		if (forMe.isEmpty()) {
+			return AcceptanceReply.WRONG_TARGET;
+		}
+		accepted = forMe;
+		return AcceptanceReply.OK;
+	}
+
+	@Override
+	public void run() {
+		logger.debug("Received a batch of {} notifications.", accepted.size());
+		for (BaseDirectMessage notification : accepted) {
+			notification.run();
+		}
+	}
+}
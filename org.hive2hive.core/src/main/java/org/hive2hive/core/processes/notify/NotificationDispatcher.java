@@ -0,0 +1,291 @@
+package org.hive2hive.core.processes.notify;
+
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.metrics.H2HMetrics;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.messages.AcceptanceReply;
+import org.hive2hive.core.network.messages.direct.BaseDirectMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends notification messages to other peers in parallel. Notifications for the same user that are
+ * dispatched within {@link H2HConstants#NOTIFICATION_COALESCE_WINDOW_MS} are coalesced into a single
+ * {@link BatchNotificationMessage}. The batch is signed and encrypted only once and then sent to all peers of
+ * that user, each peer handles the notifications addressed to it. Redundant hints to process the user
+ * profile task queue are dropped.<br>
+ * If a peer does not accept the batch, its notifications are sent to it separately, using the usual
+ * re-sending of {@link BaseDirectMessage}s.
+ *
+ * @author Nico
+ */
+public class NotificationDispatcher {
+
+	private static final Logger logger = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+	private final NetworkManager networkManager;
+	private final ThreadFactory daemonFactory;
+
+	// the batches that are not sent yet, by the public key of the receiving user
+	private final Map<PublicKey, PendingBatch> pending;
+
+	// created on demand, such that the dispatcher can be used again after a shutdown
+	private ScheduledExecutorService scheduler;
+	private ExecutorService senders;
+	private ExecutorService contactSenders;
+
+	public NotificationDispatcher(NetworkManager networkManager) {
+		this.networkManager = networkManager;
+		this.pending = new HashMap<PublicKey, PendingBatch>();
+		this.daemonFactory = new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "H2H-Notification");
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * Dispatches a notification message. The message is sent together with other messages to the same
+	 * user that are dispatched within the coalescing window.
+	 *
+	 * @param message the message to send (contains the receiver's address)
+	 * @param receiverPublicKey the public key of the receiver
+	 * @return a future that tells whether the message has been accepted by the receiver
+	 */
+	public Future<Boolean> dispatch(BaseDirectMessage message, PublicKey receiverPublicKey) {
+		synchronized (pending) {
+			PendingBatch batch = pending.get(receiverPublicKey);
+			if (batch == null) {
+				final PendingBatch created = new PendingBatch(receiverPublicKey);
+				pending.put(receiverPublicKey, created);
+				if (scheduler == null) {
+					scheduler = Executors.newSingleThreadScheduledExecutor(daemonFactory);
+				}
+				scheduler.schedule(new Runnable() {
+					@Override
+					public void run() {
+						flush(created);
+					}
+				}, H2HConstants.NOTIFICATION_COALESCE_WINDOW_MS, TimeUnit.MILLISECONDS);
+				batch = created;
+			}
+
+			batch.add(message);
+			return new ReceiverFuture(batch.result, message.getTargetAddress());
+		}
+	}
+
+	private void flush(PendingBatch batch) {
+		synchronized (pending) {
+			if (pending.get(batch.receiverPublicKey) != batch) {
+				// already cancelled
+				return;
+			}
+			pending.remove(batch.receiverPublicKey);
+
+			if (senders == null) {
+				senders = Executors.newFixedThreadPool(H2HConstants.NOTIFICATION_THREADS, daemonFactory);
+			}
+			senders.execute(batch.result);
+		}
+	}
+
+	/**
+	 * Sends a message to contact another client of this user (e.g. during the login) on the threads of this
+	 * node. At most {@link H2HConstants#CONTACT_PEERS_THREADS} of them are sent at the same time.
+	 *
+	 * @param send the task sending the message
+	 */
+	public void executeContact(Runnable send) {
+		synchronized (pending) {
+			if (contactSenders == null) {
+				contactSenders = Executors.newFixedThreadPool(H2HConstants.CONTACT_PEERS_THREADS, daemonFactory);
+			}
+			contactSenders.execute(send);
+		}
+	}
+
+	/**
+	 * Stops the threads of the dispatcher. Notifications and contact messages that are not sent yet are
+	 * cancelled.
+	 */
+	public void shutdown() {
+		synchronized (pending) {
+			for (PendingBatch batch : pending.values()) {
+				batch.result.cancel(false);
+			}
+			pending.clear();
+
+			if (scheduler != null) {
+				scheduler.shutdownNow();
+				scheduler = null;
+			}
+			if (senders != null) {
+				senders.shutdownNow();
+				senders = null;
+			}
+			if (contactSenders != null) {
+				contactSenders.shutdownNow();
+				contactSenders = null;
+			}
+		}
+		logger.debug("Notification dispatcher stopped.");
+	}
+
+	/**
+	 * Notifications for the peers of one user that are waiting for the coalescing window to close
+	 */
+	private class PendingBatch implements Callable<Map<PeerAddress, Boolean>> {
+
+		private final PublicKey receiverPublicKey;
+		// the notifications by their receiving peer
+		private final Map<PeerAddress, List<BaseDirectMessage>> messages;
+		// the peers that already get a hint
+		private final Set<PeerAddress> hinted;
+		private final FutureTask<Map<PeerAddress, Boolean>> result;
+
+		public PendingBatch(PublicKey receiverPublicKey) {
+			this.receiverPublicKey = receiverPublicKey;
+			this.messages = new LinkedHashMap<PeerAddress, List<BaseDirectMessage>>();
+			this.hinted = new HashSet<PeerAddress>();
+			this.result = new FutureTask<Map<PeerAddress, Boolean>>(this);
+		}
+
+		public void add(BaseDirectMessage message) {
+			PeerAddress receiver = message.getTargetAddress();
+			if (message instanceof UserProfileTaskNotificationMessage && !hinted.add(receiver)) {
+				// the receiver processes its whole queue anyway
+				return;
+			}
+
+			List<BaseDirectMessage> forReceiver = messages.get(receiver);
+			if (forReceiver == null) {
+				forReceiver = new ArrayList<BaseDirectMessage>();
+				messages.put(receiver, forReceiver);
+			}
+			forReceiver.add(message);
+		}
+
+		@Override
+		public Map<PeerAddress, Boolean> call() {
+			Map<PeerAddress, Boolean> results = new HashMap<PeerAddress, Boolean>(messages.size());
+			List<BaseDirectMessage> all = new ArrayList<BaseDirectMessage>();
+			for (List<BaseDirectMessage> forReceiver : messages.values()) {
+				all.addAll(forReceiver);
+			}
+
+			if (all.size() == 1) {
+				// nothing to coalesce
+				BaseDirectMessage message = all.get(0);
+				results.put(message.getTargetAddress(), send(message));
+				return results;
+			}
+
+			logger.debug("Coalesced {} notifications for {} peers.", all.size(), messages.size());
+			networkManager.getMetrics().increment(H2HMetrics.NOTIFICATION_BATCH);
+			PeerAddress first = messages.keySet().iterator().next();
+			Map<PeerAddress, AcceptanceReply> replies;
+			try {
+				replies = networkManager.getMessageManager().sendDirect(new BatchNotificationMessage(first, all),
+						receiverPublicKey, messages.keySet());
+			} catch (NoPeerConnectionException e) {
+				logger.error("Cannot send the notifications because the peer is not connected.");
+				for (PeerAddress receiver : messages.keySet()) {
+					results.put(receiver, false);
+				}
+				return results;
+			}
+
+			for (Entry<PeerAddress, List<BaseDirectMessage>> entry : messages.entrySet()) {
+				AcceptanceReply reply = replies.get(entry.getKey());
+				if (reply == AcceptanceReply.OK || reply == AcceptanceReply.OK_PROVISIONAL) {
+					results.put(entry.getKey(), true);
+				} else {
+					logger.debug("Peer {} did not accept the batch ({}). Sending its notifications separately.",
+							entry.getKey(), reply);
+					List<BaseDirectMessage> forReceiver = entry.getValue();
+					BaseDirectMessage message = forReceiver.size() == 1 ? forReceiver.get(0)
+							: new BatchNotificationMessage(entry.getKey(), forReceiver);
+					results.put(entry.getKey(), send(message));
+				}
+			}
+			return results;
+		}
+
+		private boolean send(BaseDirectMessage message) {
+			try {
+				return networkManager.getMessageManager().sendDirect(message, receiverPublicKey);
+			} catch (NoPeerConnectionException e) {
+				logger.error("Cannot send the notifications because the peer is not connected.");
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * The result of a batch for a single receiving peer
+	 */
+	private static class ReceiverFuture implements Future<Boolean> {
+
+		private final Future<Map<PeerAddress, Boolean>> batchResult;
+		private final PeerAddress receiver;
+
+		public ReceiverFuture(Future<Map<PeerAddress, Boolean>> batchResult, PeerAddress receiver) {
+			this.batchResult = batchResult;
+			this.receiver = receiver;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			// the batch is shared with other receivers
+			return false;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return batchResult.isCancelled();
+		}
+
+		@Override
+		public boolean isDone() {
+			return batchResult.isDone();
+		}
+
+		@Override
+		public Boolean get() throws InterruptedException, ExecutionException {
+			return Boolean.TRUE.equals(batchResult.get().get(receiver));
+		}
+
+		@Override
+		public Boolean get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+				TimeoutException {
+			return Boolean.TRUE.equals(batchResult.get(timeout, unit).get(receiver));
+		}
+	}
+}
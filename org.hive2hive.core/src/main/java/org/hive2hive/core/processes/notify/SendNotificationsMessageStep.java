@@ -1,17 +1,26 @@
 package org.hive2hive.core.processes.notify;
 
 import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import net.tomp2p.peers.PeerAddress;
 
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
-import org.hive2hive.core.exceptions.SendFailedException;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.network.NetworkUtils;
 import org.hive2hive.core.network.messages.direct.BaseDirectMessage;
@@ -22,11 +31,19 @@ import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Sends the notifications to the own clients and hints to the initial clients of other users. All messages
+ * are handed to the {@link NotificationDispatcher} at once and awaited with a common deadline
+ * ({@link H2HConstants#NOTIFICATION_DEADLINE_MS}).
+ * 
+ * @author Nico, Seppi
+ */
 public class SendNotificationsMessageStep extends BaseMessageProcessStep {
 
 	private static final Logger logger = LoggerFactory.getLogger(SendNotificationsMessageStep.class);
 	private final NotifyProcessContext context;
 	private final NetworkManager networkManager;
+	private final NotificationDispatcher dispatcher;
 	private final Set<PeerAddress> unreachablePeers;
 
 	public SendNotificationsMessageStep(NotifyProcessContext context, NetworkManager networkManager)
@@ -35,6 +52,7 @@ public class SendNotificationsMessageStep extends BaseMessageProcessStep {
 		this.setName(getClass().getName());
 		this.context = context;
 		this.networkManager = networkManager;
+		this.dispatcher = networkManager.getNotificationDispatcher();
 		this.unreachablePeers = new HashSet<PeerAddress>();
 	}
 
@@ -44,18 +62,31 @@ public class SendNotificationsMessageStep extends BaseMessageProcessStep {
 		Map<String, PublicKey> userPublicKeys = context.getUserPublicKeys();
 		Map<String, List<PeerAddress>> locations = context.getAllLocations();
 
+		// all notifications are sent in parallel, they share the same deadline
+		long deadline = System.currentTimeMillis() + H2HConstants.NOTIFICATION_DEADLINE_MS;
+		Map<PeerAddress, Future<Boolean>> ownNotifications = new HashMap<PeerAddress, Future<Boolean>>();
+		List<MasterPeerNotification> masterNotifications = new ArrayList<MasterPeerNotification>();
+
 		for (String user : context.consumeUsersToNotify()) {
 			PublicKey publicKey = userPublicKeys.get(user);
 			List<PeerAddress> peerAddresses = locations.get(user);
 			if (user.equalsIgnoreCase(networkManager.getUserId())) {
 				// send own peers a 'normal' notification message
-				notifyMyPeers(peerAddresses, messageFactory, publicKey);
+				notifyMyPeers(peerAddresses, messageFactory, publicKey, ownNotifications);
 			} else {
 				// send to the initial node of another client
-				notifyMasterPeer(peerAddresses, messageFactory, user, publicKey);
+				MasterPeerNotification notification = new MasterPeerNotification(user, publicKey, peerAddresses);
+				if (notification.notifyNext(messageFactory)) {
+					masterNotifications.add(notification);
+				} else {
+					logger.info("All clients of user '{}' are currently offline or unreachable.", user);
+				}
 			}
 		}
 
+		awaitMyPeers(ownNotifications, deadline);
+		awaitMasterPeers(masterNotifications, messageFactory, deadline);
+
 		if (!unreachablePeers.isEmpty()) {
 			logger.debug("Need to cleanup {} unreachable peers of own user", unreachablePeers.size());
 			try {
@@ -70,7 +101,7 @@ public class SendNotificationsMessageStep extends BaseMessageProcessStep {
 	}
 
 	private void notifyMyPeers(List<PeerAddress> ownPeers, BaseNotificationMessageFactory messageFactory,
-			PublicKey ownPublicKey) {
+			PublicKey ownPublicKey, Map<PeerAddress, Future<Boolean>> notifications) {
 		ownPeers.remove(networkManager.getConnection().getPeer().peerAddress());
 		logger.debug("Notifying {} other clients of same user (without myself).", ownPeers.size());
 		for (PeerAddress peerAddress : ownPeers) {
@@ -80,44 +111,103 @@ public class SendNotificationsMessageStep extends BaseMessageProcessStep {
 				continue;
 			}
 
-			try {
-				BaseDirectMessage message = messageFactory.createPrivateNotificationMessage(peerAddress);
-				if (message == null) {
-					logger.info("Not notifying any of the own peers because the message to be sent is null.");
-				} else {
-					send(message, ownPublicKey);
-				}
-			} catch (SendFailedException e) {
+			BaseDirectMessage message = messageFactory.createPrivateNotificationMessage(peerAddress);
+			if (message == null) {
+				logger.info("Not notifying any of the own peers because the message to be sent is null.");
+			} else {
+				notifications.put(peerAddress, dispatcher.dispatch(message, ownPublicKey));
+			}
+		}
+	}
+
+	private void awaitMyPeers(Map<PeerAddress, Future<Boolean>> notifications, long deadline) {
+		for (Entry<PeerAddress, Future<Boolean>> notification : notifications.entrySet()) {
+			Boolean success = await(notification.getValue(), deadline);
+			if (success == null) {
+				logger.warn("Notification of own peer {} has not been confirmed in time.", notification.getKey());
+			} else if (!success) {
 				// add to the unreachable list, such that the next step can cleanup those locations
-				logger.debug("Cannot notify own peer {}. Will remove it from the locations soon.", peerAddress);
-				unreachablePeers.add(peerAddress);
+				logger.debug("Cannot notify own peer {}. Will remove it from the locations soon.", notification.getKey());
+				unreachablePeers.add(notification.getKey());
 				// continue anyhow
 			}
 		}
 	}
 
-	private void notifyMasterPeer(List<PeerAddress> peerList, BaseNotificationMessageFactory messageFactory, String userId,
-			PublicKey publicKey) {
-		logger.debug("Notifying master peer of user {}", userId);
-		boolean success = false;
-		while (!success && !peerList.isEmpty()) {
-			PeerAddress initial = NetworkUtils.choseFirstPeerAddress(peerList);
-			BaseDirectMessage msg = messageFactory.createHintNotificationMessage(initial, userId);
-			try {
-				send(msg, publicKey);
-				success = true;
-			} catch (SendFailedException e) {
-				if (!peerList.isEmpty()) {
-					logger.error("Initial peer of user '{}' was offline. Try next in line.", userId, e);
-					peerList.remove(0);
+	private void awaitMasterPeers(List<MasterPeerNotification> notifications,
+			BaseNotificationMessageFactory messageFactory, long deadline) {
+		// every round awaits the current attempt of all users and starts the next attempt of the failed ones
+		while (!notifications.isEmpty()) {
+			Iterator<MasterPeerNotification> iterator = notifications.iterator();
+			while (iterator.hasNext()) {
+				MasterPeerNotification notification = iterator.next();
+				Boolean success = await(notification.future, deadline);
+				if (success == null) {
+					logger.warn("Notification of user '{}' has not been confirmed in time.", notification.userId);
+					iterator.remove();
+				} else if (success) {
+					logger.debug("Successfully notified the initial peer of user '{}' that it should check its UP tasks.",
+							notification.userId);
+					iterator.remove();
+				} else if (!notification.notifyNext(messageFactory)) {
+					logger.info("All clients of user '{}' are currently offline or unreachable.", notification.userId);
+					iterator.remove();
+				} else {
+					logger.error("Initial peer of user '{}' was offline. Try next in line.", notification.userId);
 				}
 			}
 		}
+	}
+
+	/**
+	 * @return whether the notification has been sent or <code>null</code> if the deadline has been reached
+	 */
+	private static Boolean await(Future<Boolean> future, long deadline) {
+		try {
+			return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException | CancellationException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Notification of the initial peer of another user. If it is offline, the next peer in line is notified.
+	 */
+	private class MasterPeerNotification {
+
+		private final String userId;
+		private final PublicKey publicKey;
+		private final List<PeerAddress> peerList;
+		private Future<Boolean> future;
+
+		public MasterPeerNotification(String userId, PublicKey publicKey, List<PeerAddress> peerList) {
+			this.userId = userId;
+			this.publicKey = publicKey;
+			this.peerList = peerList;
+		}
+
+		/**
+		 * @return <code>false</code> if there is no peer left to notify
+		 */
+		public boolean notifyNext(BaseNotificationMessageFactory messageFactory) {
+			if (future != null && !peerList.isEmpty()) {
+				// the previous attempt failed
+				peerList.remove(0);
+			}
+
+			PeerAddress initial = NetworkUtils.choseFirstPeerAddress(peerList);
+			if (initial == null) {
+				return false;
+			}
 
-		if (success) {
-			logger.debug("Successfully notified the initial peer of user '{}' that it should check its UP tasks.", userId);
-		} else {
-			logger.info("All clients of user '{}' are currently offline or unreachable.", userId);
+			logger.debug("Notifying master peer of user {}", userId);
+			future = dispatcher.dispatch(messageFactory.createHintNotificationMessage(initial, userId), publicKey);
+			return true;
 		}
 	}
 
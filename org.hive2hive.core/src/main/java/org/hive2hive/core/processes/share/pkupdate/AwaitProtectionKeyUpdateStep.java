@@ -0,0 +1,66 @@
+package org.hive2hive.core.processes.share.pkupdate;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.processframework.ProcessStep;
+import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
+import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+import org.hive2hive.processframework.exceptions.ProcessRollbackException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Waits until all protection key changes submitted to the {@link ProtectionKeyUpdater} are done. Failed changes
+ * are resumed up to {@link H2HConstants#PUT_RETRIES} times. At rollback, all successful changes are reverted.
+ * 
+ * @author Seppi
+ */
+public class AwaitProtectionKeyUpdateStep extends ProcessStep<Void> {
+
+	private static final Logger logger = LoggerFactory.getLogger(AwaitProtectionKeyUpdateStep.class);
+
+	private final ProtectionKeyUpdater updater;
+
+	public AwaitProtectionKeyUpdateStep(ProtectionKeyUpdater updater) {
+		this.setName(getClass().getName());
+		this.updater = updater;
+	}
+
+	@Override
+	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
+		// the successful changes need to be reverted, even if this step fails
+		setRequiresRollback(true);
+
+		try {
+			boolean success = updater.await();
+			for (int retry = 1; !success && retry <= H2HConstants.PUT_RETRIES; retry++) {
+				logger.warn("Could not change the protection keys of {} contents. Try #{}. Resuming.",
+						updater.getFailedCount(), retry);
+				success = updater.resume();
+			}
+
+			if (!success) {
+				throw new ProcessExecutionException(this, String.format(
+						"Could not change the protection keys of %s / %s contents.", updater.getFailedCount(),
+						updater.getSubmittedCount()));
+			}
+		} catch (InterruptedException ex) {
+			throw new ProcessExecutionException(this, ex, "Interrupted while changing the protection keys.");
+		}
+
+		logger.debug("Successfully changed the protection keys of {} contents.", updater.getChangedCount());
+		return null;
+	}
+
+	@Override
+	protected Void doRollback() throws InvalidProcessStateException, ProcessRollbackException {
+		try {
+			if (!updater.rollback()) {
+				throw new ProcessRollbackException(this, "Rollback of the protection key changes failed.");
+			}
+		} catch (InterruptedException ex) {
+			throw new ProcessRollbackException(this, ex);
+		}
+		setRequiresRollback(false);
+		return null;
+	}
+}
@@ -4,18 +4,19 @@ import org.hive2hive.core.model.FileVersion;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.model.versioned.BaseMetaFile;
 import org.hive2hive.core.model.versioned.MetaFileSmall;
-import org.hive2hive.core.network.data.DataManager;
 import org.hive2hive.core.processes.context.ChunkPKUpdateContext;
 import org.hive2hive.core.processes.context.MetaDocumentPKUpdateContext;
 import org.hive2hive.processframework.ProcessStep;
-import org.hive2hive.processframework.decorators.AsyncComponent;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+import org.hive2hive.processframework.exceptions.ProcessRollbackException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Takes the meta file and iteratively changes the protection keys of all chunks.
+ * Takes the meta file and submits the change of the protection keys of all chunks to the
+ * {@link ProtectionKeyUpdater}. The changes are awaited by the {@link AwaitProtectionKeyUpdateStep}. If the
+ * process fails before, e.g. in another lane, the rollback reverts the changes.
  * 
  * @author Nico, Seppi
  */
@@ -24,12 +25,12 @@ public class InitializeChunkUpdateStep extends ProcessStep<Void> {
 	private static final Logger logger = LoggerFactory.getLogger(InitializeChunkUpdateStep.class);
 
 	private final MetaDocumentPKUpdateContext context;
-	private final DataManager dataManager;
+	private final ProtectionKeyUpdater updater;
 
-	public InitializeChunkUpdateStep(MetaDocumentPKUpdateContext context, DataManager dataManager) {
+	public InitializeChunkUpdateStep(MetaDocumentPKUpdateContext context, ProtectionKeyUpdater updater) {
 		this.setName(getClass().getName());
 		this.context = context;
-		this.dataManager = dataManager;
+		this.updater = updater;
 	}
 
 	@Override
@@ -46,21 +47,39 @@ public class InitializeChunkUpdateStep extends ProcessStep<Void> {
 		MetaFileSmall metaFileSmall = (MetaFileSmall) metaFile;
 		logger.debug("Initialize updating all chunks for file '{}' in a shared folder.", context.getFileName());
 		int counter = 0;
-		for (FileVersion version : metaFileSmall.getVersions()) {
-			for (MetaChunk metaChunk : version.getMetaChunks()) {
-				// each chunk gets an own context
-				ChunkPKUpdateContext chunkContext = new ChunkPKUpdateContext(context.consumeOldProtectionKeys(),
-						context.consumeNewProtectionKeys(), metaChunk);
-
-				// create the step and wrap it to run asynchronous, attach it to the parent process
-				ChangeProtectionKeysStep changeStep = new ChangeProtectionKeysStep(chunkContext, dataManager);
-				getParent().add(new AsyncComponent<>(changeStep));
-				counter++;
+		// the submitted changes start right away, they need to be reverted if another lane fails
+		setRequiresRollback(true);
+		try {
+			for (FileVersion version : metaFileSmall.getVersions()) {
+				for (MetaChunk metaChunk : version.getMetaChunks()) {
+					// each chunk gets an own context
+					ChunkPKUpdateContext chunkContext = new ChunkPKUpdateContext(context.consumeOldProtectionKeys(),
+							context.consumeNewProtectionKeys(), metaChunk);
+					// blocks while too many changes are in flight
+					updater.submit(chunkContext);
+					counter++;
+				}
 			}
+		} catch (InterruptedException ex) {
+			throw new ProcessExecutionException(this, ex, "Interrupted while submitting the chunks.");
 		}
 
 		logger.debug("{} chunks of file '{}' need to update their protection keys.", counter, context.getFileName());
 		
 		return null;
 	}
+
+	@Override
+	protected Void doRollback() throws InvalidProcessStateException, ProcessRollbackException {
+		// the updater is shared by all files, thus the changes of the other files are reverted as well
+		try {
+			if (!updater.rollback()) {
+				throw new ProcessRollbackException(this, "Rollback of the protection key changes of the chunks failed.");
+			}
+		} catch (InterruptedException ex) {
+			throw new ProcessRollbackException(this, ex);
+		}
+		setRequiresRollback(false);
+		return null;
+	}
 }
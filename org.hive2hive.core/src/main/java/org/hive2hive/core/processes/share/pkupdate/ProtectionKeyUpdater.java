@@ -0,0 +1,274 @@
+package org.hive2hive.core.processes.share.pkupdate;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.tomp2p.dht.FuturePut;
+import net.tomp2p.futures.BaseFutureAdapter;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.events.EventBus;
+import org.hive2hive.core.events.implementations.ShareProgressEvent;
+import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.processes.context.BasePKUpdateContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Changes the protection keys of many contents, e.g. of all chunks when sharing a large folder. In contrast to
+ * the {@link ChangeProtectionKeysStep}, the changes do not block each other, but at most
+ * {@link H2HConstants#MAX_CONCURRENT_PROTECTION_KEY_CHANGES} are in flight at the same time. Submitting more
+ * changes blocks until the window has space again. Every change is still a separate request, the changes are
+ * not grouped by the responsible peers.<br>
+ * If an event bus is given, the progress is published as {@link ShareProgressEvent}s while submitting and when
+ * all changes are done.<br>
+ * The engine keeps track of the successful and the failed changes. Failed changes can be resumed without
+ * repeating the successful ones, and all successful changes can be rolled back.
+ *
+ * @author Seppi
+ */
+public class ProtectionKeyUpdater {
+
+	private static final Logger logger = LoggerFactory.getLogger(ProtectionKeyUpdater.class);
+	// the number of submitted changes after which the progress is published
+	private static final int PROGRESS_INTERVAL = 100;
+
+	private final DataManager dataManager;
+	private final int maxInFlight;
+	private final EventBus eventBus;
+	private final File file;
+	private final Semaphore inFlight;
+
+	private final Queue<IParameters> changed = new ConcurrentLinkedQueue<IParameters>();
+	private final Queue<IParameters> failed = new ConcurrentLinkedQueue<IParameters>();
+
+	private final AtomicInteger submittedCount = new AtomicInteger();
+	private final AtomicInteger changedCount = new AtomicInteger();
+
+	public ProtectionKeyUpdater(DataManager dataManager) {
+		this(dataManager, H2HConstants.MAX_CONCURRENT_PROTECTION_KEY_CHANGES);
+	}
+
+	/**
+	 * @param dataManager the data manager
+	 * @param maxInFlight the maximum number of changes in flight at the same time
+	 */
+	public ProtectionKeyUpdater(DataManager dataManager, int maxInFlight) {
+		this(dataManager, maxInFlight, null, null);
+	}
+
+	/**
+	 * @param dataManager the data manager
+	 * @param eventBus the event bus to publish the progress
+	 * @param file the shared folder, the progress is reported for
+	 */
+	public ProtectionKeyUpdater(DataManager dataManager, EventBus eventBus, File file) {
+		this(dataManager, H2HConstants.MAX_CONCURRENT_PROTECTION_KEY_CHANGES, eventBus, file);
+	}
+
+	/**
+	 * @param dataManager the data manager
+	 * @param maxInFlight the maximum number of changes in flight at the same time
+	 * @param eventBus the event bus to publish the progress, can be <code>null</code>
+	 * @param file the shared folder, the progress is reported for
+	 */
+	public ProtectionKeyUpdater(DataManager dataManager, int maxInFlight, EventBus eventBus, File file) {
+		this.dataManager = dataManager;
+		this.maxInFlight = maxInFlight;
+		this.eventBus = eventBus;
+		this.file = file;
+		this.inFlight = new Semaphore(maxInFlight);
+	}
+
+	/**
+	 * Submits the change of the protection keys of a content. This call blocks if too many changes are in flight.
+	 *
+	 * @param context the content to change
+	 * @throws InterruptedException if interrupted while waiting for the window
+	 */
+	public void submit(BasePKUpdateContext context) throws InterruptedException {
+		IParameters parameters = new Parameters().setLocationKey(context.getLocationKey())
+				.setContentKey(context.getContentKey()).setVersionKey(context.getVersionKey())
+				.setProtectionKeys(context.consumeOldProtectionKeys())
+				.setNewProtectionKeys(context.consumeNewProtectionKeys()).setTTL(context.getTTL())
+				.setHash(context.getHash());
+		if (submittedCount.incrementAndGet() % PROGRESS_INTERVAL == 0) {
+			publishProgress();
+		}
+
+		start(Collections.singletonList(parameters), changed, failed);
+	}
+
+	/**
+	 * Waits until all submitted changes are done.
+	 *
+	 * @return <code>true</code> if all submitted changes succeeded
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean await() throws InterruptedException {
+		boolean completed = awaitInFlight();
+
+		logger.debug("Changed the protection keys of {} / {} contents, {} failed.", changedCount.get(),
+				submittedCount.get(), failed.size());
+		publishProgress();
+		return completed && failed.isEmpty();
+	}
+
+	/**
+	 * Starts the failed changes again. The successful changes are not repeated.
+	 *
+	 * @return <code>true</code> if all submitted changes succeeded now
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean resume() throws InterruptedException {
+		List<IParameters> retry = new ArrayList<IParameters>(failed.size());
+		IParameters parameters;
+		while ((parameters = failed.poll()) != null) {
+			retry.add(parameters);
+		}
+
+		logger.debug("Resuming the change of the protection keys of {} contents.", retry.size());
+		return startAndAwait(retry, changed, failed);
+	}
+
+	/**
+	 * Changes the protection keys of all successfully changed contents back to the old ones. The changes in
+	 * flight are awaited first.
+	 *
+	 * @return <code>true</code> if all contents have been rolled back
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean rollback() throws InterruptedException {
+		// changes in flight may still succeed and need to be reverted as well
+		boolean completed = awaitInFlight();
+
+		List<IParameters> reverse = new ArrayList<IParameters>(changed.size());
+		IParameters parameters;
+		while ((parameters = changed.poll()) != null) {
+			// switch the content protection keys
+			reverse.add(new Parameters().setLocationKey(parameters.getLocationKey())
+					.setContentKey(parameters.getContentKey()).setVersionKey(parameters.getVersionKey())
+					.setTTL(parameters.getTTL()).setHash(parameters.getHash())
+					.setProtectionKeys(parameters.getNewProtectionKeys())
+					.setNewProtectionKeys(parameters.getProtectionKeys()));
+		}
+		changedCount.set(0);
+
+		Queue<IParameters> rolledBack = new ConcurrentLinkedQueue<IParameters>();
+		Queue<IParameters> rollbackFailed = new ConcurrentLinkedQueue<IParameters>();
+		boolean success = startAndAwait(reverse, rolledBack, rollbackFailed);
+		logger.debug("Rolled back the protection keys of {} / {} contents.", rolledBack.size(), reverse.size());
+		return completed && success;
+	}
+
+	/**
+	 * @return the number of submitted changes
+	 */
+	public int getSubmittedCount() {
+		return submittedCount.get();
+	}
+
+	/**
+	 * @return the number of successful changes
+	 */
+	public int getChangedCount() {
+		return changedCount.get();
+	}
+
+	/**
+	 * @return the number of failed changes, which can be resumed
+	 */
+	public int getFailedCount() {
+		return failed.size();
+	}
+
+	/**
+	 * The progress is published to the event bus while the changes are running (if any is given).
+	 * 
+	 * @return the successful changes relative to the submitted ones (between 0 and 1)
+	 */
+	public double getProgress() {
+		int submitted = submittedCount.get();
+		return submitted == 0 ? 1 : (double) changedCount.get() / submitted;
+	}
+
+	private void publishProgress() {
+		if (eventBus != null) {
+			eventBus.publish(new ShareProgressEvent(file, changedCount.get(), submittedCount.get()));
+		}
+	}
+
+	private boolean startAndAwait(List<IParameters> changes, Queue<IParameters> succeeded, Queue<IParameters> failed)
+			throws InterruptedException {
+		int failedBefore = failed.size();
+		start(changes, succeeded, failed);
+		return awaitInFlight() && failed.size() == failedBefore;
+	}
+
+	/**
+	 * Starts the changes. Blocks while the window is full.
+	 */
+	private void start(List<IParameters> changes, final Queue<IParameters> succeeded, final Queue<IParameters> failed)
+			throws InterruptedException {
+		for (int i = 0; i < changes.size(); i++) {
+			final IParameters parameters = changes.get(i);
+			try {
+				inFlight.acquire();
+			} catch (InterruptedException e) {
+				// the remaining changes are not started and can be resumed
+				failed.addAll(changes.subList(i, changes.size()));
+				throw e;
+			}
+
+			FuturePut future = dataManager.changeProtectionKeyUnblocked(parameters);
+			if (future == null) {
+				failed.add(parameters);
+				inFlight.release();
+				continue;
+			}
+
+			future.addListener(new BaseFutureAdapter<FuturePut>() {
+				@Override
+				public void operationComplete(FuturePut future) throws Exception {
+					if (future.isFailed()) {
+						logger.warn("Could not change the protection keys. Reason = '{}'. '{}'", future.failedReason(),
+								parameters);
+						failed.add(parameters);
+					} else {
+						succeeded.add(parameters);
+						if (succeeded == changed) {
+							changedCount.incrementAndGet();
+						}
+					}
+					inFlight.release();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Waits until no change is in flight anymore
+	 * 
+	 * @return <code>false</code> if some changes did not complete in time
+	 */
+	private boolean awaitInFlight() throws InterruptedException {
+		// the futures fail by themselves after their timeout, this is just a fallback against infinite blocking
+		if (inFlight.tryAcquire(maxInFlight, H2HConstants.AWAIT_NETWORK_OPERATION_MS * H2HConstants.PUT_RETRIES,
+				TimeUnit.MILLISECONDS)) {
+			inFlight.release(maxInFlight);
+			return true;
+		} else {
+			logger.warn("Not all changes of the protection keys have completed in time.");
+			return false;
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package org.hive2hive.core.security;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.hive2hive.core.H2HConstants;
+
+/**
+ * Util for compressing data before it gets encrypted (encrypted data cannot be compressed anymore). Uses
+ * Deflate at the fastest level and skips data that does not benefit from the compression (e.g. already
+ * compressed media files).<br>
+ * Whether data is compressed is recorded in a header inside the encrypted payload (see
+ * {@link #encode(byte[], boolean)}), thus the stored content objects keep their format. Payloads without the
+ * header are taken as they are, such that content encrypted before the compression existed can still be read.
+ * Whether data is compressed is not negotiated among the peers, it is a network-wide setting (see
+ * {@link H2HDefaultEncryption#H2HDefaultEncryption(org.hive2hive.core.serializer.IH2HSerialize, boolean)}).
+ *
+ * @author Nico
+ *
+ */
+public class CompressionUtil {
+
+	// the original length is prepended to the compressed data
+	private static final int HEADER_SIZE = 4;
+
+	// marks an encoded payload, followed by the type. Serialized objects never start with it (see
+	// H2HBinarySerializer and FST)
+	private static final byte[] MAGIC = new byte[] { 'H', '2', 'Z' };
+	private static final byte TYPE_STORED = 0;
+	private static final byte TYPE_DEFLATED = 1;
+
+	private CompressionUtil() {
+		// only static methods
+	}
+
+	/**
+	 * Prepares the data for the encryption. If the compression is enabled and worth it, the data is compressed
+	 * and marked with a header. Otherwise, the data is returned unchanged, except when it happens to start
+	 * with the header itself.
+	 *
+	 * @param data the (serialized) data to encrypt
+	 * @param compression whether the data should be compressed
+	 * @return the payload to encrypt
+	 */
+	public static byte[] encode(byte[] data, boolean compression) {
+		byte[] compressed = compression ? compress(data) : null;
+		if (compressed != null) {
+			return withHeader(TYPE_DEFLATED, compressed);
+		} else if (hasHeader(data)) {
+			// escape the data such that it is not mistaken for an encoded payload
+			return withHeader(TYPE_STORED, data);
+		}
+		return data;
+	}
+
+	/**
+	 * Restores the data from a decrypted payload created by {@link #encode(byte[], boolean)}. Payloads without
+	 * the header are returned unchanged.
+	 *
+	 * @param payload the decrypted payload
+	 * @return the original data
+	 * @throws IOException if the payload is corrupt
+	 */
+	public static byte[] decode(byte[] payload) throws IOException {
+		if (!hasHeader(payload)) {
+			return payload;
+		} else if (payload.length == MAGIC.length) {
+			throw new IOException("Encoded payload without a type");
+		}
+
+		byte[] content = Arrays.copyOfRange(payload, MAGIC.length + 1, payload.length);
+		switch (payload[MAGIC.length]) {
+			case TYPE_STORED:
+				return content;
+			case TYPE_DEFLATED:
+				return decompress(content);
+			default:
+				throw new IOException("Unknown type of the encoded payload: " + payload[MAGIC.length]);
+		}
+	}
+
+	/**
+	 * @param payload the payload created by {@link #encode(byte[], boolean)}
+	 * @return whether the payload is compressed
+	 */
+	static boolean isCompressed(byte[] payload) {
+		return hasHeader(payload) && payload.length > MAGIC.length && payload[MAGIC.length] == TYPE_DEFLATED;
+	}
+
+	private static boolean hasHeader(byte[] data) {
+		if (data == null || data.length < MAGIC.length) {
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (data[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static byte[] withHeader(byte type, byte[] content) {
+		return ByteBuffer.allocate(MAGIC.length + 1 + content.length).put(MAGIC).put(type).put(content).array();
+	}
+
+	/**
+	 * Compresses the data if it is worth it.
+	 *
+	 * @param data the data to compress
+	 * @return the compressed data or <code>null</code> if the data is too small or not compressible enough
+	 */
+	public static byte[] compress(byte[] data) {
+		if (data == null || data.length < H2HConstants.COMPRESSION_MIN_SIZE) {
+			return null;
+		}
+
+		if (data.length > 2 * H2HConstants.COMPRESSION_SAMPLE_SIZE) {
+			// probe a sample in the middle (headers are often compressible even for media files)
+			int offset = (data.length - H2HConstants.COMPRESSION_SAMPLE_SIZE) / 2;
+			int sampleLength = deflate(data, offset, H2HConstants.COMPRESSION_SAMPLE_SIZE).length;
+			if (sampleLength > H2HConstants.COMPRESSION_SAMPLE_SIZE * H2HConstants.COMPRESSION_MAX_RATIO) {
+				return null;
+			}
+		}
+
+		byte[] compressed = deflate(data, 0, data.length);
+		if (compressed.length + HEADER_SIZE > data.length * H2HConstants.COMPRESSION_MAX_RATIO) {
+			return null;
+		}
+
+		return ByteBuffer.allocate(HEADER_SIZE + compressed.length).putInt(data.length).put(compressed).array();
+	}
+
+	/**
+	 * Decompresses data that has been compressed with {@link #compress(byte[])}.
+	 *
+	 * @param compressed the compressed data
+	 * @return the original data
+	 * @throws IOException if the data is corrupt
+	 */
+	public static byte[] decompress(byte[] compressed) throws IOException {
+		if (compressed == null || compressed.length < HEADER_SIZE) {
+			throw new IOException("Compressed data is too short");
+		}
+
+		int length = ByteBuffer.wrap(compressed).getInt();
+		if (length < 0) {
+			throw new IOException("Invalid length of the compressed data: " + length);
+		}
+
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed, HEADER_SIZE, compressed.length - HEADER_SIZE);
+			byte[] data = new byte[length];
+			int read = 0;
+			while (read < length && !inflater.finished()) {
+				int inflated = inflater.inflate(data, read, length - read);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				read += inflated;
+			}
+
+			if (read != length || !inflater.finished()) {
+				// truncated data or more data than announced
+				throw new IOException("Compressed data does not match the expected length of " + length + " bytes");
+			}
+			return data;
+		} catch (DataFormatException e) {
+			throw new IOException("Compressed data is corrupt", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static byte[] deflate(byte[] data, int offset, int length) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(data, offset, length);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 64);
+			byte[] buffer = new byte[8192];
+			while (!deflater.finished()) {
+				int compressed = deflater.deflate(buffer);
+				out.write(buffer, 0, compressed);
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+}
@@ -22,6 +22,7 @@ public class H2HDefaultEncryption implements IH2HEncryption {
 	private final IH2HSerialize serializer;
 	private final String securityProvider;
 	private final IStrongAESEncryption strongAES;
+	private final boolean compression;
 
 	/**
 	 * Create a default encryption using bouncy castle as the security provider
@@ -29,7 +30,21 @@ public class H2HDefaultEncryption implements IH2HEncryption {
 	 * @param serializer the data serializer
 	 */
 	public H2HDefaultEncryption(IH2HSerialize serializer) {
-		this(serializer, BouncyCastleProvider.PROVIDER_NAME, new BCStrongAESEncryption());
+		this(serializer, false);
+	}
+
+	/**
+	 * Create a default encryption using bouncy castle as the security provider
+	 * 
+	 * @param serializer the data serializer
+	 * @param compression whether data should be compressed before the encryption. This is a network-wide
+	 *            setting that is not negotiated with the other peers: all peers of the network (including all
+	 *            clients of the users sharing with this user) must use the same setting. Peers of older versions
+	 *            cannot read compressed content at all (see
+	 *            {@link org.hive2hive.core.api.H2HNode#createNode(org.hive2hive.core.api.interfaces.IFileConfiguration, boolean)}).
+	 */
+	public H2HDefaultEncryption(IH2HSerialize serializer, boolean compression) {
+		this(serializer, BouncyCastleProvider.PROVIDER_NAME, new BCStrongAESEncryption(), compression);
 
 		if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
 			Security.addProvider(new BouncyCastleProvider());
@@ -45,9 +60,32 @@ public class H2HDefaultEncryption implements IH2HEncryption {
 	 * @param strongAES the fallback if the AES encryption / decryption has a too long key
 	 */
 	public H2HDefaultEncryption(IH2HSerialize serializer, String securityProvider, IStrongAESEncryption strongAES) {
+		this(serializer, securityProvider, strongAES, false);
+	}
+
+	/**
+	 * Create a default encryption using any installed security provider identifier.
+	 * 
+	 * @param serializer the serializer to encode / decode objects
+	 * @param securityProvider the security provider identifier. Note that the provider must be installed
+	 *            separately.
+	 * @param strongAES the fallback if the AES encryption / decryption has a too long key
+	 * @param compression whether data should be compressed before the encryption (see
+	 *            {@link CompressionUtil}). All peers of the network must use the same setting.
+	 */
+	public H2HDefaultEncryption(IH2HSerialize serializer, String securityProvider, IStrongAESEncryption strongAES,
+			boolean compression) {
 		this.serializer = serializer;
 		this.securityProvider = securityProvider;
 		this.strongAES = strongAES;
+		this.compression = compression;
+	}
+
+	/**
+	 * @return whether data is compressed before the encryption
+	 */
+	public boolean isCompressionEnabled() {
+		return compression;
 	}
 
 	@Override
@@ -58,9 +96,9 @@ public class H2HDefaultEncryption implements IH2HEncryption {
 	@Override
 	public EncryptedNetworkContent encryptAES(BaseNetworkContent content, SecretKey aesKey)
 			throws IOException, GeneralSecurityException {
-		byte[] serialized = serializer.serialize(content);
+		byte[] payload = CompressionUtil.encode(serializer.serialize(content), compression);
 		byte[] initVector = EncryptionUtil.generateIV();
-		byte[] encryptedContent = EncryptionUtil.encryptAES(serialized, aesKey, initVector, securityProvider, strongAES);
+		byte[] encryptedContent = EncryptionUtil.encryptAES(payload, aesKey, initVector, securityProvider, strongAES);
 
 		EncryptedNetworkContent encryptedNetworkContent = new EncryptedNetworkContent(encryptedContent, initVector);
 		encryptedNetworkContent.setTimeToLive(content.getTimeToLive());
@@ -72,7 +110,7 @@ public class H2HDefaultEncryption implements IH2HEncryption {
 			throws ClassNotFoundException, IOException, GeneralSecurityException {
 		byte[] decrypted = EncryptionUtil.decryptAES(content.getCipherContent(), aesKey, content.getInitVector(),
 				securityProvider, strongAES);
-		return (BaseNetworkContent) serializer.deserialize(decrypted);
+		return (BaseNetworkContent) serializer.deserialize(CompressionUtil.decode(decrypted));
 	}
 
 	@Override
@@ -87,8 +125,8 @@ public class H2HDefaultEncryption implements IH2HEncryption {
 
 	@Override
 	public HybridEncryptedContent encryptHybrid(byte[] content, PublicKey publicKey) throws GeneralSecurityException {
-		return EncryptionUtil.encryptHybrid(content, publicKey, H2HConstants.KEYLENGTH_HYBRID_AES, securityProvider,
-				strongAES);
+		return EncryptionUtil.encryptHybrid(CompressionUtil.encode(content, compression), publicKey,
+				H2HConstants.KEYLENGTH_HYBRID_AES, securityProvider, strongAES);
 	}
 
 	@Override
@@ -100,7 +138,8 @@ public class H2HDefaultEncryption implements IH2HEncryption {
 	@Override
 	public byte[] decryptHybridRaw(HybridEncryptedContent content, PrivateKey privateKey)
 			throws ClassNotFoundException, IOException, GeneralSecurityException {
-		return EncryptionUtil.decryptHybrid(content, privateKey, securityProvider, strongAES);
+		byte[] decrypted = EncryptionUtil.decryptHybrid(content, privateKey, securityProvider, strongAES);
+		return CompressionUtil.decode(decrypted);
 	}
 
 	/**
@@ -0,0 +1,29 @@
+package org.hive2hive.core.serializer;
+
+import java.io.IOException;
+
+/**
+ * Encodes and decodes objects of a single type for the {@link H2HBinarySerializer}. Every codec has a schema
+ * version which is written along with the object. When the encoding of a type changes, the version is
+ * increased and {@link #read(BinaryReader, int)} must still be able to decode the older versions.
+ * 
+ * @author Nico
+ *
+ * @param <T> the type of the encoded objects
+ */
+interface BinaryCodec<T> {
+
+	/**
+	 * @return the current schema version used when writing
+	 */
+	int getVersion();
+
+	void write(BinaryWriter out, T object) throws IOException;
+
+	/**
+	 * @param in the reader positioned at the start of the object
+	 * @param version the schema version the object has been written with
+	 * @return the decoded object
+	 */
+	T read(BinaryReader in, int version) throws IOException;
+}
@@ -0,0 +1,264 @@
+package org.hive2hive.core.serializer;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.hive2hive.core.model.Chunk;
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.model.PermissionType;
+import org.hive2hive.core.model.UserPermission;
+import org.hive2hive.core.model.versioned.BaseVersionedNetworkContent;
+import org.hive2hive.core.model.versioned.EncryptedNetworkContent;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.model.versioned.UserProfile;
+
+/**
+ * The codecs of the types encoded by the {@link H2HBinarySerializer}.
+ * 
+ * @author Nico
+ *
+ */
+final class BinaryCodecs {
+
+	private BinaryCodecs() {
+		// only static members
+	}
+
+	private static void writeVersionKeys(BinaryWriter out, BaseVersionedNetworkContent content) throws IOException {
+		out.writeNumber160(content.getVersionKey());
+		out.writeNumber160(content.getBasedOnKey());
+	}
+
+	private static void readVersionKeys(BinaryReader in, BaseVersionedNetworkContent content) throws IOException {
+		content.setVersionKey(in.readNumber160());
+		content.setBasedOnKey(in.readNumber160());
+	}
+
+	static class ChunkCodec implements BinaryCodec<Chunk> {
+
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+
+		@Override
+		public void write(BinaryWriter out, Chunk chunk) throws IOException {
+			out.writeString(chunk.getId());
+			out.writeVarInt(chunk.getOrder());
+			out.writeBytes(chunk.getData());
+		}
+
+		@Override
+		public Chunk read(BinaryReader in, int version) throws IOException {
+			String id = in.readString();
+			int order = in.readVarInt();
+			return new Chunk(id, in.readBytes(), order);
+		}
+	}
+
+	static class MetaChunkCodec implements BinaryCodec<MetaChunk> {
+
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+
+		@Override
+		public void write(BinaryWriter out, MetaChunk metaChunk) throws IOException {
+			out.writeString(metaChunk.getChunkId());
+			out.writeBytes(metaChunk.getChunkHash());
+			out.writeVarInt(metaChunk.getIndex());
+		}
+
+		@Override
+		public MetaChunk read(BinaryReader in, int version) throws IOException {
+			return new MetaChunk(in.readString(), in.readBytes(), in.readVarInt());
+		}
+	}
+
+	static class EncryptedNetworkContentCodec implements BinaryCodec<EncryptedNetworkContent> {
+
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+
+		@Override
+		public void write(BinaryWriter out, EncryptedNetworkContent content) throws IOException {
+			out.writeBytes(content.getCipherContent());
+			out.writeBytes(content.getInitVector());
+			out.writeInt(content.getTimeToLive());
+			writeVersionKeys(out, content);
+		}
+
+		@Override
+		public EncryptedNetworkContent read(BinaryReader in, int version) throws IOException {
+			EncryptedNetworkContent content = new EncryptedNetworkContent(in.readBytes(), in.readBytes());
+			content.setTimeToLive(in.readInt());
+			readVersionKeys(in, content);
+			return content;
+		}
+	}
+
+	static class HybridEncryptedContentCodec implements BinaryCodec<HybridEncryptedContent> {
+
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+
+		@Override
+		public void write(BinaryWriter out, HybridEncryptedContent content) throws IOException {
+			out.writeBytes(content.getEncryptedParameters());
+			out.writeBytes(content.getEncryptedData());
+			out.writeInt(content.getTimeToLive());
+			out.writeString(content.getUserId());
+			out.writeBytes(content.getSignature());
+			writeVersionKeys(out, content);
+		}
+
+		@Override
+		public HybridEncryptedContent read(BinaryReader in, int version) throws IOException {
+			HybridEncryptedContent content = new HybridEncryptedContent(in.readBytes(), in.readBytes());
+			content.setTimeToLive(in.readInt());
+			String userId = in.readString();
+			byte[] signature = in.readBytes();
+			if (userId != null || signature != null) {
+				content.setSignature(userId, signature);
+			}
+			readVersionKeys(in, content);
+			return content;
+		}
+	}
+
+	/**
+	 * Encodes the user profile with the whole file tree. The tree is written in pre-order, every folder is
+	 * followed by the number of its children.
+	 */
+	static class UserProfileCodec implements BinaryCodec<UserProfile> {
+
+		private static final int FOLDER = 0;
+		private static final int FILE = 1;
+
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+
+		@Override
+		public void write(BinaryWriter out, UserProfile profile) throws IOException {
+			FolderIndex root = profile.getRoot();
+			out.writeString(profile.getUserId());
+			out.writeKeyPair(profile.getEncryptionKeys());
+			out.writeKeyPair(root.getFileKeys());
+			out.writeKeyPair(root.getProtectionKeys());
+			writeVersionKeys(out, profile);
+			writePermissions(out, root.getUserPermissions());
+			writeChildren(out, root);
+		}
+
+		private void writeChildren(BinaryWriter out, FolderIndex folder) throws IOException {
+			Set<Index> children = folder.getChildren();
+			out.writeVarInt(children.size());
+			for (Index child : children) {
+				out.writeString(child.getName());
+				out.writeKeyPair(child.getFileKeys());
+				if (child.isFolder()) {
+					FolderIndex childFolder = (FolderIndex) child;
+					out.writeByte(FOLDER);
+					out.writeBoolean(childFolder.getSharedFlag());
+					if (childFolder.getSharedFlag()) {
+						out.writeKeyPair(childFolder.getProtectionKeys());
+					}
+					writePermissions(out, childFolder.getUserPermissions());
+					writeChildren(out, childFolder);
+				} else {
+					FileIndex childFile = (FileIndex) child;
+					out.writeByte(FILE);
+					out.writeBytes(childFile.getHash());
+					out.writeBytes(childFile.getMetaFileHash());
+				}
+			}
+		}
+
+		private void writePermissions(BinaryWriter out, Set<UserPermission> permissions) throws IOException {
+			out.writeVarInt(permissions.size());
+			for (UserPermission permission : permissions) {
+				out.writeString(permission.getUserId());
+				out.writeByte(permission.getPermission().ordinal());
+			}
+		}
+
+		@Override
+		public UserProfile read(BinaryReader in, int version) throws IOException {
+			String userId = in.readString();
+			KeyPair encryptionKeys = in.readKeyPair();
+			KeyPair rootFileKeys = in.readKeyPair();
+			KeyPair protectionKeys = in.readKeyPair();
+			if (rootFileKeys != encryptionKeys) {
+				throw new IOException("The root of the user profile must have the encryption keys as file keys");
+			}
+
+			UserProfile profile = new UserProfile(userId, encryptionKeys, protectionKeys);
+			readVersionKeys(in, profile);
+
+			FolderIndex root = profile.getRoot();
+			// replace the default permission of the root
+			root.clearUserPermissions();
+			readPermissions(in, root);
+			readChildren(in, root);
+			return profile;
+		}
+
+		private void readChildren(BinaryReader in, FolderIndex folder) throws IOException {
+			int count = in.readCount();
+			for (int i = 0; i < count; i++) {
+				String name = in.readString();
+				KeyPair fileKeys = in.readKeyPair();
+				int type = in.readByte();
+				if (type == FOLDER) {
+					FolderIndex childFolder = new FolderIndex(folder, fileKeys, name);
+					if (in.readBoolean()) {
+						try {
+							// no children yet, thus sharing is allowed unless a parent is shared
+							childFolder.share(in.readKeyPair());
+						} catch (IllegalStateException e) {
+							throw new IOException("Invalid shared folder '" + name + "'", e);
+						}
+					}
+					readPermissions(in, childFolder);
+					readChildren(in, childFolder);
+				} else if (type == FILE) {
+					FileIndex childFile = new FileIndex(folder, fileKeys, name, in.readBytes());
+					childFile.setMetaFileHash(in.readBytes());
+				} else {
+					throw new IOException("Unknown index type " + type);
+				}
+			}
+		}
+
+		private void readPermissions(BinaryReader in, FolderIndex folder) throws IOException {
+			PermissionType[] types = PermissionType.values();
+			int count = in.readCount();
+			List<UserPermission> permissions = new ArrayList<UserPermission>(count);
+			for (int i = 0; i < count; i++) {
+				String userId = in.readString();
+				int type = in.readByte();
+				if (type >= types.length) {
+					throw new IOException("Unknown permission type " + type);
+				}
+				permissions.add(new UserPermission(userId, types[type]));
+			}
+
+			for (UserPermission permission : permissions) {
+				folder.addUserPermissions(permission);
+			}
+		}
+	}
+}
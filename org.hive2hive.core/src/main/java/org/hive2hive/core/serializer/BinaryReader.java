@@ -0,0 +1,140 @@
+package org.hive2hive.core.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.tomp2p.peers.Number160;
+
+/**
+ * Reads the primitives written by the {@link BinaryWriter}.
+ * 
+ * @author Nico
+ *
+ */
+final class BinaryReader {
+
+	private final DataInputStream in;
+	private final String securityProvider;
+	private final List<KeyPair> keyPairs;
+	private KeyFactory keyFactory;
+
+	public BinaryReader(byte[] bytes, int offset, String securityProvider) {
+		this.in = new DataInputStream(new ByteArrayInputStream(bytes, offset, bytes.length - offset));
+		this.securityProvider = securityProvider;
+		this.keyPairs = new ArrayList<KeyPair>();
+	}
+
+	public int readByte() throws IOException {
+		return in.readUnsignedByte();
+	}
+
+	public boolean readBoolean() throws IOException {
+		return in.readBoolean();
+	}
+
+	public int readInt() throws IOException {
+		return in.readInt();
+	}
+
+	/**
+	 * Reads a non-negative variable-length integer, which has at most 5 bytes.
+	 */
+	public int readVarInt() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			if (shift == 28 && (b & 0x70) != 0) {
+				throw new IOException("Variable-length integer exceeds 32 bits");
+			}
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				if (value < 0) {
+					// the writer never writes negative values
+					throw new IOException("Negative variable-length integer " + value);
+				}
+				return value;
+			}
+		}
+		throw new IOException("Variable-length integer longer than 5 bytes");
+	}
+
+	/**
+	 * Reads the number of elements that follow. Every element needs at least one byte, thus the count cannot
+	 * exceed the remaining input.
+	 */
+	public int readCount() throws IOException {
+		int count = readVarInt();
+		if (count > in.available()) {
+			throw new IOException(String.format("Count %s exceeds the remaining %s bytes", count, in.available()));
+		}
+		return count;
+	}
+
+	public byte[] readBytes() throws IOException {
+		int length = readVarInt();
+		if (length == 0) {
+			return null;
+		} else if (length - 1 > in.available()) {
+			throw new IOException(String.format("Length %s exceeds the remaining %s bytes", length - 1,
+					in.available()));
+		}
+
+		byte[] bytes = new byte[length - 1];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	public String readString() throws IOException {
+		byte[] bytes = readBytes();
+		return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public Number160 readNumber160() throws IOException {
+		if (!readBoolean()) {
+			return null;
+		}
+
+		byte[] bytes = new byte[Number160.BYTE_ARRAY_SIZE];
+		in.readFully(bytes);
+		return new Number160(bytes);
+	}
+
+	public KeyPair readKeyPair() throws IOException {
+		int reference = readVarInt();
+		if (reference == 0) {
+			return null;
+		} else if (reference <= keyPairs.size()) {
+			return keyPairs.get(reference - 1);
+		} else if (reference != keyPairs.size() + 1) {
+			throw new IOException("Invalid key pair reference " + reference);
+		}
+
+		byte[] publicKey = readBytes();
+		byte[] privateKey = readBytes();
+		try {
+			if (keyFactory == null) {
+				keyFactory = KeyFactory.getInstance("RSA", securityProvider);
+			}
+			PublicKey decodedPublic = publicKey == null ? null : keyFactory.generatePublic(new X509EncodedKeySpec(
+					publicKey));
+			PrivateKey decodedPrivate = privateKey == null ? null : keyFactory.generatePrivate(new PKCS8EncodedKeySpec(
+					privateKey));
+			KeyPair keyPair = new KeyPair(decodedPublic, decodedPrivate);
+			keyPairs.add(keyPair);
+			return keyPair;
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Cannot decode the key pair", e);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package org.hive2hive.core.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import net.tomp2p.peers.Number160;
+
+/**
+ * Writes the primitives of the binary format. Lengths and counts are written as variable-length integers,
+ * nullable values are prefixed such that <code>null</code> costs a single byte. Key pairs are written once
+ * per object graph and referenced afterwards.
+ * 
+ * @author Nico
+ *
+ */
+final class BinaryWriter {
+
+	private final ByteArrayOutputStream buffer;
+	private final DataOutputStream out;
+	private final Map<KeyPair, Integer> keyPairs;
+
+	public BinaryWriter() {
+		this.buffer = new ByteArrayOutputStream();
+		this.out = new DataOutputStream(buffer);
+		this.keyPairs = new IdentityHashMap<KeyPair, Integer>();
+	}
+
+	public void writeByte(int value) throws IOException {
+		out.writeByte(value);
+	}
+
+	public void writeBoolean(boolean value) throws IOException {
+		out.writeBoolean(value);
+	}
+
+	public void writeInt(int value) throws IOException {
+		out.writeInt(value);
+	}
+
+	/**
+	 * Writes a non-negative integer with 7 bits per byte
+	 */
+	public void writeVarInt(int value) throws IOException {
+		if (value < 0) {
+			throw new IOException("Negative value cannot be written as variable-length integer: " + value);
+		}
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	public void writeBytes(byte[] bytes) throws IOException {
+		if (bytes == null) {
+			writeVarInt(0);
+		} else {
+			writeVarInt(bytes.length + 1);
+			out.write(bytes);
+		}
+	}
+
+	public void writeString(String string) throws IOException {
+		writeBytes(string == null ? null : string.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public void writeNumber160(Number160 number) throws IOException {
+		if (number == null) {
+			writeBoolean(false);
+		} else {
+			writeBoolean(true);
+			out.write(number.toByteArray());
+		}
+	}
+
+	/**
+	 * Writes the key pair or a reference to it if it has already been written
+	 */
+	public void writeKeyPair(KeyPair keyPair) throws IOException {
+		if (keyPair == null) {
+			writeVarInt(0);
+			return;
+		}
+
+		Integer reference = keyPairs.get(keyPair);
+		if (reference != null) {
+			writeVarInt(reference);
+		} else {
+			// the next free reference indicates a new key pair
+			reference = keyPairs.size() + 1;
+			keyPairs.put(keyPair, reference);
+			writeVarInt(reference);
+			writeBytes(keyPair.getPublic() == null ? null : keyPair.getPublic().getEncoded());
+			writeBytes(keyPair.getPrivate() == null ? null : keyPair.getPrivate().getEncoded());
+		}
+	}
+
+	public byte[] toByteArray() throws IOException {
+		out.flush();
+		return buffer.toByteArray();
+	}
+}
@@ -0,0 +1,170 @@
+package org.hive2hive.core.serializer;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hive2hive.core.model.Chunk;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.model.versioned.EncryptedNetworkContent;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.security.BCSecurityClassProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compact binary serialization of the most frequently serialized types (user profile, chunks and the encrypted
+ * containers). Every type has a fixed tag and a schema version which are written along with the data, thus
+ * the format does not depend on the registration order and newer versions can still read older data.<br>
+ * All other objects (e.g. messages) are encoded by a fallback serializer. Data without the header of this
+ * format is passed to the fallback as well, such that data written by the fallback alone can still be read.
+ * 
+ * @author Nico
+ *
+ */
+public final class H2HBinarySerializer implements IH2HSerialize {
+
+	private static final Logger logger = LoggerFactory.getLogger(H2HBinarySerializer.class);
+
+	// header of every serialized object
+	private static final byte[] MAGIC = new byte[] { 'H', '2', 'B' };
+	private static final int FORMAT_VERSION = 1;
+
+	// type tags, never change or reuse them
+	private static final int TAG_NULL = 0;
+	private static final int TAG_FALLBACK = 1;
+	private static final int TAG_USER_PROFILE = 10;
+	private static final int TAG_CHUNK = 11;
+	private static final int TAG_META_CHUNK = 12;
+	private static final int TAG_ENCRYPTED_CONTENT = 13;
+	private static final int TAG_HYBRID_ENCRYPTED_CONTENT = 14;
+
+	private final IH2HSerialize fallback;
+	private final String securityProvider;
+	private final Map<Class<?>, Integer> tags;
+	private final Map<Integer, BinaryCodec<?>> codecs;
+
+	/**
+	 * Create a default serializer with {@link FSTSerializer} as fallback and the default security provider
+	 * (BC). The provider needs to be installed separately.
+	 */
+	public H2HBinarySerializer() {
+		this(new FSTSerializer(), new BCSecurityClassProvider());
+	}
+
+	/**
+	 * Create a binary serializer
+	 * 
+	 * @param fallback the serializer for all types without a binary encoding
+	 * @param securityProvider the security provider, needed to decode key pairs
+	 */
+	public H2HBinarySerializer(IH2HSerialize fallback, ISecurityClassProvider securityProvider) {
+		this.fallback = fallback;
+		this.securityProvider = securityProvider.getSecurityProvider();
+		this.tags = new HashMap<Class<?>, Integer>();
+		this.codecs = new HashMap<Integer, BinaryCodec<?>>();
+
+		register(TAG_USER_PROFILE, UserProfile.class, new BinaryCodecs.UserProfileCodec());
+		register(TAG_CHUNK, Chunk.class, new BinaryCodecs.ChunkCodec());
+		register(TAG_META_CHUNK, MetaChunk.class, new BinaryCodecs.MetaChunkCodec());
+		register(TAG_ENCRYPTED_CONTENT, EncryptedNetworkContent.class, new BinaryCodecs.EncryptedNetworkContentCodec());
+		register(TAG_HYBRID_ENCRYPTED_CONTENT, HybridEncryptedContent.class,
+				new BinaryCodecs.HybridEncryptedContentCodec());
+	}
+
+	private <T> void register(int tag, Class<T> clazz, BinaryCodec<T> codec) {
+		tags.put(clazz, tag);
+		codecs.put(tag, codec);
+	}
+
+	@Override
+	public byte[] serialize(Serializable object) throws IOException {
+		BinaryWriter out = new BinaryWriter();
+		for (byte b : MAGIC) {
+			out.writeByte(b);
+		}
+		out.writeByte(FORMAT_VERSION);
+
+		if (object == null) {
+			out.writeVarInt(TAG_NULL);
+			return out.toByteArray();
+		}
+
+		// only exact types, subclasses may have additional fields
+		Integer tag = tags.get(object.getClass());
+		if (tag == null) {
+			out.writeVarInt(TAG_FALLBACK);
+			out.writeBytes(fallback.serialize(object));
+			return out.toByteArray();
+		}
+
+		@SuppressWarnings("unchecked")
+		BinaryCodec<Object> codec = (BinaryCodec<Object>) codecs.get(tag);
+		out.writeVarInt(tag);
+		out.writeVarInt(codec.getVersion());
+		try {
+			codec.write(out, object);
+		} catch (IOException | RuntimeException e) {
+			logger.error("Exception while serializing object {}", object, e);
+			throw e;
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+		if (bytes == null || bytes.length == 0) {
+			// nothing to deserialize
+			return null;
+		}
+
+		if (!hasHeader(bytes)) {
+			// written by the fallback serializer
+			return fallback.deserialize(bytes);
+		}
+
+		int formatVersion = bytes[MAGIC.length] & 0xFF;
+		if (formatVersion > FORMAT_VERSION) {
+			throw new IOException("Unsupported format version " + formatVersion);
+		}
+
+		BinaryReader in = new BinaryReader(bytes, MAGIC.length + 1, securityProvider);
+		int tag = in.readVarInt();
+		if (tag == TAG_NULL) {
+			return null;
+		} else if (tag == TAG_FALLBACK) {
+			return fallback.deserialize(in.readBytes());
+		}
+
+		BinaryCodec<?> codec = codecs.get(tag);
+		if (codec == null) {
+			throw new ClassNotFoundException("No codec for type tag " + tag);
+		}
+
+		int version = in.readVarInt();
+		if (version > codec.getVersion()) {
+			throw new IOException(String.format("Unsupported version %s of type tag %s", version, tag));
+		}
+
+		try {
+			return codec.read(in, version);
+		} catch (IOException | RuntimeException e) {
+			logger.error("Exception while deserializing object.");
+			throw e;
+		}
+	}
+
+	private static boolean hasHeader(byte[] bytes) {
+		if (bytes.length <= MAGIC.length) {
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (bytes[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
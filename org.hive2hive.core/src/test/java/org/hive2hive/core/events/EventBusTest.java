@@ -0,0 +1,141 @@
+package org.hive2hive.core.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.engio.mbassy.listener.Handler;
+import net.engio.mbassy.listener.Invoke;
+import net.engio.mbassy.listener.Listener;
+import net.engio.mbassy.listener.References;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.api.configs.EventBusConfiguration;
+import org.hive2hive.core.api.interfaces.IEventBusConfiguration.OverflowPolicy;
+import org.hive2hive.core.events.framework.interfaces.IFileEventBatchListener;
+import org.hive2hive.core.events.framework.interfaces.file.IFileAddEvent;
+import org.hive2hive.core.events.framework.interfaces.file.IFileEvent;
+import org.hive2hive.core.events.implementations.FileAddEvent;
+import org.hive2hive.core.events.implementations.FileDeleteEvent;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class EventBusTest extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = EventBusTest.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void endTest() {
+		afterClass();
+	}
+
+	@Test
+	public void testBatchListener() throws InterruptedException {
+		EventBus eventBus = new EventBus(EventBusConfiguration.createCustom(1, 1, 100, OverflowPolicy.BLOCK, 50));
+		TestBatchListener listener = new TestBatchListener(3);
+		eventBus.subscribe(listener);
+
+		File file = new File("test");
+		eventBus.publish(new FileAddEvent(file, true));
+		eventBus.publish(new FileDeleteEvent(file, true));
+		eventBus.publish(new FileAddEvent(file, true));
+
+		assertTrue(listener.latch.await(5, TimeUnit.SECONDS));
+		// order is kept
+		assertTrue(listener.events.get(0) instanceof FileAddEvent);
+		assertTrue(listener.events.get(1) instanceof FileDeleteEvent);
+		assertTrue(listener.events.get(2) instanceof FileAddEvent);
+		assertEquals(3, eventBus.getMetrics().getDispatchedEvents());
+
+		// no more events after unsubscribing
+		assertTrue(eventBus.unsubscribe(listener));
+		eventBus.publish(new FileAddEvent(file, true));
+		Thread.sleep(200);
+		assertEquals(3, listener.events.size());
+		eventBus.shutdown();
+	}
+
+	@Test
+	public void testDropWhenFull() throws InterruptedException {
+		int capacity = 5;
+		EventBus eventBus = new EventBus(EventBusConfiguration.createCustom(1, 1, capacity, OverflowPolicy.DROP,
+				10000));
+		TestBatchListener listener = new TestBatchListener(capacity);
+		eventBus.subscribe(listener);
+
+		// the batch interval is long, thus the queue of the listener overflows
+		for (int i = 0; i < capacity * 2; i++) {
+			eventBus.publish(new FileAddEvent(new File("test-" + i), true));
+		}
+		assertEquals(capacity, eventBus.getMetrics().getDroppedEvents());
+		assertEquals(capacity, eventBus.getMetrics().getMaxQueueDepth());
+
+		// pending events are delivered when unsubscribing
+		eventBus.unsubscribe(listener);
+		assertEquals(capacity, listener.events.size());
+		eventBus.shutdown();
+	}
+
+	@Test
+	public void testAsyncHandlerCallerRuns() throws InterruptedException {
+		EventBus eventBus = new EventBus(EventBusConfiguration.createCustom(1, 1, 1, OverflowPolicy.CALLER_RUNS, 50));
+		TestAsyncListener listener = new TestAsyncListener(10);
+		eventBus.subscribe(listener);
+
+		for (int i = 0; i < 10; i++) {
+			eventBus.publish(new FileAddEvent(new File("test-" + i), true));
+		}
+
+		// no event is lost, even though the queue only holds a single event
+		assertTrue(listener.latch.await(5, TimeUnit.SECONDS));
+		assertEquals(0, eventBus.getMetrics().getDroppedEvents());
+		eventBus.shutdown();
+	}
+
+	@Listener(references = References.Strong)
+	private static class TestBatchListener implements IFileEventBatchListener {
+
+		private final List<IFileEvent> events = new ArrayList<IFileEvent>();
+		private final CountDownLatch latch;
+
+		public TestBatchListener(int expected) {
+			this.latch = new CountDownLatch(expected);
+		}
+
+		@Override
+		public synchronized void onFileEvents(List<IFileEvent> fileEvents) {
+			assertTrue(!fileEvents.isEmpty());
+			for (IFileEvent event : fileEvents) {
+				events.add(event);
+				latch.countDown();
+			}
+		}
+	}
+
+	@Listener(references = References.Strong)
+	public static class TestAsyncListener {
+
+		private final CountDownLatch latch;
+
+		public TestAsyncListener(int expected) {
+			this.latch = new CountDownLatch(expected);
+		}
+
+		@Handler(delivery = Invoke.Asynchronously)
+		public void onFileAdd(IFileAddEvent fileEvent) throws InterruptedException {
+			// slow handler
+			Thread.sleep(10);
+			latch.countDown();
+		}
+	}
+}
@@ -114,4 +114,24 @@ public class FileDeleteEventsTest extends FileEventsTest {
 			assertFalse(ev.getFile().exists());
 		}
 	}
+
+	@Test
+	public void testFolderTreeDeleteEvent() throws NoPeerConnectionException, IOException, NoSessionException {
+		List<File> files = createAndAddFolderWithFiles(rootA, clientA);
+		File folder = files.get(0);
+		waitForNumberOfEvents(files.size());
+		listener.getEvents().clear();
+
+		// delete the whole tree at once
+		UseCaseTestUtil.deleteSubtree(clientA, folder);
+		waitForNumberOfEvents(1);
+
+		// a single event for the top folder, which covers all files within
+		List<IFileEvent> events = listener.getEvents();
+		assertEventType(events, IFileDeleteEvent.class);
+		assertTrue(events.size() == 1);
+		IFileEvent ev = events.get(0);
+		assertTrue(ev.isFolder());
+		assertEqualsRelativePaths(folder, ev.getFile());
+	}
 }
@@ -0,0 +1,172 @@
+package org.hive2hive.core.extras;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.file.FileUtil;
+import org.hive2hive.core.security.HashUtil;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class FileStateDatabaseTest extends H2HJUnitTest {
+
+	private File rootFile;
+	private File file1f;
+	private File file1d;
+	private File file2f;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = FileStateDatabaseTest.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+
+	@Before
+	public void createTree() throws IOException {
+		rootFile = tempFolder.newFolder();
+
+		// root:
+		// - 1f
+		// - 1d:
+		// - - 2f
+		file1f = new File(rootFile, "1f");
+		FileUtils.writeStringToFile(file1f, randomString());
+		file1d = new File(rootFile, "1d");
+		file1d.mkdirs();
+		file2f = new File(file1d, "2f");
+		FileUtils.writeStringToFile(file2f, randomString());
+
+		// make the files older than the granularity of the modification time
+		long past = System.currentTimeMillis() - 60000;
+		file1f.setLastModified(past);
+		file2f.setLastModified(past);
+	}
+
+	@Test
+	public void testScanEqualsVisit() throws IOException {
+		FileStateDatabase database = new FileStateDatabase();
+		Map<String, byte[]> scanned = database.scan(rootFile);
+		Map<String, byte[]> visited = FileSynchronizer.visitFiles(rootFile);
+
+		Assert.assertEquals(visited.keySet(), scanned.keySet());
+		for (String path : visited.keySet()) {
+			Assert.assertArrayEquals(visited.get(path), scanned.get(path));
+		}
+	}
+
+	@Test
+	public void testDetectChanges() throws IOException {
+		FileStateDatabase database = new FileStateDatabase();
+		Map<String, byte[]> before = database.scan(rootFile);
+
+		// modify, delete and add a file
+		FileUtils.writeStringToFile(file1f, randomString() + randomString());
+		file2f.delete();
+		File file2f2 = new File(file1d, "2f2");
+		FileUtils.writeStringToFile(file2f2, randomString());
+
+		Map<String, byte[]> now = database.scan(rootFile);
+		Assert.assertEquals(before.size(), now.size());
+		Assert.assertArrayEquals(HashUtil.hash(file1f), now.get("1f"));
+		Assert.assertFalse(HashUtil.compare(before.get("1f"), now.get("1f")));
+		Assert.assertFalse(now.containsKey(FileUtil.relativize(rootFile, file2f).toString()));
+		Assert.assertArrayEquals(HashUtil.hash(file2f2), now.get(FileUtil.relativize(rootFile, file2f2).toString()));
+	}
+
+	@Test
+	public void testUnmodifiedNotHashed() throws IOException {
+		File databaseFile = new File(tempFolder.newFolder(), "states");
+		FileUtils.writeStringToFile(file1f, "content-1");
+		file1f.setLastModified(System.currentTimeMillis() - 60000);
+		FileStateDatabase database = new FileStateDatabase();
+		Map<String, byte[]> before = database.scan(rootFile);
+		database.save(databaseFile);
+
+		// replace the content, but keep size and modification time
+		long lastModified = file1f.lastModified();
+		FileUtils.writeStringToFile(file1f, "content-2");
+		file1f.setLastModified(lastModified);
+
+		FileStateDatabase loaded = FileStateDatabase.load(databaseFile);
+		Assert.assertEquals(database.size(), loaded.size());
+		Map<String, byte[]> now = loaded.scan(rootFile);
+
+		// the recorded hash is used since the metadata did not change
+		Assert.assertArrayEquals(before.get("1f"), now.get("1f"));
+		Assert.assertFalse(HashUtil.compare(HashUtil.hash(file1f), now.get("1f")));
+	}
+
+	@Test
+	public void testSaveReplaces() throws IOException {
+		File databaseFile = new File(tempFolder.newFolder(), "states");
+		FileStateDatabase database = new FileStateDatabase();
+		database.scan(rootFile);
+		database.save(databaseFile);
+
+		// saving again replaces the database and leaves no temporary file behind
+		file2f.delete();
+		database.scan(rootFile);
+		database.save(databaseFile);
+
+		Assert.assertEquals(database.size(), FileStateDatabase.load(databaseFile).size());
+		Assert.assertArrayEquals(new String[] { databaseFile.getName() }, databaseFile.getParentFile().list());
+	}
+
+	@Test
+	public void testLoadMissing() {
+		FileStateDatabase database = FileStateDatabase.load(new File(rootFile, "does-not-exist"));
+		Assert.assertEquals(0, database.size());
+	}
+
+	@Test
+	public void testLoadCorrupt() throws IOException {
+		File databaseFile = new File(tempFolder.newFolder(), "states");
+		FileStateDatabase database = new FileStateDatabase();
+		database.scan(rootFile);
+		database.save(databaseFile);
+		Assert.assertEquals(3, FileStateDatabase.load(databaseFile).size());
+
+		// negative and too large hash lengths
+		writeCorruptDatabase(databaseFile, 1, -1);
+		Assert.assertEquals(0, FileStateDatabase.load(databaseFile).size());
+		writeCorruptDatabase(databaseFile, 1, Integer.MAX_VALUE);
+		Assert.assertEquals(0, FileStateDatabase.load(databaseFile).size());
+
+		// negative and too large number of states
+		writeCorruptDatabase(databaseFile, -1, 16);
+		Assert.assertEquals(0, FileStateDatabase.load(databaseFile).size());
+		writeCorruptDatabase(databaseFile, Integer.MAX_VALUE, 16);
+		Assert.assertEquals(0, FileStateDatabase.load(databaseFile).size());
+	}
+
+	private static void writeCorruptDatabase(File databaseFile, int size, int hashLength) throws IOException {
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(databaseFile));
+		try {
+			// the format version
+			out.writeInt(1);
+			out.writeInt(size);
+			out.writeUTF("1f");
+			out.writeLong(1);
+			out.writeLong(2);
+			out.writeLong(3);
+			out.writeBoolean(false);
+			out.writeInt(hashLength);
+			out.write(new byte[16]);
+		} finally {
+			out.close();
+		}
+	}
+}
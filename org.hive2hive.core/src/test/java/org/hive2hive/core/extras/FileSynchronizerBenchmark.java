@@ -0,0 +1,96 @@
+package org.hive2hive.core.extras;
+
+import java.io.File;
+import java.security.KeyPair;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.file.FileUtil;
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
+import org.hive2hive.core.security.HashUtil;
+
+/**
+ * Measures the duration of the {@link FileSynchronizer} comparison on a large synthetic tree, without any
+ * file on disk. A few percent of the entries are modified, added or deleted on either side. This is not a
+ * unit test; run it manually with the number of entries as (optional) argument.
+ *
+ * @author Nico
+ *
+ */
+public class FileSynchronizerBenchmark {
+
+	private static final int FILES_PER_FOLDER = 100;
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) {
+		int entries = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+		Random random = new Random(42);
+		KeyPair keys = H2HJUnitTest.generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		UserProfile userProfile = new UserProfile("benchmark", keys, keys);
+
+		Map<String, byte[]> before = new HashMap<String, byte[]>();
+		Map<String, byte[]> now = new HashMap<String, byte[]>();
+		FolderIndex folder = null;
+		for (int i = 0; i < entries; i++) {
+			if (i % FILES_PER_FOLDER == 0) {
+				folder = new FolderIndex(userProfile.getRoot(), keys, "folder-" + i);
+				before.put(folder.getFullPath(), new byte[0]);
+				now.put(folder.getFullPath(), new byte[0]);
+				continue;
+			}
+
+			String name = "file-" + i;
+			String path = folder.getFullPath() + name;
+			byte[] hash = HashUtil.hash(path.getBytes());
+			int change = random.nextInt(100);
+			if (change == 0) {
+				// added locally
+				now.put(path, hash);
+			} else if (change == 1) {
+				// added remotely
+				new FileIndex(folder, keys, name, hash);
+			} else if (change == 2) {
+				// updated locally
+				new FileIndex(folder, keys, name, hash);
+				before.put(path, hash);
+				now.put(path, HashUtil.hash(hash));
+			} else if (change == 3) {
+				// deleted locally
+				new FileIndex(folder, keys, name, hash);
+				before.put(path, hash);
+			} else {
+				// unchanged
+				new FileIndex(folder, keys, name, hash);
+				before.put(path, hash);
+				now.put(path, hash);
+			}
+		}
+
+		System.out.println(String.format("Comparing %s entries (%s folders)", entries, userProfile.getRoot()
+				.getChildren().size()));
+		File root = new File(FileUtil.getFileSep());
+		for (int run = 0; run < RUNS; run++) {
+			long start = System.currentTimeMillis();
+			FileSynchronizer synchronizer = new FileSynchronizer(root, userProfile, before, now);
+			List<File> addedLocally = synchronizer.getAddedLocally();
+			List<Index> addedRemotely = synchronizer.getAddedRemotely();
+			List<File> updatedLocally = synchronizer.getUpdatedLocally();
+			List<FileIndex> updatedRemotely = synchronizer.getUpdatedRemotely();
+			List<Index> deletedLocally = synchronizer.getDeletedLocally();
+			List<File> deletedRemotely = synchronizer.getDeletedRemotely();
+			long duration = System.currentTimeMillis() - start;
+
+			System.out.println(String.format(
+					"Run %s: %s ms (added %s/%s, updated %s/%s, deleted %s/%s locally/remotely)", run + 1, duration,
+					addedLocally.size(), addedRemotely.size(), updatedLocally.size(), updatedRemotely.size(),
+					deletedLocally.size(), deletedRemotely.size()));
+		}
+	}
+}
@@ -3,6 +3,7 @@ package org.hive2hive.core.extras;
 import java.io.File;
 import java.io.IOException;
 import java.security.KeyPair;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -99,6 +100,78 @@ public class FileSynchronizerTest extends H2HJUnitTest {
 		Assert.assertTrue(deletedLocally.contains(node2d));
 	}
 
+	@Test
+	public void testWithFileStateDatabase() throws IOException {
+		File databaseFile = new File(tempFolder.newFolder(), "states");
+		FileStateDatabase database = new FileStateDatabase();
+		database.scan(rootFile);
+		database.save(databaseFile);
+
+		// modify a file while offline
+		FileUtils.writeStringToFile(file2f, randomString() + randomString());
+		file1f1.delete();
+
+		FileSynchronizer fileSynchronizer = new FileSynchronizer(rootFile, userProfile,
+				FileStateDatabase.load(databaseFile));
+		List<File> updatedLocally = fileSynchronizer.getUpdatedLocally();
+		Assert.assertEquals(1, updatedLocally.size());
+		Assert.assertTrue(updatedLocally.contains(file2f));
+		List<Index> deletedLocally = fileSynchronizer.getDeletedLocally();
+		Assert.assertEquals(1, deletedLocally.size());
+		Assert.assertTrue(deletedLocally.contains(node1f1));
+		Assert.assertTrue(fileSynchronizer.getAddedLocally().isEmpty());
+	}
+
+	@Test
+	public void testDeletedLocallyChildrenFirst() throws IOException {
+		Map<String, byte[]> before = FileSynchronizer.visitFiles(rootFile);
+		FileUtils.deleteDirectory(file1d);
+		Map<String, byte[]> after = FileSynchronizer.visitFiles(rootFile);
+
+		// sequentially and in parallel
+		for (int threshold : new int[] { Integer.MAX_VALUE, 0 }) {
+			FileSynchronizer fileSynchronizer = new FileSynchronizer(rootFile, userProfile, before, after, threshold);
+			List<Index> deletedLocally = fileSynchronizer.getDeletedLocally();
+			Assert.assertEquals(3, deletedLocally.size());
+			Assert.assertTrue(deletedLocally.indexOf(node2f) < deletedLocally.indexOf(node1d));
+			Assert.assertTrue(deletedLocally.indexOf(node2d) < deletedLocally.indexOf(node1d));
+		}
+	}
+
+	@Test
+	public void testParallelEqualsSequential() throws IOException {
+		Map<String, byte[]> before = FileSynchronizer.visitFiles(rootFile);
+
+		// changes of all kinds: deleted, added and updated locally, added and updated remotely
+		file1f1.delete();
+		File file1f3 = new File(rootFile, "1f3");
+		FileUtils.writeStringToFile(file1f3, randomString());
+		FileUtils.writeStringToFile(file2f, randomString());
+		KeyPair keys = generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE);
+		new FolderIndex(node1d, keys, "2d2");
+		node1f2.setHash(HashUtil.hash(randomString().getBytes()));
+		Map<String, byte[]> after = FileSynchronizer.visitFiles(rootFile);
+
+		FileSynchronizer sequential = new FileSynchronizer(rootFile, userProfile, before, after, Integer.MAX_VALUE);
+		FileSynchronizer parallel = new FileSynchronizer(rootFile, userProfile, before, after, 0);
+
+		// the sorted lists have the same order
+		Assert.assertEquals(sequential.getDeletedLocally(), parallel.getDeletedLocally());
+		Assert.assertEquals(sequential.getAddedLocally(), parallel.getAddedLocally());
+		Assert.assertEquals(sequential.getAddedRemotely(), parallel.getAddedRemotely());
+		Assert.assertEquals(sequential.getUpdatedLocally(), parallel.getUpdatedLocally());
+		Assert.assertEquals(new HashSet<File>(sequential.getDeletedRemotely()),
+				new HashSet<File>(parallel.getDeletedRemotely()));
+		Assert.assertEquals(new HashSet<FileIndex>(sequential.getUpdatedRemotely()),
+				new HashSet<FileIndex>(parallel.getUpdatedRemotely()));
+
+		Assert.assertEquals(1, parallel.getDeletedLocally().size());
+		Assert.assertEquals(1, parallel.getAddedLocally().size());
+		Assert.assertEquals(2, parallel.getAddedRemotely().size());
+		Assert.assertEquals(1, parallel.getUpdatedLocally().size());
+		Assert.assertEquals(1, parallel.getUpdatedRemotely().size());
+	}
+
 	@Test
 	public void testDeletedRemotely() throws IOException, ClassNotFoundException {
 		Map<String, byte[]> before = FileSynchronizer.visitFiles(rootFile);
@@ -2,10 +2,18 @@ package org.hive2hive.core.file;
 
 import java.io.File;
 import java.io.IOException;
+import java.security.KeyPair;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import net.tomp2p.peers.Number160;
+
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.network.data.MetaFileCache;
+import org.hive2hive.core.network.data.MetaFileCache.CachedMetaFile;
 import org.hive2hive.core.network.data.PublicKeyManager;
 import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
 import org.hive2hive.core.serializer.FSTSerializer;
@@ -54,6 +62,44 @@ public class FileUtilTest extends H2HJUnitTest {
 		Assert.assertEquals(0, persistentMetaData.getPublicKeyCache().size());
 	}
 
+	@Test
+	public void testReadWriteMetaFiles() throws IOException {
+		KeyPair fileKeys = generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		HybridEncryptedContent encrypted = new HybridEncryptedContent(new byte[] { 1 }, new byte[] { 2 });
+		encrypted.setVersionKey(new Number160(42));
+		MetaFileCache cache = new MetaFileCache();
+		cache.put(fileKeys.getPublic(), fileKeys.getPrivate(), encrypted.getVersionKey(), encrypted, new byte[] { 3 });
+
+		FileUtil.writePersistentMetaData(fileAgent, null, null, null, null, cache, serializer);
+		PersistentMetaData persistentMetaData = FileUtil.readPersistentMetaData(fileAgent, serializer);
+		Assert.assertEquals(1, persistentMetaData.getMetaFiles().size());
+
+		// only the encrypted meta file has been persisted
+		MetaFileCache seeded = new MetaFileCache();
+		seeded.seed(persistentMetaData.getMetaFiles());
+		CachedMetaFile cached = seeded.get(fileKeys.getPublic(), fileKeys.getPrivate());
+		Assert.assertEquals(new Number160(42), cached.getVersionKey());
+		Assert.assertFalse(cached.isDecrypted());
+		Assert.assertArrayEquals(new byte[] { 2 }, cached.getEncrypted().getEncryptedData());
+	}
+
+	@Test
+	public void testReadOldMetaData() throws IOException {
+		// written without the format header by an older version
+		PersistentMetaData old = new PersistentMetaData();
+		old.setPublicKeyCache(Collections.singletonMap("user", generateRSAKeyPair(RSA_KEYLENGTH.BIT_512).getPublic()));
+		fileAgent.writeCache(H2HConstants.META_FILE_NAME, serializer.serialize(old));
+		PersistentMetaData persistentMetaData = FileUtil.readPersistentMetaData(fileAgent, serializer);
+		Assert.assertNotNull(persistentMetaData);
+		Assert.assertEquals(0, persistentMetaData.getPublicKeyCache().size());
+
+		// a corrupt file is discarded as well
+		fileAgent.writeCache(H2HConstants.META_FILE_NAME, new byte[] { 'H', '2', 'M', 1, 42, 42, 42 });
+		persistentMetaData = FileUtil.readPersistentMetaData(fileAgent, serializer);
+		Assert.assertNotNull(persistentMetaData);
+		Assert.assertEquals(0, persistentMetaData.getPublicKeyCache().size());
+	}
+
 	@Test
 	public void testSortPreorder() {
 		List<File> files = new ArrayList<File>();
@@ -0,0 +1,131 @@
+package org.hive2hive.core.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class H2HMetricsTest extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = H2HMetricsTest.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void endTest() {
+		afterClass();
+	}
+
+	@Test
+	public void testHistogramPercentiles() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 10000; i++) {
+			histogram.record(i);
+		}
+
+		HistogramSnapshot snapshot = histogram.getSnapshot();
+		assertEquals(10000, snapshot.getCount());
+		assertEquals(1, snapshot.getMin());
+		assertEquals(10000, snapshot.getMax());
+		assertEquals(5000.5, snapshot.getMean(), 0.001);
+
+		// the relative error is bounded by the bucket width
+		assertEquals(5000, snapshot.getP50(), 5000 * 0.04);
+		assertEquals(9000, snapshot.getP90(), 9000 * 0.04);
+		assertEquals(9900, snapshot.getP99(), 9900 * 0.04);
+		assertTrue(snapshot.getP999() <= snapshot.getMax());
+
+		histogram.reset();
+		assertEquals(0, histogram.getSnapshot().getCount());
+	}
+
+	@Test
+	public void testBuckets() {
+		// all values are within the bucket they are assigned to
+		long[] values = { 0, 1, 31, 32, 33, 63, 64, 1000, 123456789, Long.MAX_VALUE / 3, Long.MAX_VALUE };
+		for (long value : values) {
+			int index = Histogram.bucketIndex(value);
+			assertTrue(value <= Histogram.highestValueInBucket(index));
+			if (index > 0) {
+				assertTrue(value > Histogram.highestValueInBucket(index - 1));
+			}
+		}
+	}
+
+	@Test
+	public void testCountersAndHistograms() {
+		H2HMetrics metrics = new H2HMetrics();
+		metrics.increment("counter");
+		metrics.add("counter", 4);
+		assertEquals(5, metrics.getCounter("counter"));
+		assertEquals(0, metrics.getCounter("unknown"));
+
+		metrics.recordLatency("latency", System.nanoTime());
+		metrics.recordThroughput("throughput", "bytes", 1024, System.nanoTime());
+		assertEquals(1, metrics.getHistogram("latency").getCount());
+		assertEquals(1024, metrics.getCounter("bytes"));
+		assertTrue(metrics.getHistograms().containsKey("throughput"));
+		assertNull(metrics.getHistogram("unknown"));
+
+		metrics.reset();
+		assertEquals(0, metrics.getCounter("counter"));
+		assertEquals(0, metrics.getHistogram("latency").getCount());
+	}
+
+	@Test
+	public void testPercentile() {
+		H2HMetrics metrics = new H2HMetrics();
+		assertEquals(-1, metrics.getPercentile("latency", 0.9, 1));
+		for (int i = 1; i <= 100; i++) {
+			metrics.recordValue("latency", i);
+		}
+
+		assertEquals(-1, metrics.getPercentile("latency", 0.9, 101));
+		assertEquals(90, metrics.getPercentile("latency", 0.9, 100), 90 * 0.04);
+		assertEquals(100, metrics.getPercentile("latency", 1, 100));
+	}
+
+	@Test
+	public void testDisabled() {
+		H2HMetrics metrics = new H2HMetrics(false);
+		metrics.increment("counter");
+		metrics.recordValue("value", 42);
+		assertFalse(metrics.isEnabled());
+		assertTrue(metrics.getCounters().isEmpty());
+		assertTrue(metrics.getHistograms().isEmpty());
+	}
+
+	@Test
+	public void testJMX() throws Exception {
+		H2HMetrics metrics = new H2HMetrics();
+		metrics.increment("counter");
+		metrics.recordValue("value", 42);
+
+		String nodeId = randomString();
+		metrics.registerMBean(nodeId);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("org.hive2hive:type=Metrics,node=" + ObjectName.quote(nodeId));
+		assertTrue(server.isRegistered(name));
+
+		TabularData counters = (TabularData) server.getAttribute(name, "Counters");
+		assertEquals(1, counters.size());
+		TabularData histograms = (TabularData) server.getAttribute(name, "Histograms");
+		assertEquals(1, histograms.size());
+
+		metrics.unregisterMBean();
+		assertFalse(server.isRegistered(name));
+	}
+}
@@ -1,6 +1,7 @@
 package org.hive2hive.core.model;
 
 import java.security.KeyPair;
+import java.util.Arrays;
 
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.H2HJUnitTest;
@@ -158,6 +159,49 @@ public class IndexTest extends H2HJUnitTest {
 		Assert.assertEquals(null, root.getChildByName(""));
 	}
 
+	@Test
+	public void testGetChildByNameAfterChanges() {
+		// lookups ignore the case
+		Assert.assertEquals(dir1, root.getChildByName("1D"));
+
+		// rename
+		child3.setName("renamed");
+		Assert.assertNull(dir1.getChildByName("2f"));
+		Assert.assertEquals(child3, dir1.getChildByName("Renamed"));
+
+		// a child with the same name is not added twice
+		KeyPair keys = generateRSAKeyPair(EncryptionUtil.RSA_KEYLENGTH.BIT_512);
+		new FileIndex(dir1, keys, "RENAMED", null);
+		Assert.assertEquals(child3, dir1.getChildByName("renamed"));
+		Assert.assertEquals(3, dir1.getChildren().size());
+
+		// move
+		dir1.removeChild(child3);
+		Assert.assertNull(dir1.getChildByName("renamed"));
+		// renaming a detached node does not affect the former parent
+		child3.setName("moved");
+		Assert.assertNull(dir1.getChildByName("moved"));
+		child3.setParent(dir2);
+		dir2.addChild(child3);
+		Assert.assertEquals(child3, dir2.getChildByName("moved"));
+		Assert.assertEquals("1d" + FileUtil.getFileSep() + "2d" + FileUtil.getFileSep() + "moved", child3.getFullPath());
+	}
+
+	@Test
+	public void testSortedChildrenAfterChanges() {
+		Assert.assertEquals(Arrays.asList(dir2, child3, dir3), dir1.getSortedChildren());
+
+		// rename, the case is ignored
+		child3.setName("1F");
+		Assert.assertEquals(Arrays.asList(child3, dir2, dir3), dir1.getSortedChildren());
+
+		// add and remove
+		KeyPair keys = generateRSAKeyPair(EncryptionUtil.RSA_KEYLENGTH.BIT_512);
+		Index added = new FileIndex(dir1, keys, "0f", null);
+		dir1.removeChild(dir2);
+		Assert.assertEquals(Arrays.asList(added, child3, dir3), dir1.getSortedChildren());
+	}
+
 	@Test
 	public void testPermissions() {
 		Assert.assertTrue(root.getCalculatedUserList().contains(userId));
@@ -201,4 +245,49 @@ public class IndexTest extends H2HJUnitTest {
 		Assert.assertTrue(dir3.canWrite("UserC"));
 		Assert.assertTrue(dir4.canWrite("UserC"));
 	}
+
+	@Test
+	public void testDerivedAttributesAfterChanges() {
+		// compute all attributes once
+		Assert.assertEquals("1d" + FileUtil.getFileSep() + "3d" + FileUtil.getFileSep(), dir3.getFullPath());
+		Assert.assertFalse(dir4.isShared());
+		Assert.assertNull(dir4.getSharedTopFolder());
+		Assert.assertEquals(root.getProtectionKeys(), dir4.getProtectionKeys());
+		Assert.assertEquals(1, dir4.getCalculatedUserList().size());
+		Assert.assertFalse(root.isSharedOrHasSharedChildren());
+
+		// rename a folder, the paths of the sub-tree change
+		dir1.setName("renamed");
+		Assert.assertEquals("renamed" + FileUtil.getFileSep() + "2f", child3.getFullPath());
+		Assert.assertEquals("renamed" + FileUtil.getFileSep() + "3d" + FileUtil.getFileSep() + "4d"
+				+ FileUtil.getFileSep(), dir4.getFullPath());
+
+		// share a folder
+		KeyPair shareKeys = generateRSAKeyPair(EncryptionUtil.RSA_KEYLENGTH.BIT_512);
+		dir3.share(shareKeys);
+		dir3.addUserPermissions(new UserPermission("UserB", PermissionType.READ));
+		Assert.assertTrue(dir4.isShared());
+		Assert.assertEquals(dir3, dir4.getSharedTopFolder());
+		Assert.assertEquals(shareKeys, dir4.getProtectionKeys());
+		Assert.assertEquals(2, dir4.getCalculatedUserList().size());
+		Assert.assertTrue(root.isSharedOrHasSharedChildren());
+		Assert.assertTrue(dir1.isSharedOrHasSharedChildren());
+
+		// move the shared folder to the root
+		dir1.removeChild(dir3);
+		dir3.setParent(root);
+		root.addChild(dir3);
+		Assert.assertEquals("3d" + FileUtil.getFileSep() + "4d" + FileUtil.getFileSep(), dir4.getFullPath());
+		Assert.assertFalse(dir1.isSharedOrHasSharedChildren());
+		Assert.assertTrue(root.isSharedOrHasSharedChildren());
+
+		// revoke a permission and unshare
+		dir3.removeUserPermissions("UserB");
+		Assert.assertEquals(1, dir4.getCalculatedUserList().size());
+		dir3.unshare();
+		Assert.assertFalse(dir4.isShared());
+		Assert.assertNull(dir4.getSharedTopFolder());
+		Assert.assertEquals(root.getProtectionKeys(), dir4.getProtectionKeys());
+		Assert.assertFalse(root.isSharedOrHasSharedChildren());
+	}
 }
@@ -0,0 +1,62 @@
+package org.hive2hive.core.model;
+
+import java.io.File;
+import java.security.KeyPair;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
+
+/**
+ * Measures building wide folders and resolving paths in them. This is not a unit test; run it manually with
+ * the number of files per folder as (optional) argument.
+ *
+ * @author Nico
+ *
+ */
+public class PathResolutionBenchmark {
+
+	private static final int DEPTH = 3;
+	private static final int LOOKUPS = 100000;
+
+	public static void main(String[] args) {
+		int width = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		// the key material is not relevant, only a separate key pair instance per index
+		KeyPair key = H2HJUnitTest.generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		UserProfile profile = new UserProfile("benchmark-user", key, key);
+
+		long start = System.nanoTime();
+		FolderIndex folder = profile.getRoot();
+		for (int level = 0; level < DEPTH; level++) {
+			for (int i = 0; i < width; i++) {
+				new FileIndex(folder, new KeyPair(key.getPublic(), key.getPrivate()), "file-" + i, null);
+			}
+			folder = new FolderIndex(folder, new KeyPair(key.getPublic(), key.getPrivate()), "folder-" + level);
+		}
+		long buildDuration = System.nanoTime() - start;
+		System.out.println(String.format("Built %s folders with %s files each in %s ms", DEPTH, width,
+				buildDuration / 1000000));
+
+		File root = new File("root").getAbsoluteFile();
+		File[] paths = new File[width];
+		for (int i = 0; i < width; i++) {
+			// the files in the deepest folder that has files
+			File parent = root;
+			for (int level = 0; level < DEPTH - 1; level++) {
+				parent = new File(parent, "folder-" + level);
+			}
+			paths[i] = new File(parent, "file-" + i);
+		}
+
+		int found = 0;
+		start = System.nanoTime();
+		for (int i = 0; i < LOOKUPS; i++) {
+			if (profile.getFileByPath(paths[i % width], root) != null) {
+				found++;
+			}
+		}
+		long lookupDuration = System.nanoTime() - start;
+		System.out.println(String.format("Resolved %s paths (%s found) in %s ms, %.1f us per path", LOOKUPS, found,
+				lookupDuration / 1000000, lookupDuration / 1000.0 / LOOKUPS));
+	}
+}
@@ -0,0 +1,74 @@
+package org.hive2hive.core.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PeerLivenessTableTest extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = PeerLivenessTableTest.class;
+		beforeClass();
+	}
+
+	@Test
+	public void testAdaptiveTimeout() {
+		PeerLivenessTable table = new PeerLivenessTable();
+		PeerAddress address = new PeerAddress(Number160.createHash("fast"));
+
+		// unknown peers get the default time
+		assertEquals(H2HConstants.CONTACT_PEERS_AWAIT_MS, table.getTimeout(address));
+
+		// fast peers are bounded by the minimum
+		for (int i = 0; i < 5; i++) {
+			table.recordResponse(address, 50);
+		}
+		assertEquals(H2HConstants.CONTACT_PEERS_MIN_AWAIT_MS, table.getTimeout(address));
+
+		// slow responses increase the timeout, but never above the default
+		for (int i = 0; i < 5; i++) {
+			table.recordResponse(address, H2HConstants.CONTACT_PEERS_AWAIT_MS);
+		}
+		assertTrue(table.getTimeout(address) > H2HConstants.CONTACT_PEERS_MIN_AWAIT_MS);
+		assertTrue(table.getTimeout(address) <= H2HConstants.CONTACT_PEERS_AWAIT_MS);
+	}
+
+	@Test
+	public void testOrderAndDrop() {
+		PeerLivenessTable table = new PeerLivenessTable();
+		PeerAddress alive = new PeerAddress(Number160.createHash("alive"));
+		PeerAddress unknown = new PeerAddress(Number160.createHash("unknown"));
+		PeerAddress stale = new PeerAddress(Number160.createHash("stale"));
+
+		table.recordResponse(alive, 100);
+		table.recordFailure(stale);
+
+		List<PeerAddress> addresses = new ArrayList<PeerAddress>(Arrays.asList(stale, unknown, alive));
+		table.sortByLiveness(addresses);
+		assertEquals(Arrays.asList(alive, unknown, stale), addresses);
+
+		for (int i = 1; i < H2HConstants.CONTACT_PEERS_DROP_AFTER_FAILURES; i++) {
+			assertFalse(table.isDropped(stale));
+			table.recordFailure(stale);
+		}
+		assertTrue(table.isDropped(stale));
+		assertFalse(table.isDropped(alive));
+
+		// a response resets the failures
+		table.recordResponse(stale, 100);
+		assertFalse(table.isDropped(stale));
+	}
+}
@@ -4,9 +4,13 @@ import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
 import java.security.SignatureException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
+import net.tomp2p.dht.FutureGet;
 import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.Number640;
 import net.tomp2p.storage.Data;
 
 import org.hive2hive.core.H2HConstants;
@@ -103,6 +107,33 @@ public class DataManagerTest extends H2HJUnitTest {
 		Assert.assertNull(NetworkTestUtil.getRandomNode(network).getDataManager().get(parameters3));
 	}
 
+	@Test
+	public void testGetLatest() throws Exception {
+		String locationKey = randomString();
+		String contentKey = randomString();
+
+		// put three versions
+		H2HTestData data = new H2HTestData(randomString());
+		for (int i = 0; i < 3; i++) {
+			data.generateVersionKey();
+			Parameters parameters = new Parameters().setLocationKey(locationKey).setContentKey(contentKey)
+					.setVersionKey(data.getVersionKey()).setBasedOnKey(data.getBasedOnKey()).setNetworkContent(data);
+			Assert.assertEquals(H2HPutStatus.OK, NetworkTestUtil.getRandomNode(network).getDataManager().put(parameters));
+		}
+
+		// all answering replicas return the latest version and the digest
+		FutureGet futureGet = NetworkTestUtil.getRandomNode(network).getDataManager()
+				.getLatest(new Parameters().setLocationKey(locationKey).setContentKey(contentKey));
+		Assert.assertTrue(futureGet.isSuccess());
+		Assert.assertNotNull(futureGet.rawDigest());
+		Assert.assertFalse(futureGet.rawData().isEmpty());
+		for (Map<Number640, Data> replica : futureGet.rawData().values()) {
+			if (!replica.isEmpty()) {
+				Assert.assertEquals(data.getVersionKey(), Collections.max(replica.keySet()).versionKey());
+			}
+		}
+	}
+
 	@Test
 	public void testChangeProtectionKeySingleVersionKey() throws NoPeerConnectionException, IOException,
 			InvalidKeyException, SignatureException {
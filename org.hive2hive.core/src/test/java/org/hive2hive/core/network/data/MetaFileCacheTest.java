@@ -0,0 +1,128 @@
+package org.hive2hive.core.network.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.tomp2p.peers.Number160;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.network.data.MetaFileCache.CachedMetaFile;
+import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the {@link MetaFileCache}
+ *
+ * @author Nico
+ */
+public class MetaFileCacheTest extends H2HJUnitTest {
+
+	private static KeyPair[] keys;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = MetaFileCacheTest.class;
+		beforeClass();
+
+		keys = new KeyPair[4];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		}
+	}
+
+	@AfterClass
+	public static void endTest() {
+		afterClass();
+	}
+
+	@Test
+	public void testPutGetInvalidate() {
+		MetaFileCache cache = new MetaFileCache(10);
+		cache.put(keys[0].getPublic(), keys[0].getPrivate(), new Number160(1), null, new byte[] { 1 });
+
+		CachedMetaFile cached = cache.get(keys[0].getPublic(), keys[0].getPrivate());
+		assertNotNull(cached);
+		assertEquals(new Number160(1), cached.getVersionKey());
+		assertArrayEquals(new byte[] { 1 }, cached.getSerialized());
+
+		// a newer version replaces the entry
+		cache.put(keys[0].getPublic(), keys[0].getPrivate(), new Number160(2), null, new byte[] { 2 });
+		assertEquals(new Number160(2), cache.get(keys[0].getPublic(), keys[0].getPrivate()).getVersionKey());
+		assertEquals(1, cache.size());
+
+		cache.invalidate(keys[0].getPublic());
+		assertNull(cache.get(keys[0].getPublic(), keys[0].getPrivate()));
+	}
+
+	@Test
+	public void testWrongPrivateKey() {
+		MetaFileCache cache = new MetaFileCache(10);
+		cache.put(keys[0].getPublic(), keys[0].getPrivate(), new Number160(1), null, new byte[] { 1 });
+
+		// only the owners of the file keys get the decrypted meta file
+		assertNull(cache.get(keys[0].getPublic(), keys[1].getPrivate()));
+	}
+
+	@Test
+	public void testEvictLeastRecentlyUsed() {
+		MetaFileCache cache = new MetaFileCache(3);
+		for (int i = 0; i < 3; i++) {
+			cache.put(keys[i].getPublic(), keys[i].getPrivate(), new Number160(i), null, new byte[] { (byte) i });
+		}
+
+		// access the first one, thus the second one is the least recently used
+		assertNotNull(cache.get(keys[0].getPublic(), keys[0].getPrivate()));
+		cache.put(keys[3].getPublic(), keys[3].getPrivate(), new Number160(3), null, new byte[] { 3 });
+
+		assertEquals(3, cache.size());
+		assertNotNull(cache.get(keys[0].getPublic(), keys[0].getPrivate()));
+		assertNull(cache.get(keys[1].getPublic(), keys[1].getPrivate()));
+		assertNotNull(cache.get(keys[2].getPublic(), keys[2].getPrivate()));
+		assertNotNull(cache.get(keys[3].getPublic(), keys[3].getPrivate()));
+	}
+
+	@Test
+	public void testSnapshotAndSeed() {
+		HybridEncryptedContent encrypted = new HybridEncryptedContent(new byte[] { 1 }, new byte[] { 2 });
+		encrypted.setVersionKey(new Number160(1));
+		MetaFileCache cache = new MetaFileCache(10);
+		cache.put(keys[0].getPublic(), keys[0].getPrivate(), new Number160(1), encrypted, new byte[] { 1 });
+		// entries without the encrypted meta file are not persisted
+		cache.put(keys[1].getPublic(), keys[1].getPrivate(), new Number160(2), null, new byte[] { 2 });
+
+		LinkedHashMap<PublicKey, HybridEncryptedContent> snapshot = cache.getSnapshot();
+		assertEquals(1, snapshot.size());
+		assertSame(encrypted, snapshot.get(keys[0].getPublic()));
+
+		// the seeded entry still needs to be decrypted
+		MetaFileCache seeded = new MetaFileCache(10);
+		seeded.seed(snapshot);
+		CachedMetaFile cached = seeded.get(keys[0].getPublic(), keys[0].getPrivate());
+		assertNotNull(cached);
+		assertFalse(cached.isDecrypted());
+		assertNull(cached.getSerialized());
+		assertEquals(new Number160(1), cached.getVersionKey());
+
+		// a decrypted entry is not replaced by the seed
+		seeded.put(keys[2].getPublic(), keys[2].getPrivate(), new Number160(3), encrypted, new byte[] { 3 });
+		Map<PublicKey, HybridEncryptedContent> other = new LinkedHashMap<PublicKey, HybridEncryptedContent>();
+		other.put(keys[2].getPublic(), encrypted);
+		seeded.seed(other);
+		assertTrue(seeded.get(keys[2].getPublic(), keys[2].getPrivate()).isDecrypted());
+		seeded.seed(null);
+		assertEquals(2, seeded.size());
+	}
+}
@@ -0,0 +1,150 @@
+package org.hive2hive.core.network.data.download;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.processes.files.download.dht.DownloadTaskDHT;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the persisted progress and the temporary folder of a download task
+ * 
+ * @author Nico
+ *
+ */
+public class BaseDownloadTaskTest extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = BaseDownloadTaskTest.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void endTest() {
+		afterClass();
+	}
+
+	// the tasks of a test, whose temporary folders are removed afterwards
+	private final List<BaseDownloadTask> tasks = new ArrayList<BaseDownloadTask>();
+
+	@After
+	public void deleteTempFolders() {
+		for (BaseDownloadTask task : tasks) {
+			task.abortDownload("Test is done");
+			FileUtils.deleteQuietly(task.getTempDirectory());
+		}
+		tasks.clear();
+	}
+
+	private DownloadTaskDHT createTask(List<MetaChunk> metaChunks, File destination) {
+		DownloadTaskDHT task = new DownloadTaskDHT(metaChunks, destination, null, null, null);
+		tasks.add(task);
+		return task;
+	}
+
+	private static List<MetaChunk> createMetaChunks(int count) {
+		List<MetaChunk> metaChunks = new ArrayList<MetaChunk>();
+		for (int i = 0; i < count; i++) {
+			metaChunks.add(new MetaChunk(randomString(), generateFixedContent(20), i));
+		}
+		return metaChunks;
+	}
+
+	@Test
+	public void testDeterministicTempFolder() throws IOException {
+		List<MetaChunk> metaChunks = createMetaChunks(3);
+		File destination = new File(tempFolder.newFolder(), randomString());
+
+		DownloadTaskDHT task1 = createTask(metaChunks, destination);
+		File tempDirectory = task1.getTempDirectory();
+		// 'restart' the download
+		task1.releaseTempFolder();
+		DownloadTaskDHT task2 = createTask(metaChunks, destination);
+		assertEquals(tempDirectory, task2.getTempDirectory());
+
+		DownloadTaskDHT other = createTask(createMetaChunks(3), destination);
+		assertFalse(task2.getTempDirectory().equals(other.getTempDirectory()));
+	}
+
+	@Test
+	public void testConcurrentDownloadsOfSameFile() throws IOException {
+		List<MetaChunk> metaChunks = createMetaChunks(3);
+		File destination = new File(tempFolder.newFolder(), randomString());
+
+		// both downloads run at the same time and must not share their parts
+		DownloadTaskDHT task1 = createTask(metaChunks, destination);
+		DownloadTaskDHT task2 = createTask(metaChunks, destination);
+		assertFalse(task1.getTempDirectory().equals(task2.getTempDirectory()));
+
+		FileUtils.writeStringToFile(task1.getChunkFile(0), randomString());
+		task1.markDownloaded(0, task1.getChunkFile(0));
+		assertEquals(2, task1.getOpenChunks().size());
+		assertEquals(3, task2.getOpenChunks().size());
+	}
+
+	@Test
+	public void testResumeDownload() throws IOException {
+		List<MetaChunk> metaChunks = createMetaChunks(3);
+		File destination = new File(tempFolder.newFolder(), randomString());
+
+		DownloadTaskDHT task = createTask(metaChunks, destination);
+		assertEquals(3, task.getOpenChunks().size());
+
+		// download the second chunk
+		File filePart = task.getChunkFile(1);
+		FileUtils.writeStringToFile(filePart, randomString());
+		task.markDownloaded(1, filePart);
+		assertEquals(2, task.getOpenChunks().size());
+
+		// 'restart' the download
+		task.releaseTempFolder();
+		DownloadTaskDHT resumed = createTask(metaChunks, destination);
+		List<MetaChunk> openChunks = resumed.getOpenChunks();
+		assertEquals(2, openChunks.size());
+		assertFalse(openChunks.contains(metaChunks.get(1)));
+
+		// a missing part must be downloaded again
+		assertTrue(filePart.delete());
+		resumed.releaseTempFolder();
+		resumed = createTask(metaChunks, destination);
+		assertEquals(3, resumed.getOpenChunks().size());
+	}
+
+	@Test
+	public void testAbortDeletesTempFolder() throws IOException {
+		List<MetaChunk> metaChunks = createMetaChunks(3);
+		File destination = new File(tempFolder.newFolder(), randomString());
+
+		DownloadTaskDHT task = createTask(metaChunks, destination);
+		File filePart = task.getChunkFile(0);
+		FileUtils.writeStringToFile(filePart, randomString());
+		task.markDownloaded(0, filePart);
+		assertTrue(task.getTempDirectory().exists());
+
+		task.abortDownload("Test");
+		assertFalse(task.getTempDirectory().exists());
+
+		// a chunk that was in flight while aborting does not leave its part behind
+		FileUtils.writeStringToFile(task.getChunkFile(1), randomString());
+		task.markDownloaded(1, task.getChunkFile(1));
+		assertFalse(task.getTempDirectory().exists());
+
+		// nothing is resumed
+		DownloadTaskDHT restarted = createTask(metaChunks, destination);
+		assertEquals(task.getTempDirectory(), restarted.getTempDirectory());
+		assertEquals(3, restarted.getOpenChunks().size());
+	}
+}
@@ -0,0 +1,173 @@
+package org.hive2hive.core.network.data.download;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.security.EncryptionUtil;
+import org.hive2hive.core.security.HashUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the local chunk cache
+ * 
+ * @author Nico
+ *
+ */
+public class ChunkCacheTest extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = ChunkCacheTest.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void endTest() {
+		afterClass();
+	}
+
+	private static MetaChunk createMetaChunk(byte[] data, int index) {
+		return new MetaChunk(randomString(), HashUtil.hash(data), index);
+	}
+
+	@Test
+	public void testPutAndGet() throws IOException {
+		File directory = tempFolder.newFolder();
+		ChunkCache cache = new ChunkCache(directory, 1000);
+		byte[] data = generateFixedContent(100);
+		MetaChunk metaChunk = createMetaChunk(data, 0);
+
+		assertNull(cache.get(metaChunk));
+		cache.put(metaChunk, data);
+		assertArrayEquals(data, cache.get(metaChunk));
+		assertEquals(100, cache.getSize());
+
+		// a cache on the same directory finds the chunk after a restart
+		ChunkCache restarted = new ChunkCache(directory, 1000);
+		assertArrayEquals(data, restarted.get(metaChunk));
+		assertEquals(100, restarted.getSize());
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		ChunkCache cache = new ChunkCache(tempFolder.newFolder(), 250);
+		byte[] data1 = generateFixedContent(100);
+		byte[] data2 = generateFixedContent(100);
+		byte[] data3 = generateFixedContent(100);
+		MetaChunk chunk1 = createMetaChunk(data1, 0);
+		MetaChunk chunk2 = createMetaChunk(data2, 1);
+		MetaChunk chunk3 = createMetaChunk(data3, 2);
+
+		cache.put(chunk1, data1);
+		cache.put(chunk2, data2);
+		// touch the first chunk, thus the second is the least recently used
+		cache.get(chunk1);
+		cache.put(chunk3, data3);
+
+		assertEquals(200, cache.getSize());
+		assertArrayEquals(data1, cache.get(chunk1));
+		assertNull(cache.get(chunk2));
+		assertArrayEquals(data3, cache.get(chunk3));
+	}
+
+	@Test
+	public void testLocalIndex() throws IOException {
+		ChunkCache cache = new ChunkCache(tempFolder.newFolder(), 1000);
+		byte[] content = generateFixedContent(300);
+		File file = new File(tempFolder.newFolder(), randomString());
+		FileUtils.writeByteArrayToFile(file, content);
+
+		byte[] secondPart = Arrays.copyOfRange(content, 100, 200);
+		MetaChunk metaChunk = createMetaChunk(secondPart, 1);
+		cache.addLocation(metaChunk, file, 100, 100);
+		assertArrayEquals(secondPart, cache.get(metaChunk));
+
+		// modify the file, the location becomes invalid
+		FileUtils.writeByteArrayToFile(file, generateFixedContent(10), true);
+		assertNull(cache.get(metaChunk));
+	}
+
+	@Test
+	public void testVerifyHash() throws IOException {
+		File directory = tempFolder.newFolder();
+		ChunkCache cache = new ChunkCache(directory, 1000);
+		byte[] data = generateFixedContent(100);
+		MetaChunk metaChunk = createMetaChunk(data, 0);
+
+		// data not matching the hash is not stored
+		cache.put(metaChunk, generateFixedContent(100));
+		assertNull(cache.get(metaChunk));
+		assertEquals(0, cache.getSize());
+
+		// a stored chunk that has been tampered with is removed
+		cache.put(metaChunk, data);
+		File stored = new File(directory, EncryptionUtil.byteToHex(metaChunk.getChunkHash()));
+		FileUtils.writeByteArrayToFile(stored, generateFixedContent(100));
+		assertNull(cache.get(metaChunk));
+		assertEquals(0, cache.getSize());
+		assertFalse(stored.exists());
+	}
+
+	@Test
+	public void testOwnerOnlyPermissions() throws IOException {
+		File directory = tempFolder.newFolder();
+		ChunkCache cache = new ChunkCache(directory, 1000);
+		byte[] data = generateFixedContent(100);
+		MetaChunk metaChunk = createMetaChunk(data, 0);
+		cache.put(metaChunk, data);
+
+		File stored = new File(directory, EncryptionUtil.byteToHex(metaChunk.getChunkHash()));
+		assertTrue(stored.exists());
+		try {
+			Set<PosixFilePermission> directoryPermissions = Files.getPosixFilePermissions(directory.toPath());
+			Set<PosixFilePermission> filePermissions = Files.getPosixFilePermissions(stored.toPath());
+			for (PosixFilePermission permission : Arrays.asList(PosixFilePermission.GROUP_READ,
+					PosixFilePermission.OTHERS_READ, PosixFilePermission.OTHERS_EXECUTE)) {
+				assertFalse(directoryPermissions.contains(permission));
+				assertFalse(filePermissions.contains(permission));
+			}
+		} catch (UnsupportedOperationException e) {
+			// not a POSIX file system
+		}
+	}
+
+	@Test
+	public void testWithoutDirectory() throws IOException {
+		ChunkCache cache = new ChunkCache(null, 0);
+		byte[] data = generateFixedContent(100);
+		MetaChunk metaChunk = createMetaChunk(data, 0);
+
+		// nothing is stored
+		cache.put(metaChunk, data);
+		assertNull(cache.get(metaChunk));
+		assertEquals(0, cache.getSize());
+
+		// chunks of local files are still served
+		File file = new File(tempFolder.newFolder(), randomString());
+		FileUtils.writeByteArrayToFile(file, data);
+		cache.addLocation(metaChunk, file, 0, data.length);
+		assertArrayEquals(data, cache.get(metaChunk));
+	}
+
+	@Test
+	public void testShared() throws IOException {
+		File directory = tempFolder.newFolder();
+		assertSame(ChunkCache.getShared(directory, 1000), ChunkCache.getShared(directory, 1000));
+	}
+}
@@ -0,0 +1,213 @@
+package org.hive2hive.core.network.data.download;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.api.configs.FileConfiguration;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.processes.files.download.dht.DownloadTaskDHT;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the scheduling of the download manager. The chunks are not downloaded, but replaced by runnables that
+ * record when they run.
+ *
+ * @author Nico
+ *
+ */
+public class DownloadManagerTest extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = DownloadManagerTest.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void endTest() {
+		afterClass();
+	}
+
+	private final List<BaseDownloadTask> tasks = new ArrayList<BaseDownloadTask>();
+	private DownloadManager downloadManager;
+
+	@After
+	public void stopDownloads() {
+		if (downloadManager != null) {
+			downloadManager.stopBackgroundProcesses();
+		}
+		for (BaseDownloadTask task : tasks) {
+			task.abortDownload("Test is done");
+		}
+		tasks.clear();
+	}
+
+	private DownloadTaskDHT createTask(int numChunks, long fileSize, boolean prioritized) throws IOException {
+		List<MetaChunk> metaChunks = new ArrayList<MetaChunk>();
+		for (int i = 0; i < numChunks; i++) {
+			metaChunks.add(new MetaChunk(randomString(), generateFixedContent(20), i));
+		}
+
+		DownloadTaskDHT task = new DownloadTaskDHT(metaChunks, new File(tempFolder.newFolder(), randomString()), null,
+				null, null);
+		task.setFileSize(fileSize);
+		task.setPrioritized(prioritized);
+		tasks.add(task);
+		return task;
+	}
+
+	@Test
+	public void testSmallAndPrioritizedFilesFirst() throws Exception {
+		// chunks of the blocking files wait for a permit
+		final Semaphore permits = new Semaphore(0);
+		final CountDownLatch blocked = new CountDownLatch(H2HConstants.CONCURRENT_DOWNLOADS);
+		final List<BaseDownloadTask> blockers = new ArrayList<BaseDownloadTask>();
+		final List<BaseDownloadTask> started = Collections.synchronizedList(new ArrayList<BaseDownloadTask>());
+		downloadManager = new DownloadManager(null, FileConfiguration.createDefault(), null) {
+			@Override
+			protected Runnable createRunnable(final BaseDownloadTask task, MetaChunk chunk) {
+				return new Runnable() {
+					@Override
+					public void run() {
+						if (blockers.contains(task)) {
+							blocked.countDown();
+							permits.acquireUninterruptibly();
+						} else {
+							started.add(task);
+						}
+					}
+				};
+			}
+		};
+
+		// occupy all download threads
+		for (int i = 0; i < H2HConstants.CONCURRENT_DOWNLOADS; i += H2HConstants.CONCURRENT_DOWNLOADS_PER_FILE) {
+			int numChunks = Math.min(H2HConstants.CONCURRENT_DOWNLOADS_PER_FILE, H2HConstants.CONCURRENT_DOWNLOADS - i);
+			BaseDownloadTask blocker = createTask(numChunks, 1, false);
+			blockers.add(blocker);
+			downloadManager.submit(blocker);
+		}
+		assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+		// these downloads are queued in the order of their submission
+		BaseDownloadTask large = createTask(4, 4 * 1024 * 1024, false);
+		BaseDownloadTask small = createTask(1, 1024, false);
+		BaseDownloadTask prioritized = createTask(2, 4 * 1024 * 1024, true);
+		downloadManager.submit(large);
+		downloadManager.submit(small);
+		downloadManager.submit(prioritized);
+
+		// a single thread becomes free and processes the queue in order
+		permits.release();
+		waitUntilStarted(started, 7);
+		assertEquals(prioritized, started.get(0));
+		assertEquals(prioritized, started.get(1));
+		assertEquals(small, started.get(2));
+		for (int i = 3; i < 7; i++) {
+			assertEquals(large, started.get(i));
+		}
+
+		permits.release(H2HConstants.CONCURRENT_DOWNLOADS);
+	}
+
+	@Test
+	public void testConcurrentChunksPerFile() throws Exception {
+		int numChunks = 4 * H2HConstants.CONCURRENT_DOWNLOADS_PER_FILE;
+		final Semaphore permits = new Semaphore(0);
+		final AtomicInteger running = new AtomicInteger(0);
+		final AtomicInteger maxRunning = new AtomicInteger(0);
+		final CountDownLatch done = new CountDownLatch(numChunks);
+		downloadManager = new DownloadManager(null, FileConfiguration.createDefault(), null) {
+			@Override
+			protected Runnable createRunnable(BaseDownloadTask task, MetaChunk chunk) {
+				return new Runnable() {
+					@Override
+					public void run() {
+						int current = running.incrementAndGet();
+						synchronized (maxRunning) {
+							maxRunning.set(Math.max(maxRunning.get(), current));
+						}
+						permits.acquireUninterruptibly();
+						running.decrementAndGet();
+						done.countDown();
+					}
+				};
+			}
+		};
+
+		downloadManager.submit(createTask(numChunks, numChunks * 1024, false));
+
+		// the pool has enough threads, but only the capped number of chunks is running
+		waitUntilRunning(running, H2HConstants.CONCURRENT_DOWNLOADS_PER_FILE);
+		Thread.sleep(500);
+		assertEquals(H2HConstants.CONCURRENT_DOWNLOADS_PER_FILE, running.get());
+
+		// the remaining chunks follow as soon as the running ones are done
+		permits.release(numChunks);
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(H2HConstants.CONCURRENT_DOWNLOADS_PER_FILE, maxRunning.get());
+	}
+
+	@Test
+	public void testSupersededDownload() throws Exception {
+		final Semaphore permits = new Semaphore(0);
+		downloadManager = new DownloadManager(null, FileConfiguration.createDefault(), null) {
+			@Override
+			protected Runnable createRunnable(BaseDownloadTask task, MetaChunk chunk) {
+				return new Runnable() {
+					@Override
+					public void run() {
+						permits.acquireUninterruptibly();
+					}
+				};
+			}
+		};
+
+		BaseDownloadTask oldVersion = createTask(2, 2048, false);
+		downloadManager.submit(oldVersion);
+		File oldTempFolder = oldVersion.getTempDirectory();
+		assertTrue(oldTempFolder.exists());
+
+		// another version of the same file
+		List<MetaChunk> newChunks = new ArrayList<MetaChunk>();
+		newChunks.add(new MetaChunk(randomString(), generateFixedContent(20), 0));
+		DownloadTaskDHT newVersion = new DownloadTaskDHT(newChunks, oldVersion.getDestination(), null, null, null);
+		tasks.add(newVersion);
+		downloadManager.submit(newVersion);
+
+		assertTrue(oldVersion.isAborted());
+		assertFalse(oldTempFolder.exists());
+		assertFalse(newVersion.isAborted());
+		permits.release(3);
+	}
+
+	private static void waitUntilStarted(List<BaseDownloadTask> started, int count) throws InterruptedException {
+		for (int i = 0; i < 100 && started.size() < count; i++) {
+			Thread.sleep(100);
+		}
+		assertEquals(count, started.size());
+	}
+
+	private static void waitUntilRunning(AtomicInteger running, int count) throws InterruptedException {
+		for (int i = 0; i < 100 && running.get() < count; i++) {
+			Thread.sleep(100);
+		}
+		assertEquals(count, running.get());
+	}
+}
@@ -173,6 +173,42 @@ public class AESEncryptedVersionManagerTest extends H2HJUnitTest {
 		Assert.assertEquals(version1.getTestString(), versionManager.get().getTestString());
 	}
 
+	@Test
+	public void testSeedFromSnapshot() throws Exception {
+		NetworkManager node = NetworkTestUtil.getRandomNode(network);
+
+		String locationKey = randomString();
+		String contentKey = randomString();
+
+		AESEncryptedVersionManager<H2HTestData> versionManager = new AESEncryptedVersionManager<H2HTestData>(
+				node.getDataManager(), encryptionKey, locationKey, contentKey);
+		H2HTestData version0 = new H2HTestData("version0");
+		versionManager.put(version0, protectionKeys);
+
+		// the snapshot survives the serialization and is only accepted by the same content
+		IH2HSerialize serializer = node.getDataManager().getSerializer();
+		VersionSnapshot snapshot = (VersionSnapshot) serializer.deserialize(serializer.serialize(versionManager
+				.getSnapshot()));
+		Assert.assertEquals(version0.getVersionKey(), snapshot.getVersionKey());
+		Assert.assertFalse(new AESEncryptedVersionManager<H2HTestData>(node.getDataManager(), encryptionKey,
+				randomString(), contentKey).seed(snapshot));
+
+		// a new session returns the seeded version
+		AESEncryptedVersionManager<H2HTestData> seeded = new AESEncryptedVersionManager<H2HTestData>(
+				node.getDataManager(), encryptionKey, locationKey, contentKey);
+		Assert.assertTrue(seeded.seed(snapshot));
+		Assert.assertEquals(version0.getTestString(), seeded.get().getTestString());
+
+		// a newer version in the network is fetched
+		H2HTestData version1 = new H2HTestData("version1");
+		version1.setVersionKey(version0.getVersionKey());
+		versionManager.put(version1, protectionKeys);
+		seeded = new AESEncryptedVersionManager<H2HTestData>(node.getDataManager(), encryptionKey, locationKey,
+				contentKey);
+		Assert.assertTrue(seeded.seed(snapshot));
+		Assert.assertEquals(version1.getTestString(), seeded.get().getTestString());
+	}
+
 	@Test(expected = GetFailedException.class)
 	public void testGetVersionFork() throws Exception {
 		try {
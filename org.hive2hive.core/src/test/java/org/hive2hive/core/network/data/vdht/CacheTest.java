@@ -0,0 +1,127 @@
+package org.hive2hive.core.network.data.vdht;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.tomp2p.peers.Number160;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the bounded version history {@link Cache}.
+ *
+ * @author Seppi
+ */
+public class CacheTest extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = CacheTest.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void endTest() {
+		afterClass();
+	}
+
+	@Test
+	public void testOrder() {
+		Cache<String> cache = new Cache<String>(100);
+		assertTrue(cache.isEmpty());
+		assertNull(cache.lastKey());
+		assertNull(cache.lastValue());
+
+		Random random = new Random();
+		for (int i = 0; i < 50; i++) {
+			long counter = random.nextInt(50);
+			cache.put(key(counter, i), "v" + counter);
+		}
+
+		assertEquals(50, cache.size());
+		for (int i = 1; i < cache.size(); i++) {
+			assertTrue(cache.keyAt(i - 1).compareTo(cache.keyAt(i)) < 0);
+		}
+		assertEquals(cache.keyAt(49), cache.lastKey());
+		assertEquals(cache.valueAt(49), cache.lastValue());
+	}
+
+	@Test
+	public void testPutGetRemove() {
+		Cache<String> cache = new Cache<String>(10);
+		cache.put(key(2, 0), "b");
+		cache.put(key(1, 0), "a");
+		cache.put(key(3, 0), "c");
+
+		assertEquals("b", cache.get(key(2, 0)));
+		assertNull(cache.get(key(4, 0)));
+		assertEquals("b", cache.put(key(2, 0), "b2"));
+		assertEquals(3, cache.size());
+
+		assertEquals("b2", cache.remove(key(2, 0)));
+		assertNull(cache.remove(key(2, 0)));
+		assertFalse(cache.containsKey(key(2, 0)));
+		assertEquals(key(1, 0), cache.keyAt(0));
+		assertEquals(key(3, 0), cache.keyAt(1));
+
+		cache.clear();
+		assertTrue(cache.isEmpty());
+	}
+
+	@Test
+	public void testHistoryLimit() {
+		Cache<String> cache = new Cache<String>(3);
+		for (long counter = 1; counter <= 10; counter++) {
+			cache.put(key(counter, 0), "v" + counter);
+			assertTrue(cache.size() <= 3);
+			// the ring buffer wraps around
+			assertEquals(key(Math.max(1, counter - 2), 0), cache.keyAt(0));
+			assertEquals("v" + counter, cache.lastValue());
+		}
+
+		// older versions are dropped immediately
+		cache.put(key(2, 0), "old");
+		assertFalse(cache.containsKey(key(2, 0)));
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testFork() {
+		// versions with the same counter do not count against the history length
+		Cache<String> cache = new Cache<String>(2);
+		for (int i = 0; i < 10; i++) {
+			cache.put(key(5, i), "fork" + i);
+		}
+		assertEquals(10, cache.size());
+
+		cache.put(key(6, 0), "next");
+		assertEquals(11, cache.size());
+		cache.put(key(7, 0), "next");
+		assertEquals(2, cache.size());
+		assertEquals(key(6, 0), cache.keyAt(0));
+	}
+
+	@Test
+	public void testPutAll() {
+		Cache<String> source = new Cache<String>(10);
+		source.put(key(1, 0), "a");
+		source.put(key(2, 0), "b");
+
+		Cache<String> cache = new Cache<String>(10);
+		cache.put(key(2, 0), "x");
+		cache.putAll(source);
+		assertEquals(2, cache.size());
+		assertEquals("b", cache.get(key(2, 0)));
+	}
+
+	private static Number160 key(long counter, int hash) {
+		return new Number160(counter, new Number160(hash));
+	}
+}
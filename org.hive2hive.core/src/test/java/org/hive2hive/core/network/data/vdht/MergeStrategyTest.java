@@ -0,0 +1,204 @@
+package org.hive2hive.core.network.data.vdht;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.security.KeyPair;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.versioned.Locations;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the {@link UserProfileMergeStrategy} and the {@link LocationsMergeStrategy}.
+ *
+ * @author Nico
+ */
+public class MergeStrategyTest extends H2HJUnitTest {
+
+	private static KeyPair[] keys;
+
+	private final UserProfileMergeStrategy strategy = new UserProfileMergeStrategy();
+	private UserProfile ancestor;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = MergeStrategyTest.class;
+		beforeClass();
+
+		keys = new KeyPair[8];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		}
+	}
+
+	@AfterClass
+	public static void endTest() {
+		afterClass();
+	}
+
+	@Before
+	public void createAncestor() {
+		// root, folder 'a' with file 'a/f1', file 'f2'
+		ancestor = new UserProfile("user", keys[0], keys[0]);
+		FolderIndex a = new FolderIndex(ancestor.getRoot(), keys[1], "a");
+		new FileIndex(a, keys[2], "f1", new byte[] { 1 });
+		new FileIndex(ancestor.getRoot(), keys[3], "f2", new byte[] { 2 });
+	}
+
+	@Test
+	public void testMergeIndependentChanges() throws Exception {
+		UserProfile ours = copy(ancestor);
+		new FileIndex(ours.getRoot(), keys[4], "g", new byte[] { 4 });
+		file(ours, 2).setHash(new byte[] { 11 });
+
+		UserProfile theirs = copy(ancestor);
+		file(theirs, 3).setName("f3");
+		FolderIndex b = new FolderIndex(theirs.getRoot(), keys[5], "b");
+		new FileIndex(b, keys[6], "x", new byte[] { 6 });
+		Index f1 = file(theirs, 2);
+		f1.getParent().removeChild(f1);
+		f1.setParent(b);
+		b.addChild(f1);
+
+		UserProfile merged = strategy.merge(ancestor, ours, theirs);
+		assertSame(ours, merged);
+		assertNotNull(merged.getRoot().getChildByName("g"));
+		assertNotNull(merged.getRoot().getChildByName("f3"));
+		assertNull(merged.getRoot().getChildByName("f2"));
+
+		FolderIndex mergedB = (FolderIndex) merged.getRoot().getChildByName("b");
+		assertNotNull(mergedB.getChildByName("x"));
+		FileIndex mergedF1 = (FileIndex) mergedB.getChildByName("f1");
+		assertEquals(11, mergedF1.getHash()[0]);
+		assertSame(mergedB, mergedF1.getParent());
+		assertTrue(((FolderIndex) merged.getRoot().getChildByName("a")).getChildren().isEmpty());
+	}
+
+	@Test
+	public void testMergeDeletion() throws Exception {
+		UserProfile ours = copy(ancestor);
+		file(ours, 3).setHash(new byte[] { 12 });
+
+		UserProfile theirs = copy(ancestor);
+		theirs.getRoot().removeChild(theirs.getFileById(keys[1].getPublic()));
+
+		UserProfile merged = strategy.merge(ancestor, ours, theirs);
+		assertNotNull(merged);
+		assertNull(merged.getRoot().getChildByName("a"));
+		assertNull(merged.getFileById(keys[2].getPublic()));
+		assertEquals(12, file(merged, 3).getHash()[0]);
+	}
+
+	@Test
+	public void testConflictingUpdates() throws Exception {
+		UserProfile ours = copy(ancestor);
+		file(ours, 2).setHash(new byte[] { 21 });
+
+		UserProfile theirs = copy(ancestor);
+		file(theirs, 2).setHash(new byte[] { 22 });
+
+		assertNull(strategy.merge(ancestor, ours, theirs));
+		// our version is not touched
+		assertEquals(21, file(ours, 2).getHash()[0]);
+	}
+
+	@Test
+	public void testConflictingDeletion() throws Exception {
+		UserProfile ours = copy(ancestor);
+		file(ours, 2).setHash(new byte[] { 21 });
+
+		UserProfile theirs = copy(ancestor);
+		Index f1 = file(theirs, 2);
+		f1.getParent().removeChild(f1);
+
+		assertNull(strategy.merge(ancestor, ours, theirs));
+	}
+
+	@Test
+	public void testConflictingNames() throws Exception {
+		UserProfile ours = copy(ancestor);
+		new FileIndex(ours.getRoot(), keys[4], "new", new byte[] { 4 });
+
+		UserProfile theirs = copy(ancestor);
+		new FileIndex(theirs.getRoot(), keys[5], "new", new byte[] { 5 });
+
+		assertNull(strategy.merge(ancestor, ours, theirs));
+		assertEquals(3, ours.getRoot().getChildren().size());
+	}
+
+	@Test
+	public void testMergeWithoutAncestor() throws Exception {
+		UserProfile ours = copy(ancestor);
+		UserProfile theirs = copy(ancestor);
+		new FolderIndex(theirs.getRoot(), keys[5], "b");
+
+		UserProfile merged = strategy.merge(null, ours, theirs);
+		assertNotNull(merged);
+		assertNotNull(merged.getRoot().getChildByName("b"));
+
+		// without ancestor, concurrent modifications cannot be distinguished
+		file(theirs, 3).setHash(new byte[] { 13 });
+		assertNull(strategy.merge(null, ours, theirs));
+	}
+
+	@Test
+	public void testMergeLocations() {
+		PeerAddress first = new PeerAddress(Number160.createHash("first"));
+		PeerAddress second = new PeerAddress(Number160.createHash("second"));
+		PeerAddress third = new PeerAddress(Number160.createHash("third"));
+
+		Locations base = new Locations("user");
+		base.addPeerAddress(first);
+		Locations ours = new Locations("user");
+		ours.addPeerAddress(first);
+		ours.addPeerAddress(second);
+		Locations theirs = new Locations("user");
+		theirs.addPeerAddress(third);
+
+		Locations merged = new LocationsMergeStrategy().merge(base, ours, theirs);
+		assertEquals(2, merged.getPeerAddresses().size());
+		assertFalse(merged.getPeerAddresses().contains(first));
+		assertTrue(merged.getPeerAddresses().contains(second));
+		assertTrue(merged.getPeerAddresses().contains(third));
+
+		// without ancestor, the union is built
+		merged = new LocationsMergeStrategy().merge(null, base, theirs);
+		assertEquals(2, merged.getPeerAddresses().size());
+	}
+
+	private static FileIndex file(UserProfile profile, int key) {
+		return (FileIndex) profile.getFileById(keys[key].getPublic());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends Serializable> T copy(T object) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(object);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			return (T) in.readObject();
+		}
+	}
+}
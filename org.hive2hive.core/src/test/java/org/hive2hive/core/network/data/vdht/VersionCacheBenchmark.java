@@ -0,0 +1,64 @@
+package org.hive2hive.core.network.data.vdht;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import net.tomp2p.peers.Number160;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.model.versioned.UserProfile;
+
+/**
+ * Measures the duration of filling the version caches and finding the latest versions as it is done on every
+ * get of versioned content. This is not a unit test; run it manually with the number of rounds as (optional)
+ * argument.
+ *
+ * @author Seppi
+ *
+ */
+public class VersionCacheBenchmark {
+
+	private static final int WARMUP = 100000;
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		// a linear version history, twice as long as the cached history
+		Number160[] keys = new Number160[H2HConstants.MAX_VERSIONS_HISTORY * 2];
+		@SuppressWarnings("unchecked")
+		Collection<Number160>[] basedOn = new Collection[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = new Number160(i + 1, new Number160(i * 31 + 7));
+			basedOn[i] = i == 0 ? Collections.<Number160> emptySet() : Collections.singleton(keys[i - 1]);
+		}
+
+		VersionManager<UserProfile> manager = new VersionManager<UserProfile>(null, "location", "content");
+		run(manager, keys, basedOn, WARMUP);
+
+		Runtime runtime = Runtime.getRuntime();
+		long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
+		long start = System.nanoTime();
+		int forks = run(manager, keys, basedOn, rounds);
+		long duration = System.nanoTime() - start;
+		long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
+
+		System.out.println(String.format("%s rounds of %s versions: %.1f ns per round (%s forks)", rounds,
+				keys.length, duration / (double) rounds, forks));
+		System.out.println(String.format("Heap growth: %s KB (GC not suppressed)", (memoryAfter - memoryBefore) / 1024));
+	}
+
+	private static int run(BaseVersionManager<?> manager, Number160[] keys, Collection<Number160>[] basedOn,
+			int rounds) {
+		int forks = 0;
+		Cache<Collection<Number160>> digest = new Cache<Collection<Number160>>();
+		for (int round = 0; round < rounds; round++) {
+			digest.clear();
+			for (int i = 0; i < keys.length; i++) {
+				digest.put(keys[i], basedOn[i]);
+			}
+			if (manager.countLatest(digest) > 1) {
+				forks++;
+			}
+		}
+		return forks;
+	}
+}
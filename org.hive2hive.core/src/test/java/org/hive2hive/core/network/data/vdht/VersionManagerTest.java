@@ -2,13 +2,21 @@ package org.hive2hive.core.network.data.vdht;
 
 import java.security.KeyPair;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Random;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 import net.tomp2p.peers.Number160;
 import net.tomp2p.peers.Number640;
+import net.tomp2p.peers.PeerAddress;
+import net.tomp2p.rpc.DigestResult;
 import net.tomp2p.storage.Data;
 
 import org.hive2hive.core.H2HConstants;
@@ -380,6 +388,229 @@ public class VersionManagerTest extends H2HJUnitTest {
 		Assert.assertNull(node.getDataManager().getVersion(parameters));
 	}
 
+	@Test
+	public void testDigestFork() {
+		VersionManager<H2HTestData> versionManager = new VersionManager<H2HTestData>(NetworkTestUtil.getRandomNode(
+				network).getDataManager(), randomString(), randomString());
+		Number160 version0 = versionKey(1, 0);
+		Number160 versionA = versionKey(2, 1);
+		Number160 versionB = versionKey(2, 2);
+
+		// each replica knows one version of the fork
+		Map<PeerAddress, DigestResult> rawDigest = new HashMap<PeerAddress, DigestResult>();
+		rawDigest.put(new PeerAddress(Number160.createHash("first")),
+				digest(version0, Number160.ZERO, versionA, version0));
+		rawDigest.put(new PeerAddress(Number160.createHash("second")),
+				digest(version0, Number160.ZERO, versionB, version0));
+		versionManager.mergeDigest(rawDigest, versionManager.digestCache);
+
+		Assert.assertEquals(3, versionManager.digestCache.size());
+		Assert.assertEquals(2, versionManager.countLatest(versionManager.digestCache));
+		Assert.assertEquals(Arrays.asList(versionA, versionB), versionManager.getLatest(versionManager.digestCache));
+		Assert.assertEquals(version0, versionManager.findCommonAncestor(Arrays.asList(versionA, versionB)));
+	}
+
+	@Test
+	public void testDigestMergedVersion() {
+		VersionManager<H2HTestData> versionManager = new VersionManager<H2HTestData>(NetworkTestUtil.getRandomNode(
+				network).getDataManager(), randomString(), randomString());
+		Number160 version0 = versionKey(1, 0);
+		Number160 versionA = versionKey(2, 1);
+		Number160 versionB = versionKey(2, 2);
+		Number160 merged = versionKey(3, 3);
+
+		Map<PeerAddress, DigestResult> rawDigest = new HashMap<PeerAddress, DigestResult>();
+		NavigableMap<Number640, Collection<Number160>> keyDigest = new TreeMap<Number640, Collection<Number160>>();
+		keyDigest.put(key640(version0), Arrays.asList(Number160.ZERO));
+		keyDigest.put(key640(versionA), Arrays.asList(version0));
+		keyDigest.put(key640(versionB), Arrays.asList(version0));
+		// the merged version is based on both versions of the fork
+		keyDigest.put(key640(merged), Arrays.asList(versionB, versionA));
+		rawDigest.put(new PeerAddress(Number160.createHash("first")), new DigestResult(keyDigest));
+		versionManager.mergeDigest(rawDigest, versionManager.digestCache);
+
+		Assert.assertEquals(1, versionManager.countLatest(versionManager.digestCache));
+		Assert.assertEquals(Arrays.asList(merged), versionManager.getLatest(versionManager.digestCache));
+	}
+
+	@Test
+	public void testDigestDelay() {
+		VersionManager<H2HTestData> versionManager = new VersionManager<H2HTestData>(NetworkTestUtil.getRandomNode(
+				network).getDataManager(), randomString(), randomString());
+		Number160 version0 = versionKey(1, 0);
+		Number160 version1 = versionKey(2, 1);
+
+		Map<PeerAddress, DigestResult> rawDigest = new HashMap<PeerAddress, DigestResult>();
+		rawDigest.put(new PeerAddress(Number160.createHash("first")),
+				digest(version0, Number160.ZERO, version1, version0));
+		versionManager.mergeDigest(rawDigest, versionManager.digestCache);
+
+		// a replica returned an outdated version
+		Cache<Data> fetched = new Cache<Data>();
+		fetched.put(version0, new Data(new byte[] { 1 }));
+		Assert.assertTrue(versionManager.hasVersionDelay(fetched, versionManager.digestCache));
+		Assert.assertEquals(1, versionManager.countLatest(versionManager.digestCache));
+
+		fetched.clear();
+		fetched.put(version1, new Data(new byte[] { 1 }));
+		Assert.assertFalse(versionManager.hasVersionDelay(fetched, versionManager.digestCache));
+	}
+
+	@Test
+	public void testMergeForkAfterGet() throws Exception {
+		String locationKey = randomString();
+		String contentKey = randomString();
+
+		VersionManager<H2HTestData> versionManager = createMergingVersionManager(locationKey, contentKey);
+		H2HTestData version0 = new H2HTestData("a");
+		versionManager.put(version0, protectionKeys);
+		createFork(versionManager, locationKey, contentKey, version0, "a,b", "a,c");
+
+		// another client merges the fork when getting the latest version
+		VersionManager<H2HTestData> otherManager = createMergingVersionManager(locationKey, contentKey);
+		H2HTestData merged = otherManager.get();
+		Assert.assertEquals("a,b,c", merged.getTestString());
+
+		// a single put resolves the fork
+		otherManager.put(merged, protectionKeys);
+		Assert.assertEquals("a,b,c", createMergingVersionManager(locationKey, contentKey).get().getTestString());
+	}
+
+	@Test
+	public void testMergeAfterPut() throws Exception {
+		String locationKey = randomString();
+		String contentKey = randomString();
+
+		VersionManager<H2HTestData> versionManager1 = createMergingVersionManager(locationKey, contentKey);
+		VersionManager<H2HTestData> versionManager2 = createMergingVersionManager(locationKey, contentKey);
+		H2HTestData version0 = new H2HTestData("a");
+		versionManager1.put(version0, protectionKeys);
+		createFork(versionManager1, locationKey, contentKey, version0, "a,b", "a,c");
+
+		// the merged version is based on both versions of the fork
+		H2HTestData merged = versionManager1.get();
+		versionManager1.put(merged, protectionKeys);
+
+		// both clients start from the merged version
+		H2HTestData stale = versionManager2.get();
+		Assert.assertEquals("a,b,c", stale.getTestString());
+		H2HTestData latest = versionManager1.get();
+		latest.setTestString(latest.getTestString() + ",d");
+		versionManager1.put(latest, protectionKeys);
+
+		// the put based on the outdated version is rejected and merged with the latest version
+		stale.setTestString(stale.getTestString() + ",e");
+		versionManager2.put(stale, protectionKeys);
+		Assert.assertEquals("a,b,c,d,e", createMergingVersionManager(locationKey, contentKey).get().getTestString());
+	}
+
+	@Test(expected = VersionForkAfterPutException.class)
+	public void testMergeAfterPutConflict() throws Exception {
+		NetworkManager node = NetworkTestUtil.getRandomNode(network);
+
+		String locationKey = randomString();
+		String contentKey = randomString();
+
+		VersionManager<H2HTestData> versionManager = new VersionManager<H2HTestData>(node.getDataManager(), locationKey,
+				contentKey);
+		// never merges
+		versionManager.setMergeStrategy(new IMergeStrategy<H2HTestData>() {
+			@Override
+			public H2HTestData merge(H2HTestData ancestor, H2HTestData ours, H2HTestData theirs) {
+				return null;
+			}
+		});
+
+		H2HTestData versionA = new H2HTestData(randomString());
+		H2HTestData versionB = new H2HTestData(randomString());
+
+		versionManager.put(versionA, protectionKeys);
+		versionManager.put(versionB, protectionKeys);
+	}
+
+	/**
+	 * Puts two versions based on the same version, the second one without the fork detection of the version
+	 * manager.
+	 */
+	private static void createFork(VersionManager<H2HTestData> versionManager, String locationKey, String contentKey,
+			H2HTestData basedOn, String contentA, String contentB) throws Exception {
+		H2HTestData versionA = new H2HTestData(contentA);
+		versionA.setVersionKey(basedOn.getVersionKey());
+		versionManager.put(versionA, protectionKeys);
+
+		H2HTestData versionB = new H2HTestData(contentB);
+		versionB.setVersionKey(basedOn.getVersionKey());
+		versionB.generateVersionKey();
+		Parameters parameters = new Parameters().setLocationKey(locationKey).setContentKey(contentKey)
+				.setVersionKey(versionB.getVersionKey()).setBasedOnKey(versionB.getBasedOnKey())
+				.setNetworkContent(versionB).setProtectionKeys(protectionKeys).setTTL(versionB.getTimeToLive());
+		// the storage reports the fork but keeps the version
+		NetworkTestUtil.getRandomNode(network).getDataManager().putUnblocked(parameters).awaitUninterruptibly();
+	}
+
+	private static Number160 versionKey(long counter, int hash) {
+		return new Number160(counter, new Number160(hash).number96());
+	}
+
+	private static Number640 key640(Number160 versionKey) {
+		return new Number640(Number160.ONE, Number160.ZERO, Number160.ONE, versionKey);
+	}
+
+	/**
+	 * The digest of two versions and their predecessors
+	 */
+	private static DigestResult digest(Number160 first, Number160 firstBasedOn, Number160 second,
+			Number160 secondBasedOn) {
+		NavigableMap<Number640, Collection<Number160>> keyDigest = new TreeMap<Number640, Collection<Number160>>();
+		keyDigest.put(key640(first), Arrays.asList(firstBasedOn));
+		keyDigest.put(key640(second), Arrays.asList(secondBasedOn));
+		return new DigestResult(keyDigest);
+	}
+
+	private static VersionManager<H2HTestData> createMergingVersionManager(String locationKey, String contentKey) {
+		VersionManager<H2HTestData> versionManager = new VersionManager<H2HTestData>(NetworkTestUtil.getRandomNode(
+				network).getDataManager(), locationKey, contentKey);
+		versionManager.setMergeStrategy(new TokenMergeStrategy());
+		return versionManager;
+	}
+
+	/**
+	 * Merges comma separated tokens, e.g. <code>a,b</code> and <code>a,c</code> become <code>a,b,c</code>
+	 */
+	private static class TokenMergeStrategy implements IMergeStrategy<H2HTestData> {
+
+		@Override
+		public H2HTestData merge(H2HTestData ancestor, H2HTestData ours, H2HTestData theirs) {
+			Set<String> base = ancestor == null ? new TreeSet<String>() : tokens(ancestor);
+			Set<String> theirTokens = tokens(theirs);
+			Set<String> merged = tokens(ours);
+			for (String token : theirTokens) {
+				if (!base.contains(token)) {
+					merged.add(token);
+				}
+			}
+			for (String token : base) {
+				if (!theirTokens.contains(token)) {
+					merged.remove(token);
+				}
+			}
+
+			StringBuilder builder = new StringBuilder();
+			for (String token : merged) {
+				if (builder.length() > 0) {
+					builder.append(',');
+				}
+				builder.append(token);
+			}
+			ours.setTestString(builder.toString());
+			return ours;
+		}
+
+		private static Set<String> tokens(H2HTestData data) {
+			return new TreeSet<String>(Arrays.asList(data.getTestString().split(",")));
+		}
+	}
+
 	@AfterClass
 	public static void cleanAfterClass() {
 		NetworkTestUtil.shutdownNetwork(network);
@@ -0,0 +1,127 @@
+package org.hive2hive.core.processes.files;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.metrics.H2HMetrics;
+import org.hive2hive.core.model.FileVersion;
+import org.hive2hive.core.model.versioned.BaseMetaFile;
+import org.hive2hive.core.model.versioned.MetaFileSmall;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.MetaFileCache;
+import org.hive2hive.core.network.data.MetaFileCache.CachedMetaFile;
+import org.hive2hive.core.processes.context.UpdateFileProcessContext;
+import org.hive2hive.core.utils.NetworkTestUtil;
+import org.hive2hive.core.utils.TestExecutionUtil;
+import org.hive2hive.core.utils.UseCaseTestUtil;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that the {@link GetMetaFileStep} and the {@link PutMetaFileStep} use the meta file cache only as long
+ * as the cached version is the latest one in the DHT, also when the cache has been seeded from the last session.
+ *
+ * @author Nico
+ */
+public class GetMetaFileStepTest extends H2HJUnitTest {
+
+	private static List<NetworkManager> network;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = GetMetaFileStepTest.class;
+		beforeClass();
+		network = NetworkTestUtil.createNetwork(DEFAULT_NETWORK_SIZE);
+	}
+
+	@Test
+	public void testCacheHitAndInvalidation() throws Exception {
+		NetworkManager client1 = network.get(0);
+		NetworkManager client2 = network.get(1);
+
+		KeyPair encryptionKeys = generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE);
+		KeyPair protectionKeys = generateRSAKeyPair(H2HConstants.KEYLENGTH_PROTECTION);
+		KeyPair chunkKeys = generateRSAKeyPair(H2HConstants.KEYLENGTH_CHUNK);
+
+		// the put updates the cache of the putting client
+		MetaFileSmall metaFile = new MetaFileSmall(encryptionKeys.getPublic(), new ArrayList<FileVersion>(), chunkKeys);
+		putMetaFile(client1, metaFile, encryptionKeys, protectionKeys);
+		CachedMetaFile cached = client1.getDataManager().getMetaFileCache()
+				.get(encryptionKeys.getPublic(), encryptionKeys.getPrivate());
+		Assert.assertNotNull(cached);
+
+		// the digest matches the cached version
+		long hits = getCounter(client1, H2HMetrics.META_FILE_CACHE_HIT);
+		BaseMetaFile fromCache = UseCaseTestUtil.getMetaFile(client1, encryptionKeys);
+		Assert.assertEquals(cached.getVersionKey(), fromCache.getVersionKey());
+		Assert.assertEquals(hits + 1, getCounter(client1, H2HMetrics.META_FILE_CACHE_HIT));
+
+		// another client puts a newer version
+		BaseMetaFile fromNetwork = UseCaseTestUtil.getMetaFile(client2, encryptionKeys);
+		Assert.assertEquals(cached.getVersionKey(), fromNetwork.getVersionKey());
+		putMetaFile(client2, (MetaFileSmall) fromNetwork, encryptionKeys, protectionKeys);
+		CachedMetaFile newer = client2.getDataManager().getMetaFileCache()
+				.get(encryptionKeys.getPublic(), encryptionKeys.getPrivate());
+		Assert.assertNotEquals(cached.getVersionKey(), newer.getVersionKey());
+
+		// the outdated entry is not used anymore, the newer version is fetched and cached
+		long misses = getCounter(client1, H2HMetrics.META_FILE_CACHE_MISS);
+		BaseMetaFile latest = UseCaseTestUtil.getMetaFile(client1, encryptionKeys);
+		Assert.assertEquals(newer.getVersionKey(), latest.getVersionKey());
+		Assert.assertEquals(misses + 1, getCounter(client1, H2HMetrics.META_FILE_CACHE_MISS));
+		Assert.assertEquals(newer.getVersionKey(),
+				client1.getDataManager().getMetaFileCache().get(encryptionKeys.getPublic(), encryptionKeys.getPrivate())
+						.getVersionKey());
+	}
+
+	@Test
+	public void testSeededFromLastSession() throws Exception {
+		NetworkManager client1 = network.get(0);
+		NetworkManager client2 = network.get(1);
+
+		KeyPair encryptionKeys = generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE);
+		KeyPair protectionKeys = generateRSAKeyPair(H2HConstants.KEYLENGTH_PROTECTION);
+		KeyPair chunkKeys = generateRSAKeyPair(H2HConstants.KEYLENGTH_CHUNK);
+		MetaFileSmall metaFile = new MetaFileSmall(encryptionKeys.getPublic(), new ArrayList<FileVersion>(), chunkKeys);
+		putMetaFile(client1, metaFile, encryptionKeys, protectionKeys);
+
+		// another client starts with the encrypted meta files persisted by the first client
+		MetaFileCache cache = client2.getDataManager().getMetaFileCache();
+		cache.invalidate(encryptionKeys.getPublic());
+		cache.seed(client1.getDataManager().getMetaFileCache().getSnapshot());
+		Assert.assertFalse(cache.get(encryptionKeys.getPublic(), encryptionKeys.getPrivate()).isDecrypted());
+
+		// the seeded meta file is only decrypted, not fetched
+		long hits = getCounter(client2, H2HMetrics.META_FILE_CACHE_HIT);
+		BaseMetaFile seeded = UseCaseTestUtil.getMetaFile(client2, encryptionKeys);
+		Assert.assertEquals(hits + 1, getCounter(client2, H2HMetrics.META_FILE_CACHE_HIT));
+		Assert.assertEquals(metaFile.getId(), seeded.getId());
+		Assert.assertTrue(cache.get(encryptionKeys.getPublic(), encryptionKeys.getPrivate()).isDecrypted());
+	}
+
+	private static void putMetaFile(NetworkManager client, MetaFileSmall metaFile, KeyPair encryptionKeys,
+			KeyPair protectionKeys) throws Exception {
+		DataManager dataManager = client.getDataManager();
+		UpdateFileProcessContext context = new UpdateFileProcessContext(null, null, null, dataManager.getEncryption());
+		context.provideMetaFile(metaFile);
+		context.provideMetaFileEncryptionKeys(encryptionKeys);
+		context.provideMetaFileProtectionKeys(protectionKeys);
+		TestExecutionUtil.executeProcessTillSucceded(new PutMetaFileStep(context, dataManager));
+	}
+
+	private static long getCounter(NetworkManager client, String name) {
+		return client.getDataManager().getMetrics().getCounter(name);
+	}
+
+	@AfterClass
+	public static void endTest() {
+		NetworkTestUtil.shutdownNetwork(network);
+		afterClass();
+	}
+}
@@ -3,6 +3,7 @@ package org.hive2hive.core.processes.files.add;
 import java.io.File;
 import java.io.IOException;
 import java.security.KeyPair;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
@@ -19,6 +20,7 @@ import org.hive2hive.core.processes.ProcessFactory;
 import org.hive2hive.core.security.UserCredentials;
 import org.hive2hive.core.utils.FileTestUtil;
 import org.hive2hive.core.utils.NetworkTestUtil;
+import org.hive2hive.core.utils.TestExecutionUtil;
 import org.hive2hive.core.utils.TestFileConfiguration;
 import org.hive2hive.core.utils.UseCaseTestUtil;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
@@ -117,6 +119,31 @@ public class AddFileTest extends H2HJUnitTest {
 		verifyUpload(innerFolder, 0);
 	}
 
+	@Test
+	public void testBulkUploadFolderTree() throws IOException, IllegalArgumentException, NoSessionException,
+			GetFailedException, NoPeerConnectionException, InvalidProcessStateException, ProcessExecutionException {
+		File folder = new File(uploaderRoot, "bulk-folder");
+		File innerFolder = new File(folder, "inner-folder");
+		innerFolder.mkdirs();
+		File file = FileTestUtil.createFileRandomContent(1, folder);
+		File innerFile = FileTestUtil.createFileRandomContent(3, innerFolder);
+
+		// add all at once (in random order)
+		List<File> files = new ArrayList<File>();
+		files.add(innerFile);
+		files.add(folder);
+		files.add(file);
+		files.add(innerFolder);
+		IProcessComponent<Void> process = ProcessFactory.instance().createBulkAddProcess(files, network.get(0),
+				new TestFileConfiguration());
+		TestExecutionUtil.executeProcessTillSucceded(process);
+
+		verifyUpload(folder, 0);
+		verifyUpload(innerFolder, 0);
+		verifyUpload(file, 1);
+		verifyUpload(innerFile, 3);
+	}
+
 	@Test(expected = NoSessionException.class)
 	public void testUploadNoSession() throws IOException, IllegalArgumentException, NoSessionException,
 			InvalidProcessStateException, NoPeerConnectionException, ProcessExecutionException {
@@ -0,0 +1,147 @@
+package org.hive2hive.core.processes.files.add;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.PermissionType;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.processes.ProcessFactory;
+import org.hive2hive.core.security.UserCredentials;
+import org.hive2hive.core.utils.FileTestUtil;
+import org.hive2hive.core.utils.H2HWaiter;
+import org.hive2hive.core.utils.NetworkTestUtil;
+import org.hive2hive.core.utils.TestExecutionUtil;
+import org.hive2hive.core.utils.TestFileConfiguration;
+import org.hive2hive.core.utils.TestFileEventListener;
+import org.hive2hive.core.utils.UseCaseTestUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that a folder tree added in bulk reaches the other clients of the user and the users of a shared
+ * folder, including all files within the tree.
+ *
+ * @author Nico
+ */
+public class BulkAddNotificationTest extends H2HJUnitTest {
+
+	private static List<NetworkManager> network;
+
+	private static UserCredentials userA;
+	private static File rootA;
+	private static File rootA2;
+	private static NetworkManager clientA;
+	private static NetworkManager clientA2;
+
+	private static UserCredentials userB;
+	private static File rootB;
+	private static NetworkManager clientB;
+
+	/**
+	 * User A has two clients, user B has one client. The events are handled (files are downloaded) at the
+	 * second client of A and at the client of B.
+	 */
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = BulkAddNotificationTest.class;
+		beforeClass();
+
+		network = NetworkTestUtil.createNetwork(Math.max(DEFAULT_NETWORK_SIZE, 3));
+		clientA = network.get(0);
+		clientA2 = network.get(1);
+		clientB = network.get(2);
+
+		userA = generateRandomCredentials("userA");
+		rootA = tempFolder.newFolder();
+		rootA2 = tempFolder.newFolder();
+		UseCaseTestUtil.registerAndLogin(userA, clientA, rootA);
+		UseCaseTestUtil.login(userA, clientA2, rootA2);
+		clientA2.getEventBus().subscribe(new TestFileEventListener(clientA2));
+
+		userB = generateRandomCredentials("userB");
+		rootB = tempFolder.newFolder();
+		UseCaseTestUtil.registerAndLogin(userB, clientB, rootB);
+		clientB.getEventBus().subscribe(new TestFileEventListener(clientB));
+	}
+
+	@Test
+	public void testBulkAddAtOtherClient() throws Exception {
+		File folder = new File(rootA, randomString());
+		List<File> files = createTree(folder);
+		bulkAdd(files);
+
+		// every file of the tree appears at the second client
+		verifyTree(files, rootA, rootA2);
+	}
+
+	@Test
+	public void testBulkAddIntoSharedFolder() throws Exception {
+		File sharedFolder = new File(rootA, randomString());
+		sharedFolder.mkdir();
+		UseCaseTestUtil.uploadNewFile(clientA, sharedFolder);
+		UseCaseTestUtil.shareFolder(clientA, sharedFolder, userB.getUserId(), PermissionType.WRITE);
+		File sharedFolderAtB = new File(rootB, sharedFolder.getName());
+		waitTillExists(sharedFolderAtB);
+
+		List<File> files = createTree(new File(sharedFolder, randomString()));
+		bulkAdd(files);
+
+		// every file of the tree appears at the other client of A and at the client of B
+		verifyTree(files, rootA, rootA2);
+		verifyTree(files, sharedFolder, sharedFolderAtB);
+	}
+
+	/**
+	 * Creates a folder with a file and a sub-folder containing two files. The returned list contains the
+	 * parents before their children.
+	 */
+	private static List<File> createTree(File folder) throws IOException {
+		List<File> files = new ArrayList<File>();
+		folder.mkdirs();
+		files.add(folder);
+		files.add(FileTestUtil.createFileRandomContent(1, folder));
+		File innerFolder = new File(folder, "inner-folder");
+		innerFolder.mkdir();
+		files.add(innerFolder);
+		files.add(FileTestUtil.createFileRandomContent(2, innerFolder));
+		files.add(FileTestUtil.createFileRandomContent(1, innerFolder));
+		return files;
+	}
+
+	private static void bulkAdd(List<File> files) throws Exception {
+		TestExecutionUtil.executeProcessTillSucceded(ProcessFactory.instance().createBulkAddProcess(files, clientA,
+				new TestFileConfiguration()));
+	}
+
+	private static void verifyTree(List<File> files, File root, File otherRoot) throws IOException {
+		for (File file : files) {
+			String relativePath = root.toPath().relativize(file.toPath()).toString();
+			File otherFile = new File(otherRoot, relativePath);
+			waitTillExists(otherFile);
+			if (file.isFile()) {
+				H2HWaiter waiter = new H2HWaiter(60);
+				while (!FileUtils.contentEquals(file, otherFile)) {
+					waiter.tickASecond();
+				}
+			}
+		}
+	}
+
+	private static void waitTillExists(File file) {
+		H2HWaiter waiter = new H2HWaiter(60);
+		while (!file.exists()) {
+			waiter.tickASecond();
+		}
+	}
+
+	@AfterClass
+	public static void endTest() throws IOException {
+		NetworkTestUtil.shutdownNetwork(network);
+		afterClass();
+	}
+}
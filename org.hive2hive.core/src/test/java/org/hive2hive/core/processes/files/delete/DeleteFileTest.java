@@ -179,6 +179,51 @@ public class DeleteFileTest extends H2HJUnitTest {
 		Assert.assertNotNull(userProfile.getFileById(metaKeyPairFolder.getPublic()));
 	}
 
+	@Test
+	public void testDeleteFolderTree() throws IOException, IllegalArgumentException, GetFailedException,
+			InterruptedException, NoSessionException, NoPeerConnectionException {
+		// add a non-empty folder tree to the network
+		File folder = new File(root, randomString());
+		folder.mkdir();
+		UseCaseTestUtil.uploadNewFile(client, folder);
+		File innerFolder = new File(folder, "inner-folder");
+		innerFolder.mkdir();
+		UseCaseTestUtil.uploadNewFile(client, innerFolder);
+		File file = FileTestUtil.createFileRandomContent(2, folder);
+		UseCaseTestUtil.uploadNewFile(client, file);
+		File innerFile = FileTestUtil.createFileRandomContent(1, innerFolder);
+		UseCaseTestUtil.uploadNewFile(client, innerFile);
+
+		// store some things to be able to test later
+		UserProfile userProfileBeforeDeletion = UseCaseTestUtil.getUserProfile(client, userCredentials);
+		KeyPair metaKeyPairFolder = userProfileBeforeDeletion.getFileByPath(folder, root).getFileKeys();
+		KeyPair metaKeyPairFile = userProfileBeforeDeletion.getFileByPath(file, root).getFileKeys();
+		KeyPair metaKeyPairInnerFile = userProfileBeforeDeletion.getFileByPath(innerFile, root).getFileKeys();
+		MetaFileSmall metaFileBeforeDeletion = (MetaFileSmall) UseCaseTestUtil.getMetaFile(client, metaKeyPairFile);
+
+		// delete the whole tree at once
+		UseCaseTestUtil.deleteSubtree(client, folder);
+
+		// the whole tree is gone from the user profile
+		UserProfile userProfile = UseCaseTestUtil.getUserProfile(client, userCredentials);
+		Assert.assertNull(userProfile.getFileById(metaKeyPairFolder.getPublic()));
+		Assert.assertNull(userProfile.getFileById(metaKeyPairFile.getPublic()));
+		Assert.assertNull(userProfile.getFileById(metaKeyPairInnerFile.getPublic()));
+
+		// the meta files and chunks are gone as well
+		Assert.assertNull(UseCaseTestUtil.getMetaFile(client, metaKeyPairFile, false));
+		Assert.assertNull(UseCaseTestUtil.getMetaFile(client, metaKeyPairInnerFile, false));
+		for (FileVersion version : metaFileBeforeDeletion.getVersions()) {
+			for (MetaChunk metaChunks : version.getMetaChunks()) {
+				FutureGet get = client.getDataManager().getUnblocked(
+						new Parameters().setLocationKey(metaChunks.getChunkId()).setContentKey(H2HConstants.FILE_CHUNK));
+				get.awaitUninterruptibly();
+				get.futureRequests().awaitUninterruptibly();
+				Assert.assertNull(get.data());
+			}
+		}
+	}
+
 	@AfterClass
 	public static void endTest() throws IOException {
 		NetworkTestUtil.shutdownNetwork(network);
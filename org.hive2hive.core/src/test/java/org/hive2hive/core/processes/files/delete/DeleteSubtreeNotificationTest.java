@@ -0,0 +1,142 @@
+package org.hive2hive.core.processes.files.delete;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.PublicKey;
+import java.util.List;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.exceptions.GetFailedException;
+import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.model.PermissionType;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.security.UserCredentials;
+import org.hive2hive.core.utils.FileTestUtil;
+import org.hive2hive.core.utils.H2HWaiter;
+import org.hive2hive.core.utils.NetworkTestUtil;
+import org.hive2hive.core.utils.TestFileEventListener;
+import org.hive2hive.core.utils.UseCaseTestUtil;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that the deletion of a whole folder tree reaches the other clients of the user and the users of
+ * shared folders within the tree.
+ *
+ * @author Nico
+ */
+public class DeleteSubtreeNotificationTest extends H2HJUnitTest {
+
+	private static List<NetworkManager> network;
+
+	private static UserCredentials userA;
+	private static File rootA;
+	private static File rootA2;
+	private static NetworkManager clientA;
+	private static NetworkManager clientA2;
+
+	private static UserCredentials userB;
+	private static File rootB;
+	private static NetworkManager clientB;
+	private static TestFileEventListener eventsB;
+
+	/**
+	 * User A has two clients, user B has one client. The events are handled (files are downloaded and
+	 * deleted) at the second client of A and at the client of B.
+	 */
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = DeleteSubtreeNotificationTest.class;
+		beforeClass();
+
+		network = NetworkTestUtil.createNetwork(Math.max(DEFAULT_NETWORK_SIZE, 3));
+		clientA = network.get(0);
+		clientA2 = network.get(1);
+		clientB = network.get(2);
+
+		userA = generateRandomCredentials("userA");
+		rootA = tempFolder.newFolder();
+		rootA2 = tempFolder.newFolder();
+		UseCaseTestUtil.registerAndLogin(userA, clientA, rootA);
+		UseCaseTestUtil.login(userA, clientA2, rootA2);
+		clientA2.getEventBus().subscribe(new TestFileEventListener(clientA2));
+
+		userB = generateRandomCredentials("userB");
+		rootB = tempFolder.newFolder();
+		UseCaseTestUtil.registerAndLogin(userB, clientB, rootB);
+		eventsB = new TestFileEventListener(clientB);
+		clientB.getEventBus().subscribe(eventsB);
+	}
+
+	@Test
+	public void testDeleteTreeAtOtherClient() throws IOException, NoSessionException, NoPeerConnectionException {
+		File folder = new File(rootA, randomString());
+		folder.mkdir();
+		UseCaseTestUtil.uploadNewFile(clientA, folder);
+		File innerFolder = new File(folder, "inner-folder");
+		innerFolder.mkdir();
+		UseCaseTestUtil.uploadNewFile(clientA, innerFolder);
+		File file = FileTestUtil.createFileRandomContent(2, folder);
+		UseCaseTestUtil.uploadNewFile(clientA, file);
+		File innerFile = FileTestUtil.createFileRandomContent(1, innerFolder);
+		UseCaseTestUtil.uploadNewFile(clientA, innerFile);
+
+		// wait until the second client has downloaded the tree
+		File innerFileAtA2 = new File(new File(new File(rootA2, folder.getName()), innerFolder.getName()),
+				innerFile.getName());
+		waitTillExists(innerFileAtA2, true);
+
+		UseCaseTestUtil.deleteSubtree(clientA, folder);
+
+		// the second client removes the whole tree
+		waitTillExists(new File(rootA2, folder.getName()), false);
+	}
+
+	@Test
+	public void testDeleteTreeWithSharedFolder() throws IOException, NoSessionException, NoPeerConnectionException,
+			GetFailedException {
+		File folder = new File(rootA, randomString());
+		folder.mkdir();
+		UseCaseTestUtil.uploadNewFile(clientA, folder);
+		File sharedFolder = new File(folder, randomString());
+		sharedFolder.mkdir();
+		UseCaseTestUtil.uploadNewFile(clientA, sharedFolder);
+		File file = FileTestUtil.createFileRandomContent(1, sharedFolder);
+		UseCaseTestUtil.uploadNewFile(clientA, file);
+
+		// share the folder within the tree with user B
+		UseCaseTestUtil.shareFolder(clientA, sharedFolder, userB.getUserId(), PermissionType.WRITE);
+		PublicKey sharedFolderKey = UseCaseTestUtil.getUserProfile(clientA, userA).getFileByPath(sharedFolder, rootA)
+				.getFilePublicKey();
+		File sharedFolderAtB = new File(rootB, sharedFolder.getName());
+		waitTillExists(new File(sharedFolderAtB, file.getName()), true);
+		Assert.assertNotNull(UseCaseTestUtil.getUserProfile(clientB, userB).getFileById(sharedFolderKey));
+
+		// user B only knows the shared folder, not the deleted top folder
+		UseCaseTestUtil.deleteSubtree(clientA, folder);
+
+		H2HWaiter waiter = new H2HWaiter(60);
+		while (eventsB.getDeleted(sharedFolderAtB) == null) {
+			waiter.tickASecond();
+		}
+		Assert.assertTrue(eventsB.getDeleted(sharedFolderAtB).isFolder());
+		Assert.assertNull(UseCaseTestUtil.getUserProfile(clientB, userB).getFileById(sharedFolderKey));
+		waitTillExists(sharedFolderAtB, false);
+	}
+
+	private static void waitTillExists(File file, boolean exists) {
+		H2HWaiter waiter = new H2HWaiter(60);
+		while (file.exists() != exists) {
+			waiter.tickASecond();
+		}
+	}
+
+	@AfterClass
+	public static void endTest() throws IOException {
+		NetworkTestUtil.shutdownNetwork(network);
+		afterClass();
+	}
+}
@@ -0,0 +1,141 @@
+package org.hive2hive.core.processes.files.list;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.file.FileUtil;
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the paged listing of the {@link GetFileListPageStep} on a user profile.
+ * 
+ * @author Nico
+ */
+public class GetFileListPageTest extends H2HJUnitTest {
+
+	private static KeyPair keys;
+	private final File rootFile = new File("root");
+	private UserProfile profile;
+	private FolderIndex b;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = GetFileListPageTest.class;
+		beforeClass();
+		keys = generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+	}
+
+	@AfterClass
+	public static void endTest() {
+		afterClass();
+	}
+
+	@Before
+	public void createProfile() {
+		// root: a, b/ (b/c, b/d/ (b/d/e)), f
+		profile = new UserProfile("user", keys, keys);
+		new FileIndex(profile.getRoot(), newKeys(), "f", new byte[] { 1 });
+		b = new FolderIndex(profile.getRoot(), newKeys(), "b");
+		new FileIndex(profile.getRoot(), newKeys(), "a", new byte[] { 1 });
+		FolderIndex d = new FolderIndex(b, newKeys(), "d");
+		new FileIndex(d, newKeys(), "e", new byte[] { 1 });
+		new FileIndex(b, newKeys(), "c", new byte[] { 1 });
+	}
+
+	@Test
+	public void testPreorder() {
+		FileListPage page = GetFileListPageStep.listPage(profile.getRoot(), rootFile, true, null, 100);
+		assertEquals(paths("a", "b/", "b/c", "b/d/", "b/d/e", "f"), paths(page));
+		assertFalse(page.hasNext());
+		assertNull(page.getNextCursor());
+		assertEquals(new File(rootFile, "b" + FileUtil.getFileSep() + "c"), page.getNodes().get(2).getFile());
+	}
+
+	@Test
+	public void testDirectChildren() {
+		FileListPage page = GetFileListPageStep.listPage(profile.getRoot(), rootFile, false, null, 100);
+		assertEquals(paths("a", "b/", "f"), paths(page));
+
+		page = GetFileListPageStep.listPage(b, rootFile, false, null, 100);
+		assertEquals(paths("b/c", "b/d/"), paths(page));
+	}
+
+	@Test
+	public void testPages() {
+		List<String> all = new ArrayList<String>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			FileListPage page = GetFileListPageStep.listPage(profile.getRoot(), rootFile, true, cursor, 2);
+			assertTrue(page.getNodes().size() <= 2);
+			all.addAll(paths(page));
+			cursor = page.getNextCursor();
+			pages++;
+		} while (cursor != null);
+
+		assertEquals(3, pages);
+		assertEquals(paths("a", "b/", "b/c", "b/d/", "b/d/e", "f"), all);
+	}
+
+	@Test
+	public void testCursorOfRemovedNode() {
+		FileListPage first = GetFileListPageStep.listPage(profile.getRoot(), rootFile, true, null, 3);
+		assertEquals(paths("a", "b/", "b/c"), paths(first));
+
+		// remove the node of the cursor and add a node before it
+		b.removeChild(b.getChildByName("c"));
+		new FileIndex(b, newKeys(), "aa", new byte[] { 1 });
+
+		FileListPage second = GetFileListPageStep.listPage(profile.getRoot(), rootFile, true, first.getNextCursor(), 3);
+		assertEquals(paths("b/d/", "b/d/e", "f"), paths(second));
+	}
+
+	@Test
+	public void testSubtree() {
+		FileListPage page = GetFileListPageStep.listPage(b, rootFile, true, null, 1);
+		assertEquals(paths("b/c"), paths(page));
+		page = GetFileListPageStep.listPage(b, rootFile, true, page.getNextCursor(), 5);
+		assertEquals(paths("b/d/", "b/d/e"), paths(page));
+		assertFalse(page.hasNext());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testForeignCursor() {
+		GetFileListPageStep.listPage(b, rootFile, true, "f", 5);
+	}
+
+	private static KeyPair newKeys() {
+		return new KeyPair(keys.getPublic(), keys.getPrivate());
+	}
+
+	private static List<String> paths(String... paths) {
+		List<String> result = new ArrayList<String>();
+		for (String path : paths) {
+			result.add(path.replace("/", FileUtil.getFileSep()));
+		}
+		return result;
+	}
+
+	private static List<String> paths(FileListPage page) {
+		List<String> result = new ArrayList<String>();
+		for (FileNode node : page) {
+			result.add(node.getPath());
+		}
+		return result;
+	}
+}
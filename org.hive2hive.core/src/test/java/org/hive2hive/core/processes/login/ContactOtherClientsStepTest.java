@@ -211,7 +211,7 @@ public class ContactOtherClientsStepTest extends H2HJUnitTest {
 			NoPeerConnectionException {
 		// initialize the process and the one and only step to test
 
-		LoginProcessContext context = new LoginProcessContext(null, null);
+		LoginProcessContext context = new LoginProcessContext(null, null, null);
 		context.provideLocations(fakedLocations);
 		ContactOtherClientsStep processStep = new ContactOtherClientsStep(context, network.get(0));
 		TestExecutionUtil.executeProcessTillSucceded(processStep);
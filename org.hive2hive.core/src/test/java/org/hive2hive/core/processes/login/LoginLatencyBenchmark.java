@@ -0,0 +1,69 @@
+package org.hive2hive.core.processes.login;
+
+import java.util.List;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.security.PasswordUtil;
+import org.hive2hive.core.security.UserCredentials;
+import org.hive2hive.core.utils.NetworkTestUtil;
+import org.hive2hive.core.utils.UseCaseTestUtil;
+import org.hive2hive.core.utils.helper.TestFileAgent;
+
+/**
+ * Measures the latency of the login on a local network. The same user logs in at multiple peers one after
+ * the other, thus every login needs to contact the clients which are already online. The results are printed
+ * together with the duration of the key derivation, which is overlapped with fetching the user profile. This is
+ * not a unit test; run it manually with the network size and the number of clients as (optional) arguments.
+ *
+ * @author Nico
+ */
+public class LoginLatencyBenchmark {
+
+	public static void main(String[] args) throws NoPeerConnectionException, NoSessionException {
+		int networkSize = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		List<NetworkManager> network = NetworkTestUtil.createNetwork(networkSize);
+		try {
+			UserCredentials userCredentials = H2HJUnitTest.generateRandomCredentials();
+			UseCaseTestUtil.register(userCredentials, network.get(0));
+
+			long start = System.currentTimeMillis();
+			PasswordUtil.generateAESKeyFromPassword(userCredentials.getPassword(), userCredentials.getPin(),
+					H2HConstants.KEYLENGTH_USER_PROFILE);
+			long keyDerivation = System.currentTimeMillis() - start;
+
+			long total = 0;
+			long max = 0;
+			try {
+				for (int i = 0; i < clients; i++) {
+					NetworkManager client = network.get(i);
+					start = System.currentTimeMillis();
+					UseCaseTestUtil.login(userCredentials, client, new TestFileAgent());
+					long duration = System.currentTimeMillis() - start;
+
+					System.out.println(String.format("Login #%s with %s other client(s) online took %s ms.", i + 1,
+							i, duration));
+					total += duration;
+					max = Math.max(max, duration);
+				}
+			} finally {
+				for (int i = 0; i < clients; i++) {
+					if (network.get(i).getUserId() != null) {
+						UseCaseTestUtil.logout(network.get(i));
+					}
+				}
+			}
+
+			System.out.println(String.format(
+					"Login latency on %s peers: mean %s ms, max %s ms (key derivation alone: %s ms).", networkSize,
+					total / clients, max, keyDerivation));
+		} finally {
+			NetworkTestUtil.shutdownNetwork(network);
+		}
+	}
+}
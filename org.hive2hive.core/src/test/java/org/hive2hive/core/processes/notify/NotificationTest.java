@@ -1,18 +1,27 @@
 package org.hive2hive.core.processes.notify;
 
 import java.io.IOException;
+import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import net.tomp2p.peers.PeerAddress;
 
 import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.H2HTestData;
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.metrics.H2HMetrics;
 import org.hive2hive.core.model.versioned.Locations;
 import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.messages.AcceptanceReply;
 import org.hive2hive.core.network.messages.MessageReplyHandler;
+import org.hive2hive.core.network.messages.direct.BaseDirectMessage;
 import org.hive2hive.core.processes.ProcessFactory;
 import org.hive2hive.core.security.UserCredentials;
 import org.hive2hive.core.utils.H2HWaiter;
@@ -329,6 +338,95 @@ public class NotificationTest extends H2HJUnitTest {
 		Assert.assertEquals(2, locations.getPeerAddresses().size());
 	}
 
+	/**
+	 * Scenario: User A (peer 0) sends multiple notifications to his own clients (peer 1 and 2) at the same
+	 * time. They are coalesced by the dispatcher and encrypted only once, but every single one must arrive.
+	 */
+	@Test
+	public void testNotifyOwnUserCoalesced() throws Exception {
+		NetworkManager notifier = network.get(0);
+		PublicKey publicKey = notifier.getSession().getKeyPair().getPublic();
+		CountingNotificationMessageFactory msgFactory = new CountingNotificationMessageFactory(notifier);
+
+		List<BaseDirectMessage> messages = new ArrayList<BaseDirectMessage>();
+		for (int i = 0; i < 3; i++) {
+			messages.add(msgFactory.createPrivateNotificationMessage(getPeerAddress(1)));
+			messages.add(msgFactory.createPrivateNotificationMessage(getPeerAddress(2)));
+		}
+
+		// dispatch all within the coalescing window
+		long batchesBefore = notifier.getMetrics().getCounter(H2HMetrics.NOTIFICATION_BATCH);
+		List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+		for (BaseDirectMessage message : messages) {
+			results.add(notifier.getNotificationDispatcher().dispatch(message, publicKey));
+		}
+
+		for (Future<Boolean> result : results) {
+			Assert.assertTrue(result.get(20, TimeUnit.SECONDS));
+		}
+		// one batch for all notifications to both peers
+		Assert.assertEquals(batchesBefore + 1, notifier.getMetrics().getCounter(H2HMetrics.NOTIFICATION_BATCH));
+
+		H2HWaiter waiter = new H2HWaiter(20);
+		do {
+			waiter.tickASecond();
+		} while (!msgFactory.allMsgsArrived());
+		Assert.assertEquals(6, msgFactory.getArrivedMessageCount());
+	}
+
+	/**
+	 * Scenario: User A (peer 0) sends a batch of notifications to his own clients, but peer 1 denies one of
+	 * them. The notifications of peer 1 must not be reported as delivered, while peer 2 gets its notification.
+	 */
+	@Test
+	public void testDeniedNotificationInBatch() throws Exception {
+		NetworkManager notifier = network.get(0);
+		PublicKey publicKey = notifier.getSession().getKeyPair().getPublic();
+		CountingNotificationMessageFactory msgFactory = new CountingNotificationMessageFactory(notifier);
+
+		BaseDirectMessage accepted = msgFactory.createPrivateNotificationMessage(getPeerAddress(1));
+		BaseDirectMessage denied = new DeniedNotificationMessage(getPeerAddress(1), notifier.getNodeId());
+		BaseDirectMessage other = msgFactory.createPrivateNotificationMessage(getPeerAddress(2));
+
+		NotificationDispatcher dispatcher = notifier.getNotificationDispatcher();
+		Future<Boolean> acceptedResult = dispatcher.dispatch(accepted, publicKey);
+		Future<Boolean> deniedResult = dispatcher.dispatch(denied, publicKey);
+		Future<Boolean> otherResult = dispatcher.dispatch(other, publicKey);
+
+		Assert.assertFalse(acceptedResult.get(60, TimeUnit.SECONDS));
+		Assert.assertFalse(deniedResult.get(60, TimeUnit.SECONDS));
+		Assert.assertTrue(otherResult.get(60, TimeUnit.SECONDS));
+
+		H2HWaiter waiter = new H2HWaiter(20);
+		do {
+			waiter.tickASecond();
+		} while (msgFactory.getArrivedMessageCount() < 1);
+		// only the notification for peer 2 has been processed
+		Thread.sleep(1000);
+		Assert.assertEquals(1, msgFactory.getArrivedMessageCount());
+	}
+
+	private static PeerAddress getPeerAddress(int index) {
+		return network.get(index).getConnection().getPeer().peerAddress();
+	}
+
+	/**
+	 * A notification that is never accepted by the receiver
+	 */
+	private static class DeniedNotificationMessage extends TestDirectNotificationMessage {
+
+		private static final long serialVersionUID = -6620734307329472133L;
+
+		public DeniedNotificationMessage(PeerAddress targetAddress, String verificationLoc) {
+			super(targetAddress, verificationLoc, randomString(), new H2HTestData(randomString()));
+		}
+
+		@Override
+		public AcceptanceReply accept() {
+			return AcceptanceReply.FAILURE;
+		}
+	}
+
 	@After
 	public void restoreMessageHandlers() throws NoPeerConnectionException {
 		super.afterMethod();
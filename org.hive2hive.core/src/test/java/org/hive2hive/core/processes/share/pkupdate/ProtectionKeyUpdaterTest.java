@@ -0,0 +1,215 @@
+package org.hive2hive.core.processes.share.pkupdate;
+
+import java.io.File;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.events.framework.interfaces.IShareProgressListener;
+import org.hive2hive.core.events.framework.interfaces.file.IShareProgressEvent;
+import org.hive2hive.core.model.Chunk;
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FileVersion;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.model.versioned.MetaFileSmall;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.processes.context.ChunkPKUpdateContext;
+import org.hive2hive.core.processes.context.MetaDocumentPKUpdateContext;
+import org.hive2hive.core.security.H2HDummyEncryption;
+import org.hive2hive.core.utils.NetworkTestUtil;
+import org.hive2hive.core.utils.TestExecutionUtil;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ProtectionKeyUpdater}, which changes the protection keys of many chunks at once.
+ *
+ * @author Seppi
+ */
+public class ProtectionKeyUpdaterTest extends H2HJUnitTest {
+
+	private static List<NetworkManager> network;
+	private static H2HDummyEncryption dummyEncryption;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = ProtectionKeyUpdaterTest.class;
+		beforeClass();
+		network = NetworkTestUtil.createNetwork(DEFAULT_NETWORK_SIZE);
+		dummyEncryption = new H2HDummyEncryption();
+	}
+
+	@Test
+	public void testChangeAndRollback() throws Exception {
+		NetworkManager node = network.get(0);
+
+		KeyPair encryptionKeys = generateRSAKeyPair(H2HConstants.KEYLENGTH_CHUNK);
+		KeyPair protectionKeysOld = generateRSAKeyPair(H2HConstants.KEYLENGTH_PROTECTION);
+		KeyPair protectionKeysNew = generateRSAKeyPair(H2HConstants.KEYLENGTH_PROTECTION);
+
+		// put some chunks protected with the old keys
+		List<Parameters> chunks = new ArrayList<Parameters>();
+		// a small window, such that the submission blocks
+		ProtectionKeyUpdater updater = new ProtectionKeyUpdater(node.getDataManager(), 3);
+		for (int i = 0; i < 10; i++) {
+			Chunk chunk = new Chunk(randomString(), randomString().getBytes(), i);
+			HybridEncryptedContent encryptedChunk = dummyEncryption.encryptHybrid(chunk, encryptionKeys.getPublic());
+			Parameters parameters = new Parameters().setLocationKey(chunk.getId()).setContentKey(H2HConstants.FILE_CHUNK)
+					.setProtectionKeys(protectionKeysOld).setNetworkContent(encryptedChunk);
+			parameters.setHashFlag(true);
+			node.getDataManager().putUnblocked(parameters).awaitUninterruptibly();
+			chunks.add(parameters);
+
+			MetaChunk metaChunk = new MetaChunk(chunk.getId(), parameters.getHash(), i);
+			updater.submit(new ChunkPKUpdateContext(protectionKeysOld, protectionKeysNew, metaChunk));
+		}
+
+		Assert.assertTrue(updater.await());
+		Assert.assertEquals(10, updater.getSubmittedCount());
+		Assert.assertEquals(10, updater.getChangedCount());
+		Assert.assertEquals(0, updater.getFailedCount());
+		Assert.assertEquals(1, updater.getProgress(), 0);
+		// nothing to resume
+		Assert.assertTrue(updater.resume());
+
+		for (Parameters parameters : chunks) {
+			Assert.assertEquals(protectionKeysNew.getPublic(), node.getDataManager().getUnblocked(parameters)
+					.awaitUninterruptibly().data().publicKey());
+		}
+
+		Assert.assertTrue(updater.rollback());
+		for (Parameters parameters : chunks) {
+			Assert.assertEquals(protectionKeysOld.getPublic(), node.getDataManager().getUnblocked(parameters)
+					.awaitUninterruptibly().data().publicKey());
+		}
+	}
+
+	@Test
+	public void testProgressEvents() throws Exception {
+		NetworkManager node = network.get(0);
+
+		KeyPair encryptionKeys = generateRSAKeyPair(H2HConstants.KEYLENGTH_CHUNK);
+		KeyPair protectionKeysOld = generateRSAKeyPair(H2HConstants.KEYLENGTH_PROTECTION);
+		KeyPair protectionKeysNew = generateRSAKeyPair(H2HConstants.KEYLENGTH_PROTECTION);
+
+		final File folder = new File(randomString());
+		final List<IShareProgressEvent> events = Collections.synchronizedList(new ArrayList<IShareProgressEvent>());
+		IShareProgressListener listener = new IShareProgressListener() {
+			@Override
+			public void onShareProgress(IShareProgressEvent progressEvent) {
+				if (folder.equals(progressEvent.getFile())) {
+					events.add(progressEvent);
+				}
+			}
+		};
+		node.getEventBus().subscribe(listener);
+
+		ProtectionKeyUpdater updater = new ProtectionKeyUpdater(node.getDataManager(), 3, node.getEventBus(), folder);
+		for (int i = 0; i < 5; i++) {
+			Chunk chunk = new Chunk(randomString(), randomString().getBytes(), i);
+			HybridEncryptedContent encryptedChunk = dummyEncryption.encryptHybrid(chunk, encryptionKeys.getPublic());
+			Parameters parameters = new Parameters().setLocationKey(chunk.getId()).setContentKey(H2HConstants.FILE_CHUNK)
+					.setProtectionKeys(protectionKeysOld).setNetworkContent(encryptedChunk);
+			parameters.setHashFlag(true);
+			node.getDataManager().putUnblocked(parameters).awaitUninterruptibly();
+
+			MetaChunk metaChunk = new MetaChunk(chunk.getId(), parameters.getHash(), i);
+			updater.submit(new ChunkPKUpdateContext(protectionKeysOld, protectionKeysNew, metaChunk));
+		}
+		Assert.assertTrue(updater.await());
+		node.getEventBus().unsubscribe(listener);
+
+		// the final progress is published when all changes are done
+		Assert.assertFalse(events.isEmpty());
+		IShareProgressEvent last = events.get(events.size() - 1);
+		Assert.assertEquals(5, last.getChangedCount());
+		Assert.assertEquals(5, last.getSubmittedCount());
+		Assert.assertEquals(1, last.getProgress(), 0);
+	}
+
+	@Test
+	public void testResumeFailed() throws Exception {
+		NetworkManager node = network.get(0);
+
+		KeyPair encryptionKeys = generateRSAKeyPair(H2HConstants.KEYLENGTH_CHUNK);
+		KeyPair protectionKeysOld = generateRSAKeyPair(H2HConstants.KEYLENGTH_PROTECTION);
+		KeyPair protectionKeysNew = generateRSAKeyPair(H2HConstants.KEYLENGTH_PROTECTION);
+		KeyPair protectionKeysWrong = generateRSAKeyPair(H2HConstants.KEYLENGTH_PROTECTION);
+
+		Chunk chunk = new Chunk(randomString(), randomString().getBytes(), 0);
+		HybridEncryptedContent encryptedChunk = dummyEncryption.encryptHybrid(chunk, encryptionKeys.getPublic());
+		Parameters parameters = new Parameters().setLocationKey(chunk.getId()).setContentKey(H2HConstants.FILE_CHUNK)
+				.setProtectionKeys(protectionKeysOld).setNetworkContent(encryptedChunk);
+		parameters.setHashFlag(true);
+		node.getDataManager().putUnblocked(parameters).awaitUninterruptibly();
+
+		// the wrong keys are rejected
+		ProtectionKeyUpdater updater = new ProtectionKeyUpdater(node.getDataManager());
+		MetaChunk metaChunk = new MetaChunk(chunk.getId(), parameters.getHash(), 0);
+		updater.submit(new ChunkPKUpdateContext(protectionKeysWrong, protectionKeysNew, metaChunk));
+		Assert.assertFalse(updater.await());
+		Assert.assertEquals(1, updater.getFailedCount());
+
+		// still failing after resuming
+		Assert.assertFalse(updater.resume());
+		Assert.assertEquals(1, updater.getFailedCount());
+		Assert.assertEquals(protectionKeysOld.getPublic(), node.getDataManager().getUnblocked(parameters)
+				.awaitUninterruptibly().data().publicKey());
+	}
+
+	@Test
+	public void testRollbackSubmittedChunks() throws Exception {
+		NetworkManager node = network.get(0);
+
+		KeyPair encryptionKeys = generateRSAKeyPair(H2HConstants.KEYLENGTH_CHUNK);
+		KeyPair fileKeys = generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE);
+		KeyPair protectionKeysOld = generateRSAKeyPair(H2HConstants.KEYLENGTH_PROTECTION);
+		KeyPair protectionKeysNew = generateRSAKeyPair(H2HConstants.KEYLENGTH_PROTECTION);
+
+		// a file with some chunks protected with the old keys
+		List<Parameters> chunks = new ArrayList<Parameters>();
+		List<MetaChunk> metaChunks = new ArrayList<MetaChunk>();
+		for (int i = 0; i < 5; i++) {
+			Chunk chunk = new Chunk(randomString(), randomString().getBytes(), i);
+			HybridEncryptedContent encryptedChunk = dummyEncryption.encryptHybrid(chunk, encryptionKeys.getPublic());
+			Parameters parameters = new Parameters().setLocationKey(chunk.getId()).setContentKey(H2HConstants.FILE_CHUNK)
+					.setProtectionKeys(protectionKeysOld).setNetworkContent(encryptedChunk);
+			parameters.setHashFlag(true);
+			node.getDataManager().putUnblocked(parameters).awaitUninterruptibly();
+			chunks.add(parameters);
+			metaChunks.add(new MetaChunk(chunk.getId(), parameters.getHash(), i));
+		}
+		List<FileVersion> versions = new ArrayList<FileVersion>();
+		versions.add(new FileVersion(0, 5, System.currentTimeMillis(), metaChunks));
+		FileIndex fileIndex = new FileIndex(new FolderIndex(fileKeys), fileKeys, randomString(), null);
+		MetaDocumentPKUpdateContext context = new MetaDocumentPKUpdateContext(protectionKeysOld, protectionKeysNew,
+				fileKeys.getPublic(), fileIndex);
+		context.provideMetaFile(new MetaFileSmall(fileKeys.getPublic(), versions, encryptionKeys));
+
+		// a small window, such that the submission blocks
+		ProtectionKeyUpdater updater = new ProtectionKeyUpdater(node.getDataManager(), 3);
+		InitializeChunkUpdateStep step = new InitializeChunkUpdateStep(context, updater);
+		TestExecutionUtil.executeProcessTillSucceded(step);
+
+		// another lane fails before the changes are awaited, the changes in flight are reverted as well
+		step.rollback();
+		for (Parameters parameters : chunks) {
+			Assert.assertEquals(protectionKeysOld.getPublic(), node.getDataManager().getUnblocked(parameters)
+					.awaitUninterruptibly().data().publicKey());
+		}
+	}
+
+	@AfterClass
+	public static void endTest() {
+		NetworkTestUtil.shutdownNetwork(network);
+		afterClass();
+	}
+}
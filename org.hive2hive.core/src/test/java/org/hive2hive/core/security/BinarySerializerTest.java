@@ -0,0 +1,192 @@
+package org.hive2hive.core.security;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.List;
+
+import net.tomp2p.peers.Number160;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.Chunk;
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.model.PermissionType;
+import org.hive2hive.core.model.UserPermission;
+import org.hive2hive.core.model.versioned.EncryptedNetworkContent;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
+import org.hive2hive.core.serializer.FSTSerializer;
+import org.hive2hive.core.serializer.H2HBinarySerializer;
+import org.hive2hive.core.serializer.IH2HSerialize;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the round trip of the types having a dedicated encoding in the {@link H2HBinarySerializer}.
+ * 
+ * @author Nico
+ *
+ */
+public class BinarySerializerTest extends H2HJUnitTest {
+
+	private static IH2HSerialize serializer;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = BinarySerializerTest.class;
+		beforeClass();
+
+		if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+			Security.addProvider(new BouncyCastleProvider());
+		}
+		serializer = new H2HBinarySerializer();
+	}
+
+	@Test
+	public void testUserProfile() throws IOException, ClassNotFoundException {
+		KeyPair encryptionKeys = generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		KeyPair protectionKeys = generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		KeyPair sharedKeys = generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		UserProfile profile = new UserProfile("user", encryptionKeys, protectionKeys);
+		profile.generateVersionKey();
+
+		// root: folder (shared): file1, sub: file2
+		FolderIndex folder = new FolderIndex(profile.getRoot(), generateRSAKeyPair(RSA_KEYLENGTH.BIT_512), "folder");
+		folder.share(sharedKeys);
+		folder.addUserPermissions(new UserPermission("user", PermissionType.WRITE));
+		folder.addUserPermissions(new UserPermission("friend", PermissionType.READ));
+		FileIndex file1 = new FileIndex(folder, generateRSAKeyPair(RSA_KEYLENGTH.BIT_512), "file1",
+				HashUtil.hash(randomString().getBytes()));
+		file1.setMetaFileHash(HashUtil.hash(randomString().getBytes()));
+		FolderIndex sub = new FolderIndex(folder, generateRSAKeyPair(RSA_KEYLENGTH.BIT_512), "sub");
+		new FileIndex(sub, generateRSAKeyPair(RSA_KEYLENGTH.BIT_512), "file2", null);
+
+		UserProfile decoded = (UserProfile) serializer.deserialize(serializer.serialize(profile));
+		assertEquals(profile.getUserId(), decoded.getUserId());
+		assertEquals(profile.getVersionKey(), decoded.getVersionKey());
+		assertEquals(profile.getBasedOnKey(), decoded.getBasedOnKey());
+		assertEquals(encryptionKeys.getPrivate(), decoded.getEncryptionKeys().getPrivate());
+		assertEquals(protectionKeys.getPublic(), decoded.getProtectionKeys().getPublic());
+		assertEquals(profile.getRoot().getUserPermissions(), decoded.getRoot().getUserPermissions());
+
+		List<Index> expected = Index.getIndexList(profile.getRoot());
+		List<Index> actual = Index.getIndexList(decoded.getRoot());
+		assertEquals(expected.size(), actual.size());
+		for (Index index : expected) {
+			Index other = decoded.getFileById(index.getFilePublicKey());
+			assertEquals(index.getFullPath(), other.getFullPath());
+			assertEquals(index.isShared(), other.isShared());
+			assertEquals(index.getProtectionKeys().getPublic(), other.getProtectionKeys().getPublic());
+			assertEquals(index.getCalculatedUserList(), other.getCalculatedUserList());
+			if (index.isFile()) {
+				assertArrayEquals(((FileIndex) index).getHash(), ((FileIndex) other).getHash());
+				assertArrayEquals(((FileIndex) index).getMetaFileHash(), ((FileIndex) other).getMetaFileHash());
+			}
+		}
+
+		// keys shared among indices are decoded only once
+		FolderIndex decodedFolder = (FolderIndex) decoded.getRoot().getChildByName("folder");
+		assertSame(decodedFolder.getProtectionKeys(), decodedFolder.getChildByName("sub").getProtectionKeys());
+		assertSame(decoded.getEncryptionKeys(), decoded.getRoot().getFileKeys());
+	}
+
+	@Test
+	public void testChunks() throws IOException, ClassNotFoundException {
+		Chunk chunk = new Chunk("chunk-id", randomString(1000).getBytes(), 3);
+		Chunk decodedChunk = (Chunk) serializer.deserialize(serializer.serialize(chunk));
+		assertEquals(chunk.getId(), decodedChunk.getId());
+		assertEquals(chunk.getOrder(), decodedChunk.getOrder());
+		assertArrayEquals(chunk.getData(), decodedChunk.getData());
+
+		MetaChunk metaChunk = new MetaChunk("chunk-id", HashUtil.hash(chunk.getData()), 3);
+		assertEquals(metaChunk, serializer.deserialize(serializer.serialize(metaChunk)));
+	}
+
+	@Test
+	public void testEncryptedContent() throws IOException, ClassNotFoundException {
+		EncryptedNetworkContent encrypted = new EncryptedNetworkContent(randomString().getBytes(), randomString()
+				.getBytes());
+		encrypted.setTimeToLive(42);
+		encrypted.setVersionKey(new Number160(12345));
+		EncryptedNetworkContent decoded = (EncryptedNetworkContent) serializer.deserialize(serializer
+				.serialize(encrypted));
+		assertArrayEquals(encrypted.getCipherContent(), decoded.getCipherContent());
+		assertArrayEquals(encrypted.getInitVector(), decoded.getInitVector());
+		assertEquals(42, decoded.getTimeToLive());
+		assertEquals(encrypted.getVersionKey(), decoded.getVersionKey());
+
+		HybridEncryptedContent hybrid = new HybridEncryptedContent(randomString().getBytes(), randomString()
+				.getBytes());
+		HybridEncryptedContent decodedHybrid = (HybridEncryptedContent) serializer.deserialize(serializer
+				.serialize(hybrid));
+		assertArrayEquals(hybrid.getEncryptedParameters(), decodedHybrid.getEncryptedParameters());
+		assertArrayEquals(hybrid.getEncryptedData(), decodedHybrid.getEncryptedData());
+		assertNull(decodedHybrid.getUserId());
+
+		hybrid.setSignature("user", randomString().getBytes());
+		decodedHybrid = (HybridEncryptedContent) serializer.deserialize(serializer.serialize(hybrid));
+		assertEquals("user", decodedHybrid.getUserId());
+		assertArrayEquals(hybrid.getSignature(), decodedHybrid.getSignature());
+	}
+
+	@Test
+	public void testReadFallbackData() throws IOException, ClassNotFoundException {
+		// data written by the fallback alone can still be read
+		MetaChunk metaChunk = new MetaChunk("chunk-id", new byte[] { 1, 2, 3 }, 1);
+		byte[] fstEncoded = new FSTSerializer().serialize(metaChunk);
+		assertEquals(metaChunk, serializer.deserialize(fstEncoded));
+
+		// other types use the fallback
+		UserPermission permission = new UserPermission("user", PermissionType.READ);
+		assertEquals(permission, serializer.deserialize(serializer.serialize(permission)));
+		assertTrue(serializer.serialize(metaChunk).length < fstEncoded.length);
+	}
+
+	@Test
+	public void testRejectMalformedLengths() throws IOException, ClassNotFoundException {
+		byte[] valid = serializer.serialize(new MetaChunk("x", new byte[] { 1, 2, 3 }, 1));
+		// the chunk id is encoded as its length + 1 followed by the content
+		int position = -1;
+		for (int i = 0; i < valid.length - 1; i++) {
+			if (valid[i] == 2 && valid[i + 1] == 'x') {
+				position = i;
+				break;
+			}
+		}
+		assertTrue(position > 0);
+
+		byte[][] malformed = { { (byte) 0xFF, (byte) 0xFF, 0x03 }, // longer than the input
+				{ (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01 }, // more than 5 bytes
+				{ (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F } }; // negative
+		for (byte[] length : malformed) {
+			byte[] bytes = new byte[position + length.length + 1];
+			System.arraycopy(valid, 0, bytes, 0, position);
+			System.arraycopy(length, 0, bytes, position, length.length);
+			bytes[bytes.length - 1] = 'x';
+			try {
+				serializer.deserialize(bytes);
+				fail("Malformed length not detected");
+			} catch (IOException e) {
+				// expected
+			}
+		}
+	}
+
+	@AfterClass
+	public static void endTest() throws Exception {
+		afterClass();
+	}
+}
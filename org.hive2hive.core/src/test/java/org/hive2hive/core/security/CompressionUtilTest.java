@@ -0,0 +1,184 @@
+package org.hive2hive.core.security;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.Chunk;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.versioned.EncryptedNetworkContent;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.security.EncryptionUtil.AES_KEYLENGTH;
+import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
+import org.hive2hive.core.serializer.FSTSerializer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CompressionUtilTest extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = CompressionUtilTest.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void endTest() {
+		afterClass();
+	}
+
+	@Test
+	public void testCompressText() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			text.append("line ").append(i).append(": the quick brown fox jumps over the lazy dog\n");
+		}
+		byte[] data = text.toString().getBytes();
+
+		byte[] compressed = CompressionUtil.compress(data);
+		assertNotNull(compressed);
+		assertTrue(compressed.length < data.length / 2);
+		assertArrayEquals(data, CompressionUtil.decompress(compressed));
+	}
+
+	@Test
+	public void testSkipSmallData() {
+		byte[] data = new byte[H2HConstants.COMPRESSION_MIN_SIZE - 1];
+		assertNull(CompressionUtil.compress(data));
+		assertNull(CompressionUtil.compress(null));
+	}
+
+	@Test
+	public void testSkipIncompressibleData() {
+		Random random = new Random(42);
+
+		// small random data is compressed completely
+		byte[] data = new byte[H2HConstants.COMPRESSION_SAMPLE_SIZE];
+		random.nextBytes(data);
+		assertNull(CompressionUtil.compress(data));
+
+		// large random data is rejected by the sample
+		data = new byte[H2HConstants.COMPRESSION_SAMPLE_SIZE * 4];
+		random.nextBytes(data);
+		assertNull(CompressionUtil.compress(data));
+	}
+
+	@Test(expected = IOException.class)
+	public void testDecompressCorrupt() throws IOException {
+		byte[] data = new byte[4096];
+		byte[] compressed = CompressionUtil.compress(data);
+		// truncate the compressed data
+		CompressionUtil.decompress(Arrays.copyOf(compressed, compressed.length / 2));
+	}
+
+	@Test
+	public void testEncryptAESCompressed() throws IOException, GeneralSecurityException, ClassNotFoundException {
+		FSTSerializer serializer = new FSTSerializer();
+		H2HDefaultEncryption compressing = new H2HDefaultEncryption(serializer, true);
+		H2HDefaultEncryption plain = new H2HDefaultEncryption(serializer, false);
+
+		KeyPair keys = generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		UserProfile userProfile = new UserProfile(randomString(), keys, keys);
+		for (int i = 0; i < 20; i++) {
+			new FolderIndex(userProfile.getRoot(), keys, "folder-" + i);
+		}
+		SecretKey aesKey = EncryptionUtil.generateAESKey(AES_KEYLENGTH.BIT_128,
+				compressing.getSecurityProvider());
+
+		EncryptedNetworkContent compressed = compressing.encryptAES(userProfile, aesKey);
+		EncryptedNetworkContent uncompressed = plain.encryptAES(userProfile, aesKey);
+		assertTrue(compressed.getCipherContent().length < uncompressed.getCipherContent().length);
+
+		// both can be decrypted independent of the own setting
+		UserProfile decrypted = (UserProfile) plain.decryptAES(compressed, aesKey);
+		assertEquals(userProfile.getUserId(), decrypted.getUserId());
+		decrypted = (UserProfile) compressing.decryptAES(uncompressed, aesKey);
+		assertEquals(userProfile.getUserId(), decrypted.getUserId());
+	}
+
+	@Test
+	public void testEncryptHybridCompressed() throws IOException, GeneralSecurityException, ClassNotFoundException {
+		H2HDefaultEncryption compressing = new H2HDefaultEncryption(new FSTSerializer(), true);
+		KeyPair keys = generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+
+		// text chunk is compressed
+		byte[] text = new byte[8192];
+		Arrays.fill(text, (byte) 'a');
+		Chunk chunk = new Chunk(randomString(), text, 0);
+		HybridEncryptedContent encrypted = compressing.encryptHybrid(chunk, keys.getPublic());
+		assertTrue(CompressionUtil.isCompressed(decryptPayload(compressing, encrypted, keys)));
+		Chunk decrypted = (Chunk) compressing.decryptHybrid(encrypted, keys.getPrivate());
+		assertArrayEquals(text, decrypted.getData());
+
+		// random chunk is not
+		byte[] random = new byte[8192];
+		new Random().nextBytes(random);
+		encrypted = compressing.encryptHybrid(random, keys.getPublic());
+		assertFalse(CompressionUtil.isCompressed(decryptPayload(compressing, encrypted, keys)));
+		assertArrayEquals(random, compressing.decryptHybridRaw(encrypted, keys.getPrivate()));
+	}
+
+	@Test
+	public void testReadOldFormat() throws IOException, GeneralSecurityException, ClassNotFoundException {
+		FSTSerializer serializer = new FSTSerializer();
+		H2HDefaultEncryption compressing = new H2HDefaultEncryption(serializer, true);
+		KeyPair keys = generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		UserProfile userProfile = new UserProfile(randomString(), keys, keys);
+
+		// content encrypted without the header, as before the compression existed
+		SecretKey aesKey = EncryptionUtil.generateAESKey(AES_KEYLENGTH.BIT_128,
+				compressing.getSecurityProvider());
+		byte[] initVector = EncryptionUtil.generateIV();
+		EncryptedNetworkContent encrypted = new EncryptedNetworkContent(EncryptionUtil.encryptAES(
+				serializer.serialize(userProfile), aesKey, initVector, compressing.getSecurityProvider(),
+				new BCStrongAESEncryption()), initVector);
+		UserProfile decrypted = (UserProfile) compressing.decryptAES(encrypted, aesKey);
+		assertEquals(userProfile.getUserId(), decrypted.getUserId());
+
+		byte[] data = new byte[4096];
+		new Random().nextBytes(data);
+		HybridEncryptedContent hybrid = EncryptionUtil.encryptHybrid(data, keys.getPublic(),
+				H2HConstants.KEYLENGTH_HYBRID_AES, compressing.getSecurityProvider(), new BCStrongAESEncryption());
+		assertArrayEquals(data, compressing.decryptHybridRaw(hybrid, keys.getPrivate()));
+
+		// the stored content objects keep their format
+		EncryptedNetworkContent reread = (EncryptedNetworkContent) serializer.deserialize(serializer
+				.serialize(encrypted));
+		assertArrayEquals(encrypted.getCipherContent(), reread.getCipherContent());
+	}
+
+	@Test
+	public void testEscapeHeader() throws IOException {
+		// uncompressed data that happens to start like an encoded payload
+		byte[] data = new byte[] { 'H', '2', 'Z', 1, 2, 3 };
+		byte[] payload = CompressionUtil.encode(data, true);
+		assertFalse(CompressionUtil.isCompressed(payload));
+		assertArrayEquals(data, CompressionUtil.decode(payload));
+
+		// other data is not touched if it is not compressed
+		byte[] other = new byte[] { 1, 2, 3 };
+		assertArrayEquals(other, CompressionUtil.encode(other, true));
+		assertArrayEquals(other, CompressionUtil.decode(other));
+	}
+
+	private static byte[] decryptPayload(H2HDefaultEncryption encryption, HybridEncryptedContent encrypted,
+			KeyPair keys) throws GeneralSecurityException {
+		return EncryptionUtil.decryptHybrid(encrypted, keys.getPrivate(), encryption.getSecurityProvider(),
+				new BCStrongAESEncryption());
+	}
+}
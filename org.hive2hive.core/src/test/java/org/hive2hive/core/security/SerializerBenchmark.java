@@ -0,0 +1,98 @@
+package org.hive2hive.core.security;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.serializer.FSTSerializer;
+import org.hive2hive.core.serializer.H2HBinarySerializer;
+import org.hive2hive.core.serializer.IH2HSerialize;
+import org.hive2hive.core.serializer.JavaSerializer;
+
+/**
+ * Compares the size and the duration of serializing user profiles with the available serializers. This is
+ * not a unit test; run it manually with the number of files in the profile as (optional) argument.
+ *
+ * @author Nico
+ *
+ */
+public class SerializerBenchmark {
+
+	private static final int FILES_PER_FOLDER = 50;
+	// generating thousands of 2048 bit keys takes too long, thus the key material is reused
+	private static final int DISTINCT_KEYS = 50;
+	private static final int WARMUP = 20;
+	private static final int ITERATIONS = 50;
+
+	public static void main(String[] args) throws Exception {
+		int files = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+			Security.addProvider(new BouncyCastleProvider());
+		}
+
+		UserProfile profile = createProfile(files);
+		System.out.println(String.format("User profile with %s files", files));
+
+		IH2HSerialize[] serializers = { new JavaSerializer(), new FSTSerializer(), new H2HBinarySerializer() };
+		for (IH2HSerialize serializer : serializers) {
+			benchmark(serializer, profile);
+		}
+	}
+
+	private static UserProfile createProfile(int files) {
+		List<KeyPair> keys = new ArrayList<KeyPair>();
+		for (int i = 0; i < DISTINCT_KEYS; i++) {
+			keys.add(H2HJUnitTest.generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE));
+		}
+
+		UserProfile profile = new UserProfile("benchmark-user", H2HJUnitTest.generateRSAKeyPair(H2HConstants.KEYLENGTH_USER_KEYS),
+				H2HJUnitTest.generateRSAKeyPair(H2HConstants.KEYLENGTH_PROTECTION));
+		FolderIndex folder = null;
+		for (int i = 0; i < files; i++) {
+			// a new key pair instance per index, such that no serializer can share them
+			KeyPair key = keys.get(i % DISTINCT_KEYS);
+			KeyPair fileKeys = new KeyPair(key.getPublic(), key.getPrivate());
+			if (i % FILES_PER_FOLDER == 0) {
+				folder = new FolderIndex(profile.getRoot(), fileKeys, "folder-" + i);
+			} else {
+				FileIndex file = new FileIndex(folder, fileKeys, "file-" + i + ".txt", HashUtil.hash(fileKeys
+						.getPublic().getEncoded()));
+				file.setMetaFileHash(HashUtil.hash(file.getHash()));
+			}
+		}
+		return profile;
+	}
+
+	private static void benchmark(IH2HSerialize serializer, UserProfile profile) throws IOException,
+			ClassNotFoundException {
+		byte[] encoded = null;
+		for (int i = 0; i < WARMUP; i++) {
+			encoded = serializer.serialize(profile);
+			serializer.deserialize(encoded);
+		}
+
+		long serializeTime = 0;
+		long deserializeTime = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			encoded = serializer.serialize(profile);
+			serializeTime += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			serializer.deserialize(encoded);
+			deserializeTime += System.nanoTime() - start;
+		}
+
+		System.out.println(String.format("%s: %s bytes, serialize %.2f ms, deserialize %.2f ms", serializer
+				.getClass().getSimpleName(), encoded.length, serializeTime / ITERATIONS / 1e6, deserializeTime
+				/ ITERATIONS / 1e6));
+	}
+}
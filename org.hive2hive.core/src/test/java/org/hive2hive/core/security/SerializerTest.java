@@ -16,6 +16,7 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.hive2hive.core.H2HJUnitTest;
 import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
 import org.hive2hive.core.serializer.FSTSerializer;
+import org.hive2hive.core.serializer.H2HBinarySerializer;
 import org.hive2hive.core.serializer.IH2HSerialize;
 import org.hive2hive.core.serializer.JavaSerializer;
 import org.junit.AfterClass;
@@ -38,7 +39,8 @@ public class SerializerTest extends H2HJUnitTest {
 	@SuppressWarnings("rawtypes")
 	@Parameterized.Parameters(name = "{0}")
 	public static Collection data() {
-		return Arrays.asList(new Object[][] { { new JavaSerializer() }, { new FSTSerializer() } });
+		return Arrays.asList(new Object[][] { { new JavaSerializer() }, { new FSTSerializer() },
+				{ new H2HBinarySerializer() } });
 	}
 
 	public SerializerTest(IH2HSerialize serializer) {
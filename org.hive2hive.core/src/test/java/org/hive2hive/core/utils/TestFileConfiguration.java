@@ -1,7 +1,10 @@
 package org.hive2hive.core.utils;
 
+import java.io.File;
 import java.math.BigInteger;
+import java.util.UUID;
 
+import org.apache.commons.io.FileUtils;
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
 
 /**
@@ -14,6 +17,18 @@ public class TestFileConfiguration implements IFileConfiguration {
 
 	// for fast access
 	public static int CHUNK_SIZE = 64;
+	// tests never store chunks in the home directory of the developer
+	public static final File CHUNK_CACHE_DIRECTORY = new File(FileUtils.getTempDirectory(), "H2HTestChunkCache-"
+			+ UUID.randomUUID());
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				FileUtils.deleteQuietly(CHUNK_CACHE_DIRECTORY);
+			}
+		});
+	}
 
 	@Override
 	public BigInteger getMaxFileSize() {
@@ -35,4 +50,14 @@ public class TestFileConfiguration implements IFileConfiguration {
 		return CHUNK_SIZE;
 	}
 
+	@Override
+	public File getChunkCacheDirectory() {
+		return CHUNK_CACHE_DIRECTORY;
+	}
+
+	@Override
+	public long getChunkCacheSize() {
+		return getMaxSizeAllVersions().longValue() * 10;
+	}
+
 }
@@ -102,7 +102,8 @@ public class TestFileEventListener implements IFileEventListener {
 	public void onFileDelete(IFileDeleteEvent fileEvent) {
 		delete.add(fileEvent);
 		if (networkManager != null) {
-			fileEvent.getFile().delete();
+			// a deleted folder may still contain files
+			FileUtils.deleteQuietly(fileEvent.getFile());
 		}
 	}
 
@@ -117,6 +117,12 @@ public class UseCaseTestUtil {
 		TestExecutionUtil.executeProcessTillSucceded(process);
 	}
 
+	public static void deleteSubtree(NetworkManager networkManager, File file) throws NoSessionException,
+			NoPeerConnectionException {
+		IProcessComponent<Void> process = ProcessFactory.instance().createDeleteSubtreeProcess(file, networkManager);
+		TestExecutionUtil.executeProcessTillSucceded(process);
+	}
+
 	public static void moveFile(NetworkManager networkManager, File source, File destination) throws NoSessionException,
 			NoPeerConnectionException {
 		IProcessComponent<Void> process = ProcessFactory.instance().createMoveFileProcess(source, destination,